@@ -0,0 +1,300 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.model;
+
+import org.json.simple.JSONValue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A small open-addressed map for event attributes. Keys and values are stored next to each other in a single array
+ * and collisions are resolved with linear probing, so an attribute costs two array slots instead of a map entry
+ * object. Removal shifts the following entries back rather than leaving tombstones.
+ *
+ * Null keys and values are supported, as they are by the {@link java.util.HashMap}s this replaces. The entry set
+ * iterator does not support removal.
+ *
+ * This class is not thread safe.
+ */
+final class AttributeMap extends AbstractMap<String, Object> {
+
+    private static final int MIN_CAPACITY = 4;
+    private static final Object NULL_KEY = new Object();
+
+    /**
+     * key at even indexes, value at the following odd index. The key slot is null for an empty bucket.
+     */
+    private Object[] table;
+    private int size;
+
+    AttributeMap() {
+        this(MIN_CAPACITY);
+    }
+
+    AttributeMap(int expectedSize) {
+        table = new Object[2 * capacityFor(expectedSize)];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return size > 0 && table[indexOf(key)] != null;
+    }
+
+    @Override
+    public Object get(Object key) {
+        if (size == 0) {
+            return null;
+        }
+        int index = indexOf(key);
+        return table[index] == null ? null : table[index + 1];
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object maskedKey = maskNull(key);
+        int index = indexOf(maskedKey);
+        if (table[index] != null) {
+            Object previous = table[index + 1];
+            table[index + 1] = value;
+            return previous;
+        }
+        // keep the load factor at or below 2/3 so probe sequences stay short
+        if (3 * (size + 1) > table.length) {
+            resize(table.length * 2);
+            index = indexOf(maskedKey);
+        }
+        table[index] = maskedKey;
+        table[index + 1] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> map) {
+        int needed = size + map.size();
+        if (3 * needed > table.length) {
+            resize(Math.max(table.length * 2, 2 * capacityFor(needed)));
+        }
+        for (Map.Entry<? extends String, ?> entry : map.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (size == 0) {
+            return null;
+        }
+        int index = indexOf(key);
+        if (table[index] == null) {
+            return null;
+        }
+        Object previous = table[index + 1];
+        size--;
+        deleteSlot(index);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Writes this map as a JSON object without creating entry objects.
+     */
+    void writeJSONString(Writer out) throws IOException {
+        out.write('{');
+        writeJSONFields(out, true);
+        out.write('}');
+    }
+
+    /**
+     * Writes the members of this map, so they can be appended to another JSON object.
+     *
+     * @param first true if nothing has been written to the enclosing object yet
+     * @return true if nothing has been written to the enclosing object
+     */
+    boolean writeJSONFields(Writer out, boolean first) throws IOException {
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] == null) {
+                continue;
+            }
+            if (!first) {
+                out.write(',');
+            }
+            first = false;
+            writeJSONField(out, String.valueOf(unmaskNull(table[i])), table[i + 1]);
+        }
+        return first;
+    }
+
+    /**
+     * Passes each entry to {@link SpanEvent.IntrinsicsVisitor#visitObject(String, Object)} without creating entry
+     * objects.
+     */
+    void visitEntries(SpanEvent.IntrinsicsVisitor visitor) throws IOException {
+        for (int i = 0; i < table.length; i += 2) {
+            if (table[i] != null) {
+                visitor.visitObject(unmaskNull(table[i]), table[i + 1]);
+            }
+        }
+    }
+
+    private static void writeJSONField(Writer out, String key, Object value) throws IOException {
+        out.write('\"');
+        out.write(JSONValue.escape(key));
+        out.write("\":");
+        JSONValue.writeJSONString(value, out);
+    }
+
+    /**
+     * @return the index of the key slot holding the key, or of the empty slot where it would be inserted
+     */
+    private int indexOf(Object key) {
+        Object maskedKey = maskNull(key);
+        int mask = table.length - 2;
+        int index = hash(maskedKey) & mask;
+        Object current;
+        while ((current = table[index]) != null) {
+            if (current == maskedKey || current.equals(maskedKey)) {
+                return index;
+            }
+            index = (index + 2) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Backward shift deletion: moves later entries of the same probe sequence into the freed slot.
+     */
+    private void deleteSlot(int index) {
+        int mask = table.length - 2;
+        int free = index;
+        int next = (free + 2) & mask;
+        Object key;
+        while ((key = table[next]) != null) {
+            int home = hash(key) & mask;
+            // the entry can move if its home is not cyclically within (free, next]
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                table[free] = key;
+                table[free + 1] = table[next + 1];
+                free = next;
+            }
+            next = (next + 2) & mask;
+        }
+        table[free] = null;
+        table[free + 1] = null;
+    }
+
+    private void resize(int newLength) {
+        Object[] old = table;
+        table = new Object[newLength];
+        int mask = table.length - 2;
+        for (int i = 0; i < old.length; i += 2) {
+            Object key = old[i];
+            if (key != null) {
+                int index = hash(key) & mask;
+                while (table[index] != null) {
+                    index = (index + 2) & mask;
+                }
+                table[index] = key;
+                table[index + 1] = old[i + 1];
+            }
+        }
+    }
+
+    /**
+     * @return a power of two number of buckets that holds the expected size under the load factor
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 2 < expectedSize * 3) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        // key slots are at even indexes
+        return h << 1;
+    }
+
+    private static Object maskNull(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static String unmaskNull(Object key) {
+        return key == NULL_KEY ? null : (String) key;
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+        private int index = nextIndex(0);
+
+        private int nextIndex(int from) {
+            for (int i = from; i < table.length; i += 2) {
+                if (table[i] != null) {
+                    return i;
+                }
+            }
+            return table.length;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < table.length;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (index >= table.length) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, Object> entry = new SimpleImmutableEntry<>(unmaskNull(table[index]), table[index + 1]);
+            index = nextIndex(index + 2);
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -7,42 +7,133 @@
 
 package com.newrelic.agent.model;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONStreamAware;
+import org.json.simple.JSONValue;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
 
+/**
+ * A span event. Spans are held in the reservoir for a full harvest cycle, so the intrinsics every span has are kept in
+ * fields rather than in a map of boxed values. Any other intrinsics, and the agent and user attributes, are kept in
+ * compact {@link AttributeMap}s. {@link #getIntrinsics()} returns a read only view over both.
+ */
 public class SpanEvent extends AnalyticsEvent implements JSONStreamAware {
 
     public static final String SPAN = "Span";
     static final String SPAN_KIND = "client";
 
+    private static final String TYPE = "type";
+    private static final String TRACE_ID = "traceId";
+    private static final String GUID = "guid";
+    private static final String PARENT_ID = "parentId";
+    private static final String TRANSACTION_ID = "transactionId";
+    private static final String NAME = "name";
+    private static final String CATEGORY = "category";
+    private static final String TIMESTAMP = "timestamp";
+    private static final String DURATION = "duration";
+    private static final String PRIORITY = "priority";
+    private static final String SAMPLED = "sampled";
+
+    /**
+     * Intrinsics stored in fields, in the order they are written.
+     */
+    private static final String[] FIELD_INTRINSICS = { TYPE, TRACE_ID, GUID, PARENT_ID, TRANSACTION_ID, NAME, CATEGORY,
+            TIMESTAMP, DURATION, PRIORITY, SAMPLED };
+
+    // bits of the primitive intrinsics that were set
+    private static final int HAS_TIMESTAMP = 1;
+    private static final int HAS_DURATION = 1 << 1;
+    private static final int HAS_PRIORITY = 1 << 2;
+    private static final int HAS_SAMPLED = 1 << 3;
+
     private final String appName;
-    private final Map<String, Object> intrinsics;
-    private final Map<String, Object> agentAttributes;
     private final boolean decider;
+    private final String type;
+    private final String traceId;
+    private final String guid;
+    private final String parentId;
+    private final String transactionId;
+    private final String name;
+    private final String category;
+    private final long startTimestamp;
+    private final float duration;
+    private final float priorityIntrinsic;
+    private final boolean sampled;
+    private final int primitiveIntrinsics;
+    private final AttributeMap otherIntrinsics;
+    private final AttributeMap agentAttributes;
 
     private SpanEvent(Builder builder) {
         super(SPAN, builder.timestamp, builder.priority, builder.userAttributes);
         this.appName = builder.appName;
         this.agentAttributes = builder.agentAttributes;
         this.decider = builder.decider;
-        this.intrinsics = builder.intrinsics;
+        this.type = builder.type;
+        this.traceId = builder.traceId;
+        this.guid = builder.guid;
+        this.parentId = builder.parentId;
+        this.transactionId = builder.transactionId;
+        this.name = builder.name;
+        this.category = builder.category;
+        this.startTimestamp = builder.startTimestamp;
+        this.duration = builder.duration;
+        this.priorityIntrinsic = builder.priorityIntrinsic;
+        this.sampled = builder.sampled;
+        this.primitiveIntrinsics = builder.primitiveIntrinsics;
+        this.otherIntrinsics = builder.intrinsics;
     }
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * @return a read only view of the intrinsics. Values of the intrinsics kept in fields are boxed on access.
+     */
     public Map<String, Object> getIntrinsics() {
-        return intrinsics;
+        return new IntrinsicsView();
+    }
+
+    /**
+     * Passes each intrinsic to the visitor, the ones kept in fields first and in the order they are written. Unlike
+     * {@link #getIntrinsics()} this boxes nothing and creates no map entries.
+     */
+    public void visitIntrinsics(IntrinsicsVisitor visitor) throws IOException {
+        visitStringField(visitor, TYPE, type);
+        visitStringField(visitor, TRACE_ID, traceId);
+        visitStringField(visitor, GUID, guid);
+        visitStringField(visitor, PARENT_ID, parentId);
+        visitStringField(visitor, TRANSACTION_ID, transactionId);
+        visitStringField(visitor, NAME, name);
+        visitStringField(visitor, CATEGORY, category);
+        if ((primitiveIntrinsics & HAS_TIMESTAMP) != 0) {
+            visitor.visitLong(TIMESTAMP, startTimestamp);
+        }
+        if ((primitiveIntrinsics & HAS_DURATION) != 0) {
+            visitor.visitFloat(DURATION, duration);
+        }
+        if ((primitiveIntrinsics & HAS_PRIORITY) != 0) {
+            visitor.visitFloat(PRIORITY, priorityIntrinsic);
+        }
+        if ((primitiveIntrinsics & HAS_SAMPLED) != 0) {
+            visitor.visitBoolean(SAMPLED, sampled);
+        }
+        otherIntrinsics.visitEntries(visitor);
+    }
+
+    private static void visitStringField(IntrinsicsVisitor visitor, String key, String value) throws IOException {
+        if (value != null) {
+            visitor.visitString(key, value);
+        }
     }
 
     public String getAppName() {
@@ -53,6 +144,14 @@ public class SpanEvent extends AnalyticsEvent implements JSONStreamAware {
         return agentAttributes;
     }
 
+    /**
+     * @return a read only view of the user attributes, for serializers that don't need the copy made by
+     * {@link #getUserAttributesCopy()}
+     */
+    public Map<String, ?> getUserAttributes() {
+        return Collections.unmodifiableMap(getMutableUserAttributes());
+    }
+
     @Override
     public boolean decider() {
         return decider;
@@ -60,35 +159,142 @@ public class SpanEvent extends AnalyticsEvent implements JSONStreamAware {
 
     @Override
     public void writeJSONString(Writer out) throws IOException {
-        JSONArray.writeJSONString(Arrays.asList(intrinsics, getMutableUserAttributes(), getAgentAttributes()), out);
+        out.write('[');
+        writeIntrinsics(out);
+        out.write(',');
+        Map<String, ?> userAttributes = getMutableUserAttributes();
+        if (userAttributes instanceof AttributeMap) {
+            ((AttributeMap) userAttributes).writeJSONString(out);
+        } else {
+            JSONValue.writeJSONString(userAttributes, out);
+        }
+        out.write(',');
+        agentAttributes.writeJSONString(out);
+        out.write(']');
+    }
+
+    private void writeIntrinsics(Writer out) throws IOException {
+        out.write('{');
+        boolean first = true;
+        first = writeStringField(out, TYPE, type, first);
+        first = writeStringField(out, TRACE_ID, traceId, first);
+        first = writeStringField(out, GUID, guid, first);
+        first = writeStringField(out, PARENT_ID, parentId, first);
+        first = writeStringField(out, TRANSACTION_ID, transactionId, first);
+        first = writeStringField(out, NAME, name, first);
+        first = writeStringField(out, CATEGORY, category, first);
+        if ((primitiveIntrinsics & HAS_TIMESTAMP) != 0) {
+            first = writeKey(out, TIMESTAMP, first);
+            out.write(Long.toString(startTimestamp));
+        }
+        if ((primitiveIntrinsics & HAS_DURATION) != 0) {
+            first = writeKey(out, DURATION, first);
+            writeFloat(out, duration);
+        }
+        if ((primitiveIntrinsics & HAS_PRIORITY) != 0) {
+            first = writeKey(out, PRIORITY, first);
+            writeFloat(out, priorityIntrinsic);
+        }
+        if ((primitiveIntrinsics & HAS_SAMPLED) != 0) {
+            first = writeKey(out, SAMPLED, first);
+            out.write(sampled ? "true" : "false");
+        }
+        otherIntrinsics.writeJSONFields(out, first);
+        out.write('}');
+    }
+
+    private static boolean writeStringField(Writer out, String key, String value, boolean first) throws IOException {
+        if (value == null) {
+            return first;
+        }
+        writeKey(out, key, first);
+        JSONValue.writeJSONString(value, out);
+        return false;
+    }
+
+    /**
+     * Writes the separator and the quoted key. The field intrinsic keys never need escaping.
+     */
+    private static boolean writeKey(Writer out, String key, boolean first) throws IOException {
+        if (!first) {
+            out.write(',');
+        }
+        out.write('\"');
+        out.write(key);
+        out.write("\":");
+        return false;
+    }
+
+    private static void writeFloat(Writer out, float value) throws IOException {
+        // same as JSONValue, which has no JSON representation for these
+        if (Float.isNaN(value) || Float.isInfinite(value)) {
+            out.write("null");
+        } else {
+            out.write(Float.toString(value));
+        }
+    }
+
+    /**
+     * @return the value of an intrinsic kept in a field, or null if it is not one or was not set
+     */
+    private Object getFieldIntrinsic(String key) {
+        switch (key) {
+            case TYPE:
+                return type;
+            case TRACE_ID:
+                return traceId;
+            case GUID:
+                return guid;
+            case PARENT_ID:
+                return parentId;
+            case TRANSACTION_ID:
+                return transactionId;
+            case NAME:
+                return name;
+            case CATEGORY:
+                return category;
+            case TIMESTAMP:
+                return (primitiveIntrinsics & HAS_TIMESTAMP) != 0 ? Long.valueOf(startTimestamp) : null;
+            case DURATION:
+                return (primitiveIntrinsics & HAS_DURATION) != 0 ? Float.valueOf(duration) : null;
+            case PRIORITY:
+                return (primitiveIntrinsics & HAS_PRIORITY) != 0 ? Float.valueOf(priorityIntrinsic) : null;
+            case SAMPLED:
+                return (primitiveIntrinsics & HAS_SAMPLED) != 0 ? Boolean.valueOf(sampled) : null;
+            default:
+                return null;
+        }
     }
 
     public String getTraceId() {
-        return (String) intrinsics.get("traceId");
+        return traceId != null ? traceId : (String) otherIntrinsics.get(TRACE_ID);
     }
 
     public String getGuid() {
-        return (String) intrinsics.get("guid");
+        return guid != null ? guid : (String) otherIntrinsics.get(GUID);
     }
 
     public String getParentId() {
-        return (String) intrinsics.get("parentId");
+        return parentId != null ? parentId : (String) otherIntrinsics.get(PARENT_ID);
     }
 
     public String getName() {
-        return (String) intrinsics.get("name");
+        return name != null ? name : (String) otherIntrinsics.get(NAME);
     }
 
     public float getDuration() {
-        return (Float) intrinsics.get("duration");
+        if ((primitiveIntrinsics & HAS_DURATION) != 0) {
+            return duration;
+        }
+        return (Float) otherIntrinsics.get(DURATION);
     }
 
     public String getTransactionId() {
-        return (String) intrinsics.get("transactionId");
+        return transactionId != null ? transactionId : (String) otherIntrinsics.get(TRANSACTION_ID);
     }
 
     public SpanCategory getCategory() {
-        return SpanCategory.fromString((String) intrinsics.get("category"));
+        return SpanCategory.fromString(category != null ? category : (String) otherIntrinsics.get(CATEGORY));
     }
 
     @Override
@@ -102,25 +308,138 @@ public class SpanEvent extends AnalyticsEvent implements JSONStreamAware {
         SpanEvent spanEvent = (SpanEvent) o;
         return decider == spanEvent.decider &&
                 Objects.equals(appName, spanEvent.appName) &&
-                Objects.equals(intrinsics, spanEvent.intrinsics) &&
+                Objects.equals(getIntrinsics(), spanEvent.getIntrinsics()) &&
                 Objects.equals(agentAttributes, spanEvent.agentAttributes) &&
                 super.equals(o);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(appName, intrinsics, agentAttributes, decider);
+        return Objects.hash(appName, getIntrinsics(), agentAttributes, decider);
+    }
+
+    /**
+     * Receives the intrinsics of a span from {@link #visitIntrinsics(IntrinsicsVisitor)}. The intrinsics kept in fields
+     * are passed to the method for their type, any other intrinsic to {@link #visitObject(String, Object)}.
+     */
+    public interface IntrinsicsVisitor {
+
+        void visitString(String key, String value) throws IOException;
+
+        void visitLong(String key, long value) throws IOException;
+
+        void visitFloat(String key, float value) throws IOException;
+
+        void visitBoolean(String key, boolean value) throws IOException;
+
+        void visitObject(String key, Object value) throws IOException;
+    }
+
+    /**
+     * The intrinsics kept in fields followed by the other intrinsics.
+     */
+    private final class IntrinsicsView extends AbstractMap<String, Object> {
+
+        @Override
+        public Object get(Object key) {
+            Object value = key instanceof String ? getFieldIntrinsic((String) key) : null;
+            return value != null ? value : otherIntrinsics.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return (key instanceof String && getFieldIntrinsic((String) key) != null) || otherIntrinsics.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            int size = otherIntrinsics.size();
+            for (String key : FIELD_INTRINSICS) {
+                if (getFieldIntrinsic(key) != null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new IntrinsicsIterator();
+                }
+
+                @Override
+                public int size() {
+                    return IntrinsicsView.this.size();
+                }
+            };
+        }
+    }
+
+    private final class IntrinsicsIterator implements Iterator<Map.Entry<String, Object>> {
+        private final Iterator<Map.Entry<String, Object>> others = otherIntrinsics.entrySet().iterator();
+        private int fieldIndex = -1;
+        private Object fieldValue;
+
+        IntrinsicsIterator() {
+            advanceField();
+        }
+
+        private void advanceField() {
+            fieldValue = null;
+            while (fieldValue == null && ++fieldIndex < FIELD_INTRINSICS.length) {
+                fieldValue = getFieldIntrinsic(FIELD_INTRINSICS[fieldIndex]);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return fieldValue != null || others.hasNext();
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (fieldValue == null) {
+                if (!others.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return others.next();
+            }
+            Map.Entry<String, Object> entry = new AbstractMap.SimpleImmutableEntry<>(FIELD_INTRINSICS[fieldIndex], fieldValue);
+            advanceField();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 
     public static class Builder {
-        private final Map<String, Object> intrinsics = new HashMap<>();
-        private final Map<String, Object> agentAttributes = new HashMap<>();
-        private final Map<String, Object> userAttributes = new HashMap<>();
+        private final AttributeMap intrinsics = new AttributeMap();
+        private final AttributeMap agentAttributes = new AttributeMap();
+        private final AttributeMap userAttributes = new AttributeMap();
         private String appName;
         private float priority;
         private boolean decider;
         private long timestamp;
 
+        private String type;
+        private String traceId;
+        private String guid;
+        private String parentId;
+        private String transactionId;
+        private String name;
+        private String category;
+        private long startTimestamp;
+        private float duration;
+        private float priorityIntrinsic;
+        private boolean sampled;
+        private int primitiveIntrinsics;
+
         public Builder appName(String appName) {
             this.appName = appName;
             return this;
@@ -133,16 +452,98 @@ public class SpanEvent extends AnalyticsEvent implements JSONStreamAware {
 
         public Builder putIntrinsic(String key, Object value) {
             if (key != null && value != null) {
-                intrinsics.put(key, value);
+                setIntrinsic(key, value);
             }
             return this;
         }
 
         public Builder putAllIntrinsics(Map<String, ?> intrinsicAttributes) {
-            this.intrinsics.putAll(intrinsicAttributes);
+            for (Map.Entry<String, ?> entry : intrinsicAttributes.entrySet()) {
+                setIntrinsic(entry.getKey(), entry.getValue());
+            }
             return this;
         }
 
+        /**
+         * Keeps the intrinsic in a field if it is one of the known intrinsics with the expected type, otherwise in the
+         * intrinsics map.
+         */
+        private void setIntrinsic(String key, Object value) {
+            if (key != null && setFieldIntrinsic(key, value)) {
+                if (!intrinsics.isEmpty()) {
+                    intrinsics.remove(key);
+                }
+            } else {
+                intrinsics.put(key, value);
+            }
+        }
+
+        /**
+         * @return true if the value was stored in a field, false if the key is not a field intrinsic or the value is
+         * null or of an unexpected type, in which case the field is cleared
+         */
+        private boolean setFieldIntrinsic(String key, Object value) {
+            String stringValue = value instanceof String ? (String) value : null;
+            switch (key) {
+                case TYPE:
+                    type = stringValue;
+                    return stringValue != null;
+                case TRACE_ID:
+                    traceId = stringValue;
+                    return stringValue != null;
+                case GUID:
+                    guid = stringValue;
+                    return stringValue != null;
+                case PARENT_ID:
+                    parentId = stringValue;
+                    return stringValue != null;
+                case TRANSACTION_ID:
+                    transactionId = stringValue;
+                    return stringValue != null;
+                case NAME:
+                    name = stringValue;
+                    return stringValue != null;
+                case CATEGORY:
+                    category = stringValue;
+                    return stringValue != null;
+                case TIMESTAMP:
+                    if (value instanceof Long) {
+                        startTimestamp = (Long) value;
+                        return setPrimitive(HAS_TIMESTAMP, true);
+                    }
+                    return setPrimitive(HAS_TIMESTAMP, false);
+                case DURATION:
+                    if (value instanceof Float) {
+                        duration = (Float) value;
+                        return setPrimitive(HAS_DURATION, true);
+                    }
+                    return setPrimitive(HAS_DURATION, false);
+                case PRIORITY:
+                    if (value instanceof Float) {
+                        priorityIntrinsic = (Float) value;
+                        return setPrimitive(HAS_PRIORITY, true);
+                    }
+                    return setPrimitive(HAS_PRIORITY, false);
+                case SAMPLED:
+                    if (value instanceof Boolean) {
+                        sampled = (Boolean) value;
+                        return setPrimitive(HAS_SAMPLED, true);
+                    }
+                    return setPrimitive(HAS_SAMPLED, false);
+                default:
+                    return false;
+            }
+        }
+
+        private boolean setPrimitive(int bit, boolean set) {
+            if (set) {
+                primitiveIntrinsics |= bit;
+            } else {
+                primitiveIntrinsics &= ~bit;
+            }
+            return set;
+        }
+
         public Builder putAllAgentAttributes(Map<String, ?> agentAttributes) {
             this.agentAttributes.putAll(agentAttributes);
             return this;
@@ -152,9 +553,7 @@ public class SpanEvent extends AnalyticsEvent implements JSONStreamAware {
             if (userAttributes == null || userAttributes.isEmpty()) {
                 return this;
             }
-            for (Map.Entry<String, ?> entry : userAttributes.entrySet()) {
-                this.userAttributes.put(entry.getKey(), entry.getValue());
-            }
+            this.userAttributes.putAll(userAttributes);
             return this;
         }
 
@@ -0,0 +1,82 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.model;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        AttributeMap map = new AttributeMap();
+        assertNull(map.put("one", 1));
+        assertNull(map.put("two", 2));
+        assertEquals(1, map.put("one", 11));
+        assertNull(map.put(null, "nullKey"));
+        assertNull(map.put("nullValue", null));
+
+        assertEquals(4, map.size());
+        assertEquals(11, map.get("one"));
+        assertEquals("nullKey", map.get(null));
+        assertTrue(map.containsKey("nullValue"));
+        assertFalse(map.containsKey("three"));
+
+        assertEquals(2, map.remove("two"));
+        assertNull(map.remove("two"));
+        assertEquals(3, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get("one"));
+    }
+
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(7);
+        AttributeMap map = new AttributeMap();
+        Map<String, Object> expected = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            String key = "key" + random.nextInt(64);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        for (String key : expected.keySet()) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void testWriteJSONString() throws Exception {
+        AttributeMap map = new AttributeMap();
+        assertJSON("{}", map);
+        map.put("quote\"", "a\nb");
+        assertJSON("{\"quote\\\"\":\"a\\nb\"}", map);
+    }
+
+    private static void assertJSON(String expected, AttributeMap map) throws Exception {
+        StringWriter writer = new StringWriter();
+        map.writeJSONString(writer);
+        assertEquals(expected, writer.toString());
+    }
+}
@@ -7,15 +7,25 @@
 
 package com.newrelic.agent.model;
 
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class SpanEventTest {
 
@@ -65,6 +75,134 @@ public class SpanEventTest {
         assertNotEquals(span2, span8);
     }
 
+    @Test
+    public void testIntrinsicsView() {
+        SpanEvent span = SpanEvent.builder()
+                .putIntrinsic("guid", "1234")
+                .putIntrinsic("traceId", "abcd")
+                .putIntrinsic("duration", 1.5f)
+                .putIntrinsic("timestamp", 42L)
+                .putIntrinsic("sampled", true)
+                .putIntrinsic("parent.type", "App")
+                .putIntrinsic("missing", null)
+                .build();
+
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("guid", "1234");
+        expected.put("traceId", "abcd");
+        expected.put("duration", 1.5f);
+        expected.put("timestamp", 42L);
+        expected.put("sampled", true);
+        expected.put("parent.type", "App");
+        assertEquals(expected, span.getIntrinsics());
+        assertEquals(expected.hashCode(), span.getIntrinsics().hashCode());
+        assertEquals(1.5f, span.getDuration(), 0.0f);
+        assertEquals("1234", span.getGuid());
+        assertNull(span.getParentId());
+        assertFalse(span.getIntrinsics().containsKey("priority"));
+        assertFalse(span.getIntrinsics().containsKey("missing"));
+    }
+
+    @Test
+    public void testVisitIntrinsics() throws IOException {
+        SpanEvent span = SpanEvent.builder()
+                .putIntrinsic("guid", "1234")
+                .putIntrinsic("duration", 1.5f)
+                .putIntrinsic("timestamp", 42L)
+                .putIntrinsic("sampled", true)
+                .putIntrinsic("priority", 7)
+                .putIntrinsic("parent.type", "App")
+                .build();
+
+        final Map<String, Object> visited = new LinkedHashMap<>();
+        span.visitIntrinsics(new SpanEvent.IntrinsicsVisitor() {
+            @Override
+            public void visitString(String key, String value) {
+                visited.put(key, value);
+            }
+
+            @Override
+            public void visitLong(String key, long value) {
+                visited.put(key, value);
+            }
+
+            @Override
+            public void visitFloat(String key, float value) {
+                visited.put(key, value);
+            }
+
+            @Override
+            public void visitBoolean(String key, boolean value) {
+                visited.put(key, value);
+            }
+
+            @Override
+            public void visitObject(String key, Object value) {
+                visited.put(key, "object:" + value);
+            }
+        });
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("guid", "1234");
+        expected.put("timestamp", 42L);
+        expected.put("duration", 1.5f);
+        expected.put("sampled", true);
+        expected.put("priority", "object:7");
+        expected.put("parent.type", "object:App");
+        assertEquals(expected, visited);
+        assertEquals(new ArrayList<>(span.getIntrinsics().keySet()), new ArrayList<>(visited.keySet()));
+    }
+
+    @Test
+    public void testIntrinsicsWithUnexpectedTypesAreKept() {
+        SpanEvent span = SpanEvent.builder()
+                .putIntrinsic("timestamp", 7L)
+                .putIntrinsic("timestamp", 7)
+                .putIntrinsic("duration", 2.0d)
+                .putIntrinsic("guid", 12)
+                .build();
+
+        assertEquals(7, span.getIntrinsics().get("timestamp"));
+        assertEquals(2.0d, span.getIntrinsics().get("duration"));
+        assertEquals(12, span.getIntrinsics().get("guid"));
+        assertEquals(3, span.getIntrinsics().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testIntrinsicsAreReadOnly() {
+        SpanEvent.builder().putIntrinsic("guid", "1234").build().getIntrinsics().put("guid", "5678");
+    }
+
+    @Test
+    public void testWriteJSONString() throws Exception {
+        SpanEvent span = baseBuilder(100L)
+                .putIntrinsic("type", SpanEvent.SPAN)
+                .putIntrinsic("guid", "12\"34")
+                .putIntrinsic("priority", 1.25f)
+                .putIntrinsic("duration", Float.NaN)
+                .putIntrinsic("timestamp", 100L)
+                .putIntrinsic("sampled", false)
+                .build();
+
+        StringWriter writer = new StringWriter();
+        span.writeJSONString(writer);
+        JSONArray json = (JSONArray) new JSONParser().parse(writer.toString());
+        assertEquals(3, json.size());
+
+        JSONObject intrinsics = (JSONObject) json.get(0);
+        assertEquals(7, intrinsics.size());
+        assertEquals("Span", intrinsics.get("type"));
+        assertEquals("12\"34", intrinsics.get("guid"));
+        assertEquals(1.25, intrinsics.get("priority"));
+        assertTrue(intrinsics.containsKey("duration"));
+        assertNull(intrinsics.get("duration"));
+        assertEquals(100L, intrinsics.get("timestamp"));
+        assertEquals(false, intrinsics.get("sampled"));
+        assertEquals("dog", intrinsics.get("cat"));
+        assertEquals(singletonMap("a", "b"), json.get(1));
+        assertEquals(singletonMap("foo", "bar"), json.get(2));
+    }
+
     private SpanEvent.Builder baseBuilderExtraUser(long now, String extraUserAttr, String value) {
         return baseBuilder(now).putAllUserAttributes(singletonMap(extraUserAttr, value));
     }
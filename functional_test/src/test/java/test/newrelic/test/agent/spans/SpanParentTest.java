@@ -19,7 +19,6 @@ import com.newrelic.agent.introspec.internal.HttpServerLocator;
 import com.newrelic.agent.model.SpanCategory;
 import com.newrelic.agent.model.SpanEvent;
 import com.newrelic.agent.service.ServiceFactory;
-import com.newrelic.agent.service.analytics.DistributedSamplingPriorityQueue;
 import com.newrelic.agent.service.analytics.SpanEventsService;
 import com.newrelic.agent.service.analytics.TransactionEvent;
 import com.newrelic.agent.service.analytics.TransactionEventsService;
@@ -197,7 +196,7 @@ public class SpanParentTest {
             }
 
             TransactionEventsService transactionEventsService = ServiceFactory.getServiceManager().getTransactionEventsService();
-            DistributedSamplingPriorityQueue<TransactionEvent> txEventPool = transactionEventsService.getOrCreateDistributedSamplingReservoir(appName);
+            SamplingPriorityQueue<TransactionEvent> txEventPool = transactionEventsService.getOrCreateDistributedSamplingReservoir(appName);
             assertNotNull(txEventPool);
             List<TransactionEvent> txEvents = txEventPool.asList();
             txEventPool.clear();
@@ -0,0 +1,56 @@
+package com.newrelic;
+
+import io.grpc.ManagedChannel;
+import io.grpc.stub.ClientCallStreamObserver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Accepts a {@link ManagedChannel} and provides a valid {@link ClientCallStreamObserver}, creating it only when required.
+ *
+ * Not thread-safe.
+ *
+ * @param <T> the type of message written to the stream
+ */
+public abstract class AbstractChannelToStreamObserver<T> implements Function<ManagedChannel, ClientCallStreamObserver<T>> {
+    private final AtomicBoolean shouldRecreateCall;
+    private volatile ManagedChannel lastChannel;
+    private volatile ClientCallStreamObserver<T> streamObserver;
+
+    protected AbstractChannelToStreamObserver(AtomicBoolean shouldRecreateCall) {
+        this.shouldRecreateCall = shouldRecreateCall;
+    }
+
+    /**
+     * Starts a new gRPC call on the channel.
+     */
+    protected abstract ClientCallStreamObserver<T> buildStreamObserver(ManagedChannel channel);
+
+    @Override
+    public ClientCallStreamObserver<T> apply(ManagedChannel channel) {
+        if (channel == null) {
+            return null;
+        }
+
+        if (lastChannel != channel || streamObserver == null || shouldRecreateCall.get()) {
+            recreateStreamObserver(channel);
+        }
+
+        return streamObserver;
+    }
+
+    private void recreateStreamObserver(ManagedChannel channel) {
+        lastChannel = channel;
+        clearStreamObserver();
+        streamObserver = buildStreamObserver(channel);
+        shouldRecreateCall.set(false);
+    }
+
+    private void clearStreamObserver() {
+        if (this.streamObserver != null) {
+            ClientCallStreamObserver<T> oldStreamObserver = this.streamObserver;
+            this.streamObserver = null;
+            oldStreamObserver.cancel("CLOSING_CONNECTION", new ChannelClosingException());
+        }
+    }
+}
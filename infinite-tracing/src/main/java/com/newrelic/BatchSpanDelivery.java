@@ -0,0 +1,124 @@
+package com.newrelic;
+
+import com.newrelic.agent.interfaces.backport.Supplier;
+import com.newrelic.agent.model.SpanEvent;
+import com.newrelic.api.agent.Logger;
+import com.newrelic.api.agent.MetricAggregator;
+import com.newrelic.trace.v1.V1;
+import io.grpc.stub.ClientCallStreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Sends spans to the Trace Observer in bursts. Each run drains up to the batch size from the queue and writes the
+ * spans to the stream back to back, so a busy application pays for one queue wait per burst rather than per span, and
+ * gRPC can flush the burst together. Readiness is checked before every span, and a burst stops as soon as the stream
+ * is no longer ready. The spans it did not write are kept and written first by the next run, so flow control neither
+ * drops nor reorders them. When the stream is not ready the sender waits on the call's on-ready handler instead of
+ * sleeping for a fixed interval.
+ *
+ * Not thread-safe.
+ *
+ * @param <T> the type of message written to the stream, a {@link V1.Span} or an encoded span
+ */
+class BatchSpanDelivery<T> implements Runnable {
+
+    private static final long WAIT_MILLIS = 250;
+
+    private final SpanConverter<T> spanConverter;
+    private final MetricAggregator metricAggregator;
+    private final Logger logger;
+    private final BlockingQueue<SpanEvent> queue;
+    private final Supplier<ClientCallStreamObserver<T>> streamObserverSupplier;
+    private final ReadySignal readySignal;
+    private final int batchSize;
+    private final List<SpanEvent> drained;
+
+    public BatchSpanDelivery(SpanConverter<T> spanConverter, MetricAggregator metricAggregator, Logger logger, BlockingQueue<SpanEvent> queue,
+            Supplier<ClientCallStreamObserver<T>> streamObserverSupplier, ReadySignal readySignal, int batchSize) {
+        this.spanConverter = spanConverter;
+        this.metricAggregator = metricAggregator;
+        this.logger = logger;
+        this.queue = queue;
+        this.streamObserverSupplier = streamObserverSupplier;
+        this.readySignal = readySignal;
+        this.batchSize = batchSize;
+        this.drained = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public void run() {
+        ClientCallStreamObserver<T> spanClientCallStreamObserver = streamObserverSupplier.get();
+
+        if (spanClientCallStreamObserver == null) {
+            return;
+        }
+
+        if (!spanClientCallStreamObserver.isReady()) {
+            try {
+                metricAggregator.incrementCounter("Supportability/InfiniteTracing/NotReady");
+                readySignal.await(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        // spans left over from a burst that was cut short go first
+        if (drained.isEmpty() && !drainSafely()) {
+            return;
+        }
+
+        int sent = 0;
+        int dropped = 0;
+        try {
+            for (; sent < drained.size(); sent++) {
+                if (sent > 0 && !spanClientCallStreamObserver.isReady()) {
+                    metricAggregator.incrementCounter("Supportability/InfiniteTracing/NotReady");
+                    break;
+                }
+                spanClientCallStreamObserver.onNext(spanConverter.convert(drained.get(sent)));
+            }
+        } catch (Throwable t) {
+            // the span being written is lost, the ones after it are kept for the next run
+            dropped = 1;
+            logger.log(Level.SEVERE, t, "Unable to send span!");
+            throw t;
+        } finally {
+            drained.subList(0, sent + dropped).clear();
+            if (sent > 0) {
+                metricAggregator.incrementCounter("Supportability/InfiniteTracing/Span/Sent", sent);
+            }
+            if (dropped > 0) {
+                metricAggregator.incrementCounter("Supportability/InfiniteTracing/Span/Dropped", dropped);
+            }
+        }
+
+        metricAggregator.incrementCounter("Supportability/InfiniteTracing/Span/Batch/Sent");
+    }
+
+    /**
+     * Waits for the first span, then takes whatever else is already queued up to the batch size.
+     *
+     * @return true if at least one span was drained
+     */
+    private boolean drainSafely() {
+        try {
+            SpanEvent first = queue.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return false;
+            }
+            drained.add(first);
+            queue.drainTo(drained, batchSize - 1);
+            return true;
+        } catch (InterruptedException e) {
+            logger.log(Level.WARNING, "Thread was interrupted while polling for spans.");
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.newrelic;
+
+import io.grpc.ManagedChannel;
+import io.grpc.stub.ClientCallStreamObserver;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Provides the {@link ClientCallStreamObserver} for a {@code RecordSpan} call that is written with spans serialized by
+ * the {@link SpanEncoder}.
+ *
+ * Not thread-safe.
+ */
+public class ChannelToEncodedStreamObserver extends AbstractChannelToStreamObserver<byte[]> {
+    private final StreamObserverFactory streamObserverFactory;
+
+    public ChannelToEncodedStreamObserver(
+            StreamObserverFactory streamObserverFactory,
+            AtomicBoolean shouldRecreateCall) {
+        super(shouldRecreateCall);
+        this.streamObserverFactory = streamObserverFactory;
+    }
+
+    @Override
+    protected ClientCallStreamObserver<byte[]> buildStreamObserver(ManagedChannel channel) {
+        return streamObserverFactory.buildEncodedStreamObserver(channel);
+    }
+}
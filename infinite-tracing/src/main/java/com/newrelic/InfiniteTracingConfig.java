@@ -12,6 +12,11 @@ public class InfiniteTracingConfig {
     private final Logger logger;
     private final Double flakyPercentage;
     private final boolean usePlaintext;
+    private final int batchSize;
+    private final boolean directEncoding;
+    private final int streams;
+    private final String spillDirectory;
+    private final long spillMaxBytes;
 
     public InfiniteTracingConfig(Builder builder) {
         this.licenseKey = builder.licenseKey;
@@ -21,6 +26,11 @@ public class InfiniteTracingConfig {
         this.logger = builder.logger;
         this.flakyPercentage = builder.flakyPercentage;
         this.usePlaintext = builder.usePlaintext;
+        this.batchSize = builder.batchSize;
+        this.directEncoding = builder.directEncoding;
+        this.streams = builder.streams;
+        this.spillDirectory = builder.spillDirectory;
+        this.spillMaxBytes = builder.spillMaxBytes;
     }
 
     public static Builder builder() {
@@ -55,6 +65,26 @@ public class InfiniteTracingConfig {
         return usePlaintext;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public boolean getDirectEncoding() {
+        return directEncoding;
+    }
+
+    public int getStreams() {
+        return streams;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public long getSpillMaxBytes() {
+        return spillMaxBytes;
+    }
+
     public static class Builder {
         public int maxQueueSize;
         public Logger logger;
@@ -63,6 +93,11 @@ public class InfiniteTracingConfig {
         private int port;
         private Double flakyPercentage;
         private boolean usePlaintext;
+        private int batchSize;
+        private boolean directEncoding;
+        private int streams = 1;
+        private String spillDirectory;
+        private long spillMaxBytes;
 
         /**
          * The New Relic APM license key configured for the application.
@@ -125,6 +160,50 @@ public class InfiniteTracingConfig {
             return this;
         }
 
+        /**
+         * The maximum number of spans taken from the queue and written to the stream in one burst. Zero sends spans one
+         * at a time.
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Whether spans are serialized straight from the span events by the {@link SpanEncoder} rather than through
+         * the generated protobuf messages.
+         */
+        public Builder directEncoding(boolean directEncoding) {
+            this.directEncoding = directEncoding;
+            return this;
+        }
+
+        /**
+         * The number of gRPC streams to send spans on, each with its own channel, sender thread and share of the span
+         * buffer. Spans are assigned to a stream by trace id, so the spans of one trace stay in order.
+         */
+        public Builder streams(int streams) {
+            this.streams = streams;
+            return this;
+        }
+
+        /**
+         * The optional directory where spans that do not fit in the span buffer are spilled, for example while the
+         * Trace Observer is unreachable. Null drops those spans instead.
+         */
+        public Builder spillDirectory(String spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        /**
+         * The most disk space spilled spans may use. The oldest spans are evicted when it is full.
+         */
+        public Builder spillMaxBytes(long spillMaxBytes) {
+            this.spillMaxBytes = spillMaxBytes;
+            return this;
+        }
+
         public InfiniteTracingConfig build() {
             return new InfiniteTracingConfig(this);
         }
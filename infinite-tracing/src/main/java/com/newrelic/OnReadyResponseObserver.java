@@ -0,0 +1,42 @@
+package com.newrelic;
+
+import com.newrelic.trace.v1.V1;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Delegates responses to the shared response observer and registers the {@link ReadySignal} as the call's on-ready
+ * handler. gRPC only allows the handler to be set from {@link #beforeStart(ClientCallStreamObserver)}.
+ *
+ * @param <ReqT> the type of message written to the stream
+ */
+public class OnReadyResponseObserver<ReqT> implements ClientResponseObserver<ReqT, V1.RecordStatus> {
+    private final StreamObserver<V1.RecordStatus> delegate;
+    private final Runnable onReadyHandler;
+
+    public OnReadyResponseObserver(StreamObserver<V1.RecordStatus> delegate, Runnable onReadyHandler) {
+        this.delegate = delegate;
+        this.onReadyHandler = onReadyHandler;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+        requestStream.setOnReadyHandler(onReadyHandler);
+    }
+
+    @Override
+    public void onNext(V1.RecordStatus value) {
+        delegate.onNext(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        delegate.onError(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        delegate.onCompleted();
+    }
+}
@@ -0,0 +1,38 @@
+package com.newrelic;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets the span sender block until gRPC reports that the outbound stream can accept more messages, instead of sleeping
+ * for a fixed interval. The signal is raised by the call's on-ready handler, which gRPC runs on one of its own threads.
+ *
+ * Thread-safe.
+ */
+public class ReadySignal implements Runnable {
+    private boolean signaled;
+
+    /**
+     * Called by gRPC when the stream transitions to ready.
+     */
+    @Override
+    public synchronized void run() {
+        signaled = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits for the stream to become ready, or for the timeout to pass. A readiness signal that arrived before this call
+     * returns immediately, so the caller must re-check {@code isReady()} afterwards.
+     */
+    public synchronized void await(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!signaled) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        signaled = false;
+    }
+}
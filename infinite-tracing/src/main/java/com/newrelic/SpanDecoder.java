@@ -0,0 +1,55 @@
+package com.newrelic;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.newrelic.agent.model.SpanEvent;
+import com.newrelic.trace.v1.V1;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rebuilds a {@link SpanEvent} from a span serialized by the {@link SpanEncoder}. The result converts back to the same
+ * {@link V1.Span}, though numbers come back as longs and doubles whatever type they had when recorded.
+ */
+public class SpanDecoder {
+    private static final String APP_NAME = "appName";
+
+    public SpanEvent decode(byte[] encodedSpan) throws InvalidProtocolBufferException {
+        V1.Span span = V1.Span.parseFrom(encodedSpan);
+
+        Map<String, Object> intrinsics = copyAttributes(span.getIntrinsicsMap());
+        Object appName = intrinsics.remove(APP_NAME);
+
+        return SpanEvent.builder()
+                .appName(appName instanceof String ? (String) appName : null)
+                .putAllIntrinsics(intrinsics)
+                .putIntrinsic("traceId", span.getTraceId().isEmpty() ? null : span.getTraceId())
+                .putAllUserAttributes(copyAttributes(span.getUserAttributesMap()))
+                .putAllAgentAttributes(copyAttributes(span.getAgentAttributesMap()))
+                .build();
+    }
+
+    private Map<String, Object> copyAttributes(Map<String, V1.AttributeValue> original) {
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, V1.AttributeValue> entry : original.entrySet()) {
+            V1.AttributeValue value = entry.getValue();
+            switch (value.getValueCase()) {
+                case STRING_VALUE:
+                    copy.put(entry.getKey(), value.getStringValue());
+                    break;
+                case INT_VALUE:
+                    copy.put(entry.getKey(), value.getIntValue());
+                    break;
+                case DOUBLE_VALUE:
+                    copy.put(entry.getKey(), value.getDoubleValue());
+                    break;
+                case BOOL_VALUE:
+                    copy.put(entry.getKey(), value.getBoolValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return copy;
+    }
+}
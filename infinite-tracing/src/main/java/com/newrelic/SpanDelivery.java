@@ -11,16 +11,21 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
-class SpanDelivery implements Runnable {
+/**
+ * Sends spans to the Trace Observer one at a time.
+ *
+ * @param <T> the type of message written to the stream, a {@link V1.Span} or an encoded span
+ */
+class SpanDelivery<T> implements Runnable {
 
-    private final SpanConverter<V1.Span> spanConverter;
+    private final SpanConverter<T> spanConverter;
     private final MetricAggregator metricAggregator;
     private final Logger logger;
     private final BlockingQueue<SpanEvent> queue;
-    private final Supplier<ClientCallStreamObserver<V1.Span>> streamObserverSupplier;
+    private final Supplier<ClientCallStreamObserver<T>> streamObserverSupplier;
 
-    public SpanDelivery(SpanConverter<V1.Span> spanConverter, MetricAggregator metricAggregator, Logger logger, BlockingQueue<SpanEvent> queue,
-            Supplier<ClientCallStreamObserver<V1.Span>> streamObserverSupplier) {
+    public SpanDelivery(SpanConverter<T> spanConverter, MetricAggregator metricAggregator, Logger logger, BlockingQueue<SpanEvent> queue,
+            Supplier<ClientCallStreamObserver<T>> streamObserverSupplier) {
         this.spanConverter = spanConverter;
         this.metricAggregator = metricAggregator;
         this.logger = logger;
@@ -30,7 +35,7 @@ class SpanDelivery implements Runnable {
 
     @Override
     public void run() {
-        ClientCallStreamObserver<V1.Span> spanClientCallStreamObserver = streamObserverSupplier.get();
+        ClientCallStreamObserver<T> spanClientCallStreamObserver = streamObserverSupplier.get();
 
         if (spanClientCallStreamObserver == null) {
             return;
@@ -51,7 +56,7 @@ class SpanDelivery implements Runnable {
             return;
         }
 
-        V1.Span outputSpan = spanConverter.convert(spanEvent);
+        T outputSpan = spanConverter.convert(spanEvent);
 
         try {
             spanClientCallStreamObserver.onNext(outputSpan);
@@ -0,0 +1,230 @@
+package com.newrelic;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.newrelic.agent.model.SpanEvent;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Writes spans in the wire format of {@code V1.Span} directly from the {@link SpanEvent}. Unlike
+ * {@link GrpcSpanConverter} it creates no intermediate maps or {@code AttributeValue} messages, just the byte array that
+ * is sent. The intrinsics are read with {@link SpanEvent#visitIntrinsics}, so the ones the span keeps in fields are
+ * encoded from their primitive values. Attributes are converted the same way: strings, longs, integers, floats, doubles
+ * and booleans are sent, other values are dropped.
+ *
+ * The message sizes are computed first so each message is written straight into an array of the exact size. Both
+ * passes go through the same {@link IntrinsicsEncoder}, which only writes once it has an output stream.
+ *
+ * Thread-safe.
+ */
+public class SpanEncoder implements SpanConverter<byte[]> {
+
+    // field numbers from infinite_tracing.proto
+    private static final int SPAN_TRACE_ID = 1;
+    private static final int SPAN_INTRINSICS = 2;
+    private static final int SPAN_USER_ATTRIBUTES = 3;
+    private static final int SPAN_AGENT_ATTRIBUTES = 4;
+    private static final int MAP_ENTRY_KEY = 1;
+    private static final int MAP_ENTRY_VALUE = 2;
+    private static final int STRING_VALUE = 1;
+    private static final int BOOL_VALUE = 2;
+    private static final int INT_VALUE = 3;
+    private static final int DOUBLE_VALUE = 4;
+
+    private static final String APP_NAME = "appName";
+    private static final int NOT_SENT = -1;
+
+    /**
+     * @return the serialized {@code V1.Span}
+     */
+    @Override
+    public byte[] convert(SpanEvent spanEvent) {
+        IntrinsicsEncoder intrinsics = new IntrinsicsEncoder();
+        try {
+            byte[] bytes = new byte[computeSpanSize(spanEvent, intrinsics)];
+            CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+            intrinsics.out = out;
+            writeSpan(spanEvent, intrinsics, out);
+            out.checkNoSpaceLeft();
+            return bytes;
+        } catch (IOException e) {
+            // only thrown if the computed size was wrong
+            throw new IllegalStateException("Unable to encode span", e);
+        }
+    }
+
+    private static int computeSpanSize(SpanEvent spanEvent, IntrinsicsEncoder intrinsics) throws IOException {
+        int size = 0;
+        String traceId = spanEvent.getTraceId();
+        if (traceId != null) {
+            size += CodedOutputStream.computeStringSize(SPAN_TRACE_ID, traceId);
+        }
+        spanEvent.visitIntrinsics(intrinsics);
+        size += intrinsics.size;
+        String appName = spanEvent.getAppName();
+        if (appName != null) {
+            size += computeAttributeSize(SPAN_INTRINSICS, APP_NAME, appName);
+        }
+        size += computeAttributesSize(SPAN_USER_ATTRIBUTES, spanEvent.getUserAttributes());
+        size += computeAttributesSize(SPAN_AGENT_ATTRIBUTES, spanEvent.getAgentAttributes());
+        return size;
+    }
+
+    private static void writeSpan(SpanEvent spanEvent, IntrinsicsEncoder intrinsics, CodedOutputStream out) throws IOException {
+        String traceId = spanEvent.getTraceId();
+        if (traceId != null) {
+            out.writeString(SPAN_TRACE_ID, traceId);
+        }
+        spanEvent.visitIntrinsics(intrinsics);
+        String appName = spanEvent.getAppName();
+        if (appName != null) {
+            writeAttribute(out, SPAN_INTRINSICS, APP_NAME, appName);
+        }
+        writeAttributes(out, SPAN_USER_ATTRIBUTES, spanEvent.getUserAttributes());
+        writeAttributes(out, SPAN_AGENT_ATTRIBUTES, spanEvent.getAgentAttributes());
+    }
+
+    private static int computeAttributesSize(int fieldNumber, Map<String, ?> attributes) {
+        int size = 0;
+        for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+            size += computeAttributeSize(fieldNumber, entry.getKey(), entry.getValue());
+        }
+        return size;
+    }
+
+    private static void writeAttributes(CodedOutputStream out, int fieldNumber, Map<String, ?> attributes) throws IOException {
+        for (Map.Entry<String, ?> entry : attributes.entrySet()) {
+            writeAttribute(out, fieldNumber, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * A map field is a repeated message of key (field 1) and value (field 2).
+     */
+    private static int computeAttributeSize(int fieldNumber, String key, Object value) {
+        int valueSize = computeValueSize(value);
+        if (key == null || valueSize == NOT_SENT) {
+            return 0;
+        }
+        return computeLengthDelimitedSize(fieldNumber, computeEntrySize(key, valueSize));
+    }
+
+    private static void writeAttribute(CodedOutputStream out, int fieldNumber, String key, Object value) throws IOException {
+        int valueSize = computeValueSize(value);
+        if (key == null || valueSize == NOT_SENT) {
+            return;
+        }
+        writeLengthDelimitedHeader(out, fieldNumber, computeEntrySize(key, valueSize));
+        out.writeString(MAP_ENTRY_KEY, key);
+        writeLengthDelimitedHeader(out, MAP_ENTRY_VALUE, valueSize);
+        writeValue(out, value);
+    }
+
+    private static int computeEntrySize(String key, int valueSize) {
+        return CodedOutputStream.computeStringSize(MAP_ENTRY_KEY, key) + computeLengthDelimitedSize(MAP_ENTRY_VALUE, valueSize);
+    }
+
+    /**
+     * @return the size of the {@code AttributeValue} message, or {@link #NOT_SENT} if the value has an unsupported type
+     */
+    private static int computeValueSize(Object value) {
+        if (value instanceof String) {
+            return CodedOutputStream.computeStringSize(STRING_VALUE, (String) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            return CodedOutputStream.computeInt64Size(INT_VALUE, ((Number) value).longValue());
+        } else if (value instanceof Float || value instanceof Double) {
+            return CodedOutputStream.computeDoubleSize(DOUBLE_VALUE, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            return CodedOutputStream.computeBoolSize(BOOL_VALUE, (Boolean) value);
+        }
+        return NOT_SENT;
+    }
+
+    private static void writeValue(CodedOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeString(STRING_VALUE, (String) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            out.writeInt64(INT_VALUE, ((Number) value).longValue());
+        } else if (value instanceof Float || value instanceof Double) {
+            out.writeDouble(DOUBLE_VALUE, ((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            out.writeBool(BOOL_VALUE, (Boolean) value);
+        }
+    }
+
+    private static int computeLengthDelimitedSize(int fieldNumber, int length) {
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeUInt32SizeNoTag(length) + length;
+    }
+
+    private static void writeLengthDelimitedHeader(CodedOutputStream out, int fieldNumber, int length) throws IOException {
+        out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(length);
+    }
+
+    /**
+     * Encodes the intrinsics of a span as entries of the intrinsics map. Until {@link #out} is set it only adds up the
+     * size of the entries.
+     */
+    private static final class IntrinsicsEncoder implements SpanEvent.IntrinsicsVisitor {
+        private CodedOutputStream out;
+        private int size;
+
+        @Override
+        public void visitString(String key, String value) throws IOException {
+            if (startEntry(key, CodedOutputStream.computeStringSize(STRING_VALUE, value))) {
+                out.writeString(STRING_VALUE, value);
+            }
+        }
+
+        @Override
+        public void visitLong(String key, long value) throws IOException {
+            if (startEntry(key, CodedOutputStream.computeInt64Size(INT_VALUE, value))) {
+                out.writeInt64(INT_VALUE, value);
+            }
+        }
+
+        @Override
+        public void visitFloat(String key, float value) throws IOException {
+            if (startEntry(key, CodedOutputStream.computeDoubleSize(DOUBLE_VALUE, value))) {
+                out.writeDouble(DOUBLE_VALUE, value);
+            }
+        }
+
+        @Override
+        public void visitBoolean(String key, boolean value) throws IOException {
+            if (startEntry(key, CodedOutputStream.computeBoolSize(BOOL_VALUE, value))) {
+                out.writeBool(BOOL_VALUE, value);
+            }
+        }
+
+        @Override
+        public void visitObject(String key, Object value) throws IOException {
+            if (startEntry(key, computeValueSize(value))) {
+                writeValue(out, value);
+            }
+        }
+
+        /**
+         * Counts the entry, or writes everything of it up to the value once there is an output stream.
+         *
+         * @return true if the value should be written
+         */
+        private boolean startEntry(String key, int valueSize) throws IOException {
+            // the app name intrinsic is always the span's app name
+            if (key == null || valueSize == NOT_SENT || APP_NAME.equals(key)) {
+                return false;
+            }
+            int entrySize = computeEntrySize(key, valueSize);
+            if (out == null) {
+                size += computeLengthDelimitedSize(SPAN_INTRINSICS, entrySize);
+                return false;
+            }
+            writeLengthDelimitedHeader(out, SPAN_INTRINSICS, entrySize);
+            out.writeString(MAP_ENTRY_KEY, key);
+            writeLengthDelimitedHeader(out, MAP_ENTRY_VALUE, valueSize);
+            return true;
+        }
+    }
+}
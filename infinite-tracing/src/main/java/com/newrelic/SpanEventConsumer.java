@@ -11,6 +11,10 @@ import io.grpc.ClientInterceptor;
 import io.grpc.ManagedChannel;
 import io.grpc.stub.ClientCallStreamObserver;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -18,34 +22,48 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 /**
  * Accepts a {@link SpanEvent} for publishing to the Trace Observer.
  *
+ * Spans are sent on one or more gRPC streams. Each stream has its own channel, connection state, span buffer and sender
+ * thread, and disconnects and backs off independently of the others. A span is always queued for the stream chosen
+ * by its trace id, so the spans of a trace are sent in the order they were accepted.
+ *
  * Not thread-safe.
  */
 public class SpanEventConsumer implements Consumer<SpanEvent> {
-    private final BlockingQueue<SpanEvent> queue;
+    private final List<BlockingQueue<SpanEvent>> queues;
     private final MetricAggregator aggregator;
-    private final ConnectionHeaders connectionHeaders;
-    private final Runnable spanSender;
+    private final List<ConnectionHeaders> connectionHeaders;
+    private final List<Runnable> spanSenders;
     private final ExecutorService executorService;
     private final AtomicBoolean wasStarted = new AtomicBoolean(false);
-    private volatile Future<?> senderFuture;
+    private volatile List<Future<?>> senderFutures;
 
-    private SpanEventConsumer(BlockingQueue<SpanEvent> queue, MetricAggregator aggregator, ConnectionHeaders connectionHeaders,
-            Runnable spanSender, ExecutorService executorService) {
-        this.queue = queue;
+    private SpanEventConsumer(List<BlockingQueue<SpanEvent>> queues, MetricAggregator aggregator, List<ConnectionHeaders> connectionHeaders,
+            List<Runnable> spanSenders, ExecutorService executorService) {
+        this.queues = queues;
         this.aggregator = aggregator;
         this.connectionHeaders = connectionHeaders;
-        this.spanSender = spanSender;
+        this.spanSenders = spanSenders;
         this.executorService = executorService;
     }
 
     @Override
     public void accept(SpanEvent spanEvent) {
         aggregator.incrementCounter("Supportability/InfiniteTracing/Span/Seen");
-        queue.offer(spanEvent);
+        queueFor(spanEvent).offer(spanEvent);
+    }
+
+    private BlockingQueue<SpanEvent> queueFor(SpanEvent spanEvent) {
+        if (queues.size() == 1) {
+            return queues.get(0);
+        }
+        String traceId = spanEvent.getTraceId();
+        int hash = traceId == null ? 0 : traceId.hashCode();
+        return queues.get((hash & Integer.MAX_VALUE) % queues.size());
     }
 
     public static SpanEventConsumer.Builder builder(InfiniteTracingConfig config, MetricAggregator metricAggregator) {
@@ -54,19 +72,27 @@ public class SpanEventConsumer implements Consumer<SpanEvent> {
 
     public void start() {
         if (wasStarted.compareAndSet(false, true)) {
-            senderFuture = executorService.submit(spanSender);
+            List<Future<?>> futures = new ArrayList<>(spanSenders.size());
+            for (Runnable spanSender : spanSenders) {
+                futures.add(executorService.submit(spanSender));
+            }
+            senderFutures = futures;
         }
     }
 
     public void stop() {
         if (wasStarted.compareAndSet(true,false)) {
-            senderFuture.cancel(true);
-            senderFuture = null;
+            for (Future<?> senderFuture : senderFutures) {
+                senderFuture.cancel(true);
+            }
+            senderFutures = null;
         }
     }
 
     public void setConnectionMetadata(String newRunToken, Map<String, String> headers) {
-        connectionHeaders.set(newRunToken, headers);
+        for (ConnectionHeaders streamHeaders : connectionHeaders) {
+            streamHeaders.set(newRunToken, headers);
+        }
     }
 
     public static class Builder {
@@ -74,14 +100,12 @@ public class SpanEventConsumer implements Consumer<SpanEvent> {
         private final SpanConverter<V1.Span> spanConverter = new GrpcSpanConverter();
         private final MetricAggregator metricAggregator;
         private final Logger logger;
-        private final BlockingQueue<SpanEvent> queue;
 
         private ChannelFactory channelFactory;
         private StreamObserverFactory streamObserverFactory;
 
         public Builder(InfiniteTracingConfig config, MetricAggregator metricAggregator) {
             this.logger = config.getLogger();
-            this.queue = new LinkedBlockingQueue<>(config.getMaxQueueSize());
             this.metricAggregator = metricAggregator;
             this.config = config;
         }
@@ -99,10 +123,51 @@ public class SpanEventConsumer implements Consumer<SpanEvent> {
         }
 
         public SpanEventConsumer build() {
+            int streams = Math.max(1, config.getStreams());
+            // the buffer capacity is shared between the streams
+            int queueSize = (config.getMaxQueueSize() + streams - 1) / streams;
+
+            List<BlockingQueue<SpanEvent>> queues = new ArrayList<>(streams);
+            List<ConnectionHeaders> connectionHeaders = new ArrayList<>(streams);
+            List<Runnable> spanSenders = new ArrayList<>(streams);
+            for (int i = 0; i < streams; i++) {
+                BlockingQueue<SpanEvent> queue = buildQueue(queueSize, i, streams);
+                ConnectionStatus connectionStatus = new ConnectionStatus(logger);
+                ConnectionHeaders streamHeaders = new ConnectionHeaders(connectionStatus, logger, config.getLicenseKey());
+
+                queues.add(queue);
+                connectionHeaders.add(streamHeaders);
+                spanSenders.add(new LoopForever(logger, buildStream(queue, connectionStatus, streamHeaders)));
+            }
+
+            ExecutorService executorService = Executors.newFixedThreadPool(streams, new DaemonThreadFactory("Span Event Consumer"));
+
+            return new SpanEventConsumer(queues, metricAggregator, connectionHeaders, spanSenders, executorService);
+        }
+
+        /**
+         * Builds the span buffer of one stream, spilling to its own subdirectory if configured.
+         */
+        private BlockingQueue<SpanEvent> buildQueue(int queueSize, int stream, int streams) {
+            if (config.getSpillDirectory() == null || config.getSpillMaxBytes() <= 0) {
+                return new LinkedBlockingQueue<>(queueSize);
+            }
+            File directory = new File(config.getSpillDirectory(), "stream-" + stream);
+            try {
+                SpillLog spillLog = new SpillLog(directory, config.getSpillMaxBytes() / streams);
+                return new SpillingQueue(queueSize, spillLog, metricAggregator, logger);
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, e, "Unable to spill spans to {0}, spans that do not fit in memory will be dropped.", directory);
+                return new LinkedBlockingQueue<>(queueSize);
+            }
+        }
+
+        /**
+         * Builds the sender for one stream, which connects, backs off and reconnects on its own.
+         */
+        private Runnable buildStream(BlockingQueue<SpanEvent> queue, ConnectionStatus connectionStatus, ConnectionHeaders connectionHeaders) {
             BackoffPolicy backoffPolicy = new DefaultBackoffPolicy();
-            ConnectionStatus connectionStatus = new ConnectionStatus(logger);
 
-            ConnectionHeaders connectionHeaders = new ConnectionHeaders(connectionStatus, logger, config.getLicenseKey());
             ClientInterceptor clientInterceptor = new HeadersInterceptor(connectionHeaders);
             ClientInterceptor maybeInjectFlakyHeader = new FlakyHeaderInterceptor(config);
             DisconnectionHandler disconnectionHandler = new DisconnectionHandler(connectionStatus, backoffPolicy, logger);
@@ -114,24 +179,44 @@ public class SpanEventConsumer implements Consumer<SpanEvent> {
                 ? this.channelFactory
                 : new ChannelFactory(config, clientInterceptor, maybeInjectFlakyHeader);
 
+            ReadySignal readySignal = new ReadySignal();
+
             StreamObserverFactory streamObserverFactory = this.streamObserverFactory != null
                 ? this.streamObserverFactory
-                : new StreamObserverFactory(metricAggregator, responseObserver);
-
-            Function<ManagedChannel, ClientCallStreamObserver<V1.Span>> channelToStreamObserverConverter =
-                    new ChannelToStreamObserver(streamObserverFactory, shouldRecreateCall);
+                : new StreamObserverFactory(metricAggregator, responseObserver, readySignal);
 
             Supplier<ManagedChannel> channelSupplier = new ChannelSupplier(channelFactory, connectionStatus, logger);
 
-            Supplier<ClientCallStreamObserver<V1.Span>> streamObserverSupplier = new StreamObserverSupplier(channelSupplier, channelToStreamObserverConverter);
+            if (config.getBatchSize() > 0) {
+                return config.getDirectEncoding()
+                        ? buildBatchSpanDelivery(new ChannelToEncodedStreamObserver(streamObserverFactory, shouldRecreateCall),
+                                new SpanEncoder(), channelSupplier, readySignal, queue)
+                        : buildBatchSpanDelivery(new ChannelToStreamObserver(streamObserverFactory, shouldRecreateCall),
+                                spanConverter, channelSupplier, readySignal, queue);
+            }
+            return config.getDirectEncoding()
+                    ? buildSpanDelivery(new ChannelToEncodedStreamObserver(streamObserverFactory, shouldRecreateCall),
+                            new SpanEncoder(), channelSupplier, queue)
+                    : buildSpanDelivery(new ChannelToStreamObserver(streamObserverFactory, shouldRecreateCall), spanConverter,
+                            channelSupplier, queue);
+        }
 
-            Runnable spanDeliveryConsumer = new SpanDelivery(spanConverter, metricAggregator, logger, queue, streamObserverSupplier);
+        private <T> Runnable buildSpanDelivery(Function<ManagedChannel, ClientCallStreamObserver<T>> channelToStreamObserverConverter,
+                SpanConverter<T> converter, Supplier<ManagedChannel> channelSupplier, BlockingQueue<SpanEvent> queue) {
+            Supplier<ClientCallStreamObserver<T>> streamObserverSupplier =
+                    new StreamObserverSupplier<>(channelSupplier, channelToStreamObserverConverter);
 
-            Runnable loopForever = new LoopForever(logger, spanDeliveryConsumer);
+            return new SpanDelivery<>(converter, metricAggregator, logger, queue, streamObserverSupplier);
+        }
 
-            ExecutorService executorService = Executors.newSingleThreadExecutor(new DaemonThreadFactory("Span Event Consumer"));
+        private <T> Runnable buildBatchSpanDelivery(Function<ManagedChannel, ClientCallStreamObserver<T>> channelToStreamObserverConverter,
+                SpanConverter<T> converter, Supplier<ManagedChannel> channelSupplier, ReadySignal readySignal,
+                BlockingQueue<SpanEvent> queue) {
+            Supplier<ClientCallStreamObserver<T>> streamObserverSupplier =
+                    new StreamObserverSupplier<>(channelSupplier, channelToStreamObserverConverter);
 
-            return new SpanEventConsumer(queue, metricAggregator, connectionHeaders, loopForever, executorService);
+            return new BatchSpanDelivery<>(converter, metricAggregator, logger, queue, streamObserverSupplier, readySignal,
+                    config.getBatchSize());
         }
     }
 
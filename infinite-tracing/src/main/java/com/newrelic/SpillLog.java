@@ -0,0 +1,280 @@
+package com.newrelic;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A first-in first-out log of serialized spans, kept in memory-mapped segment files of a fixed size. Records are
+ * appended to the newest segment and read from the oldest one. When the size cap is reached the oldest segment is
+ * evicted to make room, so an outage loses the oldest spans.
+ *
+ * Segments that have been read or evicted are written again rather than deleted, so the log never maps more than the
+ * size cap. Deleting a mapped file does not free its disk blocks until the mapping is released, and that would be left
+ * to the garbage collector.
+ *
+ * Segments only live as long as this log. Files left by an earlier log in the same directory are deleted on creation.
+ *
+ * Thread-safe.
+ */
+public class SpillLog {
+    static final String SEGMENT_SUFFIX = ".spill";
+    static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final int RECORD_HEADER_SIZE = 4;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    // mapped segments that have been read or evicted, ready to be written again
+    private final Deque<Segment> recycled = new ArrayDeque<>();
+    private long nextSegmentId;
+    private int recordCount;
+
+    /**
+     * @param maxBytes the most disk space the segments may use
+     */
+    public SpillLog(File directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, (int) Math.min(DEFAULT_SEGMENT_SIZE, maxBytes));
+    }
+
+    SpillLog(File directory, long maxBytes, int segmentSize) throws IOException {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Spill segments must be larger than " + RECORD_HEADER_SIZE + " bytes");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create span spill directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(1, maxBytes / segmentSize);
+        deleteSegmentFiles();
+    }
+
+    /**
+     * @return the largest record that can be appended
+     */
+    public int getMaxRecordSize() {
+        return segmentSize - RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Appends a record, evicting the oldest segment if the log is full.
+     *
+     * @return the number of records evicted to make room
+     */
+    public synchronized int append(byte[] record) throws IOException {
+        if (record.length > getMaxRecordSize()) {
+            throw new IllegalArgumentException("Record of " + record.length + " bytes is larger than a spill segment");
+        }
+
+        int evicted = 0;
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.buffer.remaining() < RECORD_HEADER_SIZE + record.length) {
+            if (segments.size() >= maxSegments) {
+                Segment oldest = segments.removeFirst();
+                evicted = oldest.unreadRecords;
+                recordCount -= evicted;
+                recycle(oldest);
+            }
+            tail = newSegment();
+            segments.addLast(tail);
+        }
+
+        tail.buffer.putInt(record.length).put(record);
+        tail.unreadRecords++;
+        recordCount++;
+        return evicted;
+    }
+
+    /**
+     * @return the oldest record without removing it, or null if the log is empty
+     */
+    public synchronized byte[] peek() {
+        Segment head = firstUnreadSegment();
+        return head == null ? null : head.read(false);
+    }
+
+    /**
+     * @return the oldest record, or null if the log is empty
+     */
+    public synchronized byte[] poll() {
+        Segment head = firstUnreadSegment();
+        if (head == null) {
+            return null;
+        }
+        recordCount--;
+        return head.read(true);
+    }
+
+    public synchronized int size() {
+        return recordCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    /**
+     * Drops every record, unmaps the segments and deletes their files.
+     */
+    public synchronized void clear() {
+        for (Segment segment : segments) {
+            segment.delete();
+        }
+        for (Segment segment : recycled) {
+            segment.delete();
+        }
+        segments.clear();
+        recycled.clear();
+        recordCount = 0;
+    }
+
+    /**
+     * Recycles segments that have been read, except the newest which is rewound to be written again.
+     */
+    private Segment firstUnreadSegment() {
+        while (!segments.isEmpty()) {
+            Segment head = segments.peekFirst();
+            if (head.unreadRecords > 0) {
+                return head;
+            }
+            if (segments.size() == 1) {
+                head.rewind();
+                return null;
+            }
+            recycle(segments.removeFirst());
+        }
+        return null;
+    }
+
+    private void recycle(Segment segment) {
+        segment.rewind();
+        recycled.addLast(segment);
+    }
+
+    private Segment newSegment() throws IOException {
+        Segment segment = recycled.pollFirst();
+        if (segment != null) {
+            return segment;
+        }
+        File file = new File(directory, String.format("%020d", nextSegmentId++) + SEGMENT_SUFFIX);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // the mapping stays valid after the file is closed
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(file, buffer);
+        }
+    }
+
+    private void deleteSegmentFiles() {
+        File[] leftovers = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                leftover.delete();
+            }
+        }
+    }
+
+    private static class Segment {
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int readPosition;
+        private int unreadRecords;
+
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        byte[] read(boolean consume) {
+            ByteBuffer reader = buffer.duplicate();
+            reader.position(readPosition);
+            byte[] record = new byte[reader.getInt()];
+            reader.get(record);
+            if (consume) {
+                readPosition = reader.position();
+                unreadRecords--;
+            }
+            return record;
+        }
+
+        void rewind() {
+            buffer.clear();
+            readPosition = 0;
+            unreadRecords = 0;
+        }
+
+        void delete() {
+            Unmapper.unmap(buffer);
+            file.delete();
+        }
+    }
+
+    /**
+     * Releases a mapping right away instead of when its buffer is collected. There is no public API for this before
+     * Java 20, so it is done reflectively with {@code Unsafe.invokeCleaner} on Java 9 and later and with the buffer's
+     * cleaner before that. If neither is available the mapping is left to the garbage collector. A buffer must not be
+     * used after it has been unmapped.
+     */
+    private static final class Unmapper {
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+        private static final Method CLEANER;
+        private static final Method CLEAN;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            Method cleaner = null;
+            Method clean = null;
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafe = theUnsafe.get(null);
+            } catch (Throwable t) {
+                invokeCleaner = null;
+                try {
+                    cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                    clean = cleaner.getReturnType().getMethod("clean");
+                } catch (Throwable ignored) {
+                    cleaner = null;
+                }
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+            CLEANER = cleaner;
+            CLEAN = clean;
+        }
+
+        static void unmap(MappedByteBuffer buffer) {
+            try {
+                if (INVOKE_CLEANER != null) {
+                    INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                } else if (CLEANER != null) {
+                    Object cleaner = CLEANER.invoke(buffer);
+                    if (cleaner != null) {
+                        CLEAN.invoke(cleaner);
+                    }
+                }
+            } catch (Throwable ignored) {
+                // released when the buffer is collected
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.newrelic;
+
+import com.newrelic.agent.model.SpanEvent;
+import com.newrelic.api.agent.Logger;
+import com.newrelic.api.agent.MetricAggregator;
+
+import java.io.IOException;
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * A bounded span buffer that overflows to a {@link SpillLog} on disk instead of dropping spans. Once anything has been
+ * spilled, new spans are spilled too until the log is drained, so spans come out in the order they were offered.
+ * Spilled spans are handed out after the ones in memory, which means they are replayed as soon as the stream has
+ * reconnected and caught up.
+ *
+ * Offers never block, a span is only dropped if it cannot be written to the log. Iteration only covers the spans in
+ * memory.
+ *
+ * Thread-safe.
+ */
+public class SpillingQueue extends AbstractQueue<SpanEvent> implements BlockingQueue<SpanEvent> {
+    private static final long SPILL_CHECK_INTERVAL_MILLIS = 100;
+    private static final long SPILL_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(SPILL_CHECK_INTERVAL_MILLIS);
+
+    private final BlockingQueue<SpanEvent> queue;
+    private final SpillLog spillLog;
+    private final SpanEncoder spanEncoder = new SpanEncoder();
+    private final SpanDecoder spanDecoder = new SpanDecoder();
+    private final MetricAggregator aggregator;
+    private final Logger logger;
+
+    public SpillingQueue(int capacity, SpillLog spillLog, MetricAggregator aggregator, Logger logger) {
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.spillLog = spillLog;
+        this.aggregator = aggregator;
+        this.logger = logger;
+    }
+
+    @Override
+    public boolean offer(SpanEvent spanEvent) {
+        if (spillLog.isEmpty() && queue.offer(spanEvent)) {
+            return true;
+        }
+        return spill(spanEvent);
+    }
+
+    @Override
+    public boolean offer(SpanEvent spanEvent, long timeout, TimeUnit unit) {
+        return offer(spanEvent);
+    }
+
+    @Override
+    public void put(SpanEvent spanEvent) {
+        offer(spanEvent);
+    }
+
+    @Override
+    public SpanEvent poll() {
+        SpanEvent spanEvent = queue.poll();
+        return spanEvent != null ? spanEvent : unspill();
+    }
+
+    /**
+     * Once a span has been spilled, new spans go to the spill log and not to the in-memory queue, so this waits on the
+     * queue in slices of at most {@link #SPILL_CHECK_INTERVAL_MILLIS} and checks the log in between.
+     */
+    @Override
+    public SpanEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remainingNanos;
+        while (true) {
+            SpanEvent spanEvent = poll();
+            if (spanEvent != null || remainingNanos <= 0) {
+                return spanEvent;
+            }
+            spanEvent = queue.poll(Math.min(remainingNanos, SPILL_CHECK_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+            if (spanEvent != null) {
+                return spanEvent;
+            }
+            remainingNanos = deadline - System.nanoTime();
+        }
+    }
+
+    @Override
+    public SpanEvent take() throws InterruptedException {
+        SpanEvent spanEvent = poll();
+        while (spanEvent == null) {
+            spanEvent = poll(SPILL_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return spanEvent;
+    }
+
+    @Override
+    public SpanEvent peek() {
+        SpanEvent spanEvent = queue.peek();
+        if (spanEvent != null) {
+            return spanEvent;
+        }
+        byte[] record = spillLog.peek();
+        return record == null ? null : decode(record);
+    }
+
+    @Override
+    public int drainTo(Collection<? super SpanEvent> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super SpanEvent> collection, int maxElements) {
+        int drained = queue.drainTo(collection, maxElements);
+        SpanEvent spanEvent;
+        while (drained < maxElements && (spanEvent = unspill()) != null) {
+            collection.add(spanEvent);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    @Override
+    public int size() {
+        return queue.size() + spillLog.size();
+    }
+
+    @Override
+    public Iterator<SpanEvent> iterator() {
+        return queue.iterator();
+    }
+
+    private boolean spill(SpanEvent spanEvent) {
+        byte[] record = spanEncoder.convert(spanEvent);
+        if (record.length > spillLog.getMaxRecordSize()) {
+            aggregator.incrementCounter("Supportability/InfiniteTracing/Spill/Dropped");
+            return false;
+        }
+
+        try {
+            int evicted = spillLog.append(record);
+            if (evicted > 0) {
+                aggregator.incrementCounter("Supportability/InfiniteTracing/Spill/Evicted", evicted);
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, e, "Unable to spill span to disk.");
+            aggregator.incrementCounter("Supportability/InfiniteTracing/Spill/Dropped");
+            return false;
+        }
+
+        aggregator.incrementCounter("Supportability/InfiniteTracing/Spill/Written");
+        return true;
+    }
+
+    private SpanEvent unspill() {
+        byte[] record;
+        while ((record = spillLog.poll()) != null) {
+            SpanEvent spanEvent = decode(record);
+            if (spanEvent != null) {
+                aggregator.incrementCounter("Supportability/InfiniteTracing/Spill/Replayed");
+                return spanEvent;
+            }
+        }
+        return null;
+    }
+
+    private SpanEvent decode(byte[] record) {
+        try {
+            return spanDecoder.decode(record);
+        } catch (IOException e) {
+            logger.log(Level.FINE, e, "Unable to read spilled span.");
+            aggregator.incrementCounter("Supportability/InfiniteTracing/Spill/Dropped");
+            return null;
+        }
+    }
+}
@@ -3,27 +3,73 @@ package com.newrelic;
 import com.newrelic.api.agent.MetricAggregator;
 import com.newrelic.trace.v1.IngestServiceGrpc;
 import com.newrelic.trace.v1.V1;
+import io.grpc.CallOptions;
 import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
 import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
 import io.grpc.stub.StreamObserver;
 
 public class StreamObserverFactory {
     private final MetricAggregator aggregator;
     private final StreamObserver<V1.RecordStatus> responseObserver;
+    private final Runnable onReadyHandler;
 
     public StreamObserverFactory(
             MetricAggregator aggregator,
             StreamObserver<V1.RecordStatus> responseObserver) {
+        this(aggregator, responseObserver, null);
+    }
+
+    /**
+     * @param onReadyHandler run by gRPC whenever a stream becomes ready for more messages
+     */
+    public StreamObserverFactory(
+            MetricAggregator aggregator,
+            StreamObserver<V1.RecordStatus> responseObserver,
+            Runnable onReadyHandler) {
         this.aggregator = aggregator;
         this.responseObserver = responseObserver;
+        this.onReadyHandler = onReadyHandler;
     }
 
     public ClientCallStreamObserver<V1.Span> buildStreamObserver(ManagedChannel channel) {
         IngestServiceGrpc.IngestServiceStub ingestServiceFutureStub = IngestServiceGrpc.newStub(channel);
-        ClientCallStreamObserver<V1.Span> streamObserver = (ClientCallStreamObserver<V1.Span>) ingestServiceFutureStub.recordSpan(responseObserver);
+        ClientCallStreamObserver<V1.Span> streamObserver = (ClientCallStreamObserver<V1.Span>) ingestServiceFutureStub.recordSpan(
+                this.<V1.Span>withOnReadyHandler());
 
         aggregator.incrementCounter("Supportability/InfiniteTracing/Connect");
         return streamObserver;
     }
 
+    /**
+     * Starts a {@code RecordSpan} call that takes spans serialized by the {@link SpanEncoder}.
+     */
+    public ClientCallStreamObserver<byte[]> buildEncodedStreamObserver(ManagedChannel channel) {
+        ClientCallStreamObserver<byte[]> streamObserver = startEncodedCall(channel, encoded(IngestServiceGrpc.getRecordSpanMethod()),
+                this.<byte[]>withOnReadyHandler());
+
+        aggregator.incrementCounter("Supportability/InfiniteTracing/Connect");
+        return streamObserver;
+    }
+
+    private <ReqT> StreamObserver<V1.RecordStatus> withOnReadyHandler() {
+        return onReadyHandler == null
+                ? responseObserver
+                : new OnReadyResponseObserver<ReqT>(responseObserver, onReadyHandler);
+    }
+
+    /**
+     * The same method with a request marshaller that writes the already serialized message.
+     */
+    private static MethodDescriptor<byte[], V1.RecordStatus> encoded(MethodDescriptor<?, V1.RecordStatus> method) {
+        return method.toBuilder(ByteArrayMarshaller.INSTANCE, method.getResponseMarshaller()).build();
+    }
+
+    private static ClientCallStreamObserver<byte[]> startEncodedCall(ManagedChannel channel, MethodDescriptor<byte[], V1.RecordStatus> method,
+            StreamObserver<V1.RecordStatus> responseObserver) {
+        // the generated stubs make the same call with default options
+        return (ClientCallStreamObserver<byte[]>) ClientCalls.asyncBidiStreamingCall(channel.newCall(method, CallOptions.DEFAULT),
+                responseObserver);
+    }
 }
@@ -0,0 +1,220 @@
+package com.newrelic;
+
+import com.newrelic.agent.interfaces.backport.Supplier;
+import com.newrelic.agent.model.SpanEvent;
+import com.newrelic.api.agent.Logger;
+import com.newrelic.api.agent.MetricAggregator;
+import com.newrelic.trace.v1.V1;
+import io.grpc.stub.ClientCallStreamObserver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class BatchSpanDeliveryTest {
+
+    @BeforeEach
+    public void beforeEach() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    public BlockingQueue<SpanEvent> incomingQueue = new LinkedBlockingQueue<>();
+    public ReadySignal readySignal = new ReadySignal();
+
+    @Mock
+    public SpanConverter<V1.Span> spanConverter;
+    @Mock
+    public MetricAggregator metricAggregator;
+    @Mock
+    public Logger logger;
+    @Mock
+    public Supplier<ClientCallStreamObserver<V1.Span>> streamObserverSupplier;
+
+    @SuppressWarnings("unchecked")
+    public ClientCallStreamObserver<V1.Span> mockStreamObserver() {
+        return (ClientCallStreamObserver<V1.Span>) mock(ClientCallStreamObserver.class);
+    }
+
+    private BatchSpanDelivery<V1.Span> createTarget(int batchSize) {
+        return new BatchSpanDelivery<>(spanConverter, metricAggregator, logger, incomingQueue, streamObserverSupplier,
+                readySignal, batchSize);
+    }
+
+    @Test
+    public void noCallsIfStreamObserverNull() {
+        BatchSpanDelivery<V1.Span> target = createTarget(10);
+        when(streamObserverSupplier.get()).thenReturn(null);
+        incomingQueue.add(SpanEvent.builder().build());
+
+        target.run();
+        verifyNoInteractions(spanConverter, metricAggregator, logger);
+        assertEquals(1, incomingQueue.size());
+    }
+
+    @Test
+    public void waitsForReadySignalIfStreamObserverNotReady() {
+        BatchSpanDelivery<V1.Span> target = createTarget(10);
+        incomingQueue.add(SpanEvent.builder().build());
+
+        ClientCallStreamObserver<V1.Span> mockObserver = mockStreamObserver();
+        when(streamObserverSupplier.get()).thenReturn(mockObserver);
+        when(mockObserver.isReady()).thenReturn(false);
+        readySignal.run();
+        target.run();
+
+        verify(mockObserver, times(1)).isReady();
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/NotReady");
+        verifyNoInteractions(spanConverter, logger);
+        assertEquals(1, incomingQueue.size());
+    }
+
+    @Test
+    public void doesNotCallOnNextIfQueueEmpty() {
+        BatchSpanDelivery<V1.Span> target = createTarget(10);
+
+        ClientCallStreamObserver<V1.Span> mockObserver = mockStreamObserver();
+        when(streamObserverSupplier.get()).thenReturn(mockObserver);
+        when(mockObserver.isReady()).thenReturn(true);
+        target.run();
+
+        verify(mockObserver, never()).onNext(any(V1.Span.class));
+        verifyNoInteractions(spanConverter);
+    }
+
+    @Test
+    public void sendsUpToBatchSizeSpansPerRun() {
+        BatchSpanDelivery<V1.Span> target = createTarget(3);
+        for (int i = 0; i < 5; i++) {
+            incomingQueue.add(SpanEvent.builder().build());
+        }
+        when(spanConverter.convert(any(SpanEvent.class))).thenAnswer(new AlwaysNewSpan());
+
+        ClientCallStreamObserver<V1.Span> mockObserver = mockStreamObserver();
+        when(streamObserverSupplier.get()).thenReturn(mockObserver);
+        when(mockObserver.isReady()).thenReturn(true);
+        target.run();
+
+        verify(mockObserver, times(3)).onNext(any(V1.Span.class));
+        verify(mockObserver, times(3)).isReady();
+        assertEquals(2, incomingQueue.size());
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/Span/Sent", 3);
+
+        target.run();
+
+        verify(mockObserver, times(5)).onNext(any(V1.Span.class));
+        assertEquals(0, incomingQueue.size());
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/Span/Sent", 2);
+        verify(metricAggregator, times(2)).incrementCounter("Supportability/InfiniteTracing/Span/Batch/Sent");
+    }
+
+    @Test
+    public void countsSpansSentBeforeOnNextThrows() {
+        final BatchSpanDelivery<V1.Span> target = createTarget(10);
+        for (int i = 0; i < 3; i++) {
+            incomingQueue.add(SpanEvent.builder().build());
+        }
+        when(spanConverter.convert(any(SpanEvent.class))).thenAnswer(new AlwaysNewSpan());
+
+        ClientCallStreamObserver<V1.Span> mockObserver = mockStreamObserver();
+        when(streamObserverSupplier.get()).thenReturn(mockObserver);
+        when(mockObserver.isReady()).thenReturn(true);
+        doNothing().doThrow(new RuntimeException("~~ oops ~~")).doNothing().when(mockObserver).onNext(any(V1.Span.class));
+
+        assertThrows(RuntimeException.class, new Executable() {
+            @Override
+            public void execute() {
+                target.run();
+            }
+        });
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/Span/Sent", 1);
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/Span/Dropped", 1);
+        verify(metricAggregator, never()).incrementCounter("Supportability/InfiniteTracing/Span/Batch/Sent");
+
+        target.run();
+
+        verify(mockObserver, times(3)).onNext(any(V1.Span.class));
+        verify(metricAggregator, times(2)).incrementCounter("Supportability/InfiniteTracing/Span/Sent", 1);
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/Span/Batch/Sent");
+    }
+
+    @Test
+    public void stopsBurstWhenStreamIsNoLongerReady() {
+        BatchSpanDelivery<V1.Span> target = createTarget(10);
+        SpanEvent first = SpanEvent.builder().putIntrinsic("order", 1).build();
+        SpanEvent second = SpanEvent.builder().putIntrinsic("order", 2).build();
+        SpanEvent third = SpanEvent.builder().putIntrinsic("order", 3).build();
+        incomingQueue.add(first);
+        incomingQueue.add(second);
+        when(spanConverter.convert(any(SpanEvent.class))).thenAnswer(new AlwaysNewSpan());
+
+        ClientCallStreamObserver<V1.Span> mockObserver = mockStreamObserver();
+        when(streamObserverSupplier.get()).thenReturn(mockObserver);
+        when(mockObserver.isReady()).thenReturn(true, false, true);
+        target.run();
+
+        verify(mockObserver, times(1)).onNext(any(V1.Span.class));
+        verify(spanConverter).convert(first);
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/NotReady");
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/Span/Sent", 1);
+        verifyNoMoreInteractions(spanConverter);
+
+        incomingQueue.add(third);
+        target.run();
+
+        verify(mockObserver, times(2)).onNext(any(V1.Span.class));
+        verify(spanConverter).convert(second);
+        verifyNoMoreInteractions(spanConverter);
+        assertEquals(1, incomingQueue.size());
+        verify(metricAggregator, never()).incrementCounter(eq("Supportability/InfiniteTracing/Span/Dropped"), anyInt());
+    }
+
+    @Test
+    public void doesNotIncrementSentIfOnNextThrows() {
+        final BatchSpanDelivery<V1.Span> target = createTarget(10);
+        incomingQueue.add(SpanEvent.builder().build());
+        when(spanConverter.convert(any(SpanEvent.class))).thenAnswer(new AlwaysNewSpan());
+
+        ClientCallStreamObserver<V1.Span> mockObserver = mockStreamObserver();
+        when(streamObserverSupplier.get()).thenReturn(mockObserver);
+        when(mockObserver.isReady()).thenReturn(true);
+        doThrow(new RuntimeException("~~ oops ~~")).when(mockObserver).onNext(any(V1.Span.class));
+
+        assertThrows(RuntimeException.class, new Executable() {
+            @Override
+            public void execute() {
+                target.run();
+            }
+        });
+        verify(metricAggregator).incrementCounter("Supportability/InfiniteTracing/Span/Dropped", 1);
+        verify(metricAggregator, never()).incrementCounter(eq("Supportability/InfiniteTracing/Span/Sent"), anyInt());
+        assertEquals(0, incomingQueue.size());
+    }
+
+    private static class AlwaysNewSpan implements Answer<Object> {
+        @Override
+        public Object answer(InvocationOnMock invocation) {
+            return V1.Span.newBuilder().build();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.newrelic;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReadySignalTest {
+
+    @Test
+    public void returnsImmediatelyIfAlreadySignaled() throws InterruptedException {
+        ReadySignal target = new ReadySignal();
+        target.run();
+
+        long start = System.nanoTime();
+        target.await(10, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void timesOutWithoutSignal() throws InterruptedException {
+        ReadySignal target = new ReadySignal();
+
+        long start = System.nanoTime();
+        target.await(50, TimeUnit.MILLISECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void wakesWaitingThread() throws InterruptedException {
+        final ReadySignal target = new ReadySignal();
+        final CountDownLatch woke = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target.await(10, TimeUnit.SECONDS);
+                    woke.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        waiter.start();
+
+        target.run();
+        assertTrue(woke.await(5, TimeUnit.SECONDS));
+    }
+
+}
@@ -0,0 +1,78 @@
+package com.newrelic;
+
+import com.newrelic.agent.model.SpanEvent;
+import com.newrelic.trace.v1.V1;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class SpanEncoderTest {
+    private enum TestEnum { ONE }
+
+    private final SpanEncoder target = new SpanEncoder();
+    private final GrpcSpanConverter grpcSpanConverter = new GrpcSpanConverter();
+
+    @Test
+    public void shouldEncodeSameSpanAsGrpcConverter() throws IOException {
+        SpanEvent spanEvent = makeSpan("abc123");
+
+        V1.Span decoded = V1.Span.parseFrom(target.convert(spanEvent));
+
+        assertEquals(grpcSpanConverter.convert(spanEvent), decoded);
+        assertEquals("abc123", decoded.getTraceId());
+        assertEquals("my app", decoded.getIntrinsicsOrThrow("appName").getStringValue());
+        assertEquals(12345, decoded.getIntrinsicsOrThrow("intrInt").getIntValue());
+        assertEquals(-7L, decoded.getIntrinsicsOrThrow("intrNegative").getIntValue());
+        assertEquals(3.14, decoded.getIntrinsicsOrThrow("intrDouble").getDoubleValue(), 0.00001);
+        assertEquals(0.5, decoded.getIntrinsicsOrThrow("duration").getDoubleValue(), 0.00001);
+        assertEquals(1600000000000L, decoded.getIntrinsicsOrThrow("timestamp").getIntValue());
+        assertEquals("\u00fcnicode \u2603", decoded.getUserAttributesOrThrow("user").getStringValue());
+        assertEquals(false, decoded.getUserAttributesOrThrow("userBool").getBoolValue());
+        assertEquals("GET", decoded.getAgentAttributesOrThrow("http.method").getStringValue());
+        assertFalse(decoded.containsIntrinsics("intrOther"));
+    }
+
+    @Test
+    public void shouldEncodeLargeAttributes() throws IOException {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            longValue.append('x');
+        }
+        SpanEvent spanEvent = SpanEvent.builder()
+                .appName("my app")
+                .putIntrinsic("traceId", "abc123")
+                .putAgentAttribute("db.statement", longValue.toString())
+                .build();
+
+        V1.Span decoded = V1.Span.parseFrom(target.convert(spanEvent));
+
+        assertEquals(longValue.toString(), decoded.getAgentAttributesOrThrow("db.statement").getStringValue());
+    }
+
+    private SpanEvent makeSpan(String traceId) {
+        Map<String, Object> userAttributes = new HashMap<>();
+        userAttributes.put("user", "\u00fcnicode \u2603");
+        userAttributes.put("userBool", false);
+        userAttributes.put("userOther", TestEnum.ONE);
+
+        return SpanEvent.builder()
+                .appName("my app")
+                .putIntrinsic("traceId", traceId)
+                .putIntrinsic("appName", "overwritten")
+                .putIntrinsic("intrInt", 12345)
+                .putIntrinsic("intrNegative", -7L)
+                .putIntrinsic("intrDouble", 3.14)
+                .putIntrinsic("duration", 0.5f)
+                .putIntrinsic("timestamp", 1600000000000L)
+                .putIntrinsic("sampled", true)
+                .putIntrinsic("intrOther", TestEnum.ONE)
+                .putAllUserAttributes(userAttributes)
+                .putAgentAttribute("http.method", "GET")
+                .build();
+    }
+}
@@ -14,7 +14,11 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.exceptions.verification.WantedButNotInvoked;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -84,4 +88,47 @@ class SpanEventConsumerTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    @Timeout(30)
+    public void multipleStreamsKeepTraceOrder() throws InterruptedException {
+        when(mockChannelFactory.createChannel()).thenReturn(mockChannel);
+        when(mockStreamObserverFactory.buildStreamObserver(mockChannel)).thenReturn(mockStreamObserver);
+        when(mockStreamObserver.isReady()).thenReturn(true);
+
+        InfiniteTracingConfig config = InfiniteTracingConfig.builder()
+                .logger(mockLogger)
+                .maxQueueSize(100)
+                .streams(3)
+                .build();
+
+        SpanEventConsumer target = SpanEventConsumer.builder(config, metricAggregator)
+                .setChannelFactory(mockChannelFactory)
+                .setStreamObserverFactory(mockStreamObserverFactory)
+                .build();
+
+        target.start();
+
+        for (int i = 0; i < 10; i++) {
+            for (int trace = 0; trace < 5; trace++) {
+                target.accept(SpanEvent.builder()
+                        .putIntrinsic("traceId", "trace" + trace)
+                        .putIntrinsic("guid", Integer.toString(i))
+                        .appName("app-name")
+                        .build());
+            }
+        }
+
+        ArgumentCaptor<V1.Span> outgoingSpanCaptor = ArgumentCaptor.forClass(V1.Span.class);
+        verify(mockStreamObserver, timeout(20000).times(50)).onNext(outgoingSpanCaptor.capture());
+        verify(mockChannelFactory, times(3)).createChannel();
+
+        Map<String, Integer> lastGuidByTrace = new HashMap<>();
+        for (V1.Span span : outgoingSpanCaptor.getAllValues()) {
+            int guid = Integer.parseInt(span.getIntrinsicsOrThrow("guid").getStringValue());
+            Integer lastGuid = lastGuidByTrace.put(span.getTraceId(), guid);
+            assertEquals(lastGuid == null ? 0 : lastGuid + 1, guid);
+        }
+        assertEquals(5, lastGuidByTrace.size());
+    }
+
+}
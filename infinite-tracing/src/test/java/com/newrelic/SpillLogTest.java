@@ -0,0 +1,142 @@
+package com.newrelic;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillLogTest {
+    @TempDir
+    File directory;
+
+    @Test
+    public void returnsRecordsInOrderAcrossSegments() throws IOException {
+        SpillLog target = new SpillLog(directory, 1024, 64);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(0, target.append(record(i, 10)));
+        }
+        assertEquals(20, target.size());
+        assertTrue(directory.listFiles().length > 1);
+
+        for (int i = 0; i < 20; i++) {
+            assertArrayEquals(record(i, 10), target.poll());
+        }
+        assertNull(target.poll());
+        assertTrue(target.isEmpty());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void evictsOldestSegmentWhenFull() throws IOException {
+        // two records per segment, two segments
+        SpillLog target = new SpillLog(directory, 64, 32);
+
+        int evicted = 0;
+        for (int i = 0; i < 6; i++) {
+            evicted += target.append(record(i, 10));
+        }
+
+        assertEquals(2, evicted);
+        assertEquals(4, target.size());
+        for (int i = 2; i < 6; i++) {
+            assertArrayEquals(record(i, 10), target.poll());
+        }
+    }
+
+    @Test
+    public void peekDoesNotRemove() throws IOException {
+        SpillLog target = new SpillLog(directory, 1024, 64);
+        target.append(record(1, 5));
+
+        assertArrayEquals(record(1, 5), target.peek());
+        assertEquals(1, target.size());
+        assertArrayEquals(record(1, 5), target.poll());
+        assertNull(target.peek());
+    }
+
+    @Test
+    public void reusesSegmentOnceRead() throws IOException {
+        SpillLog target = new SpillLog(directory, 64, 32);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, target.append(record(i, 10)));
+            assertArrayEquals(record(i, 10), target.poll());
+        }
+        assertEquals(1, directory.listFiles().length);
+    }
+
+    @Test
+    public void staysWithinMaxBytesWhileCyclingSegments() throws IOException {
+        // two records per segment, four segments
+        SpillLog target = new SpillLog(directory, 128, 32);
+
+        int next = 0;
+        for (int cycle = 0; cycle < 25; cycle++) {
+            for (int i = 0; i < 6; i++) {
+                target.append(record(next++, 10));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(target.poll());
+            }
+            File[] files = directory.listFiles();
+            assertTrue(files.length <= 4);
+            long totalBytes = 0;
+            for (File file : files) {
+                totalBytes += file.length();
+            }
+            assertTrue(totalBytes <= 128);
+        }
+
+        // the newest records survive the evictions, in order
+        int first = next - target.size();
+        for (int i = first; i < next; i++) {
+            assertArrayEquals(record(i, 10), target.poll());
+        }
+        assertNull(target.poll());
+    }
+
+    @Test
+    public void rejectsRecordLargerThanSegment() throws IOException {
+        final SpillLog target = new SpillLog(directory, 1024, 64);
+
+        assertEquals(60, target.getMaxRecordSize());
+        assertThrows(IllegalArgumentException.class, new Executable() {
+            @Override
+            public void execute() throws Throwable {
+                target.append(new byte[61]);
+            }
+        });
+    }
+
+    @Test
+    public void deletesLeftoverSegmentsAndClears() throws IOException {
+        File leftover = new File(directory, "00000000000000000000" + SpillLog.SEGMENT_SUFFIX);
+        assertTrue(leftover.createNewFile());
+
+        SpillLog target = new SpillLog(directory, 1024, 64);
+        assertFalse(leftover.exists());
+
+        target.append(record(1, 10));
+        target.clear();
+        assertTrue(target.isEmpty());
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    private static byte[] record(int id, int length) {
+        byte[] record = new byte[length];
+        record[0] = (byte) id;
+        record[length - 1] = (byte) id;
+        return record;
+    }
+}
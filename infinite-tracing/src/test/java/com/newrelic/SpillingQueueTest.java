@@ -0,0 +1,167 @@
+package com.newrelic;
+
+import com.newrelic.agent.model.SpanEvent;
+import com.newrelic.api.agent.Logger;
+import com.newrelic.api.agent.MetricAggregator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SpillingQueueTest {
+    @TempDir
+    File directory;
+    @Mock
+    public MetricAggregator aggregator;
+    @Mock
+    public Logger logger;
+
+    @BeforeEach
+    public void beforeEach() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void spillsOverflowAndKeepsOrder() throws IOException, InterruptedException {
+        SpillingQueue target = new SpillingQueue(2, new SpillLog(directory, 1024 * 1024), aggregator, logger);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(target.offer(makeSpan(i)));
+        }
+        assertEquals(5, target.size());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Integer.toString(i), target.poll(10, TimeUnit.MILLISECONDS).getGuid());
+        }
+        assertNull(target.poll());
+        verify(aggregator, times(3)).incrementCounter("Supportability/InfiniteTracing/Spill/Written");
+        verify(aggregator, times(3)).incrementCounter("Supportability/InfiniteTracing/Spill/Replayed");
+    }
+
+    @Test
+    public void spillsWhileLogIsNotEmpty() throws IOException {
+        SpillingQueue target = new SpillingQueue(2, new SpillLog(directory, 1024 * 1024), aggregator, logger);
+        target.offer(makeSpan(0));
+        target.offer(makeSpan(1));
+        target.offer(makeSpan(2));
+
+        // room in memory again, but the span must follow the spilled one
+        assertEquals("0", target.poll().getGuid());
+        target.offer(makeSpan(3));
+
+        List<SpanEvent> drained = new ArrayList<>();
+        assertEquals(3, target.drainTo(drained, 10));
+        assertEquals("1", drained.get(0).getGuid());
+        assertEquals("2", drained.get(1).getGuid());
+        assertEquals("3", drained.get(2).getGuid());
+    }
+
+    @Test
+    public void pollReturnsSpanSpilledWhileWaiting() throws Exception {
+        final SpillLog spillLog = new SpillLog(directory, 1024 * 1024);
+        SpillingQueue target = new SpillingQueue(1, spillLog, aggregator, logger);
+
+        // a span that goes to the log while the consumer waits on the empty in-memory queue
+        Thread spiller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    spillLog.append(new SpanEncoder().convert(makeSpan(0)));
+                } catch (Exception ignored) {
+                }
+            }
+        });
+        spiller.start();
+
+        long start = System.nanoTime();
+        SpanEvent spanEvent = target.poll(10, TimeUnit.SECONDS);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        spiller.join();
+
+        assertEquals("0", spanEvent.getGuid());
+        assertTrue(waitedMillis < 5000, "waited " + waitedMillis + " ms");
+    }
+
+    @Test
+    public void drainToStopsAtMaxElements() throws IOException {
+        SpillingQueue target = new SpillingQueue(1, new SpillLog(directory, 1024 * 1024), aggregator, logger);
+        for (int i = 0; i < 4; i++) {
+            target.offer(makeSpan(i));
+        }
+
+        List<SpanEvent> drained = new ArrayList<>();
+        assertEquals(3, target.drainTo(drained, 3));
+        assertEquals("2", drained.get(2).getGuid());
+        assertEquals("3", target.peek().getGuid());
+        assertEquals(1, target.size());
+    }
+
+    @Test
+    public void spilledSpanConvertsToSameMessage() throws IOException {
+        SpillingQueue target = new SpillingQueue(1, new SpillLog(directory, 1024 * 1024), aggregator, logger);
+        SpanEvent original = SpanEvent.builder()
+                .appName("my app")
+                .putIntrinsic("traceId", "abc123")
+                .putIntrinsic("guid", "guid1")
+                .putIntrinsic("duration", 0.5f)
+                .putIntrinsic("timestamp", 1600000000000L)
+                .putIntrinsic("sampled", true)
+                .putAgentAttribute("http.method", "GET")
+                .putAgentAttribute("http.statusCode", 200)
+                .build();
+
+        target.offer(makeSpan(0));
+        target.offer(original);
+        target.poll();
+        SpanEvent replayed = target.poll();
+
+        GrpcSpanConverter converter = new GrpcSpanConverter();
+        assertEquals(converter.convert(original), converter.convert(replayed));
+        assertEquals("my app", replayed.getAppName());
+        assertEquals("abc123", replayed.getTraceId());
+        assertFalse(replayed.getIntrinsics().containsKey("appName"));
+    }
+
+    @Test
+    public void evictsOldestSpansWhenLogIsFull() throws IOException {
+        SpillingQueue target = new SpillingQueue(1, new SpillLog(directory, 2048, 1024), aggregator, logger);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(target.offer(makeSpan(i)));
+        }
+
+        assertEquals("0", target.poll().getGuid());
+        int lastGuid = Integer.parseInt(target.poll().getGuid());
+        assertTrue(lastGuid > 1);
+        SpanEvent spanEvent;
+        while ((spanEvent = target.poll()) != null) {
+            assertEquals(++lastGuid, Integer.parseInt(spanEvent.getGuid()));
+        }
+        assertEquals(99, lastGuid);
+    }
+
+    private static SpanEvent makeSpan(int id) {
+        return SpanEvent.builder()
+                .appName("app-name")
+                .putIntrinsic("traceId", "trace" + id)
+                .putIntrinsic("guid", Integer.toString(id))
+                .putAllUserAttributes(Collections.singletonMap("user", "value"))
+                .build();
+    }
+}
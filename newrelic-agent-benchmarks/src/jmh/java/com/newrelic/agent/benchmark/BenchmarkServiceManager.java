@@ -0,0 +1,96 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.agent.Agent;
+import com.newrelic.agent.AgentHelper;
+import com.newrelic.agent.AgentImpl;
+import com.newrelic.agent.ConnectionListener;
+import com.newrelic.agent.MockCoreService;
+import com.newrelic.agent.MockHarvestService;
+import com.newrelic.agent.MockRPMServiceManager;
+import com.newrelic.agent.MockServiceManager;
+import com.newrelic.agent.ThreadService;
+import com.newrelic.agent.TransactionService;
+import com.newrelic.agent.attributes.AttributesService;
+import com.newrelic.agent.bridge.AgentBridge;
+import com.newrelic.agent.config.AgentConfig;
+import com.newrelic.agent.config.AgentConfigImpl;
+import com.newrelic.agent.config.ConfigService;
+import com.newrelic.agent.config.ConfigServiceFactory;
+import com.newrelic.agent.config.TransactionTracerConfigImpl;
+import com.newrelic.agent.environment.EnvironmentServiceImpl;
+import com.newrelic.agent.instrumentation.InstrumentationImpl;
+import com.newrelic.agent.service.ServiceFactory;
+import com.newrelic.agent.service.analytics.TransactionDataToDistributedTraceIntrinsics;
+import com.newrelic.agent.service.analytics.TransactionEventsService;
+import com.newrelic.agent.service.async.AsyncTransactionService;
+import com.newrelic.agent.sql.SqlTraceServiceImpl;
+import com.newrelic.agent.stats.StatsServiceImpl;
+import com.newrelic.agent.trace.TransactionTraceService;
+import com.newrelic.agent.tracing.DistributedTraceServiceImpl;
+import com.newrelic.agent.transaction.SegmentTest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wires up the services a transaction touches between start and finish, the same way the unit tests in
+ * newrelic-agent do, so the benchmarks measure the agent's own request overhead rather than mocks.
+ */
+public final class BenchmarkServiceManager {
+
+    private BenchmarkServiceManager() {
+    }
+
+    public static MockServiceManager create() throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put(AgentConfigImpl.APP_NAME, "Benchmark");
+        settings.put(AgentConfigImpl.HOST, "no-collector.example.com");
+        Map<String, Object> ttSettings = new HashMap<>();
+        ttSettings.put(TransactionTracerConfigImpl.TRANSACTION_THRESHOLD, 0.0f);
+        settings.put(AgentConfigImpl.TRANSACTION_TRACER, ttSettings);
+
+        MockServiceManager serviceManager = new MockServiceManager();
+        ServiceFactory.setServiceManager(serviceManager);
+        serviceManager.start();
+        serviceManager.setThreadService(new ThreadService());
+
+        AgentConfig agentConfig = AgentHelper.createAgentConfig(true, settings, new HashMap<String, Object>());
+        ConfigService configService = ConfigServiceFactory.createConfigService(agentConfig, settings);
+        serviceManager.setConfigService(configService);
+        serviceManager.setStatsService(new StatsServiceImpl());
+        serviceManager.setCoreService(new MockCoreService());
+        serviceManager.setHarvestService(new MockHarvestService());
+        serviceManager.setTransactionService(new TransactionService());
+        serviceManager.setEnvironmentService(new EnvironmentServiceImpl());
+        serviceManager.setTransactionTraceService(new TransactionTraceService());
+        serviceManager.setSqlTraceService(new SqlTraceServiceImpl());
+        serviceManager.setAttributesService(new AttributesService());
+        serviceManager.setAsyncTransactionService(new AsyncTransactionService());
+
+        MockRPMServiceManager rpmServiceManager = new MockRPMServiceManager();
+        serviceManager.setRPMServiceManager(rpmServiceManager);
+
+        DistributedTraceServiceImpl distributedTraceService = new DistributedTraceServiceImpl();
+        serviceManager.setDistributedTraceService(distributedTraceService);
+        distributedTraceService.start();
+        serviceManager.setTransactionEventsService(new TransactionEventsService(
+                new TransactionDataToDistributedTraceIntrinsics(distributedTraceService)));
+        serviceManager.setExpirationService(new SegmentTest.InlineExpirationService());
+
+        AgentBridge.instrumentation = new InstrumentationImpl(Agent.LOG);
+        AgentBridge.agent = new AgentImpl(Agent.LOG);
+
+        for (ConnectionListener connectionListener : rpmServiceManager.getConnectionListeners()) {
+            connectionListener.connected(rpmServiceManager.getRPMService(), agentConfig);
+        }
+        return serviceManager;
+    }
+
+}
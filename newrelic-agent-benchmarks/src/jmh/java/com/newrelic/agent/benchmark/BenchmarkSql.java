@@ -0,0 +1,33 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+/**
+ * Generates the kind of long SQL an ORM emits, so the SQL benchmarks are not dominated by trivially short statements.
+ */
+final class BenchmarkSql {
+
+    private BenchmarkSql() {
+    }
+
+    static String ormStyleSelect(int columns) {
+        StringBuilder sql = new StringBuilder("select ");
+        for (int i = 0; i < columns; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("user0_.column_").append(i).append(" as column_").append(i).append("_0_");
+        }
+        sql.append(" from users user0_ left outer join accounts account1_ on user0_.account_id=account1_.id");
+        sql.append(" where user0_.email='someone@example.com' and user0_.created_at>'2020-01-01 00:00:00'");
+        sql.append(" and account1_.balance>1024.5 and user0_.status in (1, 2, 3, 5, 8, 13)");
+        sql.append(" /* load com.example.User */ order by user0_.id limit 100");
+        return sql.toString();
+    }
+
+}
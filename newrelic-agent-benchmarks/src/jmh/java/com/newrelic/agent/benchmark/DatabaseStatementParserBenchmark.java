@@ -0,0 +1,62 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.agent.bridge.datastore.UnknownDatabaseVendor;
+import com.newrelic.agent.database.DatabaseStatementParser;
+import com.newrelic.agent.database.DefaultDatabaseStatementParser;
+import com.newrelic.agent.database.ParsedDatabaseStatement;
+import com.newrelic.agent.database.TokenizingDatabaseStatementParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of a cache miss in the statement parser: one pass through the regex statement factories, or one scan of the
+ * statement by the tokenizing parser.
+ */
+@State(Scope.Thread)
+public class DatabaseStatementParserBenchmark {
+
+    @Param({ "regex", "tokenizing" })
+    public String parserType;
+
+    private DatabaseStatementParser parser;
+    private String ormSelect;
+
+    @Setup
+    public void setup() {
+        parser = "regex".equals(parserType) ? new DefaultDatabaseStatementParser() : new TokenizingDatabaseStatementParser();
+        ormSelect = BenchmarkSql.ormStyleSelect(50);
+    }
+
+    @Benchmark
+    public ParsedDatabaseStatement parseSelect() {
+        return parser.getParsedDatabaseStatement(UnknownDatabaseVendor.INSTANCE, "select * from users where id = ?", null);
+    }
+
+    @Benchmark
+    public ParsedDatabaseStatement parseInsert() {
+        return parser.getParsedDatabaseStatement(UnknownDatabaseVendor.INSTANCE,
+                "insert into orders (id, customer_id, total) values (?, ?, ?)", null);
+    }
+
+    @Benchmark
+    public ParsedDatabaseStatement parseExec() {
+        // exec is near the end of the factory chain, so this walks every pattern before it
+        return parser.getParsedDatabaseStatement(UnknownDatabaseVendor.INSTANCE, "exec dbo.update_inventory @sku = ?", null);
+    }
+
+    @Benchmark
+    public ParsedDatabaseStatement parseOrmSelect() {
+        return parser.getParsedDatabaseStatement(UnknownDatabaseVendor.INSTANCE, ormSelect, null);
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.agent.Transaction;
+import com.newrelic.agent.tracers.ClassMethodSignature;
+import com.newrelic.agent.tracers.DefaultTracer;
+import com.newrelic.agent.tracers.OtherRootTracer;
+import com.newrelic.agent.tracers.metricname.SimpleMetricNameFormat;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of entering and exiting a single {@link DefaultTracer} inside an already running transaction. This is the
+ * per-call overhead of a @Trace'd method.
+ *
+ * The transaction is restarted every {@link #TRACERS_PER_TRANSACTION} calls so the finished tracers it retains do not
+ * grow without bound over an iteration. The restart is amortized into the score.
+ */
+@State(Scope.Thread)
+public class DefaultTracerBenchmark {
+
+    private static final ClassMethodSignature ROOT_SIGNATURE = new ClassMethodSignature("com.example.Worker", "run", "()V");
+    private static final ClassMethodSignature SIGNATURE = new ClassMethodSignature("com.example.Service", "call", "()V");
+
+    private static final int TRACERS_PER_TRANSACTION = 1000;
+
+    private Transaction tx;
+    private OtherRootTracer root;
+    private int tracerCount;
+
+    @Setup(Level.Trial)
+    public void setupServices() throws Exception {
+        BenchmarkServiceManager.create();
+    }
+
+    @Setup(Level.Iteration)
+    public void startTransaction() {
+        tracerCount = 0;
+        Transaction.clearTransaction();
+        tx = Transaction.getTransaction();
+        root = new OtherRootTracer(tx, ROOT_SIGNATURE, this,
+                new SimpleMetricNameFormat("OtherTransaction/Custom/com.example.Worker/run"));
+        tx.getTransactionActivity().tracerStarted(root);
+    }
+
+    @TearDown(Level.Iteration)
+    public void finishTransaction() {
+        root.finish(Opcodes.RETURN, null);
+        Transaction.clearTransaction();
+    }
+
+    private void nextTracer() {
+        if (++tracerCount == TRACERS_PER_TRANSACTION) {
+            finishTransaction();
+            startTransaction();
+        }
+    }
+
+    @Benchmark
+    public DefaultTracer enterExit() {
+        nextTracer();
+        DefaultTracer tracer = new DefaultTracer(tx, SIGNATURE, this, new SimpleMetricNameFormat("Java/com.example.Service/call"));
+        tx.getTransactionActivity().tracerStarted(tracer);
+        tracer.finish(Opcodes.RETURN, null);
+        return tracer;
+    }
+
+    @Benchmark
+    public DefaultTracer enterExitWithAttribute() {
+        nextTracer();
+        DefaultTracer tracer = new DefaultTracer(tx, SIGNATURE, this, new SimpleMetricNameFormat("Java/com.example.Service/call"));
+        tx.getTransactionActivity().tracerStarted(tracer);
+        tracer.addCustomAttribute("customer", "acme");
+        tracer.finish(Opcodes.RETURN, null);
+        return tracer;
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.GrpcSpanConverter;
+import com.newrelic.SpanEncoder;
+import com.newrelic.agent.model.SpanEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of serializing spans for infinite tracing, through the generated protobuf messages and with the
+ * {@link SpanEncoder}. Both produce the bytes gRPC writes to the stream.
+ */
+@State(Scope.Thread)
+public class SpanEncoderBenchmark {
+
+    private final GrpcSpanConverter grpcSpanConverter = new GrpcSpanConverter();
+    private final SpanEncoder spanEncoder = new SpanEncoder();
+    private SpanEvent span;
+
+    @Setup
+    public void setup() {
+        SpanEventFactoryBenchmark factory = new SpanEventFactoryBenchmark();
+        factory.setup();
+        span = factory.buildDatastoreSpan();
+    }
+
+    @Benchmark
+    public byte[] grpcConverterSpan() {
+        return grpcSpanConverter.convert(span).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] spanEncoderSpan() {
+        return spanEncoder.convert(span);
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.agent.model.AttributeFilter;
+import com.newrelic.agent.model.SpanCategory;
+import com.newrelic.agent.model.SpanEvent;
+import com.newrelic.agent.service.analytics.SpanEventFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cost of building a datastore {@link SpanEvent} the way the tracer-to-span conversion does at transaction finish.
+ */
+@State(Scope.Thread)
+public class SpanEventFactoryBenchmark {
+
+    private final AttributeFilter filter = new AttributeFilter.PassEverythingAttributeFilter();
+    private Map<String, Object> agentAttributes;
+    private Map<String, Object> userAttributes;
+
+    @Setup
+    public void setup() {
+        agentAttributes = new HashMap<>();
+        agentAttributes.put("thread.id", 42L);
+        agentAttributes.put("code.namespace", "com.example.Dao");
+        userAttributes = new HashMap<>();
+        userAttributes.put("customer", "acme");
+        userAttributes.put("region", "us-east-1");
+    }
+
+    @Benchmark
+    public SpanEvent buildDatastoreSpan() {
+        return new SpanEventFactory("Benchmark", filter, SpanEventFactory.DEFAULT_SYSTEM_TIMESTAMP_SUPPLIER)
+                .setGuid("ee8e5ef1a374c0ec")
+                .setTraceId("ee8e5ef1a374c0ec3ab4ab8c28b8a8fe")
+                .setSampled(true)
+                .setParentId("cbf2ab05afb1e5be")
+                .setTransactionId("a1b2c3d4e5f60718")
+                .setPriority(1.5f)
+                .setTimestamp(1600000000000L)
+                .setDurationInSeconds(0.0125f)
+                .setName("Datastore/statement/MySQL/users/select")
+                .setCategory(SpanCategory.datastore)
+                .setDatastoreComponent("MySQL")
+                .setDatabaseName("production")
+                .setHostName("db.example.com")
+                .setAddress("db.example.com", "3306")
+                .setDatabaseStatement("SELECT * FROM users WHERE id = ?")
+                .putAllAgentAttributes(agentAttributes)
+                .putAllUserAttributes(userAttributes)
+                .build();
+    }
+
+    @Benchmark
+    public SpanEvent buildGenericSpan() {
+        return new SpanEventFactory("Benchmark", filter, SpanEventFactory.DEFAULT_SYSTEM_TIMESTAMP_SUPPLIER)
+                .setGuid("ee8e5ef1a374c0ec")
+                .setTraceId("ee8e5ef1a374c0ec3ab4ab8c28b8a8fe")
+                .setSampled(true)
+                .setParentId("cbf2ab05afb1e5be")
+                .setTransactionId("a1b2c3d4e5f60718")
+                .setPriority(1.5f)
+                .setTimestamp(1600000000000L)
+                .setDurationInSeconds(0.0003f)
+                .setName("Java/com.example.Service/call")
+                .build();
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.agent.database.SqlObfuscator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of obfuscating a slow SQL statement without the cache in front of it.
+ */
+@State(Scope.Thread)
+public class SqlObfuscatorBenchmark {
+
+    private static final String SHORT_SQL = "SELECT * FROM users WHERE id = 42 AND name = 'bob'";
+
+    @Param({ "mysql", "postgresql", "oracle", "unknown" })
+    public String dialect;
+
+    private SqlObfuscator obfuscator;
+    private String longSql;
+
+    @Setup
+    public void setup() {
+        obfuscator = SqlObfuscator.getDefaultSqlObfuscator();
+        longSql = BenchmarkSql.ormStyleSelect(50);
+    }
+
+    @Benchmark
+    public String obfuscateShortStatement() {
+        return obfuscator.obfuscateSql(SHORT_SQL, dialect);
+    }
+
+    @Benchmark
+    public String obfuscateOrmStatement() {
+        return obfuscator.obfuscateSql(longSql, dialect);
+    }
+
+}
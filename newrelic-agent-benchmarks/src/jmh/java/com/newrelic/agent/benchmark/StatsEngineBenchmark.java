@@ -0,0 +1,68 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.agent.stats.StatsEngineImpl;
+import com.newrelic.agent.stats.TransactionStats;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of {@link StatsEngineImpl#mergeStatsResolvingScope(TransactionStats, String)}, which runs once for every
+ * finished transaction.
+ */
+@State(Scope.Thread)
+public class StatsEngineBenchmark {
+
+    private static final String SCOPE = "WebTransaction/Servlet/UserController";
+
+    @Param({ "10", "100" })
+    public int scopedMetricCount;
+
+    private TransactionStats txStats;
+    private StatsEngineImpl harvestStatsEngine;
+
+    @Setup
+    public void setup() {
+        txStats = createTransactionStats();
+
+        // The harvest engine already holds every metric, which is the steady state between harvests. Merging a
+        // separate copy keeps txStats from being aliased into it.
+        harvestStatsEngine = new StatsEngineImpl();
+        harvestStatsEngine.mergeStatsResolvingScope(createTransactionStats(), SCOPE);
+    }
+
+    private TransactionStats createTransactionStats() {
+        TransactionStats stats = new TransactionStats();
+        for (int i = 0; i < scopedMetricCount; i++) {
+            String name = "Datastore/statement/MySQL/table" + i + "/select";
+            stats.getScopedStats().getOrCreateResponseTimeStats(name).recordResponseTimeInNanos(1000000L + i);
+            stats.getUnscopedStats().getOrCreateResponseTimeStats(name).recordResponseTimeInNanos(1000000L + i);
+        }
+        stats.getUnscopedStats().getOrCreateResponseTimeStats("Datastore/all").recordResponseTimeInNanos(5000000L);
+        stats.getUnscopedStats().getOrCreateResponseTimeStats("Datastore/allWeb").recordResponseTimeInNanos(5000000L);
+        return stats;
+    }
+
+    @Benchmark
+    public StatsEngineImpl mergeIntoPopulatedEngine() {
+        harvestStatsEngine.mergeStatsResolvingScope(txStats, SCOPE);
+        return harvestStatsEngine;
+    }
+
+    @Benchmark
+    public StatsEngineImpl mergeIntoEmptyEngine() {
+        StatsEngineImpl statsEngine = new StatsEngineImpl();
+        statsEngine.mergeStatsResolvingScope(createTransactionStats(), SCOPE);
+        return statsEngine;
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.benchmark;
+
+import com.newrelic.agent.Transaction;
+import com.newrelic.agent.tracers.ClassMethodSignature;
+import com.newrelic.agent.tracers.DefaultTracer;
+import com.newrelic.agent.tracers.OtherRootTracer;
+import com.newrelic.agent.tracers.metricname.SimpleMetricNameFormat;
+import org.objectweb.asm.Opcodes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of starting and finishing a background transaction, including the finish-time work done by the
+ * transaction listeners (stats merge, transaction events, traces).
+ */
+@State(Scope.Thread)
+public class TransactionBenchmark {
+
+    private static final ClassMethodSignature ROOT_SIGNATURE = new ClassMethodSignature("com.example.Worker", "run", "()V");
+    private static final ClassMethodSignature CHILD_SIGNATURE = new ClassMethodSignature("com.example.Dao", "load", "()V");
+
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkServiceManager.create();
+    }
+
+    @Benchmark
+    public Transaction startFinishEmptyTransaction() {
+        Transaction.clearTransaction();
+        Transaction tx = Transaction.getTransaction();
+        OtherRootTracer root = new OtherRootTracer(tx, ROOT_SIGNATURE, this,
+                new SimpleMetricNameFormat("OtherTransaction/Custom/com.example.Worker/run"));
+        tx.getTransactionActivity().tracerStarted(root);
+        root.finish(Opcodes.RETURN, null);
+        return tx;
+    }
+
+    @Benchmark
+    public Transaction startFinishTransactionWithChildren() {
+        Transaction.clearTransaction();
+        Transaction tx = Transaction.getTransaction();
+        OtherRootTracer root = new OtherRootTracer(tx, ROOT_SIGNATURE, this,
+                new SimpleMetricNameFormat("OtherTransaction/Custom/com.example.Worker/run"));
+        tx.getTransactionActivity().tracerStarted(root);
+        for (int i = 0; i < 10; i++) {
+            DefaultTracer child = new DefaultTracer(tx, CHILD_SIGNATURE, this,
+                    new SimpleMetricNameFormat("Java/com.example.Dao/load"));
+            tx.getTransactionActivity().tracerStarted(child);
+            child.finish(Opcodes.RETURN, null);
+        }
+        root.finish(Opcodes.RETURN, null);
+        return tx;
+    }
+
+}
@@ -21,6 +21,7 @@ import com.newrelic.agent.logging.IAgentLogger;
 import com.newrelic.agent.service.ServiceFactory;
 import com.newrelic.agent.service.ServiceManager;
 import com.newrelic.agent.service.ServiceManagerImpl;
+import com.newrelic.agent.service.StartupProfiler;
 import com.newrelic.agent.stats.StatsService;
 import com.newrelic.agent.stats.StatsWorks;
 import com.newrelic.agent.util.asm.ClassStructure;
@@ -120,8 +121,12 @@ public final class Agent {
      */
     @SuppressWarnings("unused")
     public static void continuePremain(String agentArgs, Instrumentation inst, long startTime) {
+        StartupProfiler.addPhase("Bootstrap", startTime, System.currentTimeMillis() - startTime);
+        StartupProfiler.Phase premainPhase = StartupProfiler.start("Premain");
+        StartupProfiler.Phase phase = StartupProfiler.start("Premain/MixinInterfaces");
         // This *MUST* be done first thing in the premain
         addMixinInterfacesToBootstrap(inst);
+        phase.end();
 
         // Although the logger is statically initialized at the top of this class, it will only write to the standard
         // output until it is configured. This occurs within ServiceManager.start() via a call back to the doStart()
@@ -144,7 +149,10 @@ public final class Agent {
             LOG.warning(msg);
         }
 
-        if (!tryToInitializeServiceManager(inst)) {
+        phase = StartupProfiler.start("Premain/InitializeServices");
+        boolean initialized = tryToInitializeServiceManager(inst);
+        phase.end();
+        if (!initialized) {
             return;
         }
 
@@ -154,7 +162,9 @@ public final class Agent {
             // The following method will immediately configure the log so that the rest of our initialization sequence
             // is written to the newrelic_agent.log rather than to the console. Configuring the log also applies the
             // log_level setting from the newrelic.yml so debugging levels become available here, if so configured.
+            phase = StartupProfiler.start("Premain/StartServices");
             serviceManager.start();
+            phase.end();
 
             LOG.info(MessageFormat.format("New Relic Agent v{0} has started", Agent.getVersion()));
 
@@ -171,6 +181,9 @@ public final class Agent {
             }
 
             recordAgentVersion(serviceManager.getStatsService());
+
+            premainPhase.end();
+            StartupProfiler.finish(serviceManager.getStatsService(), getVersion());
         } catch (Throwable t) {
             // There's no way to gracefully pull the agent out due to our bytecode modification and class structure changes (pointcuts).
             // We're likely to throw an exception into the user's app if we try to continue.
@@ -53,7 +53,7 @@ public class AgentImpl implements com.newrelic.agent.bridge.Agent {
         if (txa == null) {
             return NoOpTracedMethod.INSTANCE;
         }
-        Tracer tracer = txa.getLastTracer();
+        Tracer tracer = txa.retainLastTracer();
         return (tracer == null) ? NoOpTracedMethod.INSTANCE : tracer;
     }
 
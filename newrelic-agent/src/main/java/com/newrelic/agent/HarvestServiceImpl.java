@@ -15,6 +15,7 @@ import com.newrelic.agent.service.AbstractService;
 import com.newrelic.agent.service.ServiceFactory;
 import com.newrelic.agent.stats.StatsEngine;
 import com.newrelic.agent.stats.StatsEngineImpl;
+import com.newrelic.agent.stats.StatsWork;
 import com.newrelic.agent.stats.StatsWorks;
 import com.newrelic.agent.util.DefaultThreadFactory;
 import com.newrelic.agent.util.SafeWrappers;
@@ -25,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
@@ -37,6 +39,11 @@ public class HarvestServiceImpl extends AbstractService implements HarvestServic
 
     public static final String HARVEST_THREAD_NAME = "New Relic Harvest Service";
     public static final String FASTER_HARVEST_THREAD_NAME = "New Relic Faster Harvest Service";
+    public static final String HARVEST_WORKER_THREAD_NAME = "New Relic Harvest Worker";
+    public static final String HARVEST_THREADS = "harvest.threads";
+    public static final String HARVEST_TIMEOUT_IN_SECONDS = "harvest.timeout_in_seconds";
+    public static final int DEFAULT_HARVEST_THREADS = 1;
+    public static final int DEFAULT_HARVEST_TIMEOUT_IN_SECONDS = 50;
     private static final long INITIAL_DELAY_IN_MILLISECONDS = TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS);
     private static final long REPORTING_PERIOD_IN_MILLISECONDS = TimeUnit.MILLISECONDS.convert(60, TimeUnit.SECONDS);
     private static final long MIN_HARVEST_INTERVAL_IN_NANOSECONDS = TimeUnit.NANOSECONDS.convert(55, TimeUnit.SECONDS);
@@ -44,10 +51,13 @@ public class HarvestServiceImpl extends AbstractService implements HarvestServic
     private static final String REPORT_PERIOD_MS = "report_period_ms";
 
     /**
-     * The main harvest task and all harvestables (faster event harvests) are scheduled on separate threads.
+     * The main harvest task and all harvestables (faster event harvests) are scheduled on separate threads. With more
+     * than one harvest thread configured, those threads only schedule and the harvests run on the worker pool.
      */
     private final ScheduledExecutorService scheduledHarvestExecutor;
     private final ScheduledExecutorService scheduledFasterHarvestExecutor;
+    private final ExecutorService harvestWorkers;
+    private final long harvestTimeoutInMillis;
     private final List<HarvestListener> harvestListeners = new CopyOnWriteArrayList<>();
     private final Map<IRPMService, HarvestTask> harvestTasks = new HashMap<>();
     private final ConcurrentMap<Harvestable, HarvestableTracker> harvestables = new ConcurrentHashMap<>();
@@ -57,6 +67,14 @@ public class HarvestServiceImpl extends AbstractService implements HarvestServic
         super(HarvestService.class.getSimpleName());
         scheduledHarvestExecutor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory(HARVEST_THREAD_NAME, true));
         scheduledFasterHarvestExecutor = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory(FASTER_HARVEST_THREAD_NAME, true));
+
+        AgentConfig config = ServiceFactory.getConfigService().getDefaultAgentConfig();
+        int harvestThreads = config.getValue(HARVEST_THREADS, DEFAULT_HARVEST_THREADS);
+        harvestWorkers = harvestThreads > 1
+                ? Executors.newFixedThreadPool(harvestThreads, new DefaultThreadFactory(HARVEST_WORKER_THREAD_NAME, true))
+                : null;
+        harvestTimeoutInMillis = TimeUnit.MILLISECONDS.convert(
+                config.getValue(HARVEST_TIMEOUT_IN_SECONDS, DEFAULT_HARVEST_TIMEOUT_IN_SECONDS), TimeUnit.SECONDS);
         ServiceFactory.getRPMServiceManager().addConnectionListener(new ConnectionListenerImpl());
     }
 
@@ -196,13 +214,17 @@ public class HarvestServiceImpl extends AbstractService implements HarvestServic
         }
         scheduledHarvestExecutor.shutdown();
         scheduledFasterHarvestExecutor.shutdown();
+        if (harvestWorkers != null) {
+            harvestWorkers.shutdown();
+        }
     }
 
     /**
      * Schedule a harvest task.
      */
     private ScheduledFuture<?> scheduleHarvestTask(HarvestTask harvestTask) {
-        return scheduledHarvestExecutor.scheduleAtFixedRate(SafeWrappers.safeRunnable(harvestTask), getInitialDelay(),
+        Runnable dispatcher = new HarvestDispatcher(harvestTask, harvestTask.rpmService.getApplicationName(), scheduledHarvestExecutor);
+        return scheduledHarvestExecutor.scheduleAtFixedRate(SafeWrappers.safeRunnable(dispatcher), getInitialDelay(),
                 getReportingPeriod(), TimeUnit.MILLISECONDS);
     }
 
@@ -270,6 +292,86 @@ public class HarvestServiceImpl extends AbstractService implements HarvestServic
         return eventHarvest;
     }
 
+    /**
+     * Returns the timeout for requests to the collector. When harvests run on a worker pool, connecting and waiting for
+     * data take no longer than the harvest timeout. Interrupting a worker does not stop blocking socket IO, so this is
+     * what frees a worker that is stuck on the collector.
+     */
+    public static int getRequestTimeoutInMillis(AgentConfig config) {
+        int requestTimeoutInMillis = config.getTimeoutInMilliseconds();
+        if (config.getValue(HARVEST_THREADS, DEFAULT_HARVEST_THREADS) <= 1) {
+            return requestTimeoutInMillis;
+        }
+        long harvestTimeoutInMillis = TimeUnit.MILLISECONDS.convert(
+                config.getValue(HARVEST_TIMEOUT_IN_SECONDS, DEFAULT_HARVEST_TIMEOUT_IN_SECONDS), TimeUnit.SECONDS);
+        return harvestTimeoutInMillis > 0 ? (int) Math.min(requestTimeoutInMillis, harvestTimeoutInMillis) : requestTimeoutInMillis;
+    }
+
+    /**
+     * Hands a scheduled harvest to the worker pool, so a slow POST for one application or harvestable does not hold up
+     * the others. A harvest that is still running when it comes due again is skipped, and one that runs longer than
+     * the harvest timeout is reported. The worker is not interrupted, its requests give up on their own because their
+     * timeouts are capped by {@link #getRequestTimeoutInMillis(AgentConfig)}. Without a worker pool the harvest runs
+     * on the scheduling thread.
+     */
+    private final class HarvestDispatcher implements Runnable {
+
+        private final Runnable harvest;
+        private final String name;
+        private final ScheduledExecutorService scheduler;
+        // only cleared by the worker once the harvest has returned
+        private final AtomicBoolean inFlight = new AtomicBoolean();
+
+        private HarvestDispatcher(Runnable harvest, String name, ScheduledExecutorService scheduler) {
+            this.harvest = harvest;
+            this.name = name;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void run() {
+            if (harvestWorkers == null) {
+                harvest.run();
+                return;
+            }
+            if (!inFlight.compareAndSet(false, true)) {
+                getLogger().log(Level.FINE, "Skipping harvest for {0}, the previous harvest is still running", name);
+                ServiceFactory.getStatsService().doStatsWork(StatsWorks.getIncrementCounterWork(MetricNames.SUPPORTABILITY_HARVEST_SKIPPED, 1));
+                return;
+            }
+
+            final Future<?> future;
+            try {
+                future = harvestWorkers.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            SafeWrappers.safeRunnable(harvest).run();
+                        } finally {
+                            inFlight.set(false);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the service is stopping
+                inFlight.set(false);
+                return;
+            }
+            if (harvestTimeoutInMillis > 0) {
+                scheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!future.isDone()) {
+                            getLogger().log(Level.INFO, "Harvest for {0} has taken longer than {1} seconds", name,
+                                    TimeUnit.SECONDS.convert(harvestTimeoutInMillis, TimeUnit.MILLISECONDS));
+                            ServiceFactory.getStatsService().doStatsWork(StatsWorks.getIncrementCounterWork(MetricNames.SUPPORTABILITY_HARVEST_TIMEOUT, 1));
+                        }
+                    }
+                }, harvestTimeoutInMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
     /**
      * The harvest task is responsible for running the harvest for a RPM service.
      */
@@ -461,11 +563,18 @@ public class HarvestServiceImpl extends AbstractService implements HarvestServic
                 @Override
                 public void run() {
                     getLogger().log(Level.FINER, "Harvestable: {0}/{1} running", harvestable.getAppName(), harvestable.getEndpointMethodName());
-                    harvestable.harvest();
+                    long startTimeInNanos = System.nanoTime();
+                    try {
+                        harvestable.harvest();
+                    } finally {
+                        recordHarvestableResponseTime(System.nanoTime() - startTimeInNanos);
+                    }
                 }
             };
 
-            tasks.add(scheduledFasterHarvestExecutor.scheduleAtFixedRate(SafeWrappers.safeRunnable(harvestTask), 0 , reportPeriodInMillis, TimeUnit.MILLISECONDS));
+            Runnable dispatcher = new HarvestDispatcher(harvestTask, harvestable.getAppName() + "/" + harvestable.getEndpointMethodName(),
+                    scheduledFasterHarvestExecutor);
+            tasks.add(scheduledFasterHarvestExecutor.scheduleAtFixedRate(SafeWrappers.safeRunnable(dispatcher), 0 , reportPeriodInMillis, TimeUnit.MILLISECONDS));
         }
 
         public synchronized void stop() {
@@ -475,6 +584,21 @@ public class HarvestServiceImpl extends AbstractService implements HarvestServic
 
             tasks.clear();
         }
+
+        private void recordHarvestableResponseTime(final long durationInNanos) {
+            final String metricName = MessageFormat.format(MetricNames.SUPPORTABILITY_HARVESTABLE_RESPONSE_TIME, harvestable.getEndpointMethodName());
+            ServiceFactory.getStatsService().doStatsWork(new StatsWork() {
+                @Override
+                public void doWork(StatsEngine statsEngine) {
+                    statsEngine.getResponseTimeStats(metricName).recordResponseTime(durationInNanos, TimeUnit.NANOSECONDS);
+                }
+
+                @Override
+                public String getAppName() {
+                    return harvestable.getAppName();
+                }
+            });
+        }
     }
 
     private class ConnectionListenerImpl implements ConnectionListener {
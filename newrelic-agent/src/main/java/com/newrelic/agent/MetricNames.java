@@ -53,6 +53,13 @@ public class MetricNames {
     public static final String THREAD_COUNT = "Threads/all";
     public static final String THREAD_DEADLOCK_COUNT = "Threads/Deadlocks/all";
 
+    public static final String JFR_GC_MASK = "JFR/GC/{0}";
+    public static final String JFR_GC_PAUSE = "JFR/GC/Pause";
+    public static final String JFR_SAFEPOINT = "JFR/Safepoint";
+    public static final String JFR_MONITOR_ENTER = "JFR/Threads/MonitorEnter";
+    public static final String JFR_THREAD_PARK = "JFR/Threads/Park";
+    public static final String JFR_ALLOCATION_RATE = "JFR/Memory/AllocationRate";
+
     public static final String TOTAL_TIME = "TotalTime";
     public static final String FIRST_BYTE = "TimeToFirstByte";
     public static final String LAST_BYTE = "TimeToLastByte";
@@ -207,6 +214,9 @@ public class MetricNames {
     public static final String SUPPORTABILITY_JAVA_AGENTVERSION = "Supportability/Java/AgentVersion/{0}";
 
     public static final String SUPPORTABILITY_HARVEST_SERVICE_RESPONSE_TIME = "Supportability/Harvest";
+    public static final String SUPPORTABILITY_HARVESTABLE_RESPONSE_TIME = "Supportability/Harvest/{0}";
+    public static final String SUPPORTABILITY_HARVEST_SKIPPED = "Supportability/Harvest/Skipped";
+    public static final String SUPPORTABILITY_HARVEST_TIMEOUT = "Supportability/Harvest/Timeout";
 
     public static final String SUPPORTABILITY_ERROR_SERVICE_TRANSACTION_ERROR_SENT = "Supportability/Events/TransactionError/Sent";
     public static final String SUPPORTABILITY_ERROR_SERVICE_TRANSACTION_ERROR_SEEN = "Supportability/Events/TransactionError/Seen";
@@ -293,6 +303,9 @@ public class MetricNames {
 
     public static final String SUPPORTABILITY_TIMING = "Supportability/Timing/";
     public static final String SUPPORTABILITY_TIMING_PREMAIN = SUPPORTABILITY_TIMING + "Premain";
+    public static final String SUPPORTABILITY_STARTUP = "Supportability/Startup/";
+    public static final String SUPPORTABILITY_STARTUP_CPU = "/CpuTime";
+    public static final String SUPPORTABILITY_STARTUP_ALLOCATED = "/AllocatedBytes";
 
     public static final String SUPPORTABILITY_LITE_MODE = "Supportability/litemode"; // feature is enabled
 
@@ -36,12 +36,12 @@ import com.newrelic.agent.dispatchers.Dispatcher;
 import com.newrelic.agent.dispatchers.WebRequestDispatcher;
 import com.newrelic.agent.errors.ErrorAnalyzer;
 import com.newrelic.agent.errors.ErrorAnalyzerImpl;
+import com.newrelic.agent.interfaces.SamplingPriorityQueue;
 import com.newrelic.agent.messaging.MessagingUtil;
 import com.newrelic.agent.model.TimeoutCause;
 import com.newrelic.agent.normalization.Normalizer;
 import com.newrelic.agent.service.ServiceFactory;
 import com.newrelic.agent.service.ServiceUtils;
-import com.newrelic.agent.service.analytics.DistributedSamplingPriorityQueue;
 import com.newrelic.agent.service.analytics.TransactionEvent;
 import com.newrelic.agent.sql.SlowQueryListener;
 import com.newrelic.agent.stats.AbstractMetricAggregator;
@@ -341,7 +341,7 @@ public class Transaction {
             DistributedTracePayloadImpl inboundPayload = spanProxy.get().getInboundDistributedTracePayload();
             Float inboundPriority = inboundPayload != null ? inboundPayload.priority : null;
 
-            DistributedSamplingPriorityQueue<TransactionEvent> reservoir = ServiceFactory.getTransactionEventsService()
+            SamplingPriorityQueue<TransactionEvent> reservoir = ServiceFactory.getTransactionEventsService()
                     .getOrCreateDistributedSamplingReservoir(getApplicationName());
 
             priority.compareAndSet(null, distributedTraceService.calculatePriority(inboundPriority, reservoir));
@@ -2139,7 +2139,7 @@ public class Transaction {
             return NoOpToken.INSTANCE;
         }
 
-        Tracer parent = getTransactionActivity().getLastTracer();
+        Tracer parent = getTransactionActivity().retainLastTracer();
         if (parent == null || parent.isLeaf()) {
             // If we don't have a parent tracer or the parent is a leaf node, we don't want to allow Token creation
             Agent.LOG.log(Level.FINER, "Transaction {0}: cannot create token, no last tracer on {1}.", this,
@@ -2265,7 +2265,7 @@ public class Transaction {
             return null;
         }
 
-        Tracer parent = getTransactionActivity().getLastTracer();
+        Tracer parent = getTransactionActivity().retainLastTracer();
         if (parent == null || parent.isLeaf()) {
             // If we don't have a parent tracer or the parent is a leaf node, we don't want to allow a Segment
             Agent.LOG.log(Level.FINER, "Transaction {0}: cannot create event, no last tracer on {1}", this,
@@ -12,11 +12,15 @@ import com.newrelic.agent.service.ServiceFactory;
 import com.newrelic.agent.stats.SimpleStatsEngine;
 import com.newrelic.agent.stats.TransactionStats;
 import com.newrelic.agent.trace.TransactionTraceService;
+import com.newrelic.agent.tracers.ClassMethodSignature;
 import com.newrelic.agent.tracers.DefaultTracer;
 import com.newrelic.agent.tracers.NoOpTracer;
+import com.newrelic.agent.tracers.PooledTracer;
 import com.newrelic.agent.tracers.SkipTracer;
 import com.newrelic.agent.tracers.Tracer;
+import com.newrelic.agent.tracers.TracerFlags;
 import com.newrelic.agent.tracers.TransactionActivityInitiator;
+import com.newrelic.agent.tracers.metricname.MetricNameFormat;
 import com.newrelic.agent.transaction.TransactionCache;
 
 import java.lang.management.ManagementFactory;
@@ -86,6 +90,13 @@ public class TransactionActivity {
      */
     private boolean flyweightInProgress;
 
+    /**
+     * The reusable tracers of this activity, indexed by their nesting depth among the pooled tracers. Null until the
+     * first pooled tracer is requested.
+     */
+    private PooledTracer[] pooledTracers;
+    private int pooledTracersInUse;
+
     /*
      * activityId is used for overriding hashcode because Object.hashCode() had rather high overhead. When migrating an
      * activity to a new transaction, the activityId should be updated to reduce collisions. We must be very careful to
@@ -187,7 +198,7 @@ public class TransactionActivity {
         this.transaction = tx;
         TransactionTraceService ttService = ServiceFactory.getTransactionTraceService();
         tracers = null;
-        transactionStats = new TransactionStats();
+        transactionStats = new TransactionStats(ServiceFactory.getConfigService().getDefaultAgentConfig().isMetricIdMode());
         transactionCache = new TransactionCache();
         this.threadId = threadId;
         this.asyncContext = asyncContext;
@@ -455,6 +466,13 @@ public class TransactionActivity {
                     tracers = new ArrayList<>();
                 }
                 tracers.add(tracer);
+                // the transaction trace and span events walk up from a segment to its parent segment after it finishes
+                for (Tracer parent = tracer.getParentTracer(); parent != null && !parent.isTransactionSegment();
+                        parent = parent.getParentTracer()) {
+                    if (parent instanceof PooledTracer) {
+                        ((PooledTracer) parent).retain();
+                    }
+                }
             }
         }
     }
@@ -566,7 +584,66 @@ public class TransactionActivity {
      * Get the last tracer on the call stack, or null if the call stack is empty.
      */
     public Tracer getLastTracer() {
-        return flyweightInProgress ? FLYWEIGHT_PLACEHOLDER : this.lastTracer;
+        if (flyweightInProgress) {
+            return FLYWEIGHT_PLACEHOLDER;
+        }
+        return this.lastTracer;
+    }
+
+    /**
+     * Get the last tracer on the call stack for a caller that may keep it after the traced method returns, like the
+     * tracer API, a token or a segment. A pooled tracer is retained, so it is not reused while it is referenced.
+     */
+    public Tracer retainLastTracer() {
+        Tracer tracer = getLastTracer();
+        if (tracer instanceof PooledTracer) {
+            ((PooledTracer) tracer).retain();
+        }
+        return tracer;
+    }
+
+    /**
+     * Start a reusable metrics-only tracer. The caller must hold the tracer start lock.
+     *
+     * @return the tracer, not yet added to the stack, or null if the tracer would be a transaction segment or a leaf,
+     * pooled tracers are disabled or all of them are in use
+     */
+    public Tracer startPooledTracer(ClassMethodSignature sig, MetricNameFormat metricNameFormat, int tracerFlags) {
+        if (pooledTracers == null) {
+            int depth = transaction == null ? 0 : transaction.getTransactionTracerConfig().getPooledTracerDepth();
+            pooledTracers = new PooledTracer[Math.max(0, depth)];
+        }
+        if (pooledTracersInUse >= pooledTracers.length || lastTracer == null) {
+            return null;
+        }
+        if ((tracerFlags & TracerFlags.TRANSACTION_TRACER_SEGMENT) != 0 && canCreateTransactionSegment()) {
+            return null;
+        }
+        if ((tracerFlags & TracerFlags.LEAF) == TracerFlags.LEAF) {
+            // leaf tracers are how external and datastore calls are instrumented
+            return null;
+        }
+        PooledTracer tracer = pooledTracers[pooledTracersInUse];
+        if (tracer == null) {
+            tracer = new PooledTracer(this, pooledTracersInUse);
+            pooledTracers[pooledTracersInUse] = tracer;
+        }
+        tracer.start(lastTracer, sig, metricNameFormat, tracerFlags);
+        pooledTracersInUse++;
+        return tracer;
+    }
+
+    /**
+     * Return a finished pooled tracer, and any pooled tracers nested in it that never finished, to the pool.
+     */
+    public void pooledTracerFinished(PooledTracer tracer) {
+        int depth = tracer.getDepth();
+        if (pooledTracers != null && depth < pooledTracers.length && pooledTracers[depth] == tracer) {
+            if (tracer.isRetained()) {
+                pooledTracers[depth] = null;
+            }
+            pooledTracersInUse = depth;
+        }
     }
 
     public TracedMethod startFlyweightTracer() {
@@ -585,9 +662,7 @@ public class TransactionActivity {
     public void finishFlyweightTracer(TracedMethod parent, long startInNanos, long finishInNanos, String className,
             String methodName, String methodDesc, String metricName, String[] rollupMetricNames) {
         try {
-            if (parent instanceof DefaultTracer) {
-                DefaultTracer parentTracer = (DefaultTracer) parent;
-
+            if (parent instanceof DefaultTracer || parent instanceof PooledTracer) {
                 long duration = finishInNanos - startInNanos;
 
                 if (!flyweightInProgress) {
@@ -612,7 +687,11 @@ public class TransactionActivity {
                     }
                 }
 
-                parentTracer.childTracerFinished(duration);
+                if (parent instanceof DefaultTracer) {
+                    ((DefaultTracer) parent).childTracerFinished(duration);
+                } else {
+                    ((PooledTracer) parent).childTracerFinished(duration);
+                }
             }
         } catch (Throwable t) {
             Agent.LOG.log(Level.FINEST, t, "Error finishing tracer");
@@ -130,7 +130,8 @@ public class TransactionApiImpl implements com.newrelic.agent.bridge.Transaction
         if (txa == null) {
             return null;
         }
-        return txa.getLastTracer();
+        // the caller can keep the traced method
+        return txa.retainLastTracer();
     }
 
     @Override
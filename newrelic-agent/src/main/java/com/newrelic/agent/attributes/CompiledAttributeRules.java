@@ -0,0 +1,172 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.attributes;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The include and exclude rules of one destination compiled into a single character trie. Every rule is a path in the
+ * trie, so a key is checked against all of the rules with one walk over its characters instead of a walk over the
+ * {@link AttributesNode} tries for each rule set.
+ *
+ * The rules are kept in layers, which are checked in the order they were added. Within a layer the most specific rule
+ * wins, which gives the same answers as {@link AttributesNode#applyRules(String)}: an exact rule wins over a wildcard
+ * rule, a longer wildcard rule wins over a shorter one, and exclude wins when the same rule is both included and
+ * excluded.
+ */
+final class CompiledAttributeRules {
+
+    /**
+     * Each layer keeps its decision in two bits of an int.
+     */
+    private static final int BITS_PER_LAYER = 2;
+    private static final int MAX_LAYERS = Integer.SIZE / BITS_PER_LAYER;
+    private static final int NO_MATCH = 0;
+    private static final int EXCLUDE = 1;
+    private static final int INCLUDE = 2;
+    private static final int LAYER_MASK = 3;
+
+    private static final String END_WILDCARD = "*";
+
+    private final Node root = new Node();
+    private int layers = 0;
+
+    /**
+     * Adds a layer of rules. It is only checked for keys that did not match any rule in the layers added before it.
+     *
+     * @return this
+     */
+    CompiledAttributeRules addLayer(Set<String> exclude, Set<String> include) {
+        if (layers == MAX_LAYERS) {
+            throw new IllegalStateException("Too many attribute rule layers");
+        }
+        addRules(layers, exclude, EXCLUDE);
+        addRules(layers, include, INCLUDE);
+        layers++;
+        return this;
+    }
+
+    private void addRules(int layer, Set<String> rules, int decision) {
+        for (String rule : rules) {
+            if (rule.endsWith(END_WILDCARD)) {
+                Node node = root.add(rule, rule.length() - 1);
+                node.wildcard = merge(node.wildcard, layer, decision);
+            } else {
+                Node node = root.add(rule, rule.length());
+                node.exact = merge(node.exact, layer, decision);
+            }
+        }
+    }
+
+    private static int merge(int decisions, int layer, int decision) {
+        int shift = layer * BITS_PER_LAYER;
+        int current = (decisions >>> shift) & LAYER_MASK;
+        // exclude wins over include for the same rule
+        if (current == NO_MATCH || decision == EXCLUDE) {
+            decisions = (decisions & ~(LAYER_MASK << shift)) | (decision << shift);
+        }
+        return decisions;
+    }
+
+    /**
+     * @return True means the key should be included. False means the key should not be included. Null means the key did
+     * not match any rules.
+     */
+    Boolean apply(String key) {
+        if (key == null) {
+            return null;
+        }
+
+        // wildcard rules match every key that starts with their name, so each node on the path can contribute
+        Node node = root;
+        int decisions = node.wildcard;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+            if (node != null) {
+                decisions = override(decisions, node.wildcard);
+            }
+        }
+        if (node != null) {
+            decisions = override(decisions, node.exact);
+        }
+
+        for (int layer = 0; layer < layers; layer++) {
+            int decision = (decisions >>> (layer * BITS_PER_LAYER)) & LAYER_MASK;
+            if (decision != NO_MATCH) {
+                return decision == INCLUDE;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the decision of every layer that has one in the more specific rule.
+     */
+    private static int override(int decisions, int moreSpecific) {
+        if (moreSpecific == NO_MATCH) {
+            return decisions;
+        }
+        int mask = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += BITS_PER_LAYER) {
+            if (((moreSpecific >>> shift) & LAYER_MASK) != NO_MATCH) {
+                mask |= LAYER_MASK << shift;
+            }
+        }
+        return (decisions & ~mask) | moreSpecific;
+    }
+
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_NODES = new Node[0];
+
+        /**
+         * Sorted so a child can be found with a binary search.
+         */
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_NODES;
+        /**
+         * The decisions of the rules that end at this node, with and without a trailing wildcard.
+         */
+        private int exact = NO_MATCH;
+        private int wildcard = NO_MATCH;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index < 0 ? null : children[index];
+        }
+
+        Node add(String rule, int length) {
+            Node node = this;
+            for (int i = 0; i < length; i++) {
+                node = node.addChild(rule.charAt(i));
+            }
+            return node;
+        }
+
+        private Node addChild(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(labels, insertAt, newLabels, insertAt + 1, labels.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node child = new Node();
+            newLabels[insertAt] = label;
+            newChildren[insertAt] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+    }
+}
@@ -7,15 +7,14 @@
 
 package com.newrelic.agent.attributes;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.newrelic.agent.Agent;
 
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 
 /**
@@ -25,27 +24,27 @@ import java.util.logging.Level;
  * 1. First apply the mandatory rules. These are rules that must be enforced for high security. <br/>
  * 2. If no mandatory match, apply the configuration rules. <br/>
  * 3. If no config matcher, apply the defaults.
+ *
+ * The three rule sets are compiled into one {@link CompiledAttributeRules} so a key is checked with a single walk over
+ * its characters. The predicate is immutable, when the configuration changes a new one is built and swapped in.
  */
 public class DefaultDestinationPredicate implements DestinationPredicate {
 
-    private static final long MAX_CACHE_SIZE_BUFFER = 200L;
+    private static final int MAX_CACHE_SIZE_BUFFER = 200;
+    private static final Set<String> ALL = Collections.singleton("*");
     /**
-     * This is always run first. If we match any, then we are done. High security properties go in here
+     * The mandatory rules, then the configuration rules, then the default rules.
      */
-    private final RootConfigAttributesNode mandatoryExcludeTrie;
+    private final CompiledAttributeRules rules;
     /**
-     * Contains the properties from the configuration file.
+     * Contains the properties from the configuration file. Only used to find potential matches.
      */
     private final RootConfigAttributesNode configTrie;
     /**
-     * Contains the default properties. These are all exclude nodes. These are only run if the mandatory and config are
-     * not matched.
-     */
-    private final AttributesNode defaultExcludeTrie;
-    /**
-     * Holds recent keys and result values.
+     * Holds the decisions for recent keys. It is cleared when it fills up, so keys with unbounded cardinality can not
+     * grow it without limit.
      */
-    private final LoadingCache<String, Boolean> cache;
+    private final ConcurrentMap<String, Boolean> cache;
     /**
      * The destination is mainly used for logging.
      */
@@ -54,31 +53,16 @@ public class DefaultDestinationPredicate implements DestinationPredicate {
     DefaultDestinationPredicate(final String dest, final Set<String> exclude, final Set<String> include,
             Set<String> defaultExcludes, Set<String> mandatoryExclude) {
 
-        mandatoryExcludeTrie = generateExcludeConfigTrie(dest, mandatoryExclude);
+        rules = new CompiledAttributeRules()
+                // high security rules first
+                .addLayer(mandatoryExclude, Collections.<String>emptySet())
+                // configuration rules override default rules
+                .addLayer(exclude, include)
+                // everything not excluded by default is included
+                .addLayer(defaultExcludes, ALL);
         configTrie = generateConfigTrie(dest, exclude, include);
-        defaultExcludeTrie = generateDefaultTrie(dest, defaultExcludes);
         destination = dest;
-        cache = CacheBuilder.newBuilder().maximumSize(MAX_CACHE_SIZE_BUFFER).build(new CacheLoader<String, Boolean>() {
-            @Override
-            public Boolean load(String key) {
-                return isIncluded(key);
-            }
-        });
-    }
-
-    private Boolean isIncluded(String key) {
-        // high security rules first
-        Boolean output = mandatoryExcludeTrie.applyRules(key);
-        if (output == null) {
-            // if no match then configuration rules
-            output = configTrie.applyRules(key);
-        }
-        // configuration rules override default rules
-        if (output == null) {
-            // if no match for a configuration rule, then examine default rules
-            output = defaultExcludeTrie.applyRules(key);
-        }
-        return output;
+        cache = new ConcurrentHashMap<>();
     }
 
     /**
@@ -93,11 +77,19 @@ public class DefaultDestinationPredicate implements DestinationPredicate {
      */
     @Override
     public boolean apply(String key) {
-        try {
-            return changeToPrimitiveAndLog(key, cache.get(key));
-        } catch (ExecutionException e) {
-            return changeToPrimitiveAndLog(key, isIncluded(key));
+        if (key == null) {
+            return changeToPrimitiveAndLog(null, null);
+        }
+        Boolean value = cache.get(key);
+        if (value == null) {
+            value = rules.apply(key);
+            if (cache.size() >= MAX_CACHE_SIZE_BUFFER) {
+                cache.clear();
+            }
+            // cache the outcome, a key that matches no rules is included
+            cache.put(key, value == null ? Boolean.TRUE : value);
         }
+        return changeToPrimitiveAndLog(key, value);
     }
 
     private void logOutput(String key, boolean value) {
@@ -134,12 +126,6 @@ public class DefaultDestinationPredicate implements DestinationPredicate {
         return root;
     }
 
-    private static RootConfigAttributesNode generateExcludeConfigTrie(final String dest, final Set<String> exclude) {
-        RootConfigAttributesNode root = new RootConfigAttributesNode(dest);
-        addSpecifcInOrEx(root, false, exclude, dest, true);
-        return root;
-    }
-
     static RootConfigAttributesNode generateConfigTrie(final String dest, final Set<String> exclude, final Set<String> include) {
         RootConfigAttributesNode root = new RootConfigAttributesNode(dest);
         addSpecifcInOrEx(root, false, exclude, dest, false);
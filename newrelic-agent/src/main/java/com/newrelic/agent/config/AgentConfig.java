@@ -253,6 +253,11 @@ public interface AgentConfig extends com.newrelic.api.agent.Config, DataSenderCo
 
     boolean isTrimStats();
 
+    /**
+     * Whether transaction and harvest stats are keyed by interned metric id instead of by metric name.
+     */
+    boolean isMetricIdMode();
+
     boolean isPlatformInformationEnabled();
 
     Set<String> getJDBCSupport();
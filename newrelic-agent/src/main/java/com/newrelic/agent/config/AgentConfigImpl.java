@@ -63,6 +63,7 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
     public static final String LOG_LEVEL = "log_level";
     public static final String LOG_LIMIT = "log_limit_in_kbytes";
     public static final String MAX_STACK_TRACE_LINES = "max_stack_trace_lines";
+    public static final String METRIC_ID_MODE = "metric_id_mode";
     public static final String METRIC_INGEST_URI = "metric_ingest_uri";
     public static final String DEBUG = "newrelic.debug";
     public static final String PLATFORM_INFORMATION_ENABLED = "platform_information_enabled";
@@ -81,6 +82,7 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
     public static final String SEND_JVM_PROPS = "send_jvm_props";
     public static final String SIMPLE_COMPRESSION_PROPERTY = "simple_compression";
     private static final String REQUEST_TIMEOUT_IN_SECONDS_PROPERTY = "timeout";
+    public static final String MAX_COLLECTOR_CONNECTIONS = "max_collector_connections";
     public static final String STARTUP_LOG_LEVEL = "startup_log_level";
     public static final String STARTUP_TIMING = "startup_timing";
     public static final String STDOUT = "STDOUT";
@@ -147,6 +149,7 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
     public static final String DEFAULT_LOG_LEVEL = "info";
     public static final int DEFAULT_LOG_LIMIT = 0;
     public static final int DEFAULT_MAX_STACK_TRACE_LINES = 30;
+    public static final boolean DEFAULT_METRIC_ID_MODE = false;
     public static final String DEFAULT_METRIC_INGEST_URI = "https://metric-api.newrelic.com";
     public static final boolean DEFAULT_PLATFORM_INFORMATION_ENABLED = true;
     public static final int DEFAULT_PORT = 80;
@@ -168,6 +171,7 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
     public static final boolean DEFAULT_WAIT_FOR_RPM_CONNECT = true;
     public static final int DEFAULT_WAIT_FOR_TRANSACTIONS = 0;
     private static final int DEFAULT_REQUEST_TIMEOUT_IN_SECONDS = 120;
+    public static final int DEFAULT_MAX_COLLECTOR_CONNECTIONS = 1;
 
     public static final String SYSTEM_PROPERTY_ROOT = "newrelic.config.";
 
@@ -219,9 +223,11 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
     private final TransactionNamingScheme transactionNamingMode;
     private final int transactionSizeLimit;
     private final boolean trimStats;
+    private final boolean metricIdMode;
     private final boolean waitForRPMConnect;
     private final int waitForTransactionsInMillis;
     private final int requestTimeoutInMillis;
+    private final int maxCollectorConnections;
 
     // nested configs (alphabetized)
     private final AttributesConfig attributesConfig;
@@ -302,6 +308,7 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
         caBundlePath = initCaBundlePathConfig();
         usePrivateSSL = initUsePrivateSSLConfig();
         trimStats = getProperty(TRIM_STATS, DEFAULT_TRIM_STATS);
+        metricIdMode = getProperty(METRIC_ID_MODE, DEFAULT_METRIC_ID_MODE);
         platformInformationEnabled = getProperty(PLATFORM_INFORMATION_ENABLED, DEFAULT_PLATFORM_INFORMATION_ENABLED);
         ibmWorkaroundEnabled = getProperty(IBM_WORKAROUND, DEFAULT_IBM_WORKAROUND);
         transactionNamingMode = parseTransactionNamingMode();
@@ -311,6 +318,7 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
         this.jdbcSupport = new HashSet<>(Arrays.asList(jdbcSupport));
         genericJdbcSupportEnabled = this.jdbcSupport.contains(GENERIC_JDBC_SUPPORT);
         requestTimeoutInMillis = getProperty(REQUEST_TIMEOUT_IN_SECONDS_PROPERTY, DEFAULT_REQUEST_TIMEOUT_IN_SECONDS) * 1000;
+        maxCollectorConnections = Math.max(1, getIntProperty(MAX_COLLECTOR_CONNECTIONS, DEFAULT_MAX_COLLECTOR_CONNECTIONS));
         instrumentationConfig = new BaseConfig(nestedProps(INSTRUMENTATION), SYSTEM_PROPERTY_ROOT + INSTRUMENTATION);
         transactionTracerConfig = initTransactionTracerConfig(apdexTInMillis, highSecurity);
         requestTransactionTracerConfig = transactionTracerConfig.createRequestTransactionTracerConfig(apdexTInMillis, highSecurity);
@@ -733,6 +741,11 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
         return requestTimeoutInMillis;
     }
 
+    @Override
+    public int getMaxCollectorConnections() {
+        return maxCollectorConnections;
+    }
+
     @Override
     public String getHost() {
         return host;
@@ -1120,6 +1133,11 @@ public class AgentConfigImpl extends BaseConfig implements AgentConfig {
         return trimStats;
     }
 
+    @Override
+    public boolean isMetricIdMode() {
+        return metricIdMode;
+    }
+
     @Override
     public boolean isPlatformInformationEnabled() {
         return platformInformationEnabled;
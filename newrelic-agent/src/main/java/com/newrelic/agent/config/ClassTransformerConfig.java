@@ -84,6 +84,22 @@ public interface ClassTransformerConfig extends Config {
      */
     boolean preMatchWeaveMethods();
 
+    /**
+     * Returns true when the classes that fail the pre-match should be written to disk when the JVM exits, so the next
+     * JVM started with the same agent, weave packages and jars can skip pre-matching them. Has no effect when
+     * {@link #preMatchWeaveMethods()} is false.
+     *
+     * @return true when the negative match cache should be persisted
+     */
+    boolean persistNegativeMatchCache();
+
+    /**
+     * The directory the negative match cache is written to.
+     *
+     * @return the configured directory, or null to use the agent's temp directory
+     */
+    String getNegativeMatchCacheDirectory();
+
     /**
      * True means the agent should instrument {@link ClassLoader#checkPackageAccess} to bypass the call to
      * {@link SecurityManager#checkPackageAccess} for weaved classes.
@@ -40,6 +40,8 @@ final class ClassTransformerConfigImpl extends BaseConfig implements ClassTransf
     public static final String MAX_PREVALIDATED_CLASSLOADERS = "max_prevalidated_classloaders";
     public static final String PREVALIDATE_WEAVE_PACKAGES = "prevalidate_weave_packages";
     public static final String PREMATCH_WEAVE_METHODS = "prematch_weave_methods";
+    public static final String PERSIST_NEGATIVE_MATCH_CACHE = "persist_negative_match_cache";
+    public static final String NEGATIVE_MATCH_CACHE_DIRECTORY = "negative_match_cache_directory";
     public static final String DEFAULT_INSTRUMENTATION = "instrumentation_default";
     public static final String BUILTIN_EXTENSIONS = "builtin_extensions";
     public static final String COMPUTE_FRAMES = "compute_frames";
@@ -53,6 +55,7 @@ final class ClassTransformerConfigImpl extends BaseConfig implements ClassTransf
     public static final int DEFAULT_MAX_PREVALIDATED_CLASSLOADERS = 10;
     public static final boolean DEFAULT_PREVALIDATE_WEAVE_PACKAGES = true;
     public static final boolean DEFAULT_PREMATCH_WEAVE_METHODS = true;
+    public static final boolean DEFAULT_PERSIST_NEGATIVE_MATCH_CACHE = false;
 
     private static final String SYSTEM_PROPERTY_ROOT = "newrelic.config.class_transformer.";
 
@@ -90,6 +93,8 @@ final class ClassTransformerConfigImpl extends BaseConfig implements ClassTransf
     private final int maxPreValidatedClassLoaders;
     private final boolean preValidateWeavePackages;
     private final boolean preMatchWeaveMethods;
+    private final boolean persistNegativeMatchCache;
+    private final String negativeMatchCacheDirectory;
 
     private final AnnotationMatcher ignoreTransactionAnnotationMatcher;
     private final AnnotationMatcher ignoreApdexAnnotationMatcher;
@@ -116,6 +121,8 @@ final class ClassTransformerConfigImpl extends BaseConfig implements ClassTransf
         maxPreValidatedClassLoaders = getProperty(MAX_PREVALIDATED_CLASSLOADERS, DEFAULT_MAX_PREVALIDATED_CLASSLOADERS);
         preValidateWeavePackages = getProperty(PREVALIDATE_WEAVE_PACKAGES, DEFAULT_PREVALIDATE_WEAVE_PACKAGES);
         preMatchWeaveMethods = getProperty(PREMATCH_WEAVE_METHODS, DEFAULT_PREMATCH_WEAVE_METHODS);
+        persistNegativeMatchCache = getProperty(PERSIST_NEGATIVE_MATCH_CACHE, DEFAULT_PERSIST_NEGATIVE_MATCH_CACHE);
+        negativeMatchCacheDirectory = getProperty(NEGATIVE_MATCH_CACHE_DIRECTORY);
         defaultMethodTracingEnabled = getProperty("default_method_tracing_enabled", true);
 
         this.traceAnnotationMatcher = customTracingEnabled ? initializeTraceAnnotationMatcher(props) : new NoMatchAnnotationMatcher();
@@ -304,6 +311,16 @@ final class ClassTransformerConfigImpl extends BaseConfig implements ClassTransf
         return preMatchWeaveMethods;
     }
 
+    @Override
+    public boolean persistNegativeMatchCache() {
+        return persistNegativeMatchCache;
+    }
+
+    @Override
+    public String getNegativeMatchCacheDirectory() {
+        return negativeMatchCacheDirectory;
+    }
+
     public static final String JDBC_STATEMENTS_PROPERTY = "jdbc_statements";
 
     @Override
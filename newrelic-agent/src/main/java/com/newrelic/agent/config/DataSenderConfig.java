@@ -67,4 +67,10 @@ public interface DataSenderConfig {
     String getLicenseKey();
 
     int getTimeoutInMilliseconds();
+
+    /**
+     * The most connections the agent keeps open to the collector. Harvests that run at the same time upload on
+     * separate connections up to this limit, and wait for a free one beyond it. Defaults to 1.
+     */
+    int getMaxCollectorConnections();
 }
@@ -14,6 +14,16 @@ public interface InfiniteTracingConfig {
 
     int getSpanEventsQueueSize();
 
+    int getSpanEventsBatchSize();
+
+    boolean getSpanEventsDirectEncoding();
+
+    int getSpanEventsStreams();
+
+    String getSpanEventsSpillDirectory();
+
+    int getSpanEventsSpillMaxSizeMb();
+
     Double getFlakyPercentage();
 
     boolean getUsePlaintext();
@@ -67,6 +67,31 @@ public class InfiniteTracingConfigImpl extends BaseConfig implements InfiniteTra
         return spanEventsConfig.getQueueSize();
     }
 
+    @Override
+    public int getSpanEventsBatchSize() {
+        return spanEventsConfig.getBatchSize();
+    }
+
+    @Override
+    public boolean getSpanEventsDirectEncoding() {
+        return spanEventsConfig.getDirectEncoding();
+    }
+
+    @Override
+    public int getSpanEventsStreams() {
+        return spanEventsConfig.getStreams();
+    }
+
+    @Override
+    public String getSpanEventsSpillDirectory() {
+        return spanEventsConfig.getSpillDirectory();
+    }
+
+    @Override
+    public int getSpanEventsSpillMaxSizeMb() {
+        return spanEventsConfig.getSpillMaxSizeMb();
+    }
+
     @Override
     public Double getFlakyPercentage() {
         return getProperty(FLAKY_PERCENTAGE);
@@ -13,17 +13,71 @@ public class InfiniteTracingSpanEventsConfig extends BaseConfig {
 
     public static final String ROOT = "span_events";
     public static final String QUEUE_SIZE = "queue_size";
+    public static final String BATCH_SIZE = "batch_size";
+    public static final String DIRECT_ENCODING = "direct_encoding";
+    public static final String STREAMS = "streams";
+    public static final String SPILL_DIRECTORY = "spill_directory";
+    public static final String SPILL_MAX_SIZE_MB = "spill_max_size_mb";
 
     public static final int DEFAULT_SPAN_EVENTS_QUEUE_SIZE = 100000;
+    public static final int DEFAULT_SPAN_EVENTS_BATCH_SIZE = 0;
+    public static final boolean DEFAULT_SPAN_EVENTS_DIRECT_ENCODING = false;
+    public static final int DEFAULT_SPAN_EVENTS_STREAMS = 1;
+    public static final int DEFAULT_SPAN_EVENTS_SPILL_MAX_SIZE_MB = 100;
 
     private final int queue_size;
+    private final int batch_size;
+    private final boolean direct_encoding;
+    private final int streams;
+    private final String spill_directory;
+    private final int spill_max_size_mb;
 
     public InfiniteTracingSpanEventsConfig(Map<String, Object> props, String parentRoot) {
         super(props, parentRoot + ROOT + ".");
         queue_size = getIntProperty(QUEUE_SIZE, DEFAULT_SPAN_EVENTS_QUEUE_SIZE);
+        batch_size = getIntProperty(BATCH_SIZE, DEFAULT_SPAN_EVENTS_BATCH_SIZE);
+        direct_encoding = getProperty(DIRECT_ENCODING, DEFAULT_SPAN_EVENTS_DIRECT_ENCODING);
+        streams = getIntProperty(STREAMS, DEFAULT_SPAN_EVENTS_STREAMS);
+        spill_directory = getProperty(SPILL_DIRECTORY);
+        spill_max_size_mb = getIntProperty(SPILL_MAX_SIZE_MB, DEFAULT_SPAN_EVENTS_SPILL_MAX_SIZE_MB);
     }
 
     public int getQueueSize() {
         return queue_size;
     }
+
+    /**
+     * @return the maximum number of spans written to the stream in one burst, or 0 to send spans one at a time
+     */
+    public int getBatchSize() {
+        return batch_size;
+    }
+
+    /**
+     * @return true to serialize spans straight from the span events instead of building protobuf messages first
+     */
+    public boolean getDirectEncoding() {
+        return direct_encoding;
+    }
+
+    /**
+     * @return the number of gRPC streams, each with its own sender thread, that spans are spread across by trace id
+     */
+    public int getStreams() {
+        return streams;
+    }
+
+    /**
+     * @return the directory where spans that overflow the queue are spilled, or null to drop them
+     */
+    public String getSpillDirectory() {
+        return spill_directory;
+    }
+
+    /**
+     * @return the most disk space, in megabytes, that spilled spans may use
+     */
+    public int getSpillMaxSizeMb() {
+        return spill_max_size_mb;
+    }
 }
@@ -14,6 +14,7 @@ public class SpanEventsConfig extends BaseConfig {
     public static final int DEFAULT_MAX_SPAN_EVENTS_PER_HARVEST = 1000;
     public static final int DEFAULT_TARGET_SAMPLES_STORED = 10;
     public static final boolean DEFAULT_CROSS_PROCESS_ONLY = false;
+    public static final boolean DEFAULT_STRIPED_RESERVOIR = false;
 
     public static final String COLLECT_SPAN_EVENTS = "collect_span_events";
     private static final String ROOT = "newrelic.config.";
@@ -22,6 +23,7 @@ public class SpanEventsConfig extends BaseConfig {
     public static final String ENABLED = "enabled";
     private static final String TARGET_SAMPLES_STORED = "target_samples_stored";
     private static final String CROSS_PROCESS_ONLY = "cross_process_only";
+    private static final String STRIPED_RESERVOIR = "striped_reservoir";
     private static final boolean DEFAULT_COLLECT_SPANS = false;
 
     // Span event system properties with root
@@ -35,6 +37,7 @@ public class SpanEventsConfig extends BaseConfig {
     private final boolean enabled;
     private final int targetSamplesStored;
     private final boolean crossProcessOnly;
+    private final boolean stripedReservoir;
 
     public SpanEventsConfig(Map<String, Object> props, boolean dtEnabled) {
         super(props, SYSTEM_PROPERTY_ROOT);
@@ -43,6 +46,7 @@ public class SpanEventsConfig extends BaseConfig {
         this.enabled = initEnabled(maxSamplesStored);
         this.targetSamplesStored = getProperty(TARGET_SAMPLES_STORED, DEFAULT_TARGET_SAMPLES_STORED);
         this.crossProcessOnly = getProperty(CROSS_PROCESS_ONLY, DEFAULT_CROSS_PROCESS_ONLY);
+        this.stripedReservoir = getProperty(STRIPED_RESERVOIR, DEFAULT_STRIPED_RESERVOIR);
     }
 
     private boolean initEnabled(int maxSamplesStored) {
@@ -67,4 +71,12 @@ public class SpanEventsConfig extends BaseConfig {
         return crossProcessOnly;
     }
 
+    /**
+     * @return true if span events should be stored in a {@code StripedSamplingPriorityQueue}, which spreads request
+     * threads over several stripes instead of one synchronized queue
+     */
+    public boolean isStripedReservoir() {
+        return stripedReservoir;
+    }
+
 }
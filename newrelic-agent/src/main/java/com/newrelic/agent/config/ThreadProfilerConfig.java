@@ -14,4 +14,9 @@ public interface ThreadProfilerConfig {
      */
     boolean isEnabled();
 
+    /**
+     * @return the source of thread samples for v2 profiles, either {@code thread_info} or {@code jfr}.
+     */
+    String getSampler();
+
 }
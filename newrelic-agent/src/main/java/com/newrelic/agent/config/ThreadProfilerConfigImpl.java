@@ -14,13 +14,19 @@ final class ThreadProfilerConfigImpl extends BaseConfig implements ThreadProfile
 
     public static final String ENABLED = "enabled";
     public static final boolean DEFAULT_ENABLED = true;
+    public static final String SAMPLER = "sampler";
+    public static final String THREAD_INFO_SAMPLER = "thread_info";
+    public static final String JFR_SAMPLER = "jfr";
+    public static final String DEFAULT_SAMPLER = THREAD_INFO_SAMPLER;
     public static final String SYSTEM_PROPERTY_ROOT = "newrelic.config.thread_profiler.";
 
     private final boolean isEnabled;
+    private final String sampler;
 
     private ThreadProfilerConfigImpl(Map<String, Object> props) {
         super(props, SYSTEM_PROPERTY_ROOT);
         isEnabled = getProperty(ENABLED, DEFAULT_ENABLED);
+        sampler = getProperty(SAMPLER, DEFAULT_SAMPLER);
     }
 
     @Override
@@ -28,6 +34,11 @@ final class ThreadProfilerConfigImpl extends BaseConfig implements ThreadProfile
         return isEnabled;
     }
 
+    @Override
+    public String getSampler() {
+        return sampler;
+    }
+
     static ThreadProfilerConfig createThreadProfilerConfig(Map<String, Object> settings) {
         if (settings == null) {
             settings = Collections.emptyMap();
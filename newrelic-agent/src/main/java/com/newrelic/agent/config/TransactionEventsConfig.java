@@ -25,6 +25,7 @@ public class TransactionEventsConfig extends BaseConfig {
     private static final String COLLECT_ANALYTICS_EVENTS = "collect_analytics_events";
     private static final String ENABLED = "enabled";
     private static final String TARGET_SAMPLES_STORED = "target_samples_stored";
+    private static final String STRIPED_RESERVOIR = "striped_reservoir";
 
     public static final String REQUEST_HEADER_NAME = "header_name";
     public static final String HEADER_ALIAS = "header_alias";
@@ -32,10 +33,12 @@ public class TransactionEventsConfig extends BaseConfig {
     public static final boolean DEFAULT_ENABLED = true;
     public static final int DEFAULT_MAX_SAMPLES_STORED = 2000;
     public static final int DEFAULT_TARGET_SAMPLES_STORED = 10;
+    public static final boolean DEFAULT_STRIPED_RESERVOIR = false;
 
     private final boolean enabled;
     private final int maxSamplesStored;
     private final int targetSamplesStored;
+    private final boolean stripedReservoir;
     private final Set<CustomRequestHeaderConfig> requestHeaderConfigs;
 
     public TransactionEventsConfig(Map<String, Object> props) {
@@ -43,6 +46,7 @@ public class TransactionEventsConfig extends BaseConfig {
         maxSamplesStored = getProperty(MAX_SAMPLES_STORED, DEFAULT_MAX_SAMPLES_STORED);
         enabled = maxSamplesStored > 0 & initEnabled();
         targetSamplesStored = getProperty(TARGET_SAMPLES_STORED, DEFAULT_TARGET_SAMPLES_STORED);
+        stripedReservoir = getProperty(STRIPED_RESERVOIR, DEFAULT_STRIPED_RESERVOIR);
         requestHeaderConfigs = initCustomRequestHeaders();
     }
 
@@ -68,6 +72,14 @@ public class TransactionEventsConfig extends BaseConfig {
         return targetSamplesStored;
     }
 
+    /**
+     * @return true if transaction events should be stored in a {@code StripedSamplingPriorityQueue}, so finishing
+     * transactions do not contend on one synchronized queue
+     */
+    public boolean isStripedReservoir() {
+        return stripedReservoir;
+    }
+
     public Set<CustomRequestHeaderConfig> initCustomRequestHeaders() {
         Set<CustomRequestHeaderConfig> headerConfigs = new HashSet<>();
 
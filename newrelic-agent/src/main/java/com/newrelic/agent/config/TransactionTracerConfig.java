@@ -24,6 +24,14 @@ public interface TransactionTracerConfig {
      */
     String getRecordSql();
 
+    /**
+     * The engine used to obfuscate SQL when record_sql is "obfuscated".
+     *
+     * @return either "regex" for the regular expression obfuscator or "lexer" for the single-pass lexer. Both produce
+     * the same output.
+     */
+    String getSqlObfuscationEngine();
+
     /**
      * The set of modules that are allowed to send up obfuscated slow query information when high_security
      * mode is enabled. If high_security mode is disabled this setting is ignored.
@@ -107,6 +115,15 @@ public interface TransactionTracerConfig {
      */
     int getMaxSegments();
 
+    /**
+     * The number of reusable tracers each transaction activity keeps for methods that are traced for metrics only. A
+     * tracer that is not a transaction segment is taken from this pool instead of being allocated, so deeply nested or
+     * frequently called traced methods do not create garbage. Zero disables pooling.
+     *
+     * @return the maximum nesting depth of pooled tracers per activity
+     */
+    int getPooledTracerDepth();
+
     /**
      * The limit on the number of tokens to be retrieved per transaction.
      *
@@ -37,11 +37,13 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
     public static final String MAX_EXPLAIN_PLANS = "max_explain_plans";
     public static final String MAX_STACK_TRACE = "max_stack_trace";
     public static final String OBFUSCATED_SQL_FIELDS = "obfuscated_sql_fields";
+    public static final String POOLED_TRACER_DEPTH = "pooled_tracer_depth";
     public static final String RECORD_SQL = "record_sql";
     @Deprecated
     public static final String SLOW_QUERY_WHITELIST = "slow_query_whitelist";
     public static final String COLLECT_SLOW_QUERIES_FROM = "collect_slow_queries_from";
     public static final String SEGMENT_LIMIT = "segment_limit";
+    public static final String SQL_OBFUSCATION_ENGINE = "sql_obfuscation_engine";
     public static final String STACK_TRACE_THRESHOLD = "stack_trace_threshold";
     public static final String TOKEN_LIMIT = "token_limit";
     public static final String TOP_N = "top_n";
@@ -55,8 +57,10 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
     public static final boolean DEFAULT_LOG_SQL = false;
     public static final int DEFAULT_MAX_EXPLAIN_PLANS = 20;
     public static final int DEFAULT_MAX_STACK_TRACE = 20;
+    public static final int DEFAULT_POOLED_TRACER_DEPTH = 0;
     public static final String DEFAULT_RECORD_SQL = SqlObfuscator.OBFUSCATED_SETTING;
     public static final int DEFAULT_SEGMENT_LIMIT = 3000;
+    public static final String DEFAULT_SQL_OBFUSCATION_ENGINE = SqlObfuscator.REGEX_ENGINE;
     public static final double DEFAULT_STACK_TRACE_THRESHOLD = 0.5d; // seconds
     public static final String DEFAULT_TRANSACTION_THRESHOLD = APDEX_F;
     public static final int DEFAULT_TOKEN_LIMIT = 3000;
@@ -70,6 +74,7 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
     private final boolean isExplainEnabled;
     private final boolean isLogSql;
     private final String recordSql;
+    private final String sqlObfuscationEngine;
     private final Set<String> collectSlowQueriesFromModules;
     private final double explainThreshold;
     private final double explainThresholdInNanos;
@@ -81,6 +86,7 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
     private final boolean gcTimeEnabled;
     private final int maxStackTraces;
     private final int maxSegments;
+    private final int pooledTracerDepth;
     private final int maxExplainPlans;
     private final int maxTokens;
     private final int topN;
@@ -95,6 +101,7 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
         // recordSql must be off or obfuscated if high security is true
         recordSql = initRecordSql(highSecurity).intern(); // some code does an identity equals (==) on this value
         isExplainEnabled = initExplainEnabled(RecordSql.get(recordSql));
+        sqlObfuscationEngine = getProperty(SQL_OBFUSCATION_ENGINE, DEFAULT_SQL_OBFUSCATION_ENGINE).toLowerCase();
         collectSlowQueriesFromModules = initCollectSlowQueriesFrom(highSecurity);
         explainThreshold = getDoubleProperty(EXPLAIN_THRESHOLD, DEFAULT_EXPLAIN_THRESHOLD) * 1000;
         explainThresholdInNanos = TimeUnit.NANOSECONDS.convert((long) explainThreshold, TimeUnit.MILLISECONDS);
@@ -106,6 +113,7 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
         gcTimeEnabled = getProperty(GC_TIME_ENABLED, DEFAULT_GC_TIME_ENABLED);
         maxStackTraces = getIntProperty(MAX_STACK_TRACE, DEFAULT_MAX_STACK_TRACE);
         maxSegments = getIntProperty(SEGMENT_LIMIT, DEFAULT_SEGMENT_LIMIT);
+        pooledTracerDepth = getIntProperty(POOLED_TRACER_DEPTH, DEFAULT_POOLED_TRACER_DEPTH);
         maxExplainPlans = getIntProperty(MAX_EXPLAIN_PLANS, DEFAULT_MAX_EXPLAIN_PLANS);
         maxTokens = getIntProperty(TOKEN_LIMIT, DEFAULT_TOKEN_LIMIT);
         topN = getIntProperty(TOP_N, DEFAULT_TOP_N);
@@ -256,6 +264,11 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
         return recordSql;
     }
 
+    @Override
+    public String getSqlObfuscationEngine() {
+        return sqlObfuscationEngine;
+    }
+
     @Override
     public Set<String> getCollectSlowQueriesFromModules() {
         return collectSlowQueriesFromModules;
@@ -326,6 +339,11 @@ public final class TransactionTracerConfigImpl extends BaseConfig implements Tra
         return maxSegments;
     }
 
+    @Override
+    public int getPooledTracerDepth() {
+        return pooledTracerDepth;
+    }
+
     @Override
     public int getMaxTokens() {
         return maxTokens;
@@ -37,7 +37,7 @@ public class DatabaseService extends AbstractService implements AgentConfigListe
         super(DatabaseService.class.getSimpleName());
         AgentConfig config = ServiceFactory.getConfigService().getDefaultAgentConfig();
         defaultAppName = config.getApplicationName();
-        databaseStatementParser = new DefaultDatabaseStatementParser();
+        databaseStatementParser = new TokenizingDatabaseStatementParser();
     }
 
     @Override
@@ -106,6 +106,9 @@ public class DatabaseService extends AbstractService implements AgentConfigListe
         if (SqlObfuscator.RAW_SETTING.equals(recordSql)) {
             return SqlObfuscator.getNoObfuscationSqlObfuscator();
         }
+        if (SqlObfuscator.LEXER_ENGINE.equals(ttConfig.getSqlObfuscationEngine())) {
+            return SqlObfuscator.getLexerSqlObfuscator();
+        }
         return SqlObfuscator.getDefaultSqlObfuscator();
     }
 
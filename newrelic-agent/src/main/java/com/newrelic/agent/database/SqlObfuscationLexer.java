@@ -0,0 +1,512 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.database;
+
+/**
+ * A single pass, non-backtracking replacement for the regular expressions in {@link SqlObfuscator.DefaultSqlObfuscator}.
+ *
+ * At every position the lexer tries the same alternatives, in the same order, as the dialect's alternation pattern and
+ * replaces the first one that matches with {@code ?}. Every alternative in those patterns can be decided by scanning
+ * forward from its first character, so the output is the same as the regex engine's without any backtracking. The
+ * unmatched quote and comment check is done on the characters as they are written rather than as a second pass, and
+ * stops at the first unmatched token.
+ *
+ * This class is thread-safe.
+ */
+final class SqlObfuscationLexer {
+
+    enum Dialect {
+        // doubleQuote, dollarQuote, oracleQuote, uuid, hex, bool
+        ALL(true, true, true, true, true, true),
+        MYSQL(true, false, false, false, true, true),
+        POSTGRES(false, true, false, true, false, true),
+        ORACLE(false, false, true, false, false, false);
+
+        final boolean doubleQuote;
+        final boolean dollarQuote;
+        final boolean oracleQuote;
+        final boolean uuid;
+        final boolean hex;
+        final boolean bool;
+
+        Dialect(boolean doubleQuote, boolean dollarQuote, boolean oracleQuote, boolean uuid, boolean hex, boolean bool) {
+            this.doubleQuote = doubleQuote;
+            this.dollarQuote = dollarQuote;
+            this.oracleQuote = oracleQuote;
+            this.uuid = uuid;
+            this.hex = hex;
+            this.bool = bool;
+        }
+
+        static Dialect forName(String dialect) {
+            if ("mysql".equals(dialect)) {
+                return MYSQL;
+            } else if ("postgresql".equals(dialect) || "postgres".equals(dialect)) {
+                return POSTGRES;
+            } else if ("oracle".equals(dialect)) {
+                return ORACLE;
+            }
+            return ALL;
+        }
+    }
+
+    private static final String OBFUSCATED = "?";
+    private static final int UUID_DIGITS = 32;
+    private static final int NO_MATCH = -1;
+
+    private SqlObfuscationLexer() {
+    }
+
+    static String obfuscate(String sql, Dialect dialect) {
+        final int length = sql.length();
+        StringBuilder result = new StringBuilder(length);
+        char previous = 0;
+        boolean pendingDollar = false;
+
+        int i = 0;
+        while (i < length) {
+            char emitted;
+            int end = match(sql, i, dialect);
+            if (end == NO_MATCH) {
+                emitted = sql.charAt(i);
+                i++;
+            } else {
+                emitted = '?';
+                i = end;
+            }
+
+            // Anything that looks like the start or end of a quote or comment means the sql was not fully
+            // understood, so nothing is returned rather than risk leaking a literal
+            if (pendingDollar && emitted != '?') {
+                return OBFUSCATED;
+            }
+            pendingDollar = false;
+            switch (emitted) {
+                case '\'':
+                    return OBFUSCATED;
+                case '"':
+                    if (dialect.doubleQuote) {
+                        return OBFUSCATED;
+                    }
+                    break;
+                case '*':
+                    if (previous == '/') {
+                        return OBFUSCATED;
+                    }
+                    break;
+                case '/':
+                    if (previous == '*') {
+                        return OBFUSCATED;
+                    }
+                    break;
+                case '$':
+                    if (dialect == Dialect.ALL) {
+                        return OBFUSCATED;
+                    } else if (dialect == Dialect.POSTGRES) {
+                        // postgres allows a $ only when it is followed by a ? (e.g. a replaced $1 parameter)
+                        pendingDollar = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            result.append(emitted);
+            previous = emitted;
+        }
+        return pendingDollar ? OBFUSCATED : result.toString();
+    }
+
+    /**
+     * @return the end of the literal or comment starting at {@code i}, or {@link #NO_MATCH}
+     */
+    private static int match(String sql, int i, Dialect dialect) {
+        char c = sql.charAt(i);
+        int end;
+        if (c == '\'') {
+            end = quoted(sql, i, '\'');
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (dialect.doubleQuote && c == '"') {
+            end = quoted(sql, i, '"');
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (dialect.dollarQuote && c == '$') {
+            end = dollarQuoted(sql, i);
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (dialect.oracleQuote && (c == 'q' || c == 'Q')) {
+            end = oracleQuoted(sql, i);
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (c == '#') {
+            return comment(sql, i + 1);
+        }
+        if (c == '-' && charAt(sql, i + 1) == '-') {
+            return comment(sql, i + 2);
+        }
+        if (c == '/' && charAt(sql, i + 1) == '*') {
+            end = multilineComment(sql, i);
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (dialect.uuid && (c == '{' || isHexDigit(c))) {
+            end = uuid(sql, i);
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (dialect.hex && c == '0') {
+            end = hex(sql, i);
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (dialect.bool) {
+            end = bool(sql, i);
+            if (end != NO_MATCH) {
+                return end;
+            }
+        }
+        if (c == '-' || isNumberChar(c)) {
+            return number(sql, i);
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * {@code '(?:[^']|'')*?(?:\\'.*|'(?!'))}, with the quote character as a parameter.
+     */
+    private static int quoted(String sql, int start, char quote) {
+        final int length = sql.length();
+        int i = start + 1;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\\' && charAt(sql, i + 1) == quote) {
+                // an escaped quote swallows the rest of the statement
+                return length;
+            }
+            if (c == quote) {
+                if (charAt(sql, i + 1) != quote) {
+                    return i + 1;
+                }
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * {@code (\$(?!\d)[^$]*?\$).*?(?:\1|$)}
+     */
+    private static int dollarQuoted(String sql, int start) {
+        final int length = sql.length();
+        if (isAsciiDigit(charAt(sql, start + 1))) {
+            return NO_MATCH;
+        }
+        int tagEnd = sql.indexOf('$', start + 1);
+        if (tagEnd == -1) {
+            return NO_MATCH;
+        }
+        int tagLength = tagEnd - start + 1;
+        for (int i = tagEnd + 1; i <= length; i++) {
+            if (regionMatchesIgnoreAsciiCase(sql, i, start, tagLength)) {
+                return i + tagLength;
+            }
+            if (isEnd(sql, i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * {@code q'\[.*?(?:\]'|$)} and the {@code {}}, {@code <>} and {@code ()} variants.
+     */
+    private static int oracleQuoted(String sql, int start) {
+        if (charAt(sql, start + 1) != '\'') {
+            return NO_MATCH;
+        }
+        char close;
+        switch (charAt(sql, start + 2)) {
+            case '[':
+                close = ']';
+                break;
+            case '{':
+                close = '}';
+                break;
+            case '<':
+                close = '>';
+                break;
+            case '(':
+                close = ')';
+                break;
+            default:
+                return NO_MATCH;
+        }
+        final int length = sql.length();
+        for (int i = start + 3; i <= length; i++) {
+            if (charAt(sql, i) == close && charAt(sql, i + 1) == '\'') {
+                return i + 2;
+            }
+            if (isEnd(sql, i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * {@code (?:#|--).*?(?=\r|\n|$)}, starting after the comment marker.
+     */
+    private static int comment(String sql, int bodyStart) {
+        final int length = sql.length();
+        for (int i = bodyStart; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\r' || c == '\n' || isEnd(sql, i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * {@code MULTILINE_COMMENT}: from the opening marker to the first closing marker, or to the end of the statement if
+     * another comment is opened first.
+     */
+    private static int multilineComment(String sql, int start) {
+        final int length = sql.length();
+        int i = start + 2;
+        while (i < length) {
+            char c = sql.charAt(i);
+            char next = charAt(sql, i + 1);
+            if (c == '*' && next == '/') {
+                return i + 2;
+            }
+            if (c == '/') {
+                if (next == '*') {
+                    // a nested comment swallows the rest of the statement
+                    return length;
+                }
+                if (i + 1 >= length) {
+                    return NO_MATCH;
+                }
+                i += 2;
+            } else {
+                i++;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * {@code \{?(?:[0-9a-f]\-*){32}\}?}
+     */
+    private static int uuid(String sql, int start) {
+        final int length = sql.length();
+        int i = start;
+        if (sql.charAt(i) == '{') {
+            i++;
+        }
+        for (int digits = 0; digits < UUID_DIGITS; digits++) {
+            if (i >= length || !isHexDigit(sql.charAt(i))) {
+                return NO_MATCH;
+            }
+            i++;
+            while (i < length && sql.charAt(i) == '-') {
+                i++;
+            }
+        }
+        if (i < length && sql.charAt(i) == '}') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * {@code 0x[0-9a-f]+}
+     */
+    private static int hex(String sql, int start) {
+        char x = charAt(sql, start + 1);
+        if (x != 'x' && x != 'X') {
+            return NO_MATCH;
+        }
+        final int length = sql.length();
+        int i = start + 2;
+        while (i < length && isHexDigit(sql.charAt(i))) {
+            i++;
+        }
+        return i > start + 2 ? i : NO_MATCH;
+    }
+
+    /**
+     * {@code \b(?:true|false|null)\b}
+     */
+    private static int bool(String sql, int start) {
+        int end;
+        switch (sql.charAt(start)) {
+            case 't':
+            case 'T':
+                end = start + 4;
+                if (!regionMatchesIgnoreAsciiCase(sql, start, "true")) {
+                    return NO_MATCH;
+                }
+                break;
+            case 'f':
+            case 'F':
+                end = start + 5;
+                if (!regionMatchesIgnoreAsciiCase(sql, start, "false")) {
+                    return NO_MATCH;
+                }
+                break;
+            case 'n':
+            case 'N':
+                end = start + 4;
+                if (!regionMatchesIgnoreAsciiCase(sql, start, "null")) {
+                    return NO_MATCH;
+                }
+                break;
+            default:
+                return NO_MATCH;
+        }
+        if ((start > 0 && isWordChar(sql.charAt(start - 1))) || (end < sql.length() && isWordChar(sql.charAt(end)))) {
+            return NO_MATCH;
+        }
+        return end;
+    }
+
+    /**
+     * {@code -?\b(?:[0-9_]+\.)?[0-9_]+([eE][+-]?[0-9_]+)?}
+     */
+    private static int number(String sql, int start) {
+        if (sql.charAt(start) == '-') {
+            // the word boundary right after a '-' holds whenever the next character can start a number
+            return isNumberChar(charAt(sql, start + 1)) ? numberBody(sql, start + 1) : NO_MATCH;
+        }
+        if (start > 0 && isWordChar(sql.charAt(start - 1))) {
+            return NO_MATCH;
+        }
+        return numberBody(sql, start);
+    }
+
+    private static int numberBody(String sql, int start) {
+        int end = skipNumberChars(sql, start);
+        if (end == start) {
+            return NO_MATCH;
+        }
+        if (charAt(sql, end) == '.') {
+            int fractionEnd = skipNumberChars(sql, end + 1);
+            if (fractionEnd > end + 1) {
+                end = fractionEnd;
+            }
+        }
+        char e = charAt(sql, end);
+        if (e == 'e' || e == 'E') {
+            int exponentStart = end + 1;
+            char sign = charAt(sql, exponentStart);
+            if (sign == '+' || sign == '-') {
+                exponentStart++;
+            }
+            int exponentEnd = skipNumberChars(sql, exponentStart);
+            if (exponentEnd > exponentStart) {
+                end = exponentEnd;
+            }
+        }
+        return end;
+    }
+
+    private static int skipNumberChars(String sql, int start) {
+        final int length = sql.length();
+        int i = start;
+        while (i < length && isNumberChar(sql.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Whether {@code $} (without MULTILINE) matches at the index: the end of the input, or just before a line
+     * terminator that ends the input.
+     */
+    private static boolean isEnd(String sql, int i) {
+        final int length = sql.length();
+        if (i == length) {
+            return true;
+        }
+        if (i == length - 2) {
+            return sql.charAt(i) == '\r' && sql.charAt(i + 1) == '\n';
+        }
+        if (i == length - 1) {
+            char c = sql.charAt(i);
+            if (c == '\n') {
+                return i == 0 || sql.charAt(i - 1) != '\r';
+            }
+            return c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+        return false;
+    }
+
+    private static char charAt(String sql, int i) {
+        return i < sql.length() ? sql.charAt(i) : 0;
+    }
+
+    private static boolean regionMatchesIgnoreAsciiCase(String sql, int offset, String expected) {
+        if (offset + expected.length() > sql.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (toLowerAscii(sql.charAt(offset + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean regionMatchesIgnoreAsciiCase(String sql, int offset, int otherOffset, int length) {
+        if (offset + length > sql.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (toLowerAscii(sql.charAt(offset + i)) != toLowerAscii(sql.charAt(otherOffset + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isNumberChar(char c) {
+        return (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+}
@@ -33,6 +33,9 @@ public abstract class SqlObfuscator {
     public static final String RAW_SETTING = "raw";
     public static final String OFF_SETTING = "off";
 
+    public static final String REGEX_ENGINE = "regex";
+    public static final String LEXER_ENGINE = "lexer";
+
     private SqlObfuscator() {
     }
 
@@ -135,10 +138,42 @@ public abstract class SqlObfuscator {
         }
     }
 
+    /**
+     * Produces the same output as {@link DefaultSqlObfuscator} in a single forward pass over the sql, without building
+     * and backtracking through the combined regex.
+     */
+    static class LexerSqlObfuscator extends SqlObfuscator {
+
+        @Override
+        public String obfuscateSql(String sql) {
+            if (sql == null || sql.length() == 0) {
+                return sql;
+            }
+            return SqlObfuscationLexer.obfuscate(sql, SqlObfuscationLexer.Dialect.ALL);
+        }
+
+        @Override
+        public String obfuscateSql(String sql, String dialect) {
+            if (sql == null || sql.length() == 0) {
+                return sql;
+            }
+            return SqlObfuscationLexer.obfuscate(sql, SqlObfuscationLexer.Dialect.forName(dialect));
+        }
+
+        @Override
+        public boolean isObfuscating() {
+            return true;
+        }
+    }
+
     public static SqlObfuscator getDefaultSqlObfuscator() {
         return new DefaultSqlObfuscator();
     }
 
+    public static SqlObfuscator getLexerSqlObfuscator() {
+        return new LexerSqlObfuscator();
+    }
+
     static SqlObfuscator getNoObfuscationSqlObfuscator() {
         return new SqlObfuscator() {
 
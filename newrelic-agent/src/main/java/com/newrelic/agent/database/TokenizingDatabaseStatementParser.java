@@ -0,0 +1,601 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.database;
+
+import com.newrelic.agent.Agent;
+import com.newrelic.agent.bridge.datastore.DatabaseVendor;
+import com.newrelic.agent.util.Strings;
+
+import java.sql.ResultSetMetaData;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Parses statements with forward scans over the characters of the statement instead of trying each of the
+ * {@link DefaultDatabaseStatementParser} patterns in turn. The leading keyword decides which rule applies, so the
+ * common statements are parsed in a single pass without ever running the unanchored {@code call} and {@code exec}
+ * patterns, which used to rescan long generated sql several times on every cache miss.
+ *
+ * The rules are tried in the same order as the statement factories and reproduce what the patterns match, including
+ * their backtracking corner cases, so both parsers report the same model and operation for any statement.
+ *
+ * This class is thread-safe.
+ */
+public class TokenizingDatabaseStatementParser implements DatabaseStatementParser {
+
+    private static final String UNKNOWN_OPERATION = "unknown";
+    private static final String PARSE_ERROR_MODEL = "ParseError";
+
+    private static final Set<String> KNOWN_OPERATIONS = new HashSet<>(Arrays.asList(SELECT_OPERATION, "show",
+            INSERT_OPERATION, "update", "delete", "with", "create", "drop", "alter", "call", "exec", "set"));
+
+    private static final ParsedDatabaseStatement INNER_SELECT_STATEMENT = new ParsedDatabaseStatement("INNER_SELECT",
+            SELECT_OPERATION, false);
+    private static final ParsedDatabaseStatement VARIABLE_SELECT_STATEMENT = new ParsedDatabaseStatement("VARIABLE",
+            SELECT_OPERATION, false);
+
+    @Override
+    public ParsedDatabaseStatement getParsedDatabaseStatement(DatabaseVendor databaseVendor, String statement,
+            ResultSetMetaData metaData) {
+        ParsedDatabaseStatement hinted = parseHint(statement);
+        if (hinted != null) {
+            return hinted;
+        }
+        if (metaData != null) {
+            try {
+                int columnCount = metaData.getColumnCount();
+                if (columnCount > 0) {
+                    String tableName = metaData.getTableName(1);
+                    if (tableName != null && !tableName.isEmpty()) {
+                        return new ParsedDatabaseStatement(tableName.toLowerCase(), SELECT_OPERATION, true);
+                    }
+                }
+            } catch (Exception e) {
+            }
+        }
+        return parseStatement(statement);
+    }
+
+    /**
+     * Parses a leading {@code /* nrhint: model *}{@code /operation} comment.
+     */
+    private static ParsedDatabaseStatement parseHint(String statement) {
+        Scanner scanner = new Scanner(statement);
+        int index = scanner.skipWhitespace(0);
+        if (!statement.startsWith("/*", index)) {
+            return null;
+        }
+        index = scanner.skipWhitespace(index + 2);
+        if (!statement.startsWith("nrhint", index)) {
+            return null;
+        }
+        index = scanner.skipWhitespace(index + 6);
+        if (scanner.charAt(index) != ':') {
+            return null;
+        }
+        int modelStart = scanner.skipWhitespace(index + 1);
+        int modelEnd = statement.indexOf('*', modelStart);
+        if (modelEnd < 0 || scanner.charAt(modelEnd + 1) != '/') {
+            return null;
+        }
+        int operationStart = scanner.skipWhitespace(modelEnd + 2);
+        int operationEnd = operationStart;
+        while (operationEnd < scanner.length && !isWhitespace(statement.charAt(operationEnd))) {
+            operationEnd++;
+        }
+
+        String model = statement.substring(modelStart, modelEnd).trim().toLowerCase();
+        String operation = statement.substring(operationStart, operationEnd).toLowerCase();
+        if (!KNOWN_OPERATIONS.contains(operation)) {
+            operation = UNKNOWN_OPERATION;
+        }
+        return new ParsedDatabaseStatement(model, operation, true);
+    }
+
+    ParsedDatabaseStatement parseStatement(String statement) {
+        try {
+            Scanner scanner = new Scanner(removeComments(statement));
+            ParsedDatabaseStatement parsedStatement = parse(scanner);
+            if (parsedStatement != null) {
+                return parsedStatement;
+            }
+            Agent.LOG.log(Level.FINE, "Returning UNPARSEABLE_STATEMENT for statement: {0}", statement);
+            return UNPARSEABLE_STATEMENT;
+        } catch (Throwable t) {
+            Agent.LOG.fine(MessageFormat.format("Unable to parse sql \"{0}\" - {1}", statement, t.toString()));
+            Agent.LOG.log(Level.FINER, "SQL parsing error", t);
+            Agent.LOG.log(Level.FINE, t, "Returning UNPARSEABLE_STATEMENT for statement: {0}", statement);
+            return UNPARSEABLE_STATEMENT;
+        }
+    }
+
+    private static ParsedDatabaseStatement parse(Scanner scanner) {
+        // the ordering of these rules is the ordering of the statement factories and is just as important
+        int start = scanner.skipWhitespace(0);
+        ParsedDatabaseStatement parsed;
+        if (scanner.startsWith(start, "select") && (parsed = parseSelect(scanner, start)) != null) {
+            return parsed;
+        }
+        if ((parsed = parseShow(scanner, start)) != null) {
+            return parsed;
+        }
+        if ((parsed = parseInsert(scanner, start)) != null) {
+            return parsed;
+        }
+        if ((parsed = parseUpdate(scanner, start)) != null) {
+            return parsed;
+        }
+        if ((parsed = parseDelete(scanner, start)) != null) {
+            return parsed;
+        }
+        if ((parsed = parseWith(scanner, start)) != null) {
+            return parsed;
+        }
+        if (isDdl(scanner, start, "create", "procedure")) {
+            return new ParsedDatabaseStatement("Procedure", "create", false);
+        }
+        if (scanner.containsKeyword("select")) {
+            return scanner.containsSpacedKeyword("from") ? INNER_SELECT_STATEMENT : VARIABLE_SELECT_STATEMENT;
+        }
+        if (isDdl(scanner, start, "drop", "procedure")) {
+            return new ParsedDatabaseStatement("Procedure", "drop", false);
+        }
+        if (isDdl(scanner, start, "create", "table")) {
+            return new ParsedDatabaseStatement("Table", "create", false);
+        }
+        if (isDdl(scanner, start, "drop", "table")) {
+            return new ParsedDatabaseStatement("Table", "drop", false);
+        }
+        if ((parsed = parseAlter(scanner, start)) != null) {
+            return parsed;
+        }
+        if ((parsed = parseCall(scanner)) != null) {
+            return parsed;
+        }
+        if ((parsed = parseExec(scanner)) != null) {
+            return parsed;
+        }
+        return parseSet(scanner, start);
+    }
+
+    /**
+     * select ... from table, descending into {@code from (select ...)} sub-selects.
+     */
+    private static ParsedDatabaseStatement parseSelect(Scanner scanner, int start) {
+        int select = start;
+        while (true) {
+            int from = select + 6;
+            int innerSelect = -1;
+            for (; from < scanner.length; from++) {
+                if (scanner.isFrom(from)) {
+                    int paren = scanner.skipWhitespace(from + 5);
+                    if (scanner.charAt(paren) == '(') {
+                        int candidate = scanner.skipWhitespace(paren + 1);
+                        if (scanner.startsWith(candidate, "select")) {
+                            innerSelect = candidate;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (innerSelect < 0) {
+                break;
+            }
+            select = innerSelect;
+        }
+
+        for (int from = select + 6; from < scanner.length; from++) {
+            if (scanner.isFrom(from) && (isWhitespace(scanner.charAt(from + 5)) || scanner.charAt(from + 5) == '[')) {
+                int modelStart = from + 5;
+                while (modelStart < scanner.length
+                        && (isWhitespace(scanner.charAt(modelStart)) || scanner.charAt(modelStart) == '[')) {
+                    modelStart++;
+                }
+                int modelEnd = scanner.scanUntil(modelStart, "],)(;");
+                return createStatement(SELECT_OPERATION, scanner.substring(modelStart, modelEnd), true);
+            }
+        }
+        return null;
+    }
+
+    private static ParsedDatabaseStatement parseShow(Scanner scanner, int start) {
+        int model = scanner.skipWhitespaceAfter(scanner.keywordEnd(start, "show"));
+        if (model < 0) {
+            return null;
+        }
+        return createStatement("show", scanner.substring(model, scanner.length), false);
+    }
+
+    /**
+     * insert [ignore] [into] table
+     */
+    private static ParsedDatabaseStatement parseInsert(Scanner scanner, int start) {
+        if (!scanner.startsWith(start, "insert")) {
+            return null;
+        }
+        int afterInsert = start + 6;
+        int model = -1;
+        int ignoreEnd = scanner.spacedKeywordEnd(afterInsert, "ignore");
+        if (ignoreEnd >= 0) {
+            model = scanner.skipWhitespaceAfter(scanner.spacedKeywordEnd(ignoreEnd, "into"));
+            if (model < 0) {
+                model = scanner.skipWhitespaceAfter(ignoreEnd);
+            }
+        }
+        if (model < 0) {
+            model = scanner.skipWhitespaceAfter(scanner.spacedKeywordEnd(afterInsert, "into"));
+        }
+        if (model < 0) {
+            model = scanner.skipWhitespaceAfter(afterInsert);
+        }
+        if (model < 0) {
+            return null;
+        }
+        return createStatement(INSERT_OPERATION, scanner.substring(model, scanner.scanUntil(model, "(,;")), true);
+    }
+
+    private static ParsedDatabaseStatement parseUpdate(Scanner scanner, int start) {
+        int model = scanner.skipWhitespaceAfter(scanner.keywordEnd(start, "update"));
+        if (model < 0) {
+            return null;
+        }
+        return createStatement("update", scanner.substring(model, scanner.scanUntil(model, ",;")), true);
+    }
+
+    /**
+     * delete [anything] from table
+     */
+    private static ParsedDatabaseStatement parseDelete(Scanner scanner, int start) {
+        if (!scanner.startsWith(start, "delete")) {
+            return null;
+        }
+        for (int from = start + 6; from < scanner.length; from++) {
+            if (scanner.isFrom(from) && isWhitespace(scanner.charAt(from + 5))) {
+                int model = scanner.skipWhitespace(from + 5);
+                return createStatement("delete", scanner.substring(model, scanner.scanUntil(model, ",(;")), true);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * with [recursive] name as (...)
+     */
+    private static ParsedDatabaseStatement parseWith(Scanner scanner, int start) {
+        int model = scanner.skipWhitespaceAfter(scanner.keywordEnd(start, "with"));
+        if (model < 0) {
+            return null;
+        }
+        int recursive = scanner.skipWhitespaceAfter(scanner.keywordEnd(model, "recursive"));
+        if (recursive >= 0) {
+            model = recursive;
+        }
+        return createStatement("with", scanner.substring(model, scanner.scanUntil(model, ",(;")), true);
+    }
+
+    private static boolean isDdl(Scanner scanner, int start, String operation, String type) {
+        int afterOperation = scanner.skipWhitespaceAfter(scanner.keywordEnd(start, operation));
+        return afterOperation >= 0 && scanner.startsWith(afterOperation, type);
+    }
+
+    private static ParsedDatabaseStatement parseAlter(Scanner scanner, int start) {
+        int model = scanner.skipWhitespaceAfter(scanner.keywordEnd(start, "alter"));
+        if (model < 0) {
+            return null;
+        }
+        return createStatement("alter", scanner.substring(model, scanner.scanUntil(model, "")), false);
+    }
+
+    /**
+     * The last {@code call procedure} in the statement, to handle {@code ? = call procedure(?)}.
+     */
+    private static ParsedDatabaseStatement parseCall(Scanner scanner) {
+        for (int call = scanner.length - 4; call >= 0; call--) {
+            int model = scanner.skipWhitespaceAfter(scanner.keywordEnd(call, "call"));
+            if (model >= 0) {
+                return createStatement("call", scanner.substring(model, scanner.scanUntil(model, "(,")), true);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The last {@code exec procedure} or {@code execute procedure} in the statement. When every candidate is followed
+     * by an assignment, as in {@code exec @result = procedure}, the procedure is the value after the {@code =}.
+     */
+    private static ParsedDatabaseStatement parseExec(Scanner scanner) {
+        for (int exec = scanner.length - 4; exec >= 0; exec--) {
+            if (scanner.startsWith(exec, "exec")) {
+                String model = execProcedure(scanner, exec + 4);
+                if (model == null && scanner.startsWith(exec, "execute")) {
+                    model = execProcedure(scanner, exec + 7);
+                }
+                if (model != null) {
+                    return createStatement("exec", model, true);
+                }
+            }
+        }
+
+        int lastEquals = scanner.lastIndexOf('=');
+        for (int exec = scanner.length - 4; exec >= 0; exec--) {
+            if (scanner.startsWith(exec, "exec")) {
+                String model = execAssignedProcedure(scanner, exec + 4, lastEquals);
+                if (model == null && scanner.startsWith(exec, "execute")) {
+                    model = execAssignedProcedure(scanner, exec + 7, lastEquals);
+                }
+                if (model != null) {
+                    return createStatement("exec", model, true);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the procedure named after an exec keyword ending at the index, the empty string if the keyword is
+     * followed by something the parser should give up on, or null if the procedure is assigned to a variable
+     */
+    private static String execProcedure(Scanner scanner, int afterExec) {
+        int model = scanner.skipWhitespaceAfter(afterExec);
+        if (model < 0) {
+            return null;
+        }
+        boolean as = scanner.startsWith(model, "as") && isWhitespace(scanner.charAt(model + 2));
+        if (!as) {
+            int modelEnd = scanner.scanUntil(model, "(,=;");
+            if (scanner.charAt(modelEnd) == ';') {
+                return scanner.substring(model, modelEnd);
+            }
+            int next = scanner.skipWhitespace(modelEnd);
+            if (next == scanner.length || scanner.charAt(next) != '=') {
+                return scanner.substring(model, modelEnd);
+            }
+        }
+        if (model - afterExec > 1 && (model == scanner.length || scanner.charAt(model) != '=')) {
+            return "";
+        }
+        return null;
+    }
+
+    /**
+     * @return the value assigned by the first {@code =} following an exec keyword ending at the index, or null
+     */
+    private static String execAssignedProcedure(Scanner scanner, int afterExec, int lastEquals) {
+        int variable = scanner.skipWhitespaceAfter(afterExec);
+        if (variable < 0) {
+            return null;
+        }
+        int variableEnd = variable;
+        while (variableEnd < scanner.length && !isWhitespace(scanner.charAt(variableEnd))
+                && scanner.charAt(variableEnd) != '(' && scanner.charAt(variableEnd) != ',') {
+            variableEnd++;
+        }
+        int equals;
+        if (lastEquals >= variableEnd) {
+            equals = scanner.indexOf('=', variableEnd);
+        } else if (lastEquals >= variable) {
+            equals = lastEquals;
+        } else {
+            return null;
+        }
+        int model = equals + 1;
+        if (isWhitespace(scanner.charAt(model))) {
+            model++;
+        }
+        return scanner.substring(model, scanner.scanUntil(model, ""));
+    }
+
+    /**
+     * set name = value, or set name as value
+     */
+    private static ParsedDatabaseStatement parseSet(Scanner scanner, int start) {
+        int model = scanner.skipWhitespaceAfter(scanner.keywordEnd(start, "set"));
+        if (model < 0) {
+            return null;
+        }
+        for (int end = scanner.length - 1; end >= model; end--) {
+            if (scanner.charAt(end) == '=' || scanner.startsWith(end, "as")) {
+                return createStatement("set", scanner.substring(model, end), false);
+            }
+        }
+        return null;
+    }
+
+    private static ParsedDatabaseStatement createStatement(String operation, String model, boolean generateMetric) {
+        model = model.trim();
+        if (model.length() == 0) {
+            Agent.LOG.log(Level.FINE, "Parsed an empty model name for {0} statement", operation);
+            return null;
+        }
+        model = Strings.unquoteDatabaseName(model);
+        // remove brackets from metric name because they are reserved for units suffix
+        model = Strings.removeBrackets(model);
+        // if we aren't generating a metric, don't bother to validate the model name
+        if (generateMetric && !isValidName(model)) {
+            Agent.LOG.log(Level.FINE, "Parsed an invalid model name {0} for {1} statement", model, operation);
+            model = PARSE_ERROR_MODEL;
+        }
+        return new ParsedDatabaseStatement(model.toLowerCase(), operation, generateMetric);
+    }
+
+    /**
+     * Same as {@link DefaultDatabaseStatementParser#isValidName(String)}.
+     */
+    static boolean isValidName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.'
+                    || c == '$' || c == '_' || c == '@';
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes {@code /* ... *}{@code /} comments.
+     */
+    static String removeComments(String statement) {
+        int open = statement.indexOf("/*");
+        if (open < 0) {
+            return statement;
+        }
+        StringBuilder sb = new StringBuilder(statement.length());
+        int copied = 0;
+        while (open >= 0) {
+            int close = statement.indexOf("*/", open + 2);
+            if (close < 0) {
+                break;
+            }
+            sb.append(statement, copied, open);
+            copied = close + 2;
+            open = statement.indexOf("/*", copied);
+        }
+        sb.append(statement, copied, statement.length());
+        return sb.toString();
+    }
+
+    /**
+     * The whitespace characters matched by {@code \s}.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Character access to the statement that reads past either end as {@code 0}, which none of the rules match.
+     * Keywords are matched ignoring ASCII case only, like the patterns.
+     */
+    private static class Scanner {
+        private final String sql;
+        private final int length;
+
+        Scanner(String sql) {
+            this.sql = sql;
+            this.length = sql.length();
+        }
+
+        char charAt(int index) {
+            return index >= 0 && index < length ? sql.charAt(index) : 0;
+        }
+
+        String substring(int start, int end) {
+            return sql.substring(start, end);
+        }
+
+        int indexOf(char c, int from) {
+            return sql.indexOf(c, from);
+        }
+
+        int lastIndexOf(char c) {
+            return sql.lastIndexOf(c);
+        }
+
+        int skipWhitespace(int index) {
+            while (index < length && isWhitespace(sql.charAt(index))) {
+                index++;
+            }
+            return index;
+        }
+
+        /**
+         * @return the first index at or after start that is whitespace or one of the stop characters
+         */
+        int scanUntil(int start, String stopChars) {
+            int index = start;
+            while (index < length) {
+                char c = sql.charAt(index);
+                if (isWhitespace(c) || stopChars.indexOf(c) >= 0) {
+                    break;
+                }
+                index++;
+            }
+            return index;
+        }
+
+        boolean startsWith(int index, String keyword) {
+            if (index < 0 || index + keyword.length() > length) {
+                return false;
+            }
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = sql.charAt(index + i);
+                if (c != keyword.charAt(i) && (c | 0x20) != keyword.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the index after the keyword if it is at index, otherwise -1
+         */
+        int keywordEnd(int index, String keyword) {
+            return startsWith(index, keyword) ? index + keyword.length() : -1;
+        }
+
+        /**
+         * @return the index after the keyword if there is whitespace at index followed by the keyword, otherwise -1
+         */
+        int spacedKeywordEnd(int index, String keyword) {
+            if (index < 0 || !isWhitespace(charAt(index))) {
+                return -1;
+            }
+            return keywordEnd(skipWhitespace(index), keyword);
+        }
+
+        /**
+         * @return the index after the whitespace at index, or -1 if there is no whitespace at index
+         */
+        int skipWhitespaceAfter(int index) {
+            if (index < 0 || !isWhitespace(charAt(index))) {
+                return -1;
+            }
+            return skipWhitespace(index);
+        }
+
+        /**
+         * @return true if there is whitespace followed by {@code from} at index
+         */
+        boolean isFrom(int index) {
+            return isWhitespace(charAt(index)) && startsWith(index + 1, "from");
+        }
+
+        /**
+         * @return true if the keyword appears anywhere followed by whitespace
+         */
+        boolean containsKeyword(String keyword) {
+            for (int i = 0; i + keyword.length() < length; i++) {
+                if (startsWith(i, keyword) && isWhitespace(sql.charAt(i + keyword.length()))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the keyword appears anywhere preceded and followed by whitespace
+         */
+        boolean containsSpacedKeyword(String keyword) {
+            for (int i = 1; i + keyword.length() < length; i++) {
+                if (isWhitespace(sql.charAt(i - 1)) && startsWith(i, keyword)
+                        && isWhitespace(sql.charAt(i + keyword.length()))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
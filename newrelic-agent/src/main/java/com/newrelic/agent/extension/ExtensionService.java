@@ -32,6 +32,7 @@ import com.newrelic.agent.reinstrument.ReinstrumentUtils;
 import com.newrelic.agent.service.AbstractService;
 import com.newrelic.agent.service.Service;
 import com.newrelic.agent.service.ServiceFactory;
+import com.newrelic.agent.service.StartupProfiler;
 import com.newrelic.agent.stats.StatsEngine;
 
 import java.io.File;
@@ -102,10 +103,21 @@ public class ExtensionService extends AbstractService implements HarvestListener
             extensionParsers = new ExtensionParsers(constructs);
 
             try {
+                StartupProfiler.Phase phase = StartupProfiler.start("Extensions/BuiltIn");
                 initializeBuiltInExtensions();
+                phase.end();
+
+                phase = StartupProfiler.start("Extensions/Jars");
                 loadExtensionJars();
+                phase.end();
+
+                phase = StartupProfiler.start("Extensions/Custom");
                 reloadCustomExtensionsIfModified();
+                phase.end();
+
+                phase = StartupProfiler.start("Extensions/Weave");
                 reloadWeaveInstrumentationIfModified();
+                phase.end();
             } catch (NoSuchMethodError e) {
                 // smd: I was seeing an error through this path on tomcat 5 because of the xml libraries in
                 // common/endorsed
@@ -190,7 +190,11 @@ public class InstrumentationImpl implements Instrumentation {
                             || (TracerFlags.isAsync(flags) && txa.getTransaction() != null && !txa.isStarted())) {
                         result = new OtherRootTracer(txa, sig, invocationTarget, mnf);
                     } else {
-                        result = new DefaultTracer(txa, sig, invocationTarget, mnf, flags);
+                        // metrics-only tracers are reused when the transaction tracer is configured to pool them
+                        result = txa.startPooledTracer(sig, mnf, flags);
+                        if (result == null) {
+                            result = new DefaultTracer(txa, sig, invocationTarget, mnf, flags);
+                        }
                     }
                 } finally {
                     txa.unlockTracerStart();
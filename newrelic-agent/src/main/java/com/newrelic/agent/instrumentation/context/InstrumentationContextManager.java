@@ -20,6 +20,7 @@ import com.newrelic.agent.instrumentation.weaver.ClassLoaderClassTransformer;
 import com.newrelic.agent.instrumentation.weaver.ClassWeaverService;
 import com.newrelic.agent.instrumentation.webservices.WebServiceVisitor;
 import com.newrelic.agent.service.ServiceFactory;
+import com.newrelic.agent.service.StartupProfiler;
 import com.newrelic.agent.servlet.ServletAnnotationVisitor;
 import com.newrelic.weave.utils.WeaveUtils;
 import org.objectweb.asm.ClassReader;
@@ -128,10 +129,14 @@ public class InstrumentationContextManager {
 
     public static InstrumentationContextManager create(final ClassLoaderClassTransformer classLoaderClassTransformer,
             final InstrumentationProxy instrumentation, final boolean bootstrapClassloaderEnabled) throws Exception {
+        StartupProfiler.Phase phase = StartupProfiler.start("Instrumentation/CreateContextManager");
         final InstrumentationContextManager manager = new InstrumentationContextManager(instrumentation);
+        phase.end();
 
         final TraceClassTransformer traceTransformer = new TraceClassTransformer();
+        phase = StartupProfiler.start("Instrumentation/RegisterWeavePackages");
         manager.classWeaverService.registerInstrumentation();
+        phase.end();
         manager.addContextClassTransformer(manager.classWeaverService, manager.classWeaverService);
         AgentConfig agentConfig = ServiceFactory.getConfigService().getDefaultAgentConfig();
         final boolean defaultMethodTracingEnabled = agentConfig.getClassTransformerConfig()
@@ -150,7 +155,9 @@ public class InstrumentationContextManager {
         // Remove the temporary transformer we applied during startup
         instrumentation.removeTransformer(classLoaderClassTransformer);
 
+        phase = StartupProfiler.start("Instrumentation/RetransformLoadedClasses");
         manager.classWeaverService.createRetransformRunnable(instrumentation.getAllLoadedClasses()).run();
+        phase.end();
         transformer.setInitialized(true);
 
         return manager;
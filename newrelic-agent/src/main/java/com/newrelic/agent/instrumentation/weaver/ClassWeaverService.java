@@ -26,6 +26,7 @@ import com.newrelic.agent.instrumentation.weaver.preprocessors.AgentPostprocesso
 import com.newrelic.agent.instrumentation.weaver.preprocessors.AgentPreprocessors;
 import com.newrelic.agent.instrumentation.weaver.preprocessors.TracedWeaveInstrumentationTracker;
 import com.newrelic.agent.service.ServiceFactory;
+import com.newrelic.agent.service.StartupProfiler;
 import com.newrelic.agent.stats.StatsWorks;
 import com.newrelic.api.agent.weaver.WeaveIntoAllMethods;
 import com.newrelic.api.agent.weaver.internal.WeavePackageType;
@@ -40,6 +41,7 @@ import com.newrelic.weave.violation.WeaveViolation;
 import com.newrelic.weave.weavepackage.CachedWeavePackage;
 import com.newrelic.weave.weavepackage.ClassWeavedListener;
 import com.newrelic.weave.weavepackage.ExtensionClassTemplate;
+import com.newrelic.weave.weavepackage.NegativeMatchCache;
 import com.newrelic.weave.weavepackage.NewClassAppender;
 import com.newrelic.weave.weavepackage.PackageWeaveResult;
 import com.newrelic.weave.weavepackage.WeavePackage;
@@ -87,6 +89,10 @@ public class ClassWeaverService implements ClassMatchVisitorFactory, ContextClas
      * Determines how many threads to run in parallel when loading instrumentation packages
      */
     private static final int PARTITIONS = 8;
+    /**
+     * Upper bound on the number of classes kept in the persisted negative match cache
+     */
+    private static final int MAX_NEGATIVE_MATCH_CACHE_ENTRIES = 250000;
     private static ClassNode EXTENSION_TEMPLATE;
 
     static {
@@ -132,8 +138,64 @@ public class ClassWeaverService implements ClassMatchVisitorFactory, ContextClas
      * present in the extension directory.
      */
     public void registerInstrumentation() {
+        StartupProfiler.Phase phase = StartupProfiler.start("Weaver/InternalPackages");
         loadInternalWeavePackages();
+        phase.end();
+
+        phase = StartupProfiler.start("Weaver/ExternalPackages");
         loadExternalWeavePackages(ServiceFactory.getExtensionService().getWeaveExtensions());
+        phase.end();
+
+        phase = StartupProfiler.start("Weaver/NegativeMatchCache");
+        loadNegativeMatchCache();
+        phase.end();
+    }
+
+    /**
+     * Read the classes that failed the weave pre-match in a previous JVM and write them back, along with the ones found
+     * by this JVM, when it exits. Must run after the packages are registered since the cache is keyed on them.
+     */
+    private void loadNegativeMatchCache() {
+        ClassTransformerConfig config = ServiceFactory.getConfigService().getDefaultAgentConfig().getClassTransformerConfig();
+        if (!config.persistNegativeMatchCache() || !config.preMatchWeaveMethods()) {
+            return;
+        }
+
+        File directory;
+        File agentTempDir = com.newrelic.bootstrap.BootstrapLoader.getTempDir();
+        if (config.getNegativeMatchCacheDirectory() != null) {
+            directory = new File(config.getNegativeMatchCacheDirectory());
+        } else if (agentTempDir != null) {
+            directory = agentTempDir;
+        } else {
+            directory = new File(System.getProperty("java.io.tmpdir"));
+        }
+        if (!directory.isDirectory()) {
+            LOG.log(Level.WARNING, "Negative match cache directory {0} does not exist", directory);
+            return;
+        }
+
+        // one file per application so JVMs of different applications sharing a directory don't overwrite each other
+        String application = System.getProperty("user.dir") + File.pathSeparator + System.getProperty("java.class.path");
+        File cacheFile = new File(directory, "newrelic-negative-match-cache-" + Integer.toHexString(application.hashCode()) + ".gz");
+        String agentKey = Agent.getVersion() + '|' + System.getProperty("java.vm.name") + '|' + System.getProperty("java.version");
+
+        final NegativeMatchCache negativeMatchCache = new NegativeMatchCache(cacheFile, agentKey, MAX_NEGATIVE_MATCH_CACHE_ENTRIES);
+        weavePackageManager.setNegativeMatchCache(negativeMatchCache);
+        LOG.log(Level.FINE, "Loaded negative match cache {0}", negativeMatchCache);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    negativeMatchCache.save();
+                    LOG.log(Level.FINE, "Saved negative match cache {0}. {1} classes skipped the pre-match.",
+                            negativeMatchCache, negativeMatchCache.getHitCount());
+                } catch (IOException e) {
+                    LOG.log(Level.FINE, e, "Unable to save negative match cache {0}", negativeMatchCache);
+                }
+            }
+        }, "New Relic Negative Match Cache Writer"));
     }
 
     public Runnable createRetransformRunnable(Class<?>[] loadedClasses) {
@@ -540,12 +602,20 @@ public class ClassWeaverService implements ClassMatchVisitorFactory, ContextClas
         };
         try {
             return weavePackageManager.weave(loader, getClassCache(loader), className, classfileBuffer,
-                    classWeavedCallback);
+                    classWeavedCallback, getCodeSourceLocation(protectionDomain));
         } catch (IOException ioe) {
             throw new RuntimeException(ioe);
         }
     }
 
+    private static String getCodeSourceLocation(ProtectionDomain protectionDomain) {
+        if (protectionDomain == null || protectionDomain.getCodeSource() == null) {
+            return null;
+        }
+        URL location = protectionDomain.getCodeSource().getLocation();
+        return location == null ? null : location.toExternalForm();
+    }
+
     /**
      * For every tracer that originated from weaved code:
      * <ol>
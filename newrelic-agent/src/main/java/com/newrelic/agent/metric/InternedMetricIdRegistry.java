@@ -0,0 +1,165 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.metric;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps metric names to ids like {@link MetricIdRegistry}, but assigns its own ids. Metric name strings are interned into dense integer ids (0, 1,
+ * 2, ...) so stats engines can index their storage by id instead of hashing and comparing full metric names on every
+ * tracer exit and every merge. Ids are keyed by the metric name only, the scope of a {@link MetricName} is ignored.
+ *
+ * Once {@link MetricIdRegistry#METRIC_LIMIT} names are registered, {@link #intern(String)} returns {@link #NO_ID} and
+ * callers must fall back to keying by name. An id is never handed out twice, not even after {@link #clear()}, so an id
+ * that is still held somewhere can not come to mean a different metric. Callers that cache an id use
+ * {@link #intern(String, long)}, which tells them when the cached id is out of date.
+ *
+ * This class is thread-safe.
+ */
+public class InternedMetricIdRegistry {
+
+    public static final int NO_ID = -1;
+
+    /**
+     * The value to pass to {@link #intern(String, long)} when nothing is cached yet.
+     */
+    public static final long NO_HANDLE = -1L;
+
+    /**
+     * The registry shared by every id-keyed stats engine in the agent.
+     */
+    public static final InternedMetricIdRegistry INSTANCE = new InternedMetricIdRegistry();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int limit;
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    private final Object lock = new Object();
+    private int nextId;
+    private volatile int size;
+    // changes whenever a name stops mapping to the id it had, so cached ids can be checked with one read
+    private volatile int epoch;
+
+    public InternedMetricIdRegistry() {
+        this(MetricIdRegistry.METRIC_LIMIT);
+    }
+
+    public InternedMetricIdRegistry(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Returns the id for the metric name, assigning the next id if the name has not been seen before.
+     *
+     * @return the id, or {@link #NO_ID} if the registry is full
+     */
+    public int intern(String metricName) {
+        Integer id = ids.get(metricName);
+        if (id != null) {
+            return id;
+        }
+        synchronized (lock) {
+            id = ids.get(metricName);
+            if (id != null) {
+                return id;
+            }
+            if (size >= limit) {
+                return NO_ID;
+            }
+            int newId = nextId++;
+            ids.put(metricName, newId);
+            size++;
+            return newId;
+        }
+    }
+
+    /**
+     * Returns a handle for the id of the metric name. A caller that holds on to a metric name can keep the handle and
+     * pass it back in, and as long as the name still maps to the same id the handle is returned without a lookup.
+     *
+     * @param cachedHandle the handle returned by the last call for this metric name, or {@link #NO_HANDLE}
+     * @return the handle, use {@link #toId(long)} to get the id out of it
+     */
+    public long intern(String metricName, long cachedHandle) {
+        int currentEpoch = epoch;
+        if (cachedHandle != NO_HANDLE && (int) (cachedHandle >>> 32) == currentEpoch) {
+            return cachedHandle;
+        }
+        return ((long) currentEpoch << 32) | (intern(metricName) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the id in a handle returned by {@link #intern(String, long)}, or {@link #NO_ID}
+     */
+    public static int toId(long handle) {
+        return (int) handle;
+    }
+
+    /**
+     * @return a number that changes whenever a metric name stops mapping to the id it had, e.g. on {@link #clear()}
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the id for the metric name without interning it.
+     *
+     * @return the id, or {@link #NO_ID} if the name has not been interned
+     */
+    public int getId(String metricName) {
+        Integer id = ids.get(metricName);
+        return id == null ? NO_ID : id;
+    }
+
+    public Integer getMetricId(MetricName metricName) {
+        return ids.get(metricName.getName());
+    }
+
+    /**
+     * Maps the metric name to the given id. Like {@link MetricIdRegistry#setMetricId(MetricName, Integer)}, all
+     * mappings are cleared first if the registry is full. Ids assigned later by {@link #intern(String)} are always
+     * greater than this one.
+     */
+    public void setMetricId(MetricName metricName, Integer metricId) {
+        synchronized (lock) {
+            String name = metricName.getName();
+            Integer previous = ids.get(name);
+            if (metricId.equals(previous)) {
+                return;
+            }
+            if (previous == null && size >= limit) {
+                clear();
+            }
+            ids.put(name, metricId);
+            if (previous == null) {
+                size++;
+            } else {
+                epoch++;
+            }
+            nextId = Math.max(nextId, metricId + 1);
+        }
+    }
+
+    /**
+     * Forgets every metric name. Names interned afterwards get new ids.
+     */
+    public void clear() {
+        synchronized (lock) {
+            ids.clear();
+            size = 0;
+            epoch++;
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+}
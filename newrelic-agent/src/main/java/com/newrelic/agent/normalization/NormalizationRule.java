@@ -26,6 +26,10 @@ public class NormalizationRule {
     private static final String BACKREFERENCE_REPLACEMENT = "\\$$1"; // replace \1 with $1, \2 with $2 etc.
 
     private final Pattern pattern;
+    /**
+     * Literal text every match has to start with, or null if the expression does not start with one.
+     */
+    private final String literalPrefix;
     private final boolean ignore;
     private final boolean terminateChain;
     private final int order;
@@ -42,6 +46,7 @@ public class NormalizationRule {
         this.eachSegment = eachSegment;
         this.replaceAll = replaceAll;
         this.pattern = Pattern.compile(matchExp, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+        this.literalPrefix = getLiteralPrefix(matchExp);
 
         // replace back references (\1 etc) in the replacement pattern with Java-style
         // back references ($1 etc).
@@ -91,6 +96,64 @@ public class NormalizationRule {
         return pattern.pattern();
     }
 
+    String getLiteralPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * Finds the literal text at the start of an expression anchored with ^, e.g. "WebTransaction/Uri/" for
+     * "^(WebTransaction/Uri/)[0-9]+$". Names that do not start with it can be rejected without running the expression.
+     * Expressions with alternatives are not examined, and groups are only looked into when none of them is optional.
+     *
+     * @return the prefix, or null if there is none
+     */
+    static String getLiteralPrefix(String matchExp) {
+        if (!matchExp.startsWith("^") || matchExp.indexOf('|') >= 0) {
+            return null;
+        }
+        boolean optionalGroups = matchExp.contains(")?") || matchExp.contains(")*") || matchExp.contains("){");
+        StringBuilder prefix = new StringBuilder();
+        int i = 1;
+        while (i < matchExp.length()) {
+            char c = matchExp.charAt(i);
+            int next = i + 1;
+            if (c == '(' && !optionalGroups && !matchExp.startsWith("(?", i)) {
+                // a capturing group does not consume anything itself
+                i = next;
+                continue;
+            }
+            if (c == '\\') {
+                if (next >= matchExp.length() || Character.isLetterOrDigit(matchExp.charAt(next))) {
+                    // a character class, back reference or quote
+                    break;
+                }
+                c = matchExp.charAt(next);
+                next++;
+            } else if ("[](){}.*+?^$".indexOf(c) >= 0) {
+                break;
+            }
+            if (next < matchExp.length() && "?*{".indexOf(matchExp.charAt(next)) >= 0) {
+                // the character is optional
+                break;
+            }
+            prefix.append(c);
+            if (next < matchExp.length() && matchExp.charAt(next) == '+') {
+                break;
+            }
+            i = next;
+        }
+        return prefix.length() == 0 ? null : prefix.toString();
+    }
+
+    private Matcher find(String input) {
+        // the expression is case insensitive
+        if (literalPrefix != null && !input.regionMatches(true, 0, literalPrefix, 0, literalPrefix.length())) {
+            return null;
+        }
+        Matcher matcher = pattern.matcher(input);
+        return matcher.find() ? matcher : null;
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format(
@@ -120,8 +183,7 @@ public class NormalizationRule {
                 if (segment == null || segment.length() == 0) {
                     continue;
                 }
-                Matcher matcher = pattern.matcher(segment);
-                if (matcher.find()) {
+                if (find(segment) != null) {
                     return RuleResult.getIgnoreMatch();
                 }
             }
@@ -130,8 +192,7 @@ public class NormalizationRule {
         }
 
         private RuleResult forEntireUrl(String url) {
-            Matcher matcher = pattern.matcher(url);
-            return matcher.find() ? RuleResult.getIgnoreMatch() : RuleResult.getNoMatch();
+            return find(url) != null ? RuleResult.getIgnoreMatch() : RuleResult.getNoMatch();
         }
     }
 
@@ -174,8 +235,8 @@ public class NormalizationRule {
         }
 
         private RuleResult forEntireUrl(String url) {
-            Matcher matcher = pattern.matcher(url);
-            if (matcher.find()) {
+            Matcher matcher = find(url);
+            if (matcher != null) {
                 String replacement;
                 if (replaceRegex == null || replaceRegex.length() == 0) {
                     replacement = null;
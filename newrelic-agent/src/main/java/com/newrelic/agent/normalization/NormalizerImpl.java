@@ -10,6 +10,8 @@ package com.newrelic.agent.normalization;
 import java.text.MessageFormat;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 
 import com.newrelic.agent.Agent;
@@ -17,12 +19,22 @@ import com.newrelic.agent.Agent;
 /**
  * A class for applying renaming rules.
  * 
+ * The outcome for recently normalized names is remembered, so a name that is seen again is not run through the rules
+ * again. The rules never change for an instance, when new rules are received a new normalizer replaces this one.
+ * 
  * This class is thread-safe.
  */
 public class NormalizerImpl implements Normalizer {
 
+    static final int MAX_MEMO_SIZE = 1000;
+
     private final List<NormalizationRule> rules;
     private final String appName;
+    /**
+     * Name to outcome: no match if the name is unchanged, ignore if it was ignored, otherwise a match with the new name.
+     * It is cleared when it fills up, so names with unbounded cardinality can not grow it without limit.
+     */
+    private final ConcurrentMap<String, RuleResult> memo = new ConcurrentHashMap<>();
 
     public NormalizerImpl(String appName, List<NormalizationRule> rules) {
         this.appName = appName;
@@ -35,7 +47,33 @@ public class NormalizerImpl implements Normalizer {
         if (name == null) {
             return null;
         }
+        if (rules.isEmpty()) {
+            return name;
+        }
+
+        RuleResult result = memo.get(name);
+        if (result == null) {
+            String normalizedName = applyRules(name);
+            if (normalizedName == null) {
+                result = RuleResult.getIgnoreMatch();
+            } else if (normalizedName.equals(name)) {
+                result = RuleResult.getNoMatch();
+            } else {
+                result = RuleResult.getMatch(normalizedName);
+            }
+            if (memo.size() >= MAX_MEMO_SIZE) {
+                memo.clear();
+            }
+            memo.put(name, result);
+        }
+
+        if (result.isIgnore()) {
+            return null;
+        }
+        return result.isMatch() ? result.getReplacement() : name;
+    }
 
+    private String applyRules(String name) {
         String normalizedName = name;
         for (NormalizationRule rule : rules) {
             RuleResult result = rule.normalize(normalizedName);
@@ -26,6 +26,7 @@ public class ProfilerParameters implements JSONStreamAware {
     private final String keyTransaction;
     private final String appName;
     private String profilerFormat;
+    private String sampler;
     private boolean profileInstrumentation = true;
     private Map<?,?> parameterMap = new HashMap<Object, Object>();
 
@@ -97,6 +98,18 @@ public class ProfilerParameters implements JSONStreamAware {
         return this;
     }
 
+    public String getSampler() {
+        return sampler;
+    }
+
+    /**
+     * Selects the source of thread samples for v2 profiles. See {@code thread_profiler.sampler}.
+     */
+    public ProfilerParameters setSampler(String sampler) {
+        this.sampler = sampler;
+        return this;
+    }
+
     public ProfilerParameters setParameterMap(Map<?, ?> parameterMap) {
         this.parameterMap = parameterMap;
         return this;
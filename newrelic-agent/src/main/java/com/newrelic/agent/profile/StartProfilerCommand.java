@@ -31,6 +31,7 @@ public class StartProfilerCommand extends AbstractCommand {
     private static final String PROFILE_AGENT_CODE = "profile_agent_code";
     private static final String PROFILER_FORMAT = "profiler_format";
     private static final String PROFILE_INSTRUMENTATION = "profile_instrumentation";
+    private static final String SAMPLER = "sampler";
 
     private static final boolean DEFAULT_ONLY_RUNNABLE_THREADS = false;
     private static final boolean DEFAULT_ONLY_REQUEST_THREADS = false;
@@ -85,6 +86,7 @@ public class StartProfilerCommand extends AbstractCommand {
         // Profiler v2 commands
         String profilerFormat = (String)arguments.remove(PROFILER_FORMAT);
         Boolean profileInstrumentation = (Boolean)arguments.remove(PROFILE_INSTRUMENTATION);
+        String sampler = (String)arguments.remove(SAMPLER);
 
         if (arguments.size() > 0) {
             String msg = MessageFormat.format("Unexpected arguments in start_profiler command: {0}",
@@ -93,7 +95,7 @@ public class StartProfilerCommand extends AbstractCommand {
         }
 
         return new ProfilerParameters(profileId, samplePeriodInMillis, durationInMillis, onlyRunnableThreads,
-                onlyRequestThreads, profileAgentCode, null, null).setProfilerFormat(profilerFormat).setProfileInstrumentation(profileInstrumentation).setParameterMap(argCopy);
+                onlyRequestThreads, profileAgentCode, null, null).setProfilerFormat(profilerFormat).setProfileInstrumentation(profileInstrumentation).setSampler(sampler).setParameterMap(argCopy);
     }
 
     private long getProfileId(Map<?, ?> arguments) throws CommandException {
@@ -0,0 +1,266 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.profile.v2;
+
+import com.newrelic.agent.Agent;
+import com.newrelic.agent.profile.ProfilerParameters;
+import com.newrelic.agent.profile.ThreadType;
+import com.newrelic.agent.service.ServiceFactory;
+import com.newrelic.agent.threads.BasicThreadInfo;
+import com.newrelic.agent.util.JfrStreams;
+
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Samples stack traces from the JFR {@code jdk.ExecutionSample} events of a {@code RecordingStream}. The JVM records
+ * these events from a signal handler without bringing the threads to a safepoint, unlike
+ * {@link java.lang.management.ThreadMXBean#getThreadInfo(long[], int)}, which stops every thread on every sample. The
+ * samples are also not biased towards the safepoint polls of the threads.
+ *
+ * Execution samples only cover threads running Java code, so they are all runnable. Unless the profile is limited to
+ * runnable threads, the {@code jdk.NativeMethodSample} events for threads in native methods are added as non-runnable.
+ *
+ * The stream is started with {@link JfrStreams}, which needs Java 14. Events are queued by the thread of the stream
+ * and added to the profiles by {@link #sampleStackTraces(List)}, so the profiles are still only used by the sampling
+ * thread. Until the stream is started, or if it cannot be started, thread info is sampled instead.
+ */
+public class JfrProfileSampler extends ProfileSampler {
+
+    static final String SAMPLER_NAME = "jfr";
+
+    private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+    private static final String NATIVE_METHOD_SAMPLE = "jdk.NativeMethodSample";
+    private static final String SAMPLED_THREAD = "sampledThread";
+
+    /**
+     * Samples queued past this limit are dropped. It is only reached if the samples are not being drained.
+     */
+    static final int MAX_PENDING_SAMPLES = 10000;
+
+    private final ProfilerParameters parameters;
+    private final Queue<Sample> pendingSamples = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile Object recordingStream;
+
+    JfrProfileSampler(ProfilerParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return true if this JVM has the JFR streaming API
+     */
+    static boolean isSupported() {
+        return JfrStreams.isSupported() && Events.INSTANCE != null;
+    }
+
+    @Override
+    public void start(long samplePeriodInMillis) {
+        if (!isSupported() || recordingStream != null) {
+            return;
+        }
+        try {
+            recordingStream = JfrStreams.startStream(getSubscriptions(Events.INSTANCE, samplePeriodInMillis,
+                    !parameters.isRunnablesOnly()));
+            Agent.LOG.fine(MessageFormat.format("Started JFR profile sampling with a period of {0} ms",
+                    samplePeriodInMillis));
+        } catch (Throwable t) {
+            // JFR may be disabled or not permitted. Sample thread info instead.
+            Agent.LOG.log(Level.INFO, "Unable to start JFR profile sampling. Thread info will be sampled instead: {0}",
+                    t.toString());
+        }
+    }
+
+    @Override
+    public void stop() {
+        Object stream = recordingStream;
+        recordingStream = null;
+        if (stream != null) {
+            try {
+                JfrStreams.close(stream);
+            } catch (Throwable t) {
+                Agent.LOG.log(Level.FINER, "Error closing the JFR recording stream", t);
+            }
+        }
+        pendingSamples.clear();
+        pendingCount.set(0);
+    }
+
+    boolean isStreaming() {
+        return recordingStream != null;
+    }
+
+    @Override
+    public void sampleStackTraces(List<IProfile> profiles) {
+        if (!isStreaming()) {
+            super.sampleStackTraces(profiles);
+            return;
+        }
+        if (profiles.isEmpty()) {
+            return;
+        }
+
+        List<Sample> samples = drainSamples();
+        Set<Long> agentThreadIds = ServiceFactory.getThreadService().getAgentThreadIds();
+        for (IProfile profile : profiles) {
+            profile.beforeSampling();
+            for (Sample sample : samples) {
+                if (sample.runnable || !profile.getProfilerParameters().isRunnablesOnly()) {
+                    ThreadType type = getThreadType(profile, agentThreadIds, sample.threadInfo.getId(),
+                            sample.stackTrace);
+                    profile.addStackTrace(sample.threadInfo, sample.stackTrace, sample.runnable, type);
+                }
+            }
+        }
+    }
+
+    private List<Sample> drainSamples() {
+        List<Sample> samples = new ArrayList<>();
+        for (Sample sample = pendingSamples.poll(); sample != null; sample = pendingSamples.poll()) {
+            pendingCount.decrementAndGet();
+            samples.add(sample);
+        }
+        return samples;
+    }
+
+    /**
+     * Queues a sample until the next call to {@link #sampleStackTraces(List)}.
+     *
+     * @param stackTrace the stack trace, innermost frame first
+     */
+    void addSample(long threadId, String threadName, StackTraceElement[] stackTrace, boolean runnable) {
+        if (pendingCount.incrementAndGet() > MAX_PENDING_SAMPLES) {
+            pendingCount.decrementAndGet();
+            return;
+        }
+        pendingSamples.add(new Sample(new BasicThreadInfo(threadId, threadName), stackTrace, runnable));
+    }
+
+    private static final class Sample {
+        final BasicThreadInfo threadInfo;
+        final StackTraceElement[] stackTrace;
+        final boolean runnable;
+
+        Sample(BasicThreadInfo threadInfo, StackTraceElement[] stackTrace, boolean runnable) {
+            this.threadInfo = threadInfo;
+            this.stackTrace = stackTrace;
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * @return the sample events to stream
+     */
+    private List<JfrStreams.Subscription> getSubscriptions(Events events, long samplePeriodInMillis,
+            boolean sampleNativeMethods) {
+        List<JfrStreams.Subscription> subscriptions = new ArrayList<>(2);
+        subscriptions.add(subscribe(events, EXECUTION_SAMPLE, true).withPeriod(samplePeriodInMillis));
+        if (sampleNativeMethods) {
+            subscriptions.add(subscribe(events, NATIVE_METHOD_SAMPLE, false).withPeriod(samplePeriodInMillis));
+        }
+        return subscriptions;
+    }
+
+    private JfrStreams.Subscription subscribe(final Events events, String eventName, final boolean runnable) {
+        return new JfrStreams.Subscription(eventName, new JfrStreams.EventHandler() {
+            @Override
+            public void onEvent(Object event) throws ReflectiveOperationException {
+                events.onEvent(JfrProfileSampler.this, event, runnable);
+            }
+        });
+    }
+
+    /**
+     * The reflective view of the JFR sample events.
+     */
+    private static final class Events {
+
+        /**
+         * Null if the JVM does not have the JFR consumer API.
+         */
+        static final Events INSTANCE = create();
+
+        private final Method getThread;
+        private final Method getJavaThreadId;
+        private final Method getJavaName;
+        private final Method getStackTrace;
+        private final Method getFrames;
+        private final Method isJavaFrame;
+        private final Method getLineNumber;
+        private final Method getMethod;
+        private final Method getMethodName;
+        private final Method getMethodType;
+        private final Method getClassName;
+
+        private Events() throws ReflectiveOperationException {
+            Class<?> recordedEventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+            Class<?> recordedThreadClass = Class.forName("jdk.jfr.consumer.RecordedThread");
+            Class<?> recordedStackTraceClass = Class.forName("jdk.jfr.consumer.RecordedStackTrace");
+            Class<?> recordedFrameClass = Class.forName("jdk.jfr.consumer.RecordedFrame");
+            Class<?> recordedMethodClass = Class.forName("jdk.jfr.consumer.RecordedMethod");
+            Class<?> recordedClassClass = Class.forName("jdk.jfr.consumer.RecordedClass");
+
+            getThread = recordedEventClass.getMethod("getThread", String.class);
+            getJavaThreadId = recordedThreadClass.getMethod("getJavaThreadId");
+            getJavaName = recordedThreadClass.getMethod("getJavaName");
+            getStackTrace = recordedEventClass.getMethod("getStackTrace");
+            getFrames = recordedStackTraceClass.getMethod("getFrames");
+            isJavaFrame = recordedFrameClass.getMethod("isJavaFrame");
+            getLineNumber = recordedFrameClass.getMethod("getLineNumber");
+            getMethod = recordedFrameClass.getMethod("getMethod");
+            getMethodName = recordedMethodClass.getMethod("getName");
+            getMethodType = recordedMethodClass.getMethod("getType");
+            getClassName = recordedClassClass.getMethod("getName");
+        }
+
+        private static Events create() {
+            try {
+                return new Events();
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        void onEvent(JfrProfileSampler sampler, Object event, boolean runnable) throws ReflectiveOperationException {
+            Object thread = getThread.invoke(event, SAMPLED_THREAD);
+            Object stackTrace = getStackTrace.invoke(event);
+            if (thread == null || stackTrace == null) {
+                return;
+            }
+            long threadId = (Long) getJavaThreadId.invoke(thread);
+            // skip the thread of the stream itself, as thread info sampling skips the sampling thread
+            if (threadId == Thread.currentThread().getId()) {
+                return;
+            }
+
+            List<?> frames = (List<?>) getFrames.invoke(stackTrace);
+            int depth = Math.min(frames.size(), MAX_STACK_DEPTH);
+            List<StackTraceElement> elements = new ArrayList<>(depth);
+            for (int i = 0; i < depth; i++) {
+                Object frame = frames.get(i);
+                if ((Boolean) isJavaFrame.invoke(frame)) {
+                    Object method = getMethod.invoke(frame);
+                    String className = (String) getClassName.invoke(getMethodType.invoke(method));
+                    String methodName = (String) getMethodName.invoke(method);
+                    int lineNumber = (Integer) getLineNumber.invoke(frame);
+                    elements.add(new StackTraceElement(className, methodName, null, lineNumber));
+                }
+            }
+
+            sampler.addSample(threadId, (String) getJavaName.invoke(thread),
+                    elements.toArray(new StackTraceElement[elements.size()]), runnable);
+        }
+    }
+}
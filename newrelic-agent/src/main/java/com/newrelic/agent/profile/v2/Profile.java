@@ -246,7 +246,7 @@ public class Profile implements IProfile {
      * @param limit the maximum number of segments to remove
      */
     private int trim(int limit, int stackCount) {
-        ProfileSegmentSort[] segments = getSortedSegments(stackCount);
+        List<ProfileSegmentSort> segments = getSortedSegments(stackCount);
         int count = 0;
         for (ProfileSegmentSort segment : segments) {
             if (count >= limit) {
@@ -259,30 +259,17 @@ public class Profile implements IProfile {
     }
 
     /**
-     * Get a sorted array of all segments in the profile.
+     * Get a sorted list of all segments in the profile.
      */
-    private ProfileSegmentSort[] getSortedSegments(int stackCount) {
-        ProfileSegmentSort[] segments = new ProfileSegmentSort[stackCount];
-        int index = 0;
+    private List<ProfileSegmentSort> getSortedSegments(int stackCount) {
+        List<ProfileSegmentSort> segments = new ArrayList<>(stackCount);
         for (ProfileTree profileTree : profileTrees.asMap().values()) {
-            for (ProfileSegment rootSegment : profileTree.getRootSegments()) {
-                index = addSegment(rootSegment, null, 1, segments, index);
-            }
+            profileTree.addTrimCandidates(segments);
         }
-        Arrays.sort(segments);
+        Collections.sort(segments);
         return segments;
     }
 
-    private int addSegment(ProfileSegment segment, ProfileSegment parent, int depth, ProfileSegmentSort[] segments,
-            int index) {
-        ProfileSegmentSort segSort = new ProfileSegmentSort(segment, parent, depth);
-        segments[index++] = segSort;
-        for (ProfileSegment child : segment.getChildren()) {
-            index = addSegment(child, segment, ++depth, segments, index);
-        }
-        return index;
-    }
-
     /**
      * Get the number of distinct method invocation nodes in the profile.
      */
@@ -420,7 +407,9 @@ public class Profile implements IProfile {
         addStackTrace(new BasicThreadInfo(threadInfo), threadInfo.getStackTrace(),  runnable, type);
     }
 
-    void addStackTrace(BasicThreadInfo threadInfo, StackTraceElement[] stackTrace, boolean runnable, ThreadType type) {
+    @Override
+    public void addStackTrace(BasicThreadInfo threadInfo, StackTraceElement[] stackTrace, boolean runnable,
+            ThreadType type) {
         if (stackTrace.length < 2) {
             return;
         }
@@ -436,15 +425,12 @@ public class Profile implements IProfile {
         } else {
             stackTraceList = Arrays.asList(stackTrace);
         }
-        List<StackTraceElement> result = new ArrayList<>(stackTraceList);
-
-        // the stack traces we get start with the leaves, not the roots. flip them
-        Collections.reverse(result);
 
         String normalizedThreadName = threadNameNormalizer.getNormalizedThreadName(threadInfo);
         ProfileTree profileTree = getProfileTree(normalizedThreadName);
         threadIdToProfileTrees.put(threadInfo.getId(), profileTree);
-        profileTree.addStackTrace(result, runnable);
+        // the stack traces we get start with the leaves, not the roots. the tree reads them backwards
+        profileTree.addStackTraceFromLeaf(stackTraceList, runnable);
     }
 
     /**
@@ -453,34 +439,32 @@ public class Profile implements IProfile {
      * 
      * Note: this class has a natural ordering that is inconsistent with equals.
      */
-    private static class ProfileSegmentSort implements Comparable<ProfileSegmentSort> {
+    static class ProfileSegmentSort implements Comparable<ProfileSegmentSort> {
 
-        private final ProfileSegment segment;
-        private final ProfileSegment parent;
+        private final ProfileTree tree;
+        private final int node;
+        private final int runnableCallCount;
         private final int depth;
 
-        private ProfileSegmentSort(ProfileSegment segment, ProfileSegment parent, int depth) {
+        ProfileSegmentSort(ProfileTree tree, int node, int runnableCallCount, int depth) {
             super();
-            this.segment = segment;
-            this.parent = parent;
+            this.tree = tree;
+            this.node = node;
+            this.runnableCallCount = runnableCallCount;
             this.depth = depth;
         }
 
         void remove() {
-            if (parent != null) {
-                parent.removeChild(segment.getMethod());
+            // root segments are never removed
+            if (depth > 1) {
+                tree.remove(node);
             }
         }
 
-        @Override
-        public String toString() {
-            return segment.toString();
-        }
-
         @Override
         public int compareTo(ProfileSegmentSort other) {
-            int thisCount = segment.getRunnableCallCount();
-            int otherCount = other.segment.getRunnableCallCount();
+            int thisCount = runnableCallCount;
+            int otherCount = other.runnableCallCount;
             if (thisCount == otherCount) {
                 return (depth > other.depth ? -1 : (depth == other.depth ? 0 : 1));
             }
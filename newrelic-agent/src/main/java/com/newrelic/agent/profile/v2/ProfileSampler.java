@@ -8,6 +8,7 @@
 package com.newrelic.agent.profile.v2;
 
 import com.newrelic.agent.Agent;
+import com.newrelic.agent.profile.ProfilerParameters;
 import com.newrelic.agent.profile.RunnableThreadRules;
 import com.newrelic.agent.profile.ThreadType;
 import com.newrelic.agent.service.ServiceFactory;
@@ -37,6 +38,36 @@ public class ProfileSampler {
     public ProfileSampler() {
     }
 
+    /**
+     * Creates the sampler selected by the parameters, or by {@code thread_profiler.sampler} if the parameters do not
+     * select one. The {@code jfr} sampler is only used on JVMs that can stream JFR events.
+     */
+    public static ProfileSampler create(ProfilerParameters parameters) {
+        String sampler = parameters.getSampler();
+        if (sampler == null) {
+            sampler = ServiceFactory.getConfigService().getDefaultAgentConfig().getThreadProfilerConfig().getSampler();
+        }
+        if (JfrProfileSampler.SAMPLER_NAME.equals(sampler)) {
+            if (JfrProfileSampler.isSupported()) {
+                return new JfrProfileSampler(parameters);
+            }
+            Agent.LOG.info("The jfr profile sampler requires Java 14 or later. Thread info will be sampled instead.");
+        }
+        return new ProfileSampler();
+    }
+
+    /**
+     * Called before the first sample of a session that samples more than once.
+     */
+    public void start(long samplePeriodInMillis) {
+    }
+
+    /**
+     * Called when the session stops sampling.
+     */
+    public void stop() {
+    }
+
     public void sampleStackTraces(List<IProfile> profiles) {
         if (profiles.isEmpty()) {
             return;
@@ -57,22 +88,26 @@ public class ProfileSampler {
             if (null != threadInfo) {
                 boolean isRunnable = runnableThreadRules.isRunnable(threadInfo);
                 if (isRunnable || !profiler.getProfilerParameters().isRunnablesOnly()) {
-                    ThreadType type;
-                    long threadId = threadInfo.getThreadId();
-                    if (agentThreadIds.contains(threadId)) {
-                        type = ThreadType.BasicThreadType.AGENT;
-                    } else if (profiler.getProfilerParameters().isProfileAgentThreads()
-                            && StackTraces.isInAgentInstrumentation(threadInfo.getStackTrace())) {
-                        type = ThreadType.BasicThreadType.AGENT_INSTRUMENTATION;
-                    } else {
-                        type = ThreadType.BasicThreadType.OTHER;
-                    }
+                    ThreadType type = getThreadType(profiler, agentThreadIds, threadInfo.getThreadId(),
+                            threadInfo.getStackTrace());
                     profiler.addStackTrace(threadInfo, isRunnable, type);
                 }
             }
         }
     }
 
+    ThreadType getThreadType(IProfile profiler, Set<Long> agentThreadIds, long threadId,
+            StackTraceElement[] stackTrace) {
+        if (agentThreadIds.contains(threadId)) {
+            return ThreadType.BasicThreadType.AGENT;
+        } else if (profiler.getProfilerParameters().isProfileAgentThreads()
+                && StackTraces.isInAgentInstrumentation(stackTrace)) {
+            return ThreadType.BasicThreadType.AGENT_INSTRUMENTATION;
+        } else {
+            return ThreadType.BasicThreadType.OTHER;
+        }
+    }
+
     private ThreadInfo[] getAllThreadInfos() {
         long[] threadIds = getAllThreadIds();
         if (threadIds == null || threadIds.length == 0) {
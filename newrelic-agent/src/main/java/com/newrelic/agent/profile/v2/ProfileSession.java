@@ -27,7 +27,7 @@ import java.util.logging.Level;
 
 public class ProfileSession {
 
-    private final ProfileSampler profileSampler = new ProfileSampler();
+    private final ProfileSampler profileSampler;
     private final IProfile profile;
     private final List<IProfile> profiles = new ArrayList<>();
     private final ProfilerService profilerService;
@@ -40,6 +40,7 @@ public class ProfileSession {
         this.sessionId = TransactionGuidFactory.generate16CharGuid();
         this.profilerService = profilerService;
         profile = createProfile(profilerParameters);
+        profileSampler = ProfileSampler.create(profilerParameters);
         profile.start();
         profiles.add(profile);
     }
@@ -63,6 +64,7 @@ public class ProfileSession {
     }
 
     private void startMultiSample(long samplePeriodInMillis, long durationInMillis) {
+        profileSampler.start(samplePeriodInMillis);
         ScheduledExecutorService scheduler = profilerService.getScheduledExecutorService();
         ScheduledFuture<?> handle = scheduler.scheduleWithFixedDelay(new Runnable() {
             @Override public void run() {
@@ -84,6 +86,7 @@ public class ProfileSession {
             @Override
             public void run() {
                 profileHandle.get().cancel(false);
+                profileSampler.stop();
                 if (!done.getAndSet(true)) {
                     report();
                 }
@@ -164,6 +167,7 @@ public class ProfileSession {
         profilerService.getScheduledExecutorService().schedule(new Runnable() {
             @Override
             public void run() {
+                profileSampler.stop();
                 if (shouldReport) {
                     report();
                 }
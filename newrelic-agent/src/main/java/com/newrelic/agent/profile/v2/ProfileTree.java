@@ -8,69 +8,184 @@
 package com.newrelic.agent.profile.v2;
 
 import com.google.common.collect.ImmutableMap;
+import org.json.simple.JSONStreamAware;
+import org.json.simple.JSONValue;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * This class holds thread sampling data for threads of a given thread grouping.
+ *
+ * Samples are converted to frame ids and merged into a {@link StackTrie}, and the tree is written to JSON directly
+ * from it. The {@link ProfileSegment} methods return copies of the data for inspection.
  */
-public class ProfileTree extends BaseTree<SimpleProfileSegment> {
+public class ProfileTree implements JSONStreamAware {
+
+    private static final int INITIAL_SAMPLE_CAPACITY = 64;
 
+    private final IProfile profile;
+    private final StackTrie trie = new StackTrie();
+    /**
+     * Holds the frame ids of the sample being added. Only used under the lock.
+     */
+    private int[] sample = new int[INITIAL_SAMPLE_CAPACITY];
     private long cpuTime;
     private final boolean reportCpuTime;
 
     public ProfileTree(IProfile profile, boolean reportCpuTime) {
-        super(profile);
+        this.profile = profile;
         this.reportCpuTime = reportCpuTime;
     }
 
     /**
-     * @param stackTraceElement
-     * @param parent
-     * @param runnable
-     * @return a ProfileSegment representing the stack trace element passed in
+     * @param stackTraceList the stack trace, outermost frame first
      */
-    private SimpleProfileSegment add(StackTraceElement stackTraceElement, SimpleProfileSegment parent, boolean runnable) {
-        ProfiledMethod method = profile.getProfiledMethodFactory().getProfiledMethod(stackTraceElement);
+    public synchronized void addStackTrace(List<StackTraceElement> stackTraceList, boolean runnable) {
+        ProfiledMethodFactory methodFactory = profile.getProfiledMethodFactory();
+        int[] frames = getSampleBuffer(stackTraceList.size());
+        int length = 0;
+        for (StackTraceElement methodCall : stackTraceList) {
+            int frameId = methodFactory.getFrameId(methodCall);
+            if (frameId != ProfiledMethodFactory.NO_FRAME) {
+                frames[length++] = frameId;
+            }
+        }
+        trie.add(frames, length, runnable);
+    }
 
-        if (method == null) {
-            return parent;
+    /**
+     * Adds a stack trace in the order the JVM returns it, which saves a copy of the stack trace to reverse it.
+     *
+     * @param stackTrace the stack trace, innermost frame first
+     */
+    synchronized void addStackTraceFromLeaf(List<StackTraceElement> stackTrace, boolean runnable) {
+        ProfiledMethodFactory methodFactory = profile.getProfiledMethodFactory();
+        int[] frames = getSampleBuffer(stackTrace.size());
+        int length = 0;
+        for (int i = stackTrace.size() - 1; i >= 0; i--) {
+            int frameId = methodFactory.getFrameId(stackTrace.get(i));
+            if (frameId != ProfiledMethodFactory.NO_FRAME) {
+                frames[length++] = frameId;
+            }
         }
+        trie.add(frames, length, runnable);
+    }
 
-        return add(method, parent, runnable);
+    private int[] getSampleBuffer(int length) {
+        if (sample.length < length) {
+            sample = new int[Math.max(length, sample.length * 2)];
+        }
+        return sample;
     }
-    
-    public void addStackTrace(
-            List<StackTraceElement> stackTraceList, 
-            boolean runnable) {
-        SimpleProfileSegment parent = null;
-        for (StackTraceElement methodCall : stackTraceList) {
-            parent = add(methodCall, parent, runnable);
+
+    /**
+     * Returns the number of distinct method invocation nodes in the tree.
+     */
+    public synchronized int getCallSiteCount() {
+        return trie.getNodeCount();
+    }
+
+    public synchronized int getRootCount() {
+        int count = 0;
+        for (int node = trie.getFirstChild(StackTrie.ROOT); node != StackTrie.NONE; node = trie.getNextSibling(node)) {
+            count++;
         }
+        return count;
     }
 
-    @Override
-    protected Map<String, Object> getExtraData() {
-        if (reportCpuTime) {
-            Map<String, Object> data = new HashMap<>();
-            data.put("cpu_time", cpuTime);
-            return data;
-        } else {
-            return ImmutableMap.of();
+    public synchronized int getMethodCount() {
+        BitSet frames = new BitSet();
+        addFrames(StackTrie.ROOT, frames);
+        return frames.cardinality();
+    }
+
+    private void addFrames(int parent, BitSet frames) {
+        for (int node = trie.getFirstChild(parent); node != StackTrie.NONE; node = trie.getNextSibling(node)) {
+            frames.set(trie.getFrame(node));
+            addFrames(node, frames);
+        }
+    }
+
+    /**
+     * Returns a copy of the root segments. Changes to the copy are not reflected in the tree.
+     */
+    public synchronized Collection<SimpleProfileSegment> getRootSegments() {
+        List<SimpleProfileSegment> roots = new ArrayList<>();
+        for (int node = trie.getFirstChild(StackTrie.ROOT); node != StackTrie.NONE; node = trie.getNextSibling(node)) {
+            roots.add(createSegment(node));
         }
+        return roots;
     }
-    
+
     // Package-private for testing
-    ProfileSegment getSegmentForMethod(StackTraceElement stackTraceElement) {
+    synchronized ProfileSegment getSegmentForMethod(StackTraceElement stackTraceElement) {
         ProfiledMethod method = profile.getProfiledMethodFactory().getProfiledMethod(stackTraceElement);
-
         if (method == null) {
             return null;
         }
 
-        return getSegment(method);
+        for (int node = trie.getFirstChild(StackTrie.ROOT); node != StackTrie.NONE; node = trie.getNextSibling(node)) {
+            if (method.equals(getMethod(node))) {
+                return createSegment(node);
+            }
+        }
+        return null;
+    }
+
+    private SimpleProfileSegment createSegment(int node) {
+        SimpleProfileSegment segment = SimpleProfileSegment.newProfileSegment(getMethod(node));
+        copyNode(node, segment);
+        return segment;
+    }
+
+    private void copyNode(int node, SimpleProfileSegment segment) {
+        segment.addCallCounts(trie.getRunnableCount(node), trie.getNonrunnableCount(node));
+        for (int child = trie.getFirstChild(node); child != StackTrie.NONE; child = trie.getNextSibling(child)) {
+            SimpleProfileSegment childSegment = segment.addChild(getMethod(child));
+            copyNode(child, childSegment);
+        }
+    }
+
+    private ProfiledMethod getMethod(int node) {
+        return profile.getProfiledMethodFactory().getFrame(trie.getFrame(node));
+    }
+
+    /**
+     * Adds every node of the tree to the list of segments that the profile may trim.
+     */
+    synchronized void addTrimCandidates(List<Profile.ProfileSegmentSort> segments) {
+        addTrimCandidates(StackTrie.ROOT, 1, segments);
+    }
+
+    private void addTrimCandidates(int parent, int depth, List<Profile.ProfileSegmentSort> segments) {
+        for (int node = trie.getFirstChild(parent); node != StackTrie.NONE; node = trie.getNextSibling(node)) {
+            segments.add(new Profile.ProfileSegmentSort(this, node, trie.getRunnableCount(node), depth));
+            addTrimCandidates(node, depth + 1, segments);
+        }
+    }
+
+    /**
+     * Removes a node and everything below it.
+     */
+    synchronized void remove(int node) {
+        trie.remove(node);
+    }
+
+    private Map<String, Object> getExtraData() {
+        if (reportCpuTime) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("cpu_time", cpuTime);
+            return data;
+        } else {
+            return ImmutableMap.of();
+        }
     }
 
     public void incrementCpuTime(long cpuTime) {
@@ -81,8 +196,35 @@ public class ProfileTree extends BaseTree<SimpleProfileSegment> {
         return cpuTime;
     }
 
+    /**
+     * Writes the extra data followed by the root segments. Each segment is written as its method id, its runnable and
+     * non-runnable call counts and a list of its child segments.
+     */
     @Override
-    protected SimpleProfileSegment createProfiledMethod(ProfiledMethod method) {
-        return SimpleProfileSegment.newProfileSegment(method);
+    public synchronized void writeJSONString(Writer out) throws IOException {
+        out.write('[');
+        JSONValue.writeJSONString(getExtraData(), out);
+        for (int node = trie.getFirstChild(StackTrie.ROOT); node != StackTrie.NONE; node = trie.getNextSibling(node)) {
+            out.write(',');
+            writeSegment(node, out);
+        }
+        out.write(']');
+    }
+
+    private void writeSegment(int node, Writer out) throws IOException {
+        out.write('[');
+        getMethod(node).writeJSONString(out);
+        out.write(',');
+        out.write(Integer.toString(trie.getRunnableCount(node)));
+        out.write(',');
+        out.write(Integer.toString(trie.getNonrunnableCount(node)));
+        out.write(",[");
+        for (int child = trie.getFirstChild(node); child != StackTrie.NONE; child = trie.getNextSibling(child)) {
+            if (child != trie.getFirstChild(node)) {
+                out.write(',');
+            }
+            writeSegment(child, out);
+        }
+        out.write("]]");
     }
 }
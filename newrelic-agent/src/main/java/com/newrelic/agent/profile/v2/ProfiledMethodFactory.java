@@ -13,6 +13,7 @@ import com.newrelic.agent.profile.method.MethodInfo;
 import com.newrelic.agent.profile.method.MethodInfoFactory;
 import com.newrelic.agent.tracers.ClassMethodSignature;
 import com.newrelic.agent.tracers.Tracer;
+import com.newrelic.agent.util.InsertOnlyArray;
 import org.json.simple.JSONStreamAware;
 import org.objectweb.asm.Type;
 
@@ -25,7 +26,10 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ProfiledMethodFactory {
-    
+
+    static final int NO_FRAME = -1;
+    private static final int INITIAL_FRAME_CAPACITY = 1024;
+
     /**
      * A map of stack trace elements to ProfiledMethods. This helps us create fewer {@link ProfiledMethod} instances and
      * allows us to use identity hashmaps.
@@ -40,6 +44,12 @@ public class ProfiledMethodFactory {
     private final IProfile profile;
     private final AtomicInteger nextMethodId = new AtomicInteger();
     private final ConcurrentMap<ClassMethodSignature, MethodInfo> methodInfos = new ConcurrentHashMap<>();
+    /**
+     * Stack trace elements to frame ids. A frame id is the index of the element's {@link ProfiledMethod} in
+     * {@link #frames}, so the profile trees can store samples as int arrays.
+     */
+    private final ConcurrentMap<StackTraceElement, Integer> frameIds = new ConcurrentHashMap<>();
+    private final InsertOnlyArray<ProfiledMethod> frames = new InsertOnlyArray<>(INITIAL_FRAME_CAPACITY);
 
     public ProfiledMethodFactory(IProfile profile) {
         this.profile = profile;
@@ -64,6 +74,35 @@ public class ProfiledMethodFactory {
         return method;
     }
     
+    /**
+     * Returns the frame id of a stack trace element. The same element always gets the same id.
+     * 
+     * @return the frame id, or {@link #NO_FRAME} if the element does not name a method
+     */
+    int getFrameId(StackTraceElement stackTraceElement) {
+        Integer id = frameIds.get(stackTraceElement);
+        if (id != null) {
+            return id;
+        }
+
+        ProfiledMethod method = getProfiledMethod(stackTraceElement);
+        if (method == null) {
+            return NO_FRAME;
+        }
+        synchronized (frames) {
+            id = frameIds.get(stackTraceElement);
+            if (id == null) {
+                id = frames.add(method);
+                frameIds.put(stackTraceElement, id);
+            }
+        }
+        return id;
+    }
+
+    ProfiledMethod getFrame(int frameId) {
+        return frames.get(frameId);
+    }
+
     @SuppressWarnings("unchecked")
     private ConcurrentMap<StackTraceElement, ProfiledMethod> getStackTraceMethods() {
         return (ConcurrentMap<StackTraceElement, ProfiledMethod>) profiledMethods;
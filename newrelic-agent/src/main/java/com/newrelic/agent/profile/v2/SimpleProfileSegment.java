@@ -75,6 +75,11 @@ public class SimpleProfileSegment extends ProfileSegment {
         }
     }
 
+    void addCallCounts(int runnableCount, int nonrunnableCount) {
+        runnableCallCount += runnableCount;
+        nonrunnableCallCount += nonrunnableCount;
+    }
+
     /**
      * Get the number of profile segments from this segment down
      * 
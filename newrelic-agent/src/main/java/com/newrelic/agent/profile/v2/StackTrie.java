@@ -0,0 +1,224 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.profile.v2;
+
+import java.util.Arrays;
+
+/**
+ * Merged stack samples stored in parallel int arrays. A node is an index into the arrays and holds a frame id (see
+ * {@link ProfiledMethodFactory#getFrameId(StackTraceElement)}), its call counts and links to its parent, first child
+ * and next sibling. Node 0 is an invisible root whose children are the outermost frames of the samples.
+ *
+ * Samples that share a path share its nodes, so the size of the trie grows with the number of distinct call sites
+ * rather than with the number of samples. Children are found through an open addressing table keyed by parent and
+ * frame.
+ *
+ * This class is not thread safe.
+ */
+final class StackTrie {
+
+    static final int ROOT = 0;
+    static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] frames;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] runnableCounts;
+    private int[] nonrunnableCounts;
+    /**
+     * Number of nodes ever added, including the root and removed nodes.
+     */
+    private int size;
+    /**
+     * Number of nodes that can be reached from the root, not including the root.
+     */
+    private int liveCount;
+
+    /**
+     * Node indexes plus one, so that zero marks an empty slot. The length is always a power of two.
+     */
+    private int[] table;
+
+    StackTrie() {
+        frames = new int[INITIAL_CAPACITY];
+        parents = new int[INITIAL_CAPACITY];
+        firstChildren = new int[INITIAL_CAPACITY];
+        nextSiblings = new int[INITIAL_CAPACITY];
+        runnableCounts = new int[INITIAL_CAPACITY];
+        nonrunnableCounts = new int[INITIAL_CAPACITY];
+        table = new int[INITIAL_CAPACITY * 2];
+
+        frames[ROOT] = NONE;
+        parents[ROOT] = NONE;
+        firstChildren[ROOT] = NONE;
+        nextSiblings[ROOT] = NONE;
+        size = 1;
+    }
+
+    /**
+     * Adds a sample and counts a call on every node of its path.
+     *
+     * @param sampleFrames frame ids, outermost frame first
+     * @param length the number of frame ids to read from the array
+     */
+    void add(int[] sampleFrames, int length, boolean runnable) {
+        int node = ROOT;
+        for (int i = 0; i < length; i++) {
+            node = getOrAddChild(node, sampleFrames[i]);
+            if (runnable) {
+                runnableCounts[node]++;
+            } else {
+                nonrunnableCounts[node]++;
+            }
+        }
+    }
+
+    /**
+     * @return the child of the node for the frame, or {@link #NONE}
+     */
+    int getChild(int parent, int frame) {
+        int mask = table.length - 1;
+        for (int slot = hash(parent, frame) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int node = table[slot] - 1;
+            if (frames[node] == frame && parents[node] == parent) {
+                return node;
+            }
+        }
+        return NONE;
+    }
+
+    private int getOrAddChild(int parent, int frame) {
+        int child = getChild(parent, frame);
+        if (child != NONE) {
+            return child;
+        }
+
+        if (size == frames.length) {
+            grow();
+        }
+        child = size++;
+        frames[child] = frame;
+        parents[child] = parent;
+        firstChildren[child] = NONE;
+        nextSiblings[child] = firstChildren[parent];
+        firstChildren[parent] = child;
+        runnableCounts[child] = 0;
+        nonrunnableCounts[child] = 0;
+        insert(child);
+        liveCount++;
+        return child;
+    }
+
+    /**
+     * Removes a node and everything below it. Adding the same path again creates new nodes.
+     */
+    void remove(int node) {
+        if (node == ROOT || !isAttached(node)) {
+            return;
+        }
+
+        int parent = parents[node];
+
+        if (firstChildren[parent] == node) {
+            firstChildren[parent] = nextSiblings[node];
+        } else {
+            int sibling = firstChildren[parent];
+            while (nextSiblings[sibling] != node) {
+                sibling = nextSiblings[sibling];
+            }
+            nextSiblings[sibling] = nextSiblings[node];
+        }
+        // the node stays in the table, but it can no longer be found because it has no parent
+        parents[node] = NONE;
+        liveCount -= countNodes(node);
+    }
+
+    /**
+     * @return true if the node can be reached from the root
+     */
+    private boolean isAttached(int node) {
+        while (node != ROOT) {
+            node = parents[node];
+            if (node == NONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int countNodes(int node) {
+        int count = 1;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+
+    int getFrame(int node) {
+        return frames[node];
+    }
+
+    int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    int getRunnableCount(int node) {
+        return runnableCounts[node];
+    }
+
+    int getNonrunnableCount(int node) {
+        return nonrunnableCounts[node];
+    }
+
+    /**
+     * @return the number of nodes that can be reached from the root, not including the root
+     */
+    int getNodeCount() {
+        return liveCount;
+    }
+
+    private void grow() {
+        int capacity = frames.length * 2;
+        frames = Arrays.copyOf(frames, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        runnableCounts = Arrays.copyOf(runnableCounts, capacity);
+        nonrunnableCounts = Arrays.copyOf(nonrunnableCounts, capacity);
+
+        // keep the table at most half full
+        table = new int[capacity * 2];
+        for (int node = ROOT + 1; node < size; node++) {
+            if (parents[node] != NONE) {
+                insert(node);
+            }
+        }
+    }
+
+    private void insert(int node) {
+        int mask = table.length - 1;
+        int slot = hash(parents[node], frames[node]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = node + 1;
+    }
+
+    private static int hash(int parent, int frame) {
+        int h = (parent * 31 + frame) * 0x9E3779B9;
+        // the table is indexed with the low bits, so fold the high bits into them
+        return h ^ (h >>> 16);
+    }
+}
@@ -27,6 +27,7 @@ import com.newrelic.agent.threads.ThreadNameNormalizer;
 import com.newrelic.agent.tracers.DefaultTracer;
 import com.newrelic.agent.tracers.IgnoreChildSocketCalls;
 import com.newrelic.agent.tracers.Tracer;
+import com.newrelic.agent.util.LazyStackTrace;
 
 public class TransactionProfileSessionImpl implements TransactionProfileSession {
     
@@ -132,7 +133,7 @@ public class TransactionProfileSessionImpl implements TransactionProfileSession
             } else if (tracer.isLeaf() || tracer instanceof IgnoreChildSocketCalls) {
                 if (stackTraceLimits.getUnchecked(tracer.getMetricName()).getAndIncrement() < 
                         STACK_CAPTURE_LIMIT_PER_METRIC_PER_PERIOD) {
-                    tracer.setAgentAttribute(DefaultTracer.BACKTRACE_PARAMETER_NAME, Thread.currentThread().getStackTrace());
+                    tracer.setAgentAttribute(DefaultTracer.BACKTRACE_PARAMETER_NAME, LazyStackTrace.capture());
                 }
             }
         }
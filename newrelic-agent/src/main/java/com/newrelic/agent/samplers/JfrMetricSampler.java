@@ -0,0 +1,240 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.samplers;
+
+import com.newrelic.agent.Agent;
+import com.newrelic.agent.MetricNames;
+import com.newrelic.agent.stats.StatsEngine;
+import com.newrelic.agent.util.JfrStreams;
+
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Records runtime metrics from JFR events streamed by a {@code RecordingStream}: garbage collections and their pauses,
+ * safepoints, contended monitor enters, thread parks and sampled allocations. The JVM pushes the events as they
+ * happen, so they are aggregated in the background and {@link #sample(StatsEngine)} only copies the totals since the
+ * last sample.
+ *
+ * The stream is started with {@link JfrStreams}, which needs Java 14.
+ */
+public class JfrMetricSampler implements MetricSampler {
+
+    static final String GARBAGE_COLLECTION = "jdk.GarbageCollection";
+    static final String GC_PAUSE = "jdk.GCPhasePause";
+    static final String SAFEPOINT = "jdk.SafepointBegin";
+    static final String MONITOR_ENTER = "jdk.JavaMonitorEnter";
+    static final String THREAD_PARK = "jdk.ThreadPark";
+    /**
+     * Throttled by the JVM (see {@link #ALLOCATION_SAMPLE_THROTTLE}), so it is cheap enough to leave on. Only available
+     * on Java 16 and later.
+     */
+    static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+
+    /**
+     * The most allocation samples the JVM emits, the same as the JDK's default recording settings.
+     */
+    private static final String ALLOCATION_SAMPLE_THROTTLE = "150/s";
+
+    /**
+     * Monitor enters and parks shorter than this are not recorded, as most of them are not worth the cost of an event.
+     */
+    private static final long CONTENTION_THRESHOLD_IN_MILLIS = 10L;
+
+    /**
+     * Metric name to count, total, min and max nanoseconds. Guarded by this.
+     */
+    private Map<String, long[]> durations = new HashMap<>();
+    /**
+     * Guarded by this.
+     */
+    private long allocatedBytes;
+    private long lastSampleTimeInNanos = System.nanoTime();
+    private volatile Object recordingStream;
+
+    /**
+     * @return true if this JVM has the JFR streaming API
+     */
+    static boolean isSupported() {
+        return JfrStreams.isSupported() && Events.INSTANCE != null;
+    }
+
+    void start() {
+        if (!isSupported() || recordingStream != null) {
+            return;
+        }
+        try {
+            recordingStream = JfrStreams.startStream(getSubscriptions(Events.INSTANCE));
+        } catch (Throwable t) {
+            // JFR may be disabled or not permitted
+            Agent.LOG.log(Level.INFO, "Unable to start the JFR metric sampler: {0}", t.toString());
+        }
+    }
+
+    void stop() {
+        Object stream = recordingStream;
+        recordingStream = null;
+        if (stream != null) {
+            try {
+                JfrStreams.close(stream);
+            } catch (Throwable t) {
+                Agent.LOG.log(Level.FINER, "Error closing the JFR recording stream", t);
+            }
+        }
+    }
+
+    boolean isStreaming() {
+        return recordingStream != null;
+    }
+
+    @Override
+    public void sample(StatsEngine statsEngine) {
+        Map<String, long[]> sampledDurations;
+        long sampledBytes;
+        synchronized (this) {
+            sampledDurations = durations;
+            durations = new HashMap<>();
+            sampledBytes = allocatedBytes;
+            allocatedBytes = 0;
+        }
+
+        for (Map.Entry<String, long[]> entry : sampledDurations.entrySet()) {
+            long[] duration = entry.getValue();
+            statsEngine.getResponseTimeStats(entry.getKey()).recordResponseTime((int) duration[0], duration[1],
+                    duration[2], duration[3], TimeUnit.NANOSECONDS);
+        }
+
+        long now = System.nanoTime();
+        long elapsedInNanos = now - lastSampleTimeInNanos;
+        lastSampleTimeInNanos = now;
+        if (sampledBytes > 0 && elapsedInNanos > 0) {
+            float megabytesPerSecond = sampledBytes / MemorySampler.BYTES_PER_MB
+                    / (elapsedInNanos / (float) TimeUnit.SECONDS.toNanos(1));
+            statsEngine.getStats(MetricNames.JFR_ALLOCATION_RATE).recordDataPoint(megabytesPerSecond);
+        }
+    }
+
+    synchronized void recordDuration(String metricName, long durationInNanos) {
+        long[] duration = durations.get(metricName);
+        if (duration == null) {
+            durations.put(metricName, new long[] { 1, durationInNanos, durationInNanos, durationInNanos });
+        } else {
+            duration[0]++;
+            duration[1] += durationInNanos;
+            duration[2] = Math.min(duration[2], durationInNanos);
+            duration[3] = Math.max(duration[3], durationInNanos);
+        }
+    }
+
+    synchronized void recordAllocation(long bytes) {
+        allocatedBytes += bytes;
+    }
+
+    /**
+     * Records an event delivered by the stream.
+     */
+    void recordEvent(String eventName, long durationInNanos, Object detail) {
+        switch (eventName) {
+            case GARBAGE_COLLECTION:
+                recordDuration(MessageFormat.format(MetricNames.JFR_GC_MASK, detail), durationInNanos);
+                break;
+            case GC_PAUSE:
+                recordDuration(MetricNames.JFR_GC_PAUSE, durationInNanos);
+                break;
+            case SAFEPOINT:
+                recordDuration(MetricNames.JFR_SAFEPOINT, durationInNanos);
+                break;
+            case MONITOR_ENTER:
+                recordDuration(MetricNames.JFR_MONITOR_ENTER, durationInNanos);
+                break;
+            case THREAD_PARK:
+                recordDuration(MetricNames.JFR_THREAD_PARK, durationInNanos);
+                break;
+            case ALLOCATION_SAMPLE:
+                recordAllocation((Long) detail);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return the events to stream and the settings they are recorded with
+     */
+    private List<JfrStreams.Subscription> getSubscriptions(Events events) {
+        // only durations and sizes are recorded, so the JVM does not need to walk the stacks
+        return Arrays.asList(
+                subscribe(events, GARBAGE_COLLECTION),
+                subscribe(events, GC_PAUSE),
+                subscribe(events, SAFEPOINT),
+                subscribe(events, MONITOR_ENTER).withThreshold(CONTENTION_THRESHOLD_IN_MILLIS).withoutStackTrace(),
+                subscribe(events, THREAD_PARK).withThreshold(CONTENTION_THRESHOLD_IN_MILLIS).withoutStackTrace(),
+                subscribe(events, ALLOCATION_SAMPLE).with("throttle", ALLOCATION_SAMPLE_THROTTLE).withoutStackTrace());
+    }
+
+    private JfrStreams.Subscription subscribe(final Events events, final String eventName) {
+        return new JfrStreams.Subscription(eventName, new JfrStreams.EventHandler() {
+            @Override
+            public void onEvent(Object event) throws ReflectiveOperationException {
+                events.onEvent(JfrMetricSampler.this, eventName, event);
+            }
+        });
+    }
+
+    /**
+     * The reflective view of the JFR event types this sampler reads.
+     */
+    private static final class Events {
+
+        /**
+         * Null if the JVM does not have the JFR consumer API.
+         */
+        static final Events INSTANCE = create();
+
+        private final Method getDuration;
+        private final Method toNanos;
+        private final Method getString;
+        private final Method getLong;
+
+        private Events() throws ReflectiveOperationException {
+            Class<?> durationClass = Class.forName("java.time.Duration");
+            Class<?> recordedEventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+            Class<?> recordedObjectClass = Class.forName("jdk.jfr.consumer.RecordedObject");
+
+            getDuration = recordedEventClass.getMethod("getDuration");
+            toNanos = durationClass.getMethod("toNanos");
+            getString = recordedObjectClass.getMethod("getString", String.class);
+            getLong = recordedObjectClass.getMethod("getLong", String.class);
+        }
+
+        private static Events create() {
+            try {
+                return new Events();
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        void onEvent(JfrMetricSampler sampler, String eventName, Object event) throws ReflectiveOperationException {
+            long durationInNanos = (Long) toNanos.invoke(getDuration.invoke(event));
+            Object detail = null;
+            if (GARBAGE_COLLECTION.equals(eventName)) {
+                detail = getString.invoke(event, "name");
+            } else if (ALLOCATION_SAMPLE.equals(eventName)) {
+                detail = getLong.invoke(event, "weight");
+            }
+            sampler.recordEvent(eventName, durationInNanos, detail);
+        }
+    }
+}
@@ -52,6 +52,8 @@ public class SamplerServiceImpl extends AbstractService implements SamplerServic
     private final String defaultAppName;
     private final boolean isAutoAppNamingEnabled;
     private final long memorySampleDelayInMillis;
+    private final boolean isJfrEnabled;
+    private volatile JfrMetricSampler jfrMetricSampler;
 
     public SamplerServiceImpl() {
         super(SamplerService.class.getSimpleName());
@@ -63,6 +65,7 @@ public class SamplerServiceImpl extends AbstractService implements SamplerServic
         defaultAppName = config.getApplicationName();
         memorySampleDelayInMillis = config.getValue("sampler_service.memory_sample_delay_in_millis",
                 INITIAL_DELAY_IN_MILLISECONDS);
+        isJfrEnabled = config.getValue("sampler_service.jfr.enabled", false);
     }
 
     @Override
@@ -73,6 +76,20 @@ public class SamplerServiceImpl extends AbstractService implements SamplerServic
 
         ThreadSampler threadSampler = new ThreadSampler();
         addMetricSampler(threadSampler, INITIAL_DELAY_IN_MILLISECONDS, DELAY_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+
+        if (isJfrEnabled) {
+            if (JfrMetricSampler.isSupported()) {
+                JfrMetricSampler sampler = new JfrMetricSampler();
+                sampler.start();
+                if (sampler.isStreaming()) {
+                    jfrMetricSampler = sampler;
+                    addMetricSampler(sampler, INITIAL_DELAY_IN_MILLISECONDS, DELAY_IN_MILLISECONDS,
+                            TimeUnit.MILLISECONDS);
+                }
+            } else {
+                getLogger().info("The JFR metric sampler requires Java 14 or later");
+            }
+        }
     }
 
     @Override
@@ -84,6 +101,11 @@ public class SamplerServiceImpl extends AbstractService implements SamplerServic
             tasks.clear();
         }
         scheduledExecutor.shutdown();
+        JfrMetricSampler sampler = jfrMetricSampler;
+        if (sampler != null) {
+            sampler.stop();
+            jfrMetricSampler = null;
+        }
     }
 
     @Override
@@ -60,7 +60,12 @@ public abstract class AbstractService implements Service {
         if (state.beginStart()) {
             getLogger().fine(MessageFormat.format("Starting service {0}", name));
             ServiceTiming.addServiceStart(name);
-            doStart();
+            StartupProfiler.Phase phase = StartupProfiler.start("Service/" + name);
+            try {
+                doStart();
+            } finally {
+                phase.end();
+            }
             state.endStart();
         }
     }
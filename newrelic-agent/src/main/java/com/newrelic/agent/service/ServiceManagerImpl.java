@@ -314,6 +314,11 @@ public class ServiceManagerImpl extends AbstractService implements ServiceManage
 
         InfiniteTracingConfig infiniteTracingConfig = InfiniteTracingConfig.builder()
                 .maxQueueSize(config.getSpanEventsQueueSize())
+                .batchSize(config.getSpanEventsBatchSize())
+                .directEncoding(config.getSpanEventsDirectEncoding())
+                .streams(config.getSpanEventsStreams())
+                .spillDirectory(config.getSpanEventsSpillDirectory())
+                .spillMaxBytes(config.getSpanEventsSpillMaxSizeMb() * 1024L * 1024L)
                 .logger(Agent.LOG.getChildLogger("com.newrelic.infinite_tracing"))
                 .host(config.getTraceObserverHost())
                 .port(config.getTraceObserverPort())
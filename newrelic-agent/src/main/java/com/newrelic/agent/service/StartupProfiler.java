@@ -0,0 +1,323 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.service;
+
+import com.newrelic.agent.Agent;
+import com.newrelic.agent.MetricNames;
+import com.newrelic.agent.stats.StatsService;
+import com.newrelic.agent.stats.StatsWorks;
+import com.newrelic.bootstrap.BootstrapLoader;
+import org.json.simple.JSONValue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * An opt-in profiler for the agent's startup. Code that runs during premain wraps each phase in {@link #start(String)}
+ * and {@link Phase#end()}, and once premain completes the phases are recorded as <tt>Supportability/Startup/*</tt>
+ * metrics and written to a JSON timeline file.
+ *
+ * Each phase records the wall time as well as the CPU time and the bytes allocated by the thread that ran it.
+ *
+ * The profiler has to be running before the config file is read, so it is enabled with the
+ * <tt>newrelic.config.startup_profiler.enabled</tt> system property or the <tt>NEW_RELIC_STARTUP_PROFILER_ENABLED</tt>
+ * environment variable rather than the yml. When disabled {@link #start(String)} returns a shared no-op phase.
+ */
+public final class StartupProfiler {
+
+    public static final String ENABLED_PROPERTY = "newrelic.config.startup_profiler.enabled";
+    public static final String ENABLED_ENV = "NEW_RELIC_STARTUP_PROFILER_ENABLED";
+    public static final String FILE_PROPERTY = "newrelic.config.startup_profiler.file";
+    public static final String FILE_ENV = "NEW_RELIC_STARTUP_PROFILER_FILE";
+    static final String DEFAULT_FILE_NAME = "newrelic-startup-profile.json";
+
+    private static final Phase NO_OP_PHASE = new Phase(null);
+    private static final List<Phase> phases = new ArrayList<>();
+    private static volatile boolean enabled = isEnabledBySystem();
+    private static ThreadMXBean threadMXBean;
+    private static boolean allocatedBytesSupported;
+
+    private StartupProfiler() {
+    }
+
+    /**
+     * Begin timing a phase of the agent's startup. Nested phases use "/" in their names, e.g. "Premain/StartServices".
+     *
+     * @param name name of the phase, used in the metric name
+     * @return the phase, which must be ended by the same thread
+     */
+    public static Phase start(String name) {
+        if (!enabled) {
+            return NO_OP_PHASE;
+        }
+        Phase phase = new Phase(name);
+        phase.begin();
+        return phase;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a phase that ran before the profiler was loaded, e.g. the bootstrap agent before {@link Agent} was
+     * called. Only the wall time is known.
+     */
+    public static void addPhase(String name, long startTimeMillis, long durationMillis) {
+        if (!enabled) {
+            return;
+        }
+        Phase phase = new Phase(name);
+        phase.threadName = Thread.currentThread().getName();
+        long millisAgo = System.currentTimeMillis() - startTimeMillis;
+        phase.startNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(millisAgo);
+        phase.wallNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        add(phase);
+    }
+
+    /**
+     * Report the phases recorded so far and stop profiling. Phases that are still running are not reported.
+     *
+     * @param statsService the stats service to record the <tt>Supportability/Startup/*</tt> metrics with
+     * @param agentVersion agent version written to the timeline
+     */
+    public static void finish(StatsService statsService, String agentVersion) {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        List<Phase> completed = getPhases();
+        recordMetrics(statsService, completed);
+
+        File file = getTimelineFile();
+        try {
+            writeTimeline(file, agentVersion, completed);
+            Agent.LOG.log(Level.INFO, "Startup profile with {0} phases written to {1}", completed.size(), file);
+        } catch (IOException e) {
+            Agent.LOG.log(Level.WARNING, e, "Unable to write startup profile to {0}", file);
+        }
+        synchronized (phases) {
+            phases.clear();
+        }
+    }
+
+    static void recordMetrics(StatsService statsService, List<Phase> completed) {
+        for (Phase phase : completed) {
+            String metricName = MetricNames.SUPPORTABILITY_STARTUP + phase.name;
+            statsService.doStatsWork(StatsWorks.getRecordResponseTimeWork(metricName,
+                    TimeUnit.NANOSECONDS.toMillis(phase.wallNanos)));
+            if (phase.cpuNanos >= 0) {
+                statsService.doStatsWork(StatsWorks.getRecordResponseTimeWork(metricName + MetricNames.SUPPORTABILITY_STARTUP_CPU,
+                        TimeUnit.NANOSECONDS.toMillis(phase.cpuNanos)));
+            }
+            if (phase.allocatedBytes >= 0) {
+                statsService.doStatsWork(StatsWorks.getRecordMetricWork(metricName + MetricNames.SUPPORTABILITY_STARTUP_ALLOCATED,
+                        phase.allocatedBytes));
+            }
+        }
+    }
+
+    /**
+     * @param completed phases sorted by start time
+     */
+    static void writeTimeline(File file, String agentVersion, List<Phase> completed) throws IOException {
+        // offsets are relative to the earliest phase
+        long originNanos = completed.isEmpty() ? 0 : completed.get(0).startNanos;
+        List<Map<String, Object>> timeline = new ArrayList<>(completed.size());
+        for (Phase phase : completed) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", phase.name);
+            entry.put("thread", phase.threadName);
+            entry.put("start_offset_ms", toMillis(phase.startNanos - originNanos));
+            entry.put("wall_ms", toMillis(phase.wallNanos));
+            entry.put("cpu_ms", phase.cpuNanos < 0 ? null : toMillis(phase.cpuNanos));
+            entry.put("allocated_bytes", phase.allocatedBytes < 0 ? null : phase.allocatedBytes);
+            timeline.add(entry);
+        }
+
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("agent_version", agentVersion);
+        profile.put("java_version", System.getProperty("java.version"));
+        profile.put("processors", Runtime.getRuntime().availableProcessors());
+        profile.put("phases", timeline);
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            JSONValue.writeJSONString(profile, writer);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        // keep microsecond precision, most phases are well under a millisecond
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    static File getTimelineFile() {
+        String path = System.getProperty(FILE_PROPERTY);
+        if (path == null) {
+            path = System.getenv(FILE_ENV);
+        }
+        if (path != null) {
+            return new File(path);
+        }
+        File tempDir = BootstrapLoader.getTempDir();
+        return new File(tempDir == null ? new File(System.getProperty("java.io.tmpdir")) : tempDir, DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * @return the phases that have ended, in the order they were started
+     */
+    static List<Phase> getPhases() {
+        synchronized (phases) {
+            List<Phase> sorted = new ArrayList<>(phases);
+            Collections.sort(sorted, new Comparator<Phase>() {
+                @Override
+                public int compare(Phase first, Phase second) {
+                    return Long.compare(first.startNanos, second.startNanos);
+                }
+            });
+            return sorted;
+        }
+    }
+
+    // For testing
+    static void setEnabled(boolean enable) {
+        synchronized (phases) {
+            phases.clear();
+        }
+        enabled = enable;
+    }
+
+    private static void add(Phase phase) {
+        synchronized (phases) {
+            phases.add(phase);
+        }
+    }
+
+    private static boolean isEnabledBySystem() {
+        try {
+            return Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY)) || Boolean.parseBoolean(System.getenv(ENABLED_ENV));
+        } catch (SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The management beans are only touched once the profiler is enabled so a disabled profiler doesn't initialize
+     * them early in premain.
+     */
+    private static synchronized ThreadMXBean getThreadMXBean() {
+        if (threadMXBean == null) {
+            threadMXBean = ManagementFactory.getThreadMXBean();
+            try {
+                allocatedBytesSupported = threadMXBean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                        && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+            } catch (Throwable t) {
+                // not a HotSpot based JVM
+                allocatedBytesSupported = false;
+            }
+        }
+        return threadMXBean;
+    }
+
+    private static long currentThreadCpuTime(ThreadMXBean bean) {
+        try {
+            return bean.isCurrentThreadCpuTimeSupported() ? bean.getCurrentThreadCpuTime() : -1;
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    private static long currentThreadAllocatedBytes(ThreadMXBean bean) {
+        if (!allocatedBytesSupported) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * A timed phase of the agent's startup.
+     */
+    public static final class Phase {
+        private final String name;
+        private String threadName;
+        private long startNanos;
+        private long startCpuNanos = -1;
+        private long startAllocatedBytes = -1;
+        private long wallNanos;
+        private long cpuNanos = -1;
+        private long allocatedBytes = -1;
+        private boolean ended;
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        private void begin() {
+            ThreadMXBean bean = getThreadMXBean();
+            threadName = Thread.currentThread().getName();
+            startCpuNanos = currentThreadCpuTime(bean);
+            startAllocatedBytes = currentThreadAllocatedBytes(bean);
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * End this phase. Only the first call has an effect.
+         */
+        public void end() {
+            if (name == null || ended) {
+                return;
+            }
+            long endNanos = System.nanoTime();
+            ended = true;
+            ThreadMXBean bean = getThreadMXBean();
+            wallNanos = endNanos - startNanos;
+            if (startCpuNanos >= 0) {
+                long endCpuNanos = currentThreadCpuTime(bean);
+                cpuNanos = endCpuNanos < 0 ? -1 : endCpuNanos - startCpuNanos;
+            }
+            if (startAllocatedBytes >= 0) {
+                long endAllocatedBytes = currentThreadAllocatedBytes(bean);
+                allocatedBytes = endAllocatedBytes < 0 ? -1 : endAllocatedBytes - startAllocatedBytes;
+            }
+            if (enabled) {
+                add(this);
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.service.analytics;
+
+import com.newrelic.agent.model.CustomInsightsEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded buffer for the custom events recorded during one transaction. A writer claims a slot with one atomic
+ * increment and never blocks or retries, so recording an event is lock-free and does not allocate a node per event.
+ *
+ * Slots are kept in chunks that double in size, the first one holding {@link #FIRST_CHUNK_SIZE} events. A transaction
+ * that records a handful of events only pays for a handful of slots, while one that records up to the limit ends up
+ * with about as many slots as events.
+ *
+ * Events are read back in the order their slots were claimed. They all take the transaction's priority when the
+ * transaction finishes, so priority sampling is left to the application's reservoir.
+ */
+class CustomEventBuffer {
+
+    static final int FIRST_CHUNK_SIZE = 8;
+
+    private static final int FIRST_CHUNK_SHIFT = Integer.numberOfTrailingZeros(FIRST_CHUNK_SIZE);
+    private static final int MAX_CHUNKS = Integer.SIZE;
+
+    private final int capacity;
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final AtomicReferenceArray<AtomicReferenceArray<CustomInsightsEvent>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+    CustomEventBuffer(int capacity) {
+        this.capacity = Math.max(capacity, 0);
+    }
+
+    /**
+     * @return false if the buffer is full and the event was not stored
+     */
+    boolean offer(CustomInsightsEvent event) {
+        // checked first so writers that keep offering to a full buffer cannot overflow the counter
+        if (claimed.get() >= capacity) {
+            return false;
+        }
+        int index = claimed.getAndIncrement();
+        if (index >= capacity) {
+            return false;
+        }
+
+        int chunkIndex = chunkIndex(index);
+        chunk(chunkIndex).set(index - chunkStart(chunkIndex), event);
+        return true;
+    }
+
+    int size() {
+        return Math.min(claimed.get(), capacity);
+    }
+
+    /**
+     * @return the stored events in the order they were recorded. A slot that has been claimed by a writer that has not
+     * stored its event yet is skipped.
+     */
+    List<CustomInsightsEvent> toList() {
+        int size = size();
+        List<CustomInsightsEvent> events = new ArrayList<>(size);
+        for (int chunkIndex = 0; chunkStart(chunkIndex) < size; chunkIndex++) {
+            AtomicReferenceArray<CustomInsightsEvent> chunk = chunks.get(chunkIndex);
+            if (chunk == null) {
+                continue;
+            }
+            int length = Math.min(chunk.length(), size - chunkStart(chunkIndex));
+            for (int i = 0; i < length; i++) {
+                CustomInsightsEvent event = chunk.get(i);
+                if (event != null) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+
+    private AtomicReferenceArray<CustomInsightsEvent> chunk(int chunkIndex) {
+        AtomicReferenceArray<CustomInsightsEvent> chunk = chunks.get(chunkIndex);
+        if (chunk == null) {
+            int start = chunkStart(chunkIndex);
+            int length = (int) Math.min((long) FIRST_CHUNK_SIZE << chunkIndex, (long) capacity - start);
+            // writers racing for a new chunk may each allocate one, only the first to be installed is used
+            chunks.compareAndSet(chunkIndex, null, new AtomicReferenceArray<CustomInsightsEvent>(length));
+            chunk = chunks.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    /**
+     * Chunk k holds FIRST_CHUNK_SIZE * 2^k slots starting at FIRST_CHUNK_SIZE * (2^k - 1).
+     */
+    private static int chunkIndex(int index) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros((index >>> FIRST_CHUNK_SHIFT) + 1);
+    }
+
+    private static int chunkStart(int chunkIndex) {
+        return (int) Math.min(((1L << chunkIndex) - 1) << FIRST_CHUNK_SHIFT, Integer.MAX_VALUE);
+    }
+}
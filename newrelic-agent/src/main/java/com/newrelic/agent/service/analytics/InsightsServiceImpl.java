@@ -42,7 +42,6 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
@@ -77,14 +76,14 @@ public class InsightsServiceImpl extends AbstractService implements InsightsServ
         @Override
         public void dispatcherTransactionFinished(TransactionData transactionData, TransactionStats transactionStats) {
             TransactionInsights data = (TransactionInsights) transactionData.getInsightsData();
-            storeEvents(transactionData.getApplicationName(), transactionData.getPriority(), data.events);
+            storeEvents(transactionData.getApplicationName(), transactionData.getPriority(), data.events.toList());
         }
 
         @Override
         public void dispatcherTransactionCancelled(Transaction transaction) {
             // Even if the transaction is cancelled we still want to send up any events that were held in it
             TransactionInsights data = (TransactionInsights) transaction.getInsightsData();
-            storeEvents(transaction.getApplicationName(), transaction.getPriority(), data.events);
+            storeEvents(transaction.getApplicationName(), transaction.getPriority(), data.events.toList());
         }
 
     };
@@ -448,11 +447,11 @@ public class InsightsServiceImpl extends AbstractService implements InsightsServ
     }
 
     public static final class TransactionInsights implements Insights {
-        final LinkedBlockingQueue<CustomInsightsEvent> events;
+        final CustomEventBuffer events;
 
         TransactionInsights(AgentConfig config) {
             int maxSamplesStored = config.getInsightsConfig().getMaxSamplesStored();
-            events = new LinkedBlockingQueue<>(maxSamplesStored);
+            events = new CustomEventBuffer(maxSamplesStored);
         }
 
         @Override
@@ -478,7 +477,7 @@ public class InsightsServiceImpl extends AbstractService implements InsightsServ
         }
 
         public List<CustomInsightsEvent> getEventsForTesting() {
-            return new ArrayList<>(events);
+            return events.toList();
         }
     }
 }
@@ -0,0 +1,503 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.service.analytics;
+
+import com.newrelic.agent.interfaces.SamplingPriorityQueue;
+import com.newrelic.agent.model.PriorityAware;
+import com.newrelic.agent.tracing.DistributedTraceUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A priority sampling reservoir for high volume events that spreads writers over a set of stripes instead of funneling
+ * every {@link #add(PriorityAware)} through one monitor.
+ *
+ * Threads are hashed onto the stripes, bounded heaps whose root is the lowest priority event they hold. There are at
+ * most as many stripes as processors, so threads that share a stripe still contend on its monitor, as do adds that run
+ * into a compaction, which locks each stripe in turn. Stripes are merged, and trimmed to the reservoir size, when the
+ * events are read at harvest time ({@link #asList()}).
+ *
+ * Keeping the top N events of every stripe would let the reservoir hold N events per stripe. To bound memory, whenever
+ * the stripes together hold more than twice the reservoir size, the stripes are compacted: the Nth best event across
+ * all of them becomes the admission floor and everything worse than it is evicted. A stripe that fills up on its own
+ * raises the floor to its worst event the same way. Those N events can only be replaced by better ones, so nothing
+ * worse than the floor could ever be part of the final sample and the result is the same as a single
+ * {@link DistributedSamplingPriorityQueue}. New events below the floor are rejected without taking any lock.
+ *
+ * The priority, decided and target semantics match {@link DistributedSamplingPriorityQueue}.
+ *
+ * A reservoir that is swapped out at harvest can be {@link #close() closed} before it is read. From then on it rejects
+ * new events, and a writer that still held a reference can see that with {@link #isClosed()} and add the event to the
+ * current reservoir instead. The counts an add updates are updated under its stripe monitor, and closing takes every
+ * stripe monitor, so once {@link #close()} returns every accepted event is part of the harvested sample and of
+ * {@link #size()}, {@link #getDecided()} and {@link #getSampled()}.
+ */
+public class StripedSamplingPriorityQueue<E extends PriorityAware> implements SamplingPriorityQueue<E> {
+
+    private static final int MAX_STRIPES = 64;
+    private static final int COMPACTION_FACTOR = 2;
+
+    private final String appName;
+    private final String serviceName;
+    private final int maximumSize;
+    private final int decidedLast;
+    private final int target;
+    private final Comparator<E> comparator;
+    private final Stripe<E>[] stripes;
+    private final int stripeMask;
+
+    private final AtomicInteger numberOfTries = new AtomicInteger();
+    private final AtomicInteger recorded = new AtomicInteger();
+    // the number of times the decider was used on an event on this application. That meaning, the number of
+    // events that started on this application that did not accept a payload.
+    private final AtomicInteger decided = new AtomicInteger();
+    // the number of events currently held across all stripes
+    private final AtomicInteger retained = new AtomicInteger();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private volatile boolean closed;
+    // events that compare worse than this can never make it into the sample
+    private volatile E floor;
+
+    public StripedSamplingPriorityQueue(String appName, String serviceName, int reservoirSize, int decidedLast, int target,
+            Comparator<E> comparator) {
+        this(appName, serviceName, reservoirSize, decidedLast, target, comparator, Runtime.getRuntime().availableProcessors());
+    }
+
+    @SuppressWarnings("unchecked")
+    StripedSamplingPriorityQueue(String appName, String serviceName, int reservoirSize, int decidedLast, int target,
+            Comparator<E> comparator, int concurrency) {
+        this.appName = appName;
+        this.serviceName = serviceName;
+        this.maximumSize = reservoirSize;
+        this.decidedLast = decidedLast;
+        this.target = target;
+        this.comparator = comparator == null ? new Comparator<E>() {
+            @Override
+            public int compare(E left, E right) {
+                return Float.compare(right.getPriority(), left.getPriority());
+            }
+        } : comparator;
+
+        int stripeCount = 1;
+        while (stripeCount < Math.min(concurrency, MAX_STRIPES)) {
+            stripeCount <<= 1;
+        }
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(this.comparator, Math.max(reservoirSize, 0));
+        }
+        stripeMask = stripeCount - 1;
+    }
+
+    private Stripe<E> stripeForCurrentThread() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & stripeMask];
+    }
+
+    @Override
+    public void retryAll(SamplingPriorityQueue<E> source) {
+        for (E element : source.asList()) {
+            add(element);
+        }
+    }
+
+    @Override
+    public boolean isFull() {
+        return retained.get() >= maximumSize;
+    }
+
+    /**
+     * @return a priority that every event in the final sample is known to be at or above. Events with a lower priority
+     * will not be kept once the reservoir is full.
+     */
+    @Override
+    public float getMinPriority() {
+        E currentFloor = floor;
+        return currentFloor == null ? 0.0f : currentFloor.getPriority();
+    }
+
+    @Override
+    public int getNumberOfTries() {
+        return numberOfTries.get();
+    }
+
+    @Override
+    public void incrementNumberOfTries() {
+        numberOfTries.incrementAndGet();
+    }
+
+    @Override
+    public boolean add(E element) {
+        incrementNumberOfTries();
+        if (maximumSize <= 0) {
+            return false;
+        }
+        E currentFloor = floor;
+        if (currentFloor != null && comparator.compare(element, currentFloor) > 0) {
+            return false;
+        }
+
+        Stripe<E> stripe = stripeForCurrentThread();
+        int result;
+        boolean overCompactionThreshold = false;
+        E stripeWorst = null;
+        synchronized (stripe) {
+            // the counts are updated before the monitor is released, so a close either waits for them or is seen here
+            if (stripe.closed) {
+                return false;
+            }
+            result = stripe.offer(element);
+            if (stripe.isFull()) {
+                stripeWorst = stripe.worst();
+            }
+            if (result != Stripe.REJECTED) {
+                if (element.decider()) {
+                    decided.incrementAndGet();
+                    if (DistributedTraceUtil.isSampledPriority(element.getPriority())) {
+                        recorded.incrementAndGet();
+                    }
+                }
+                if (result == Stripe.ADDED) {
+                    overCompactionThreshold = retained.incrementAndGet() > maximumSize * COMPACTION_FACTOR;
+                }
+            }
+        }
+        if (stripeWorst != null) {
+            raiseFloor(stripeWorst);
+        }
+        if (overCompactionThreshold) {
+            compact();
+        }
+        return result != Stripe.REJECTED;
+    }
+
+    /**
+     * Stops accepting events. Once this returns, every later add is rejected, and every accepted event is held in a
+     * stripe and counted.
+     */
+    public void close() {
+        closed = true;
+        for (Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.closed = true;
+            }
+        }
+    }
+
+    /**
+     * @return true if the reservoir has been closed, in which case a rejected event belongs in the current reservoir
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * A full stripe alone holds N events at or above its worst one, so that event is a valid floor for the whole
+     * reservoir. Racing updates can leave a lower floor than the best one seen, which is still correct, just less tight.
+     */
+    private void raiseFloor(E candidate) {
+        E currentFloor = floor;
+        if (currentFloor == null || comparator.compare(candidate, currentFloor) < 0) {
+            floor = candidate;
+        }
+    }
+
+    /**
+     * Raises the admission floor to the Nth best event held and evicts everything worse from the stripes. Only one
+     * thread compacts at a time; the others keep adding to their stripes.
+     */
+    private void compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<E> all = snapshot();
+            if (all.size() <= maximumSize) {
+                return;
+            }
+            Collections.sort(all, comparator);
+            E newFloor = all.get(maximumSize - 1);
+            raiseFloor(newFloor);
+            for (Stripe<E> stripe : stripes) {
+                synchronized (stripe) {
+                    retained.addAndGet(-stripe.removeWorseThan(newFloor));
+                }
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private List<E> snapshot() {
+        List<E> all = new ArrayList<>(Math.max(retained.get(), 0));
+        for (Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.copyTo(all);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public E peek() {
+        List<E> elements = asList();
+        return elements.isEmpty() ? null : elements.get(0);
+    }
+
+    @Override
+    public E poll() {
+        Stripe<E> bestStripe = null;
+        E best = null;
+        for (Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                E stripeBest = stripe.best();
+                if (stripeBest != null && (best == null || comparator.compare(stripeBest, best) < 0)) {
+                    best = stripeBest;
+                    bestStripe = stripe;
+                }
+            }
+        }
+        if (bestStripe == null) {
+            return null;
+        }
+        synchronized (bestStripe) {
+            if (bestStripe.remove(best)) {
+                retained.decrementAndGet();
+                return best;
+            }
+        }
+        // another thread changed the stripe between the scan and the removal
+        return poll();
+    }
+
+    /**
+     * @return the best events across all stripes, highest priority first, trimmed to the reservoir size
+     */
+    @Override
+    public List<E> asList() {
+        List<E> all = snapshot();
+        Collections.sort(all, comparator);
+        if (all.size() > maximumSize) {
+            return new ArrayList<>(all.subList(0, Math.max(maximumSize, 0)));
+        }
+        return all;
+    }
+
+    @Override
+    public String getAppName() {
+        return appName;
+    }
+
+    @Override
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    @Override
+    public int getSampled() {
+        return recorded.get();
+    }
+
+    @Override
+    public int getDecided() {
+        return decided.get();
+    }
+
+    @Override
+    public int getTarget() {
+        return target;
+    }
+
+    @Override
+    public int getDecidedLast() {
+        return decidedLast;
+    }
+
+    @Override
+    public int size() {
+        return Math.max(0, Math.min(retained.get(), maximumSize));
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe<E> stripe : stripes) {
+            synchronized (stripe) {
+                retained.addAndGet(-stripe.clear());
+            }
+        }
+        floor = null;
+    }
+
+    /**
+     * A bounded heap ordered so the root is the worst event by the reservoir's comparator. Not thread-safe; callers
+     * synchronize on the stripe, which also guards {@link #closed}.
+     */
+    static final class Stripe<E> {
+
+        static final int REJECTED = 0;
+        static final int ADDED = 1;
+        static final int REPLACED = 2;
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final Comparator<E> comparator;
+        private final int capacity;
+        private Object[] heap;
+        private int size;
+        boolean closed;
+
+        Stripe(Comparator<E> comparator, int capacity) {
+            this.comparator = comparator;
+            this.capacity = capacity;
+            this.heap = new Object[Math.min(INITIAL_CAPACITY, Math.max(capacity, 1))];
+        }
+
+        /**
+         * @return {@link #ADDED} if the stripe grew, {@link #REPLACED} if the element displaced the worst one, or
+         * {@link #REJECTED} if the stripe is full of better elements
+         */
+        int offer(E element) {
+            if (size < capacity) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, Math.min(heap.length * 2, capacity));
+                }
+                heap[size] = element;
+                siftUp(size++);
+                return ADDED;
+            }
+            if (comparator.compare(element, worst()) >= 0) {
+                return REJECTED;
+            }
+            heap[0] = element;
+            siftDown(0);
+            return REPLACED;
+        }
+
+        @SuppressWarnings("unchecked")
+        private E at(int index) {
+            return (E) heap[index];
+        }
+
+        E worst() {
+            return size == 0 ? null : at(0);
+        }
+
+        boolean isFull() {
+            return size == capacity;
+        }
+
+        E best() {
+            E best = null;
+            for (int i = 0; i < size; i++) {
+                if (best == null || comparator.compare(at(i), best) < 0) {
+                    best = at(i);
+                }
+            }
+            return best;
+        }
+
+        boolean remove(E element) {
+            for (int i = 0; i < size; i++) {
+                if (heap[i] == element) {
+                    removeAt(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void removeAt(int index) {
+            size--;
+            heap[index] = heap[size];
+            heap[size] = null;
+            if (index < size) {
+                siftDown(index);
+                siftUp(index);
+            }
+        }
+
+        /**
+         * @return the number of elements removed
+         */
+        int removeWorseThan(E floor) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (comparator.compare(at(i), floor) <= 0) {
+                    heap[kept++] = heap[i];
+                }
+            }
+            int removed = size - kept;
+            Arrays.fill(heap, kept, size, null);
+            size = kept;
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+            return removed;
+        }
+
+        void copyTo(List<E> destination) {
+            for (int i = 0; i < size; i++) {
+                destination.add(at(i));
+            }
+        }
+
+        /**
+         * @return the number of elements removed
+         */
+        int clear() {
+            int removed = size;
+            Arrays.fill(heap, 0, size, null);
+            size = 0;
+            return removed;
+        }
+
+        private void siftUp(int index) {
+            Object element = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (compare(element, heap[parent]) <= 0) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = element;
+        }
+
+        private void siftDown(int index) {
+            Object element = heap[index];
+            int half = size >>> 1;
+            while (index < half) {
+                int child = (index << 1) + 1;
+                int right = child + 1;
+                if (right < size && compare(heap[right], heap[child]) > 0) {
+                    child = right;
+                }
+                if (compare(element, heap[child]) >= 0) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = element;
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compare(Object left, Object right) {
+            return comparator.compare((E) left, (E) right);
+        }
+    }
+
+}
@@ -21,6 +21,7 @@ import com.newrelic.agent.config.AgentConfig;
 import com.newrelic.agent.config.AgentConfigListener;
 import com.newrelic.agent.config.TransactionEventsConfig;
 import com.newrelic.agent.database.DatastoreMetrics;
+import com.newrelic.agent.interfaces.SamplingPriorityQueue;
 import com.newrelic.agent.model.CountedDuration;
 import com.newrelic.agent.model.PathHashes;
 import com.newrelic.agent.model.SyntheticsIds;
@@ -71,7 +72,7 @@ public class TransactionEventsService extends AbstractService implements EventSe
     private volatile TransactionEventsConfig config;
 
     // key is app name, value is collection of per-transaction analytic events for next harvest for that app.
-    private final ConcurrentHashMap<String, DistributedSamplingPriorityQueue<TransactionEvent>> reservoirForApp = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SamplingPriorityQueue<TransactionEvent>> reservoirForApp = new ConcurrentHashMap<>();
     // key is app name, value is collection of per-synthetic-transaction analytic events for next harvest for that app
     private final ConcurrentHashMap<String, DistributedSamplingPriorityQueue<TransactionEvent>> syntheticsListForApp = new ConcurrentHashMap<>();
     // key is the app name, value is if it is enabled - should be a limited number of names
@@ -192,12 +193,16 @@ public class TransactionEventsService extends AbstractService implements EventSe
         beforeHarvestSynthetics(appName);
 
         int targetStored = config.getTargetSamplesStored();
-        DistributedSamplingPriorityQueue<TransactionEvent> currentReservoir = reservoirForApp.get(appName);
+        SamplingPriorityQueue<TransactionEvent> currentReservoir = reservoirForApp.get(appName);
         int decidedLast = AdaptiveSampling.decidedLast(currentReservoir, targetStored);
 
         // Now the reservoir for per-transaction analytic events from ordinary non-synthetic transactions
-        final DistributedSamplingPriorityQueue<TransactionEvent> reservoirToSend = reservoirForApp.put(appName,
-                new DistributedSamplingPriorityQueue<TransactionEvent>(appName, "Transaction Event Service", maxSamplesStored, decidedLast, targetStored));
+        final SamplingPriorityQueue<TransactionEvent> reservoirToSend = reservoirForApp.put(appName,
+                createReservoir(appName, decidedLast, targetStored));
+        if (reservoirToSend instanceof StripedSamplingPriorityQueue) {
+            // transactions still holding the old reservoir add their events to the new one from here on
+            ((StripedSamplingPriorityQueue<TransactionEvent>) reservoirToSend).close();
+        }
 
         if (reservoirToSend != null && reservoirToSend.size() > 0) {
             try {
@@ -252,7 +257,7 @@ public class TransactionEventsService extends AbstractService implements EventSe
     }
 
     private void recordSupportabilityMetrics(StatsEngine statsEngine, long durationInNanos,
-            DistributedSamplingPriorityQueue<TransactionEvent> reservoir) {
+            SamplingPriorityQueue<TransactionEvent> reservoir) {
         statsEngine.getStats(MetricNames.SUPPORTABILITY_TRANSACTION_EVENT_SERVICE_TRANSACTION_EVENT_SENT)
                 .incrementCallCount(reservoir.size());
         statsEngine.getStats(MetricNames.SUPPORTABILITY_TRANSACTION_EVENT_SERVICE_TRANSACTION_EVENT_SEEN)
@@ -345,23 +350,37 @@ public class TransactionEventsService extends AbstractService implements EventSe
         }
 
         if (!persisted) { // the event is not from synthetics, or it is but the synthetics buffer is full
-            DistributedSamplingPriorityQueue<TransactionEvent> currentReservoir = reservoirForApp.get(appName);
-            while (currentReservoir == null) {
-                // I don't think this loop can actually execute more than once, but it's prudent to assume it can.
-                reservoirForApp.putIfAbsent(appName,
-                        new DistributedSamplingPriorityQueue<TransactionEvent>(appName, "Transaction Event Service", maxSamplesStored, 0, target));
-                currentReservoir = reservoirForApp.get(appName);
-            }
-            if (!currentReservoir.isFull() || currentReservoir.getMinPriority() < transactionData.getPriority()) {
+            TransactionEvent event = null;
+            while (true) {
+                SamplingPriorityQueue<TransactionEvent> currentReservoir = getOrCreateDistributedSamplingReservoir(appName);
+                if (currentReservoir.isFull() && currentReservoir.getMinPriority() >= transactionData.getPriority()) {
+                    currentReservoir.incrementNumberOfTries();
+                    break;
+                }
                 // If the reservoir is not full or it is full and our current transaction
                 // is greater than the min in the reservoir we should try to create and add it
-                currentReservoir.add(createEvent(transactionData, transactionStats, getMetricName(transactionData)));
-            } else {
-                currentReservoir.incrementNumberOfTries();
+                if (event == null) {
+                    event = createEvent(transactionData, transactionStats, getMetricName(transactionData));
+                }
+                if (currentReservoir.add(event) || !isClosed(currentReservoir)) {
+                    break;
+                }
+                // the reservoir was harvested while we were adding, so the event goes into the next harvest
             }
         }
     }
 
+    private static boolean isClosed(SamplingPriorityQueue<TransactionEvent> reservoir) {
+        return reservoir instanceof StripedSamplingPriorityQueue && ((StripedSamplingPriorityQueue<TransactionEvent>) reservoir).isClosed();
+    }
+
+    private SamplingPriorityQueue<TransactionEvent> createReservoir(String appName, int decidedLast, int target) {
+        if (config.isStripedReservoir()) {
+            return new StripedSamplingPriorityQueue<>(appName, "Transaction Event Service", maxSamplesStored, decidedLast, target, null);
+        }
+        return new DistributedSamplingPriorityQueue<>(appName, "Transaction Event Service", maxSamplesStored, decidedLast, target);
+    }
+
     /**
      * Returns the metric name for the given transaction data using a cache so that only one copy
      * of any single metric name is kept in memory.
@@ -528,16 +547,15 @@ public class TransactionEventsService extends AbstractService implements EventSe
         }
     }
 
-    public DistributedSamplingPriorityQueue<TransactionEvent> getDistributedSamplingReservoir(String appName) {
+    public SamplingPriorityQueue<TransactionEvent> getDistributedSamplingReservoir(String appName) {
         return reservoirForApp.get(appName);
     }
 
-    public DistributedSamplingPriorityQueue<TransactionEvent> getOrCreateDistributedSamplingReservoir(String appName) {
-        DistributedSamplingPriorityQueue<TransactionEvent> reservoir = reservoirForApp.get(appName);
+    public SamplingPriorityQueue<TransactionEvent> getOrCreateDistributedSamplingReservoir(String appName) {
+        SamplingPriorityQueue<TransactionEvent> reservoir = reservoirForApp.get(appName);
         if (reservoir == null) {
             int target = config.getTargetSamplesStored();
-            reservoir = reservoirForApp.putIfAbsent(appName,
-                    new DistributedSamplingPriorityQueue<TransactionEvent>(appName, "Transaction Event Service", maxSamplesStored, 0, target));
+            reservoir = reservoirForApp.putIfAbsent(appName, createReservoir(appName, 0, target));
             if (reservoir == null) {
                 reservoir = reservoirForApp.get(appName);
             }
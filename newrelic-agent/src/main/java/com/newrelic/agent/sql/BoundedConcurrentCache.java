@@ -7,90 +7,298 @@
 
 package com.newrelic.agent.sql;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * 
+ *
  * Bounded concurrent cache that stores key value pairs (K,V).
- * 
- * When the cache reaches its maximum capacity, any new item added replaces the largest item in the cache.
- * 
+ *
+ * When the cache reaches its maximum capacity, any new item added replaces the smallest item in the cache.
+ *
  * To update a value in the cache, call <tt>putReplace</tt>.
- * 
+ *
+ * Values are kept in several heaps (shards), each with its own lock, so concurrent updates of different keys rarely
+ * contend. Every shard publishes its smallest value and eviction removes the smallest of those, so the cache keeps
+ * the largest values overall, not the largest per shard. Adding or replacing a value is O(log n) in the shard size.
+ *
  * This cache is thread-safe, but the behavior is not 100% deterministic and may end up returning slightly less
- * than the size limit in order to boost performance. However, it will never return a list that is over the limit. 
- * 
+ * than the size limit in order to boost performance. However, it will never return a list that is over the limit.
+ *
  * @param <K> Key type
  * @param <V> Value type
  */
 public class BoundedConcurrentCache<K, V extends Comparable<V> & CacheValue<K>> {
+    private static final int MAX_SHARDS = 16;
+    private static final int MIN_SHARD_CAPACITY = 16;
+
     private final int maxCapacity;
-    private final PriorityBlockingQueue<V> priorityQueue;
-    private final Cache<K, V> cache;
+    private final Comparator<V> comparator;
+    private final ConcurrentMap<K, Entry<K, V>> cache;
+    private final Shard<K, V>[] shards;
+    private final AtomicInteger size = new AtomicInteger();
 
     public BoundedConcurrentCache(int size) {
         this(size, null);
     }
 
+    @SuppressWarnings("unchecked")
     public BoundedConcurrentCache(int size, Comparator<V> comparator) {
         this.maxCapacity = size;
-        this.priorityQueue = new PriorityBlockingQueue<>(size, comparator);
-        this.cache = CacheBuilder.newBuilder()
-                .concurrencyLevel(16)
-                .build();
+        this.comparator = comparator;
+        this.cache = new ConcurrentHashMap<>(16, 0.75f, MAX_SHARDS);
+        int shardCount = Math.min(MAX_SHARDS, Integer.highestOneBit(Math.max(1, size / MIN_SHARD_CAPACITY)));
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard<>(this);
+        }
     }
 
     public V get(K sql) {
-        return cache.getIfPresent(sql);
+        Entry<K, V> entry = cache.get(sql);
+        return entry == null ? null : entry.value;
     }
 
     public V putIfAbsent(K key, V value) {
-        V putValue = cache.asMap().putIfAbsent(key, value);
-        if (putValue != null) {
-            return putValue;
+        Shard<K, V> shard = shardFor(key);
+        Entry<K, V> entry = new Entry<>(key, value, shard);
+        Entry<K, V> existing = cache.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing.value;
         }
-        priorityQueue.add(value);
+        shard.add(entry);
+        size.incrementAndGet();
 
         // replace min if cache gets full
-        while (priorityQueue.size() > maxCapacity) {
-            V val = priorityQueue.poll();
-            K sqlToRemove = val.getKey();
-            cache.invalidate(sqlToRemove);
+        while (size.get() > maxCapacity) {
+            if (!evictSmallest()) {
+                break;
+            }
         }
         return null;
     }
 
     /**
      * Inserts and replaces value in the cache. This method should be called whenever a value is modified.
-     * 
+     *
      * @param key key of value to update.
      */
     public void putReplace(K key, V value) {
-        V valueToRemove = cache.getIfPresent(key);
-        if (valueToRemove != null) {
-            cache.invalidate(key);
-            priorityQueue.remove(valueToRemove);
+        Entry<K, V> entry = cache.get(key);
+        if (entry != null) {
+            if (entry.shard.replace(entry, value)) {
+                return;
+            }
+            // evicted after we looked it up
+            cache.remove(key, entry);
         }
 
         putIfAbsent(key, value);
     }
 
     public int size() {
-        return priorityQueue.size();
+        // a put may be between adding its value and evicting the smallest one
+        return Math.min(size.get(), maxCapacity);
     }
 
     public void clear() {
-        cache.invalidateAll();
-        priorityQueue.clear();
+        cache.clear();
+        for (Shard<K, V> shard : shards) {
+            size.addAndGet(-shard.clear());
+        }
     }
 
     public List<V> asList() {
-        return new ArrayList<>(priorityQueue);
+        List<V> values = new ArrayList<>(size.get());
+        for (Shard<K, V> shard : shards) {
+            shard.addValuesTo(values);
+        }
+        if (values.size() > maxCapacity) {
+            // concurrent puts have not evicted yet, leave out what they will evict
+            Collections.sort(values, new Comparator<V>() {
+                @Override
+                public int compare(V first, V second) {
+                    return BoundedConcurrentCache.this.compare(second, first);
+                }
+            });
+            return new ArrayList<>(values.subList(0, maxCapacity));
+        }
+        return values;
+    }
+
+    /**
+     * Removes the smallest value from the shard with the smallest head.
+     *
+     * @return false if every shard was empty
+     */
+    private boolean evictSmallest() {
+        Shard<K, V> smallest = null;
+        V smallestHead = null;
+        for (Shard<K, V> shard : shards) {
+            V head = shard.head;
+            if (head != null && (smallestHead == null || compare(head, smallestHead) < 0)) {
+                smallest = shard;
+                smallestHead = head;
+            }
+        }
+        if (smallest == null) {
+            return false;
+        }
+        Entry<K, V> evicted = smallest.poll();
+        if (evicted != null) {
+            size.decrementAndGet();
+            cache.remove(evicted.key, evicted);
+        }
+        return true;
+    }
+
+    private Shard<K, V> shardFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return shards[h & (shards.length - 1)];
+    }
+
+    private int compare(V first, V second) {
+        return comparator == null ? first.compareTo(second) : comparator.compare(first, second);
+    }
+
+    private static final class Entry<K, V extends Comparable<V> & CacheValue<K>> {
+        static final int NOT_ADDED = -1;
+        static final int REMOVED = -2;
+
+        final K key;
+        final Shard<K, V> shard;
+        volatile V value;
+        // position in the shard heap. Guarded by the shard.
+        int index = NOT_ADDED;
+
+        Entry(K key, V value, Shard<K, V> shard) {
+            this.key = key;
+            this.value = value;
+            this.shard = shard;
+        }
+    }
+
+    /**
+     * A binary min-heap of entries that track their own position, so a modified value can be sifted in place instead
+     * of being searched for and removed.
+     */
+    private static final class Shard<K, V extends Comparable<V> & CacheValue<K>> {
+        private final BoundedConcurrentCache<K, V> owner;
+        private Entry<K, V>[] heap;
+        private int count;
+        // the smallest value in this shard, read without the lock when choosing a shard to evict from
+        volatile V head;
+
+        @SuppressWarnings("unchecked")
+        Shard(BoundedConcurrentCache<K, V> owner) {
+            this.owner = owner;
+            this.heap = new Entry[4];
+        }
+
+        synchronized void add(Entry<K, V> entry) {
+            if (count == heap.length) {
+                heap = Arrays.copyOf(heap, count << 1);
+            }
+            entry.index = count;
+            heap[count++] = entry;
+            siftUp(entry.index);
+            head = heap[0].value;
+        }
+
+        /**
+         * @return false if the entry is no longer in this shard
+         */
+        synchronized boolean replace(Entry<K, V> entry, V value) {
+            if (entry.index == Entry.REMOVED) {
+                return false;
+            }
+            entry.value = value;
+            if (entry.index == Entry.NOT_ADDED) {
+                // the put that created the entry has not added it yet and will add it with this value
+                return true;
+            }
+            siftDown(siftUp(entry.index));
+            head = heap[0].value;
+            return true;
+        }
+
+        synchronized Entry<K, V> poll() {
+            if (count == 0) {
+                return null;
+            }
+            Entry<K, V> smallest = heap[0];
+            Entry<K, V> last = heap[--count];
+            heap[count] = null;
+            if (count > 0) {
+                heap[0] = last;
+                last.index = 0;
+                siftDown(0);
+            }
+            smallest.index = Entry.REMOVED;
+            head = count > 0 ? heap[0].value : null;
+            return smallest;
+        }
+
+        synchronized int clear() {
+            int cleared = count;
+            for (int i = 0; i < count; i++) {
+                heap[i].index = Entry.REMOVED;
+                heap[i] = null;
+            }
+            count = 0;
+            head = null;
+            return cleared;
+        }
+
+        synchronized void addValuesTo(List<V> values) {
+            for (int i = 0; i < count; i++) {
+                values.add(heap[i].value);
+            }
+        }
+
+        private int siftUp(int index) {
+            Entry<K, V> entry = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                Entry<K, V> parentEntry = heap[parent];
+                if (owner.compare(entry.value, parentEntry.value) >= 0) {
+                    break;
+                }
+                heap[index] = parentEntry;
+                parentEntry.index = index;
+                index = parent;
+            }
+            heap[index] = entry;
+            entry.index = index;
+            return index;
+        }
+
+        private void siftDown(int index) {
+            Entry<K, V> entry = heap[index];
+            int half = count >>> 1;
+            while (index < half) {
+                int child = (index << 1) + 1;
+                int right = child + 1;
+                if (right < count && owner.compare(heap[right].value, heap[child].value) < 0) {
+                    child = right;
+                }
+                Entry<K, V> childEntry = heap[child];
+                if (owner.compare(entry.value, childEntry.value) <= 0) {
+                    break;
+                }
+                heap[index] = childEntry;
+                childEntry.index = index;
+                index = child;
+            }
+            heap[index] = entry;
+            entry.index = index;
+        }
     }
 }
@@ -0,0 +1,378 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.stats;
+
+import com.newrelic.agent.metric.InternedMetricIdRegistry;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map of metric name to stats keyed by interned metric id. The entries are kept in dense arrays of local slots, and a
+ * small open-addressed table maps a metric id to its slot, so looking up the stats for an id never hashes the metric
+ * name and adding an entry allocates no node. The arrays grow with the number of entries in this map and not with the
+ * highest id in the registry, which matters because the registry is shared by the whole agent while most maps only
+ * live for one transaction. Names that could not be interned (the registry is full) are kept in a small name-keyed
+ * overflow map.
+ *
+ * When the registry is cleared, entries are re-keyed by name the next time an entry is added, the map is merged or
+ * its entries are read.
+ *
+ * This class is not thread-safe. Like the stats engines that use it, a map must only be used by one thread at a time.
+ */
+class MetricIdStatsMap extends AbstractMap<String, StatsBase> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int EMPTY = 0;
+
+    private final InternedMetricIdRegistry registry;
+    private int epoch;
+    private int[] ids;
+    private String[] names;
+    private StatsBase[] values;
+    private int size;
+    // slot + 1 of the entry for an id, or EMPTY; never more than half full
+    private int[] slots;
+    private Map<String, StatsBase> overflow;
+
+    MetricIdStatsMap(InternedMetricIdRegistry registry, int expectedSize) {
+        this.registry = registry;
+        this.epoch = registry.getEpoch();
+        int capacity = Math.max(MIN_CAPACITY, expectedSize);
+        ids = new int[capacity];
+        names = new String[capacity];
+        values = new StatsBase[capacity];
+        slots = new int[tableSizeFor(capacity)];
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 2;
+    }
+
+    InternedMetricIdRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the stats for the interned metric id, or null if there are none or the registry has changed since the
+     * entries were keyed (in which case {@link #putIfAbsentById(int, String, StatsBase)} re-keys them)
+     */
+    StatsBase getById(int metricId) {
+        return epoch == registry.getEpoch() ? valueOf(metricId) : null;
+    }
+
+    private StatsBase valueOf(int metricId) {
+        int slot = slotOf(metricId);
+        return slot < 0 ? null : values[slot];
+    }
+
+    /**
+     * Adds the stats for the metric unless there already are stats for it.
+     *
+     * @param metricId the id of the metric name in this map's registry
+     * @return the stats now in the map for the metric
+     */
+    StatsBase putIfAbsentById(int metricId, String metricName, StatsBase stats) {
+        if (epoch != registry.getEpoch()) {
+            // the id may have been looked up before the registry was cleared
+            rekey();
+            StatsBase existing = lookup(metricName);
+            if (existing == null) {
+                store(metricName, stats);
+                return stats;
+            }
+            return existing;
+        }
+        StatsBase existing = valueOf(metricId);
+        if (existing != null) {
+            return existing;
+        }
+        putById(metricId, metricName, stats);
+        return stats;
+    }
+
+    private int slotOf(int metricId) {
+        int mask = slots.length - 1;
+        for (int i = hash(metricId) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i] - 1;
+            if (slot < 0 || ids[slot] == metricId) {
+                return slot;
+            }
+        }
+    }
+
+    private static int hash(int metricId) {
+        int h = metricId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private StatsBase putById(int metricId, String metricName, StatsBase stats) {
+        int slot = slotOf(metricId);
+        if (slot >= 0) {
+            StatsBase previous = values[slot];
+            names[slot] = metricName;
+            values[slot] = stats;
+            return previous;
+        }
+        if (size == ids.length) {
+            int capacity = size << 1;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        slot = size++;
+        ids[slot] = metricId;
+        names[slot] = metricName;
+        values[slot] = stats;
+        if (size << 1 > slots.length) {
+            slots = new int[slots.length << 1];
+            reindex();
+        } else {
+            index(slot);
+        }
+        return null;
+    }
+
+    private void index(int slot) {
+        int mask = slots.length - 1;
+        int i = hash(ids[slot]) & mask;
+        while (slots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = slot + 1;
+    }
+
+    private void reindex() {
+        Arrays.fill(slots, EMPTY);
+        for (int slot = 0; slot < size; slot++) {
+            index(slot);
+        }
+    }
+
+    private StatsBase removeById(int metricId) {
+        int slot = slotOf(metricId);
+        if (slot < 0) {
+            return null;
+        }
+        StatsBase removed = values[slot];
+        unindex(metricId);
+        int last = --size;
+        if (slot != last) {
+            // move the last entry into the hole so the slots stay dense
+            slots[indexOf(ids[last])] = slot + 1;
+            ids[slot] = ids[last];
+            names[slot] = names[last];
+            values[slot] = values[last];
+        }
+        names[last] = null;
+        values[last] = null;
+        return removed;
+    }
+
+    private int indexOf(int metricId) {
+        int mask = slots.length - 1;
+        int i = hash(metricId) & mask;
+        while (ids[slots[i] - 1] != metricId) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Removes the id from the table, shifting back the entries after it that would otherwise no longer be found.
+     */
+    private void unindex(int metricId) {
+        int mask = slots.length - 1;
+        int hole = indexOf(metricId);
+        for (int i = (hole + 1) & mask; slots[i] != EMPTY; i = (i + 1) & mask) {
+            int home = hash(ids[slots[i] - 1]) & mask;
+            boolean reachable = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+            if (!reachable) {
+                slots[hole] = slots[i];
+                hole = i;
+            }
+        }
+        slots[hole] = EMPTY;
+    }
+
+    private StatsBase lookup(String metricName) {
+        int id = registry.getId(metricName);
+        if (id == InternedMetricIdRegistry.NO_ID) {
+            return overflow == null ? null : overflow.get(metricName);
+        }
+        return valueOf(id);
+    }
+
+    private StatsBase store(String metricName, StatsBase stats) {
+        int id = registry.intern(metricName);
+        if (id == InternedMetricIdRegistry.NO_ID) {
+            if (overflow == null) {
+                overflow = new HashMap<>();
+            }
+            return overflow.put(metricName, stats);
+        }
+        return putById(id, metricName, stats);
+    }
+
+    /**
+     * Moves every entry to the id its name has now, merging entries that turn out to have the same name.
+     */
+    private void rekey() {
+        int oldSize = size;
+        String[] oldNames = names;
+        StatsBase[] oldValues = values;
+        Map<String, StatsBase> oldOverflow = overflow;
+
+        epoch = registry.getEpoch();
+        names = new String[oldNames.length];
+        values = new StatsBase[oldValues.length];
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        overflow = null;
+        for (int slot = 0; slot < oldSize; slot++) {
+            mergeByName(oldNames[slot], oldValues[slot]);
+        }
+        if (oldOverflow != null) {
+            for (Entry<String, StatsBase> entry : oldOverflow.entrySet()) {
+                mergeByName(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void mergeByName(String metricName, StatsBase stats) {
+        StatsBase ours = lookup(metricName);
+        if (ours == null) {
+            store(metricName, stats);
+        } else {
+            ours.merge(stats);
+        }
+    }
+
+    /**
+     * Merges the other map's stats into this one by id. Stats missing from this map are taken over by reference, the
+     * same way {@link SimpleStatsEngine#mergeStats(SimpleStatsEngine)} does.
+     */
+    void mergeFrom(MetricIdStatsMap other) {
+        if (epoch != registry.getEpoch()) {
+            rekey();
+        }
+        if (other.epoch != epoch) {
+            for (Entry<String, StatsBase> entry : other.entrySet()) {
+                mergeByName(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        for (int slot = 0; slot < other.size; slot++) {
+            int id = other.ids[slot];
+            StatsBase theirs = other.values[slot];
+            StatsBase ours = valueOf(id);
+            if (ours == null) {
+                putById(id, other.names[slot], theirs);
+            } else {
+                ours.merge(theirs);
+            }
+        }
+        if (other.overflow != null) {
+            for (Entry<String, StatsBase> entry : other.overflow.entrySet()) {
+                mergeByName(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public StatsBase get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        if (epoch != registry.getEpoch()) {
+            rekey();
+        }
+        return lookup((String) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public StatsBase put(String key, StatsBase value) {
+        if (epoch != registry.getEpoch()) {
+            rekey();
+        }
+        return store(key, value);
+    }
+
+    @Override
+    public StatsBase remove(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        if (epoch != registry.getEpoch()) {
+            rekey();
+        }
+        int id = registry.getId((String) key);
+        if (id == InternedMetricIdRegistry.NO_ID) {
+            return overflow == null ? null : overflow.remove(key);
+        }
+        return removeById(id);
+    }
+
+    @Override
+    public int size() {
+        return size + (overflow == null ? 0 : overflow.size());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+        overflow = null;
+        epoch = registry.getEpoch();
+    }
+
+    /**
+     * Returns a snapshot of the entries. Changes to the map after this call are not reflected in the returned set.
+     */
+    @Override
+    public Set<Entry<String, StatsBase>> entrySet() {
+        if (epoch != registry.getEpoch()) {
+            rekey();
+        }
+        final List<Entry<String, StatsBase>> entries = new ArrayList<>(size());
+        for (int slot = 0; slot < size; slot++) {
+            entries.add(new SimpleImmutableEntry<>(names[slot], values[slot]));
+        }
+        if (overflow != null) {
+            for (Entry<String, StatsBase> entry : overflow.entrySet()) {
+                entries.add(new SimpleImmutableEntry<>(entry));
+            }
+        }
+        return new AbstractSet<Entry<String, StatsBase>>() {
+            @Override
+            public Iterator<Entry<String, StatsBase>> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+}
@@ -10,6 +10,7 @@ package com.newrelic.agent.stats;
 import com.newrelic.agent.MetricData;
 import com.newrelic.agent.MetricNames;
 import com.newrelic.agent.database.DatastoreMetrics;
+import com.newrelic.agent.metric.InternedMetricIdRegistry;
 import com.newrelic.agent.metric.MetricName;
 import com.newrelic.agent.normalization.Normalizer;
 import com.newrelic.agent.service.ServiceFactory;
@@ -26,7 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * A class for recording metric stats.
  *
- * This class is thread-safe.
+ * This class is thread-safe, unless it is keyed by metric id (see {@link #create(int, boolean)}).
  */
 public class SimpleStatsEngine {
 
@@ -44,6 +45,31 @@ public class SimpleStatsEngine {
         stats = new ConcurrentHashMap<>(capacity);
     }
 
+    SimpleStatsEngine(Map<String, StatsBase> stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Creates an engine whose stats are keyed by interned metric id, or by metric name. An engine keyed by id stores
+     * its stats by the ids of {@link InternedMetricIdRegistry#INSTANCE} and is not thread-safe, so it must only be used
+     * by one thread at a time. Metric id mode is turned on with
+     * {@link com.newrelic.agent.config.AgentConfig#isMetricIdMode()}.
+     */
+    static SimpleStatsEngine create(int capacity, boolean keyedByMetricId) {
+        if (keyedByMetricId) {
+            return new SimpleStatsEngine(new MetricIdStatsMap(InternedMetricIdRegistry.INSTANCE, capacity));
+        }
+        return new SimpleStatsEngine(capacity);
+    }
+
+    /**
+     * @return true if stats are keyed by interned metric id, so {@link #getOrCreateResponseTimeStats(int, String)}
+     * can skip the metric name lookup
+     */
+    public boolean isKeyedByMetricId() {
+        return stats instanceof MetricIdStatsMap;
+    }
+
     public Map<String, StatsBase> getStatsMap() {
         return stats;
     }
@@ -82,6 +108,31 @@ public class SimpleStatsEngine {
         }
     }
 
+    /**
+     * Gets the response time stats of a metric by its id in {@link InternedMetricIdRegistry#INSTANCE}. Engines that are
+     * not keyed by metric id, and ids that are {@link InternedMetricIdRegistry#NO_ID}, use the metric name instead.
+     */
+    public ResponseTimeStats getOrCreateResponseTimeStats(int metricId, String metric) {
+        if (metricId == InternedMetricIdRegistry.NO_ID || !(stats instanceof MetricIdStatsMap)
+                || ((MetricIdStatsMap) stats).getRegistry() != InternedMetricIdRegistry.INSTANCE) {
+            return getOrCreateResponseTimeStats(metric);
+        }
+        if (metric == null) {
+            throw new RuntimeException("Cannot get a stat for a null metric");
+        }
+        MetricIdStatsMap statsById = (MetricIdStatsMap) stats;
+        StatsBase s = statsById.getById(metricId);
+        if (s == null) {
+            s = statsById.putIfAbsentById(metricId, metric, new ResponseTimeStatsImpl());
+        }
+        if (s instanceof ResponseTimeStats) {
+            return (ResponseTimeStats) s;
+        } else {
+            String msg = MessageFormat.format("The stats object for {0} is of type {1}", metric, s.getClass().getName());
+            throw new RuntimeException(msg);
+        }
+    }
+
     public void recordEmptyStats(String metricName) {
         if (metricName == null) {
             throw new RuntimeException("Cannot record a stat for a null metric");
@@ -107,6 +158,14 @@ public class SimpleStatsEngine {
     }
 
     public void mergeStats(SimpleStatsEngine other) {
+        if (stats instanceof MetricIdStatsMap && other.stats instanceof MetricIdStatsMap) {
+            MetricIdStatsMap ours = (MetricIdStatsMap) stats;
+            MetricIdStatsMap theirs = (MetricIdStatsMap) other.stats;
+            if (ours.getRegistry() == theirs.getRegistry()) {
+                ours.mergeFrom(theirs);
+                return;
+            }
+        }
         for (Entry<String, StatsBase> entry : other.stats.entrySet()) {
             StatsBase ourStats = stats.get(entry.getKey());
             StatsBase otherStats = entry.getValue();
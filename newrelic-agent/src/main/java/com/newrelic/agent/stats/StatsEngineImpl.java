@@ -36,13 +36,22 @@ public class StatsEngineImpl implements StatsEngine {
 
     private final SimpleStatsEngine unscopedStats;
     private final Map<String, SimpleStatsEngine> scopedStats;
+    private final boolean keyedByMetricId;
 
     public StatsEngineImpl() {
         this(DEFAULT_CAPACITY);
     }
 
     public StatsEngineImpl(int capacity) {
-        unscopedStats = new SimpleStatsEngine(capacity);
+        this(capacity, false);
+    }
+
+    /**
+     * @param keyedByMetricId true to key stats by interned metric id, see {@link SimpleStatsEngine#create(int, boolean)}
+     */
+    public StatsEngineImpl(int capacity, boolean keyedByMetricId) {
+        this.keyedByMetricId = keyedByMetricId;
+        unscopedStats = SimpleStatsEngine.create(capacity, keyedByMetricId);
         scopedStats = new HashMap<>(capacity);
     }
 
@@ -84,7 +93,7 @@ public class StatsEngineImpl implements StatsEngine {
         if (metricName.isScoped()) {
             SimpleStatsEngine statsEngine = scopedStats.get(metricName.getScope());
             if (statsEngine == null) {
-                statsEngine = new SimpleStatsEngine(DEFAULT_SCOPED_CAPACITY);
+                statsEngine = SimpleStatsEngine.create(DEFAULT_SCOPED_CAPACITY, keyedByMetricId);
                 scopedStats.put(metricName.getScope(), statsEngine);
             }
             return statsEngine;
@@ -158,7 +167,7 @@ public class StatsEngineImpl implements StatsEngine {
         for (Entry<String, SimpleStatsEngine> entry : other.scopedStats.entrySet()) {
             SimpleStatsEngine scopedStatsEngine = scopedStats.get(entry.getKey());
             if (scopedStatsEngine == null) {
-                scopedStatsEngine = new SimpleStatsEngine(entry.getValue().getSize());
+                scopedStatsEngine = SimpleStatsEngine.create(entry.getValue().getSize(), keyedByMetricId);
                 scopedStats.put(entry.getKey(), scopedStatsEngine);
             }
             scopedStatsEngine.mergeStats(entry.getValue());
@@ -173,7 +182,7 @@ public class StatsEngineImpl implements StatsEngine {
         }
         SimpleStatsEngine scopedStatsEngine = scopedStats.get(resolvedScope);
         if (scopedStatsEngine == null) {
-            scopedStatsEngine = new SimpleStatsEngine(txStats.getScopedStats().getSize());
+            scopedStatsEngine = SimpleStatsEngine.create(txStats.getScopedStats().getSize(), keyedByMetricId);
             scopedStats.put(resolvedScope, scopedStatsEngine);
         }
         scopedStatsEngine.mergeStats(txStats.getScopedStats());
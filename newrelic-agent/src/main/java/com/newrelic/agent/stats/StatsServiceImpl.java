@@ -34,10 +34,12 @@ public class StatsServiceImpl extends AbstractService implements StatsService {
     private final ConcurrentMap<String, StatsEngineQueue> statsEngineQueues = new ConcurrentHashMap<>();
     private volatile StatsEngineQueue defaultStatsEngineQueue;
     private final String defaultAppName;
+    private final boolean metricIdMode;
 
     public StatsServiceImpl() {
         super(StatsService.class.getSimpleName());
         defaultAppName = ServiceFactory.getConfigService().getDefaultAgentConfig().getApplicationName();
+        metricIdMode = ServiceFactory.getConfigService().getDefaultAgentConfig().isMetricIdMode();
         defaultStatsEngineQueue = createStatsEngineQueue();
     }
 
@@ -105,7 +107,7 @@ public class StatsServiceImpl extends AbstractService implements StatsService {
     }
 
     private StatsEngineQueue createStatsEngineQueue() {
-        return new StatsEngineQueue();
+        return new StatsEngineQueue(metricIdMode);
     }
 
     private static class StatsEngineQueue {
@@ -113,11 +115,13 @@ public class StatsServiceImpl extends AbstractService implements StatsService {
         private final Lock readLock;
         private final Lock writeLock;
         private final AtomicInteger statsEngineCount = new AtomicInteger();
+        private final boolean metricIdMode;
 
         // reference is guarded by readLock + writeLock
         private ConcurrentLinkedQueue<StatsEngine> statsEngineQueue = new ConcurrentLinkedQueue<>();
 
-        private StatsEngineQueue() {
+        private StatsEngineQueue(boolean metricIdMode) {
+            this.metricIdMode = metricIdMode;
             ReadWriteLock lock = new ReentrantReadWriteLock();
             readLock = lock.readLock();
             writeLock = lock.writeLock();
@@ -211,7 +215,7 @@ public class StatsServiceImpl extends AbstractService implements StatsService {
         }
 
         private StatsEngine createStatsEngine() {
-            return new StatsEngineImpl();
+            return new StatsEngineImpl(StatsEngineImpl.DEFAULT_CAPACITY, metricIdMode);
         }
     }
 
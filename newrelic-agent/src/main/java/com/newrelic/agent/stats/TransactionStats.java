@@ -12,8 +12,20 @@ package com.newrelic.agent.stats;
  */
 public class TransactionStats {
 
-    private final SimpleStatsEngine unscopedStats = new SimpleStatsEngine(16);
-    private final SimpleStatsEngine scopedStats = new SimpleStatsEngine();
+    private final SimpleStatsEngine unscopedStats;
+    private final SimpleStatsEngine scopedStats;
+
+    public TransactionStats() {
+        this(false);
+    }
+
+    /**
+     * @param keyedByMetricId true to key stats by interned metric id, see {@link SimpleStatsEngine#create(int, boolean)}
+     */
+    public TransactionStats(boolean keyedByMetricId) {
+        unscopedStats = SimpleStatsEngine.create(16, keyedByMetricId);
+        scopedStats = SimpleStatsEngine.create(SimpleStatsEngine.DEFAULT_CAPACITY, keyedByMetricId);
+    }
 
     public SimpleStatsEngine getUnscopedStats() {
         return unscopedStats;
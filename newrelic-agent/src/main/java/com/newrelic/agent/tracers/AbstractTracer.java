@@ -167,7 +167,12 @@ public abstract class AbstractTracer implements Tracer, AttributeHolder {
 
     @Override
     public TracedMethod getParentTracedMethod() {
-        return getParentTracer();
+        Tracer parent = getParentTracer();
+        if (parent instanceof PooledTracer) {
+            // the API caller can keep the parent after it finishes
+            ((PooledTracer) parent).retain();
+        }
+        return parent;
     }
 
     @Override
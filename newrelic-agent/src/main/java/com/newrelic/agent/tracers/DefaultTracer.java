@@ -19,12 +19,15 @@ import com.newrelic.agent.database.SqlObfuscator;
 import com.newrelic.agent.database.DatastoreMetrics;
 import com.newrelic.agent.service.ServiceFactory;
 import com.newrelic.agent.stats.ResponseTimeStats;
+import com.newrelic.agent.stats.SimpleStatsEngine;
 import com.newrelic.agent.stats.TransactionStats;
 import com.newrelic.agent.trace.TransactionGuidFactory;
 import com.newrelic.agent.trace.TransactionSegment;
 import com.newrelic.agent.tracers.metricname.MetricNameFormat;
+import com.newrelic.agent.tracers.metricname.MetricNameFormats;
 import com.newrelic.agent.tracers.metricname.SimpleMetricNameFormat;
 import com.newrelic.agent.util.ExternalsUtil;
+import com.newrelic.agent.util.StackCapture;
 import com.newrelic.agent.util.Strings;
 import com.newrelic.api.agent.*;
 import org.objectweb.asm.Opcodes;
@@ -338,7 +341,8 @@ public class DefaultTracer extends AbstractTracer {
      * unless you are in a test.
      */
     public void storeStackTrace() {
-        setAgentAttribute(BACKTRACE_PARAMETER_NAME, Thread.currentThread().getStackTrace());
+        setAgentAttribute(BACKTRACE_PARAMETER_NAME, StackCapture.captureBacktrace(
+                ServiceFactory.getConfigService().getDefaultAgentConfig().getMaxStackTraceLines()));
     }
 
     @Override
@@ -442,7 +446,10 @@ public class DefaultTracer extends AbstractTracer {
             String metricName = getMetricName();
             if (metricName != null) {
                 // record the scoped metrics
-                ResponseTimeStats stats = transactionStats.getScopedStats().getOrCreateResponseTimeStats(metricName);
+                SimpleStatsEngine scopedStats = transactionStats.getScopedStats();
+                ResponseTimeStats stats = scopedStats.isKeyedByMetricId()
+                        ? scopedStats.getOrCreateResponseTimeStats(MetricNameFormats.getMetricId(metricNameFormat), metricName)
+                        : scopedStats.getOrCreateResponseTimeStats(metricName);
                 stats.recordResponseTimeInNanos(getDuration(), getExclusiveDuration());
 
                 // there is now an unscoped metric for every scoped metric
@@ -465,6 +472,16 @@ public class DefaultTracer extends AbstractTracer {
         }
     }
 
+    /**
+     * Record the metrics of a {@link PooledTracer} that was promoted to this tracer. The pooled tracer stays on the
+     * tracer stack and measures the call, so its timings are copied here before the metrics are recorded.
+     */
+    void recordPromotedMetrics(TransactionStats transactionStats, long duration, long exclusiveDuration) {
+        this.duration = duration;
+        this.exclusiveDuration = exclusiveDuration;
+        recordMetrics(transactionStats);
+    }
+
     /**
      * Generate additional metrics. Subclasses may override.
      */
@@ -0,0 +1,512 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.tracers;
+
+import com.newrelic.agent.Agent;
+import com.newrelic.agent.Transaction;
+import com.newrelic.agent.TransactionActivity;
+import com.newrelic.agent.bridge.TracedMethod;
+import com.newrelic.agent.bridge.TransactionNamePriority;
+import com.newrelic.agent.bridge.external.ExternalParameters;
+import com.newrelic.agent.config.TransactionTracerConfig;
+import com.newrelic.agent.database.SqlObfuscator;
+import com.newrelic.agent.stats.ResponseTimeStats;
+import com.newrelic.agent.stats.SimpleStatsEngine;
+import com.newrelic.agent.trace.TransactionSegment;
+import com.newrelic.agent.tracers.metricname.MetricNameFormat;
+import com.newrelic.agent.tracers.metricname.MetricNameFormats;
+import com.newrelic.api.agent.InboundHeaders;
+import com.newrelic.api.agent.OutboundHeaders;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * A metrics-only tracer that is reused instead of allocated. Each {@link TransactionActivity} keeps a small stack of
+ * these, one per nesting depth, and hands the one for the current depth out again every time a tracer at that depth
+ * starts. Starting and finishing a pooled tracer therefore creates no objects.
+ *
+ * <p>
+ * Like the {@link UltraLightTracer}, a pooled tracer is never a transaction segment. It is only used for non-leaf
+ * tracers that would not have been segments anyway, so it records the same scoped metric as a {@link DefaultTracer}.
+ * Unlike the {@link UltraLightTracer} it can have children and it tracks its exclusive time.
+ *
+ * <p>
+ * The tracer API can still turn any traced method into an external call, rename it, add rollup metrics or notice an
+ * error. The first call that needs more than the scoped metric promotes the pooled tracer: it creates the
+ * {@link DefaultTracer} the call would have gotten without pooling and forwards that call and all later ones to it.
+ * The pooled tracer stays on the tracer stack, and when it finishes the promoted tracer records the metrics with the
+ * measured times.
+ *
+ * <p>
+ * A pooled tracer must not be reused while something still refers to it after it finishes: a segment tracer below it
+ * that is kept for the transaction trace, or a traced method, token or segment handed out by the API. Those paths call
+ * {@link #retain()}, see {@link TransactionActivity#retainLastTracer()}, and a retained tracer is dropped from the pool
+ * when it finishes instead of being reused. Ordinary child tracers only refer to it while they run, so they do not
+ * retain it.
+ *
+ * @see TransactionActivity#startPooledTracer(ClassMethodSignature, MetricNameFormat, int)
+ */
+public class PooledTracer implements Tracer {
+
+    private final TransactionActivity txa;
+    private final int depth;
+    private Tracer parentTracer;
+    private ClassMethodSignature classMethodSignature;
+    private MetricNameFormat metricNameFormat;
+    private int tracerFlags;
+    private long startTime;
+    private long duration;
+    private long exclusiveDuration;
+    private int childCount;
+    private boolean retained;
+    private DefaultTracer promoted;
+
+    public PooledTracer(TransactionActivity txa, int depth) {
+        this.txa = txa;
+        this.depth = depth;
+    }
+
+    /**
+     * Resets this tracer for a new method invocation.
+     */
+    public void start(Tracer parent, ClassMethodSignature sig, MetricNameFormat mnf, int flags) {
+        parentTracer = parent;
+        classMethodSignature = sig;
+        metricNameFormat = mnf;
+        tracerFlags = TracerFlags.clearSegment(flags);
+        startTime = System.nanoTime();
+        duration = 0;
+        exclusiveDuration = 0;
+        childCount = 0;
+        retained = false;
+        promoted = null;
+    }
+
+    /**
+     * The nesting depth of this tracer among the pooled tracers of its activity.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Marks this tracer, and the pooled tracers it is nested in, as referenced from outside the pool.
+     */
+    public void retain() {
+        Tracer current = this;
+        while (current instanceof PooledTracer && !((PooledTracer) current).retained) {
+            ((PooledTracer) current).retained = true;
+            current = current.getParentTracer();
+        }
+    }
+
+    public boolean isRetained() {
+        return retained;
+    }
+
+    /**
+     * Whether an API call promoted this tracer to a {@link DefaultTracer}.
+     */
+    public boolean isPromoted() {
+        return promoted != null;
+    }
+
+    /**
+     * Get the {@link DefaultTracer} that handles the API calls a pooled tracer can not, creating it on the first call.
+     */
+    private DefaultTracer promote() {
+        if (promoted == null) {
+            // the promoted tracer keeps state for this invocation, so this one must not be reused before it finishes
+            retain();
+            promoted = new DefaultTracer(txa, classMethodSignature, null, metricNameFormat, tracerFlags, startTime);
+            promoted.setParentTracer(parentTracer);
+        }
+        return promoted;
+    }
+
+    @Override
+    public void finish(int opcode, Object returnValue) {
+        doFinish(opcode);
+    }
+
+    @Override
+    public void finish(Throwable throwable) {
+        Transaction tx = txa.getTransaction();
+        if (tx != null && promoted != null) {
+            promoted.setThrownException(throwable);
+            tx.noticeTracerException(throwable, promoted.getGuid());
+        }
+        doFinish(Opcodes.ATHROW);
+    }
+
+    private void doFinish(int opcode) {
+        long finishTime = System.nanoTime();
+        Transaction tx = txa.getTransaction();
+        if (tx != null && !tx.getTransactionState().finish(tx, this)) {
+            return;
+        }
+
+        duration = Math.max(0, finishTime - startTime);
+        exclusiveDuration += duration;
+        if (exclusiveDuration < 0 || exclusiveDuration > duration) {
+            exclusiveDuration = duration;
+        }
+
+        txa.lockTracerStart();
+        try {
+            if (parentTracer != null && parentTracer.getTransactionActivity() == txa) {
+                parentTracer.childTracerFinished(this);
+            }
+            if (promoted != null) {
+                promoted.recordPromotedMetrics(txa.getTransactionStats(), duration, exclusiveDuration);
+            } else if (tx != null && !tx.isIgnore() && isMetricProducer()) {
+                String metricName = getMetricName();
+                if (metricName != null) {
+                    SimpleStatsEngine scopedStats = txa.getTransactionStats().getScopedStats();
+                    ResponseTimeStats stats = scopedStats.isKeyedByMetricId()
+                            ? scopedStats.getOrCreateResponseTimeStats(MetricNameFormats.getMetricId(metricNameFormat), metricName)
+                            : scopedStats.getOrCreateResponseTimeStats(metricName);
+                    stats.recordResponseTimeInNanos(duration, exclusiveDuration);
+                }
+            }
+            txa.tracerFinished(this, opcode);
+        } catch (Throwable t) {
+            Agent.LOG.log(Level.FINER, t, "An error occurred finishing pooled tracer for class {0}",
+                    classMethodSignature.getClassName());
+        } finally {
+            txa.pooledTracerFinished(this);
+            txa.unlockTracerStart();
+        }
+    }
+
+    @Override
+    public void childTracerFinished(Tracer child) {
+        if (child.isMetricProducer() && !(child instanceof SkipTracer)) {
+            childCount++;
+            exclusiveDuration -= child.getDuration();
+        }
+    }
+
+    /**
+     * Called when a flyweight tracer nested in this one finishes.
+     */
+    public void childTracerFinished(long childDurationInNanos) {
+        exclusiveDuration -= childDurationInNanos;
+    }
+
+    @Override
+    public int getChildCount() {
+        return childCount;
+    }
+
+    @Override
+    public boolean isMetricProducer() {
+        return (tracerFlags & TracerFlags.GENERATE_SCOPED_METRIC) == TracerFlags.GENERATE_SCOPED_METRIC;
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return (tracerFlags & TracerFlags.LEAF) == TracerFlags.LEAF;
+    }
+
+    @Override
+    public boolean isAsync() {
+        return false;
+    }
+
+    @Override
+    public TransactionActivity getTransactionActivity() {
+        return txa;
+    }
+
+    @Override
+    public Tracer getParentTracer() {
+        return parentTracer;
+    }
+
+    @Override
+    public TransactionSegment getTransactionSegment(TransactionTracerConfig ttConfig, SqlObfuscator sqlObfuscator, long startTime,
+            TransactionSegment lastSibling) {
+        return new TransactionSegment(ttConfig, sqlObfuscator, startTime, this);
+    }
+
+    @Override
+    public String getTransactionSegmentName() {
+        if (promoted != null) {
+            return promoted.getTransactionSegmentName();
+        }
+        return metricNameFormat == null ? null : metricNameFormat.getTransactionSegmentName();
+    }
+
+    @Override
+    public String getTransactionSegmentUri() {
+        if (promoted != null) {
+            return promoted.getTransactionSegmentUri();
+        }
+        return metricNameFormat == null ? null : metricNameFormat.getTransactionSegmentUri();
+    }
+
+    @Override
+    public String getMetricName() {
+        if (promoted != null) {
+            return promoted.getMetricName();
+        }
+        return metricNameFormat == null ? null : metricNameFormat.getMetricName();
+    }
+
+    @Override
+    public Map<String, Object> getAgentAttributes() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Map<String, Object> getCustomAttributes() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public ClassMethodSignature getClassMethodSignature() {
+        return classMethodSignature;
+    }
+
+    @Override
+    public boolean isTransactionSegment() {
+        return false;
+    }
+
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public long getEndTime() {
+        return startTime + duration;
+    }
+
+    @Override
+    public long getStartTimeInMillis() {
+        return getStartTimeInMilliseconds();
+    }
+
+    @Override
+    public long getStartTimeInMilliseconds() {
+        return TimeUnit.MILLISECONDS.convert(startTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getEndTimeInMilliseconds() {
+        return TimeUnit.MILLISECONDS.convert(getEndTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public long getDurationInMilliseconds() {
+        return TimeUnit.MILLISECONDS.convert(duration, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getExclusiveDuration() {
+        return exclusiveDuration;
+    }
+
+    @Override
+    public long getRunningDurationInNanos() {
+        return duration > 0 ? duration : Math.max(0, System.nanoTime() - startTime);
+    }
+
+    @Override
+    public TracedMethod getParentTracedMethod() {
+        return parentTracer;
+    }
+
+    @Override
+    public String getGuid() {
+        return promote().getGuid();
+    }
+
+    @Override
+    public com.newrelic.api.agent.ExternalParameters getExternalParameters() {
+        return promoted == null ? null : promoted.getExternalParameters();
+    }
+
+    @Override
+    public Throwable getException() {
+        return promoted == null ? null : promoted.getException();
+    }
+
+    @Override
+    public boolean wasExceptionSetByAPI() {
+        return promoted != null && promoted.wasExceptionSetByAPI();
+    }
+
+    @Override
+    public boolean trackChildThreads() {
+        if (promoted != null) {
+            return promoted.trackChildThreads();
+        }
+        return parentTracer == null || parentTracer.trackChildThreads();
+    }
+
+    @Override
+    public boolean isTrackCallbackRunnable() {
+        if (promoted != null) {
+            return promoted.isTrackCallbackRunnable();
+        }
+        return parentTracer != null && parentTracer.isTrackCallbackRunnable();
+    }
+
+    /////////////////////////////////////////////
+    //// Calls that promote to a DefaultTracer
+    /////////////////////////////////////////////
+
+    @Override
+    public void setRollupMetricNames(String... metricNames) {
+        promote().setRollupMetricNames(metricNames);
+    }
+
+    @Override
+    public void setMetricNameFormatInfo(String metricName, String transactionSegmentName, String transactionSegmentUri) {
+        promote().setMetricNameFormatInfo(metricName, transactionSegmentName, transactionSegmentUri);
+    }
+
+    @Override
+    public void addExclusiveRollupMetricName(String... metricNameParts) {
+        promote().addExclusiveRollupMetricName(metricNameParts);
+    }
+
+    @Override
+    public void nameTransaction(TransactionNamePriority namePriority) {
+        promote().nameTransaction(namePriority);
+    }
+
+    @Override
+    public void setCustomMetricPrefix(String prefix) {
+        promote().setCustomMetricPrefix(prefix);
+    }
+
+    @Override
+    public void setTrackChildThreads(boolean shouldTrack) {
+        promote().setTrackChildThreads(shouldTrack);
+    }
+
+    @Override
+    public void setTrackCallbackRunnable(boolean shouldTrack) {
+        promote().setTrackCallbackRunnable(shouldTrack);
+    }
+
+    @Override
+    public void setNoticedError(Throwable throwable) {
+        promote().setNoticedError(throwable);
+    }
+
+    @Override
+    public void setThrownException(Throwable throwable) {
+        promote().setThrownException(throwable);
+    }
+
+    @Override
+    public void setMetricName(String... metricNameParts) {
+        promote().setMetricName(metricNameParts);
+    }
+
+    @Override
+    public void addRollupMetricName(String... metricNameParts) {
+        promote().addRollupMetricName(metricNameParts);
+    }
+
+    @Override
+    public void reportAsExternal(com.newrelic.api.agent.ExternalParameters externalParameters) {
+        promote().reportAsExternal(externalParameters);
+    }
+
+    @Override
+    public void addOutboundRequestHeaders(OutboundHeaders outboundHeaders) {
+        promote().addOutboundRequestHeaders(outboundHeaders);
+    }
+
+    @Override
+    public void readInboundResponseHeaders(InboundHeaders inboundResponseHeaders) {
+        promote().readInboundResponseHeaders(inboundResponseHeaders);
+    }
+
+    @Override
+    public void reportAsExternal(ExternalParameters externalParameters) {
+        promote().reportAsExternal(externalParameters);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        return promote().invoke(proxy, method, args);
+    }
+
+    /////////////////////////////////////////////
+    //// No-ops below here
+    /////////////////////////////////////////////
+
+    @Override
+    public void addCustomAttribute(String key, Number value) {
+    }
+
+    @Override
+    public void addCustomAttribute(String key, String value) {
+    }
+
+    @Override
+    public void addCustomAttribute(String key, boolean value) {
+    }
+
+    @Override
+    public void addCustomAttributes(Map<String, Object> attributes) {
+    }
+
+    @Override
+    public void setAgentAttribute(String key, Object value) {
+    }
+
+    @Override
+    public void removeAgentAttribute(String key) {
+    }
+
+    @Override
+    public Object getAgentAttribute(String key) {
+        return null;
+    }
+
+    @Override
+    public void setParentTracer(Tracer tracer) {
+    }
+
+    @Override
+    public boolean isParent() {
+        return false;
+    }
+
+    @Override
+    public boolean isChildHasStackTrace() {
+        return false;
+    }
+
+    @Override
+    public void removeTransactionSegment() {
+        // no-op because this is never a transaction segment.
+    }
+
+    @Override
+    public void markFinishTime() {
+    }
+}
@@ -7,6 +7,7 @@
 
 package com.newrelic.agent.tracers.metricname;
 
+import com.newrelic.agent.metric.InternedMetricIdRegistry;
 import com.newrelic.agent.tracers.ClassMethodSignature;
 import com.newrelic.agent.util.Strings;
 
@@ -14,9 +15,10 @@ import com.newrelic.agent.util.Strings;
  * Modifying this class may affect performance because we create a lot of instances of this class. Be careful when
  * making changes.
  */
-public class ClassMethodMetricNameFormat extends AbstractMetricNameFormat {
+public class ClassMethodMetricNameFormat extends AbstractMetricNameFormat implements InternedMetricNameFormat {
 
     private String metricName;
+    private volatile long metricIdHandle = InternedMetricIdRegistry.NO_HANDLE;
     private final ClassMethodSignature signature;
     private final String className;
     private final String prefix;
@@ -49,6 +51,15 @@ public class ClassMethodMetricNameFormat extends AbstractMetricNameFormat {
         return metricName;
     }
 
+    @Override
+    public int getMetricId() {
+        long handle = InternedMetricIdRegistry.INSTANCE.intern(getMetricName(), metricIdHandle);
+        if (handle != metricIdHandle) {
+            metricIdHandle = handle;
+        }
+        return InternedMetricIdRegistry.toId(handle);
+    }
+
     public static String getMetricName(ClassMethodSignature sig, Object object) {
         return getMetricName(sig, object, "Java");
     }
@@ -0,0 +1,22 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.tracers.metricname;
+
+import com.newrelic.agent.metric.InternedMetricIdRegistry;
+
+/**
+ * A {@link MetricNameFormat} that keeps the id of its metric name in {@link InternedMetricIdRegistry#INSTANCE}, so a
+ * tracer can record into stats keyed by metric id without looking its name up every time it finishes.
+ */
+public interface InternedMetricNameFormat extends MetricNameFormat {
+
+    /**
+     * @return the id of the metric name, or {@link InternedMetricIdRegistry#NO_ID}
+     */
+    int getMetricId();
+}
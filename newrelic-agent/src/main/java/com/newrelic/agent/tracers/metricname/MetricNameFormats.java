@@ -17,6 +17,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 import com.newrelic.agent.MetricNames;
+import com.newrelic.agent.metric.InternedMetricIdRegistry;
 import com.newrelic.agent.tracers.ClassMethodSignature;
 import com.newrelic.agent.util.Strings;
 
@@ -42,6 +43,17 @@ public class MetricNameFormats {
         return new SimpleMetricNameFormat(newMetricName, newTxName);
     }
 
+    /**
+     * @return the id of the format's metric name in {@link InternedMetricIdRegistry#INSTANCE}, or
+     * {@link InternedMetricIdRegistry#NO_ID} if the format does not keep one
+     */
+    public static int getMetricId(MetricNameFormat metricNameFormat) {
+        if (metricNameFormat instanceof InternedMetricNameFormat) {
+            return ((InternedMetricNameFormat) metricNameFormat).getMetricId();
+        }
+        return InternedMetricIdRegistry.NO_ID;
+    }
+
     private static String replaceFirstSegment(String name, String newSegmentName) {
         String[] segments = name.split(MetricNames.SEGMENT_DELIMITER_STRING);
         segments[0] = newSegmentName;
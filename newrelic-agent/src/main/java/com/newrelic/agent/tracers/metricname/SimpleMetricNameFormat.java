@@ -7,11 +7,14 @@
 
 package com.newrelic.agent.tracers.metricname;
 
-public class SimpleMetricNameFormat implements MetricNameFormat {
+import com.newrelic.agent.metric.InternedMetricIdRegistry;
+
+public class SimpleMetricNameFormat implements InternedMetricNameFormat {
 
     private final String metricName;
     private final String transactionSegmentName;
     private final String transactionSegmentUri;
+    private volatile long metricIdHandle = InternedMetricIdRegistry.NO_HANDLE;
 
     public SimpleMetricNameFormat(String metricName) {
         this(metricName, metricName, null);
@@ -32,6 +35,18 @@ public class SimpleMetricNameFormat implements MetricNameFormat {
         return metricName;
     }
 
+    @Override
+    public int getMetricId() {
+        if (metricName == null) {
+            return InternedMetricIdRegistry.NO_ID;
+        }
+        long handle = InternedMetricIdRegistry.INSTANCE.intern(metricName, metricIdHandle);
+        if (handle != metricIdHandle) {
+            metricIdHandle = handle;
+        }
+        return InternedMetricIdRegistry.toId(handle);
+    }
+
     @Override
     public String getTransactionSegmentName() {
         return transactionSegmentName;
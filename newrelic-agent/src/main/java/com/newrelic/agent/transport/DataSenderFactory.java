@@ -8,6 +8,8 @@
 package com.newrelic.agent.transport;
 
 import com.newrelic.agent.Agent;
+import com.newrelic.agent.HarvestServiceImpl;
+import com.newrelic.agent.config.AgentConfig;
 import com.newrelic.agent.config.DataSenderConfig;
 import com.newrelic.agent.service.ServiceFactory;
 import com.newrelic.agent.transport.apache.ApacheHttpClientWrapper;
@@ -74,7 +76,10 @@ public class DataSenderFactory {
                     config.getProxyPassword(),
                     logger);
 
-            return new ApacheHttpClientWrapper(proxyManager, sslContext, config.getTimeoutInMilliseconds());
+            int timeoutInMillis = config instanceof AgentConfig
+                    ? HarvestServiceImpl.getRequestTimeoutInMillis((AgentConfig) config)
+                    : config.getTimeoutInMilliseconds();
+            return new ApacheHttpClientWrapper(proxyManager, sslContext, timeoutInMillis, config.getMaxCollectorConnections());
         }
     }
 
@@ -33,19 +33,12 @@ import com.newrelic.agent.stats.StatsWorks;
 import com.newrelic.agent.trace.TransactionTrace;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
-import org.json.simple.JSONValue;
 import org.json.simple.parser.JSONParser;
 
 import javax.net.ssl.SSLHandshakeException;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.rmi.UnexpectedException;
 import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
@@ -57,8 +50,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * A class for sending and receiving New Relic data.
@@ -116,6 +107,7 @@ public class DataSenderImpl implements DataSender {
     private final boolean putForDataSend;
     private Map<String, Boolean> policiesJson;
     private volatile int maxPayloadSizeInBytes = DEFAULT_MAX_PAYLOAD_SIZE_IN_BYTES;
+    private final PayloadWriter payloadWriter = new PayloadWriter(COMPRESSION_LEVEL, DEFAULT_MAX_PAYLOAD_SIZE_IN_BYTES);
     private volatile Map<String, String> requestMetadata;
     private volatile Map<String, String> metadata;
     public DataSenderImpl(
@@ -191,7 +183,10 @@ public class DataSenderImpl implements DataSender {
             throw new ForceDisconnectException("The agent did not receive one or more security policies that it expected and will shut down."
                     + " Please contact support.");
         }
-        return doConnect(startupOptions);
+        Map<String, Object> data = doConnect(startupOptions);
+        // harvests start right after connect, have their connections ready by then
+        httpClientWrapper.warmUp(new URL(PROTOCOL, this.redirectHost, port, "/"));
+        return data;
     }
 
     private String parsePreconnectAndReturnHost() throws Exception {
@@ -239,6 +234,7 @@ public class DataSenderImpl implements DataSender {
             Object maxPayloadSize = data.get(MAX_PAYLOAD_SIZE_IN_BYTES);
             if (maxPayloadSize instanceof Number) {
                 maxPayloadSizeInBytes = ((Number) maxPayloadSize).intValue();
+                payloadWriter.setMaxRetainedBufferSize(maxPayloadSizeInBytes);
                 logger.log(Level.INFO, "Max payload size is {0} bytes", maxPayloadSizeInBytes);
             }
         }
@@ -476,6 +472,7 @@ public class DataSenderImpl implements DataSender {
     @VisibleForTesting
     void setMaxPayloadSizeInBytes(int payloadSizeInBytes) {
         maxPayloadSizeInBytes = payloadSizeInBytes;
+        payloadWriter.setMaxRetainedBufferSize(payloadSizeInBytes);
     }
 
     private Object invokeRunId(String method, String encoding, Object runId, JSONStreamAware params) throws Exception {
@@ -529,55 +526,61 @@ public class DataSenderImpl implements DataSender {
      * matched/parsed has been deprecated.
      */
     private ReadResult connectAndSend(String host, String method, String encoding, String uri, JSONStreamAware params) throws Exception {
-        byte[] data = writeData(encoding, params);
-
         /*
          * We don't enforce max_payload_size_in_bytes for error_data (aka error traces). Instead we halve the
          * payload and try again. See RPMService sendErrorData
          */
-        if (data.length > maxPayloadSizeInBytes && !method.equals(CollectorMethods.ERROR_DATA)) {
+        int sizeLimit = method.equals(CollectorMethods.ERROR_DATA) ? Integer.MAX_VALUE : maxPayloadSizeInBytes;
+        PayloadWriter.Payload payload;
+        try {
+            payload = payloadWriter.write(encoding, params, sizeLimit);
+        } catch (PayloadWriter.PayloadTooLargeException e) {
             ServiceFactory.getStatsService().doStatsWork(StatsWorks.getIncrementCounterWork(
                     MessageFormat.format(MetricNames.SUPPORTABILITY_PAYLOAD_SIZE_EXCEEDS_MAX, method), 1));
-            String msg = MessageFormat.format("Payload of size {0} exceeded maximum size {1} for {2} method ",
-                    data.length, maxPayloadSizeInBytes, method);
+            String msg = MessageFormat.format("Payload of at least {0} bytes exceeded maximum size {1} for {2} method ",
+                    e.getBytesWritten(), maxPayloadSizeInBytes, method);
             logger.log(Level.WARNING, msg);
             throw new MaxPayloadException(msg);
         }
 
-        final URL url = new URL(PROTOCOL, host, port, uri);
-        HttpClientWrapper.Request request = createRequest(method, encoding, url, data);
+        try {
+            final URL url = new URL(PROTOCOL, host, port, uri);
+            HttpClientWrapper.Request request = createRequest(method, encoding, url, payload);
 
-        httpClientWrapper.captureSupportabilityMetrics(ServiceFactory.getStatsService(), host);
+            httpClientWrapper.captureSupportabilityMetrics(ServiceFactory.getStatsService(), host);
 
-        ReadResult result = httpClientWrapper.execute(request, new TimingEventHandler(method, ServiceFactory.getStatsService()));
+            ReadResult result = httpClientWrapper.execute(request, new TimingEventHandler(method, ServiceFactory.getStatsService()));
 
-        if (auditMode && methodShouldBeAudited(method)) {
-            String msg = MessageFormat.format("Sent JSON({0}) to: {1}, with payload: {2}", method, url,
-                    DataSenderWriter.toJSONString(params));
-            logger.info(msg);
-        }
+            if (auditMode && methodShouldBeAudited(method)) {
+                String msg = MessageFormat.format("Sent JSON({0}) to: {1}, with payload: {2}", method, url,
+                        DataSenderWriter.toJSONString(params));
+                logger.info(msg);
+            }
 
-        // Create supportability metric for all response codes
-        ServiceFactory.getStatsService().doStatsWork(StatsWorks.getIncrementCounterWork(
-                MessageFormat.format(MetricNames.SUPPORTABILITY_HTTP_CODE, result.getStatusCode()), 1));
+            // Create supportability metric for all response codes
+            ServiceFactory.getStatsService().doStatsWork(StatsWorks.getIncrementCounterWork(
+                    MessageFormat.format(MetricNames.SUPPORTABILITY_HTTP_CODE, result.getStatusCode()), 1));
 
-        if (result.getStatusCode() != HttpResponseCode.OK && result.getStatusCode() != HttpResponseCode.ACCEPTED) {
-            throwExceptionFromStatusCode(method, result, data, request);
-        }
+            if (result.getStatusCode() != HttpResponseCode.OK && result.getStatusCode() != HttpResponseCode.ACCEPTED) {
+                throwExceptionFromStatusCode(method, result, payload.length(), request);
+            }
 
-        // received successful 2xx response
-        if (auditMode && methodShouldBeAudited(method)) {
-            logger.info(MessageFormat.format("Received JSON({0}): {1}", method, result.getResponseBody()));
-        }
+            // received successful 2xx response
+            if (auditMode && methodShouldBeAudited(method)) {
+                logger.info(MessageFormat.format("Received JSON({0}): {1}", method, result.getResponseBody()));
+            }
 
-        if (dataSenderListener != null) {
-            dataSenderListener.dataSent(method, encoding, uri, data);
-        }
+            if (dataSenderListener != null) {
+                dataSenderListener.dataSent(method, encoding, uri, payload.copy());
+            }
 
-        return result;
+            return result;
+        } finally {
+            payload.release();
+        }
     }
 
-    private void throwExceptionFromStatusCode(String method, ReadResult result, byte[] data, HttpClientWrapper.Request request)
+    private void throwExceptionFromStatusCode(String method, ReadResult result, int dataLength, HttpClientWrapper.Request request)
             throws HttpError, LicenseException, ForceRestartException, ForceDisconnectException {
         // Comply with spec and send supportability metric only for error responses
         ServiceFactory.getStatsService().doStatsWork(StatsWorks.getIncrementCounterWork(
@@ -591,9 +594,9 @@ public class DataSenderImpl implements DataSender {
                 // agent receives a 407 response due to a misconfigured proxy (not from NR backend), throw exception
                 final String authField = result.getProxyAuthenticateHeader();
                 if (authField != null) {
-                    throw new HttpError("Proxy Authentication Mechanism Failed: " + authField, result.getStatusCode(), data.length);
+                    throw new HttpError("Proxy Authentication Mechanism Failed: " + authField, result.getStatusCode(), dataLength);
                 } else {
-                    throw new HttpError("Proxy Authentication Mechanism Failed: " + "null Proxy-Authenticate header", result.getStatusCode(), data.length);
+                    throw new HttpError("Proxy Authentication Mechanism Failed: " + "null Proxy-Authenticate header", result.getStatusCode(), dataLength);
                 }
             case HttpResponseCode.UNAUTHORIZED:
                 // received 401 Unauthorized, throw exception instead of parsing LicenseException from 200 response body
@@ -607,7 +610,7 @@ public class DataSenderImpl implements DataSender {
             default:
                 // response is bad (neither 200 nor 202), throw generic HttpError exception
                 logger.log(Level.FINER, "Connection http status code: {0}", result.getStatusCode());
-                throw HttpError.create(result.getStatusCode(), request.getURL().getHost(), data.length);
+                throw HttpError.create(result.getStatusCode(), request.getURL().getHost(), dataLength);
         }
     }
 
@@ -667,7 +670,7 @@ public class DataSenderImpl implements DataSender {
         }
     }
 
-    private HttpClientWrapper.Request createRequest(String method, String encoding, URL url, byte[] data) {
+    private HttpClientWrapper.Request createRequest(String method, String encoding, URL url, PayloadWriter.Payload payload) {
         final boolean isConnectOrPreconnect = method.equals(CollectorMethods.CONNECT) || method.equals(CollectorMethods.PRECONNECT);
         final Map<String, String> requestMetadata = (this.requestMetadata != null && !isConnectOrPreconnect)
                 ? this.requestMetadata
@@ -677,32 +680,10 @@ public class DataSenderImpl implements DataSender {
                 .setURL(url)
                 .setVerb(putForDataSend ? HttpClientWrapper.Verb.PUT : HttpClientWrapper.Verb.POST)
                 .setEncoding(encoding)
-                .setData(data)
+                .setData(payload.bytes(), payload.length())
                 .setRequestMetadata(requestMetadata);
     }
 
-    private byte[] writeData(String encoding, JSONStreamAware params) throws IOException {
-        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-        try (
-                OutputStream os = getOutputStream(outStream, encoding);
-                Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8);
-        ) {
-            JSONValue.writeJSONString(params, out);
-            out.flush();
-        }
-        return outStream.toByteArray();
-    }
-
-    private OutputStream getOutputStream(OutputStream out, String encoding) throws IOException {
-        if (DEFLATE_ENCODING.equals(encoding)) {
-            return new DeflaterOutputStream(out, new Deflater(COMPRESSION_LEVEL));
-        } else if (GZIP_ENCODING.equals(encoding)) {
-            return new GZIPOutputStream(out);
-        } else {
-            return out;
-        }
-    }
-
     private Map<?, ?> getResponseMap(String responseBody) throws Exception {
         JSONParser parser = new JSONParser();
         Object response = parser.parse(responseBody);
@@ -10,6 +10,7 @@ package com.newrelic.agent.transport;
 import com.newrelic.agent.stats.StatsService;
 
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -27,6 +28,14 @@ public interface HttpClientWrapper {
      */
     ReadResult execute(HttpClientWrapper.Request request, ExecuteEventHandler eventHandler) throws Exception;
 
+    /**
+     * Opens connections to the url's host ahead of time, so the next requests can be sent without a handshake. Errors
+     * are not thrown, a connection that could not be opened is simply opened later when it is needed.
+     *
+     * @param url the host, port and scheme to connect to. The path is ignored.
+     */
+    void warmUp(URL url);
+
     void captureSupportabilityMetrics(StatsService statsService, String requestHost);
 
     void shutdown();
@@ -69,12 +78,38 @@ public interface HttpClientWrapper {
             return this;
         }
 
+        /**
+         * @return the request body. Copies the body if it is a prefix of a larger buffer; use {@link #getDataBuffer()}
+         * with {@link #getDataLength()} to avoid the copy.
+         */
         public byte[] getData() {
+            if (data != null && dataLength != data.length) {
+                return Arrays.copyOf(data, dataLength);
+            }
             return data;
         }
 
+        /**
+         * @return the array holding the request body. Only the first {@link #getDataLength()} bytes are sent.
+         */
+        public byte[] getDataBuffer() {
+            return data;
+        }
+
+        public int getDataLength() {
+            return dataLength;
+        }
+
         public Request setData(byte[] data) {
+            return setData(data, data == null ? 0 : data.length);
+        }
+
+        /**
+         * Sets the request body to the first {@code length} bytes of the array.
+         */
+        public Request setData(byte[] data, int length) {
             this.data = data;
+            this.dataLength = length;
             return this;
         }
 
@@ -91,6 +126,7 @@ public interface HttpClientWrapper {
         private Verb verb;
         private String encoding;
         private byte[] data;
+        private int dataLength;
         private Map<String, String> requestMetadata;
     }
 }
@@ -0,0 +1,277 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.transport;
+
+import org.json.simple.JSONStreamAware;
+import org.json.simple.JSONValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Serializes collector payloads straight through a reusable {@link Deflater} into a reusable byte buffer. Harvests
+ * used to build every payload in a fresh {@code ByteArrayOutputStream} with a fresh {@code Deflater}, and then copy it
+ * with {@code toByteArray()}, which meant several multi-megabyte allocations per harvest for large span and event
+ * payloads.
+ *
+ * The buffer refuses to grow past the size limit passed to {@link #write(String, JSONStreamAware, int)}. As soon as
+ * the compressed output crosses the limit, serialization stops with a {@link PayloadTooLargeException}, so an oversized
+ * payload is never fully built.
+ *
+ * Buffers and deflaters are kept in small bounded pools. Callers must {@link Payload#release()} the payload once the
+ * request has been sent.
+ *
+ * This class is thread-safe.
+ */
+class PayloadWriter {
+
+    private static final int POOL_SIZE = 2;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
+    // gzip member header: magic, CM=deflate, no flags, no mtime, no extra flags, OS=0. Matches GZIPOutputStream.
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final int compressionLevel;
+    private final BlockingQueue<PayloadBuffer> buffers = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Deflater> rawDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private volatile int maxRetainedBufferSize;
+
+    PayloadWriter(int compressionLevel, int maxRetainedBufferSize) {
+        this.compressionLevel = compressionLevel;
+        this.maxRetainedBufferSize = maxRetainedBufferSize;
+    }
+
+    /**
+     * Buffers larger than this are dropped instead of being returned to the pool. Normally the collector's max payload
+     * size, since no pooled buffer needs to grow past it.
+     */
+    void setMaxRetainedBufferSize(int maxRetainedBufferSize) {
+        this.maxRetainedBufferSize = maxRetainedBufferSize;
+    }
+
+    /**
+     * Serializes the params as JSON using the content encoding.
+     *
+     * @param encoding {@link DataSenderImpl#DEFLATE_ENCODING}, {@link DataSenderImpl#GZIP_ENCODING}, or anything else
+     * for uncompressed output
+     * @param sizeLimit the maximum encoded size in bytes
+     * @throws PayloadTooLargeException if the encoded payload would be larger than the size limit
+     */
+    Payload write(String encoding, JSONStreamAware params, int sizeLimit) throws IOException {
+        PayloadBuffer buffer = takeBuffer(sizeLimit);
+        try {
+            if (DataSenderImpl.DEFLATE_ENCODING.equals(encoding)) {
+                writeDeflate(params, buffer);
+            } else if (DataSenderImpl.GZIP_ENCODING.equals(encoding)) {
+                writeGzip(params, buffer);
+            } else {
+                writeJson(params, buffer);
+            }
+            return new Payload(buffer);
+        } catch (IOException | RuntimeException e) {
+            returnBuffer(buffer);
+            throw e;
+        }
+    }
+
+    private void writeDeflate(JSONStreamAware params, PayloadBuffer buffer) throws IOException {
+        Deflater deflater = takeDeflater(zlibDeflaters, false);
+        try {
+            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(buffer, deflater, STREAM_BUFFER_SIZE);
+            writeJson(params, deflaterStream);
+            deflaterStream.finish();
+        } finally {
+            returnDeflater(zlibDeflaters, deflater);
+        }
+    }
+
+    private void writeGzip(JSONStreamAware params, PayloadBuffer buffer) throws IOException {
+        // GZIPOutputStream always creates (and ends) its own Deflater, so the gzip framing is written here around a
+        // pooled raw deflater instead
+        Deflater deflater = takeDeflater(rawDeflaters, true);
+        try {
+            buffer.write(GZIP_HEADER);
+            DeflaterOutputStream deflaterStream = new DeflaterOutputStream(buffer, deflater, STREAM_BUFFER_SIZE);
+            CRC32 crc = new CRC32();
+            writeJson(params, new CheckedOutputStream(deflaterStream, crc));
+            deflaterStream.finish();
+            writeIntLE(buffer, (int) crc.getValue());
+            writeIntLE(buffer, (int) deflater.getBytesRead());
+        } finally {
+            returnDeflater(rawDeflaters, deflater);
+        }
+    }
+
+    private static void writeJson(JSONStreamAware params, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        JSONValue.writeJSONString(params, writer);
+        writer.flush();
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    private PayloadBuffer takeBuffer(int sizeLimit) {
+        PayloadBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = new PayloadBuffer(Math.min(INITIAL_BUFFER_SIZE, Math.max(sizeLimit, 0)));
+        }
+        buffer.reset(sizeLimit);
+        return buffer;
+    }
+
+    private void returnBuffer(PayloadBuffer buffer) {
+        if (buffer.capacity() <= maxRetainedBufferSize) {
+            buffers.offer(buffer);
+        }
+    }
+
+    private Deflater takeDeflater(BlockingQueue<Deflater> pool, boolean nowrap) {
+        Deflater deflater = pool.poll();
+        return deflater == null ? new Deflater(compressionLevel, nowrap) : deflater;
+    }
+
+    private static void returnDeflater(BlockingQueue<Deflater> pool, Deflater deflater) {
+        deflater.reset();
+        if (!pool.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * An encoded payload backed by a pooled buffer. The bytes are only valid until {@link #release()} is called.
+     */
+    class Payload {
+        private PayloadBuffer buffer;
+
+        private Payload(PayloadBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return the backing array. Only the first {@link #length()} bytes are part of the payload.
+         */
+        byte[] bytes() {
+            return buffer.bytes();
+        }
+
+        int length() {
+            return buffer.size();
+        }
+
+        /**
+         * @return a copy of the payload bytes that stays valid after the payload is released
+         */
+        byte[] copy() {
+            return Arrays.copyOf(buffer.bytes(), buffer.size());
+        }
+
+        /**
+         * Returns the buffer to the pool. Safe to call more than once.
+         */
+        void release() {
+            if (buffer != null) {
+                returnBuffer(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Thrown while writing as soon as the encoded payload grows past its size limit.
+     */
+    static class PayloadTooLargeException extends IOException {
+        private final int bytesWritten;
+
+        PayloadTooLargeException(int bytesWritten) {
+            super("Payload of at least " + bytesWritten + " bytes exceeded the size limit");
+            this.bytesWritten = bytesWritten;
+        }
+
+        /**
+         * @return the encoded size reached when the limit was crossed, a lower bound on the full payload size
+         */
+        int getBytesWritten() {
+            return bytesWritten;
+        }
+    }
+
+    /**
+     * A growable byte buffer that refuses to grow past a size limit.
+     */
+    private static class PayloadBuffer extends OutputStream {
+        private byte[] buf;
+        private int count;
+        private int limit;
+
+        PayloadBuffer(int initialCapacity) {
+            buf = new byte[initialCapacity];
+        }
+
+        void reset(int limit) {
+            this.count = 0;
+            this.limit = limit;
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        int size() {
+            return count;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int len) throws PayloadTooLargeException {
+            int required = count + len;
+            if (required > limit || required < 0) {
+                throw new PayloadTooLargeException(required < 0 ? Integer.MAX_VALUE : required);
+            }
+            if (required > buf.length) {
+                int newCapacity = Math.max(buf.length << 1, required);
+                if (newCapacity < 0 || newCapacity > limit) {
+                    newCapacity = limit;
+                }
+                buf = Arrays.copyOf(buf, newCapacity);
+            }
+        }
+    }
+
+}
@@ -15,7 +15,9 @@ import com.newrelic.agent.transport.HostConnectException;
 import com.newrelic.agent.transport.HttpClientWrapper;
 import com.newrelic.agent.transport.ReadResult;
 import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.config.RequestConfig;
@@ -25,6 +27,8 @@ import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
 import org.apache.http.conn.HttpHostConnectException;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
@@ -44,24 +48,39 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.zip.GZIPInputStream;
 
 import static com.newrelic.agent.transport.DataSenderImpl.GZIP_ENCODING;
 
 public class ApacheHttpClientWrapper implements HttpClientWrapper {
+    // how long warming up waits for a pooled connection, a timeout of 0 would wait forever
+    private static final long WARM_UP_LEASE_TIMEOUT_MILLIS = 100;
+
     private final ApacheProxyManager proxyManager;
     private final PoolingHttpClientConnectionManager connectionManager;
     private final CloseableHttpClient httpClient;
+    private final int maxConnections;
+    private final int defaultTimeoutInMillis;
 
     public ApacheHttpClientWrapper(ApacheProxyManager proxyManager, SSLContext sslContext, int defaultTimeoutInMillis) {
+        this(proxyManager, sslContext, defaultTimeoutInMillis, 1);
+    }
+
+    public ApacheHttpClientWrapper(ApacheProxyManager proxyManager, SSLContext sslContext, int defaultTimeoutInMillis, int maxConnections) {
         this.proxyManager = proxyManager;
-        this.connectionManager = createHttpClientConnectionManager(sslContext);
+        this.maxConnections = Math.max(1, maxConnections);
+        this.defaultTimeoutInMillis = defaultTimeoutInMillis;
+        this.connectionManager = createHttpClientConnectionManager(sslContext, this.maxConnections);
         this.httpClient = createHttpClient(defaultTimeoutInMillis);
     }
 
@@ -78,7 +97,7 @@ public class ApacheHttpClientWrapper implements HttpClientWrapper {
         return MessageFormat.format("NewRelic-JavaAgent/{0} (java {1} {2})", Agent.getVersion(), javaVersion, arch);
     }
 
-    private static PoolingHttpClientConnectionManager createHttpClientConnectionManager(SSLContext sslContext) {
+    private static PoolingHttpClientConnectionManager createHttpClientConnectionManager(SSLContext sslContext, int maxConnections) {
         // Using the pooling manager here for thread safety.
         PoolingHttpClientConnectionManager httpClientConnectionManager = new PoolingHttpClientConnectionManager(
                 RegistryBuilder.<ConnectionSocketFactory>create()
@@ -87,10 +106,11 @@ public class ApacheHttpClientWrapper implements HttpClientWrapper {
                                 new SSLConnectionSocketFactory(sslContext) : SSLConnectionSocketFactory.getSocketFactory())
                         .build());
 
-        // We only allow one connection at a time to the backend.
+        // By default we only allow one connection at a time to the backend.
         // Anymore and the the agent hangs during the initial request to the connect endpoint.
-        httpClientConnectionManager.setMaxTotal(1);
-        httpClientConnectionManager.setDefaultMaxPerRoute(1);
+        // Concurrent harvests may be given more with max_collector_connections.
+        httpClientConnectionManager.setMaxTotal(maxConnections);
+        httpClientConnectionManager.setDefaultMaxPerRoute(maxConnections);
 
         return httpClientConnectionManager;
     }
@@ -131,6 +151,50 @@ public class ApacheHttpClientWrapper implements HttpClientWrapper {
         connectionManager.closeIdleConnections(0, TimeUnit.SECONDS);
     }
 
+    /**
+     * Opens connections to the host until the pool holds as many as concurrent harvests may use, so the first harvests
+     * after connect do not each pay for a TCP and TLS handshake. Connections are only opened, nothing is sent on them.
+     * Warming up is skipped behind a proxy, and stops early if no connection can be leased within
+     * {@link #WARM_UP_LEASE_TIMEOUT_MILLIS}, e.g. because harvests are already using the pool.
+     */
+    @Override
+    public void warmUp(URL url) {
+        if (maxConnections <= 1 || proxyManager.getProxy() != null) {
+            return;
+        }
+
+        // the same route the client plans for requests to this url
+        int port = url.getPort() > 0 ? url.getPort() : url.getDefaultPort();
+        HttpHost target = new HttpHost(url.getHost(), port, url.getProtocol());
+        HttpRoute route = new HttpRoute(target, null, "https".equalsIgnoreCase(url.getProtocol()));
+        HttpClientContext context = HttpClientContext.create();
+
+        List<HttpClientConnection> leased = new ArrayList<>(maxConnections);
+        int opened = 0;
+        try {
+            // hold every connection until the end, otherwise the pool would hand back the same one each time
+            for (int i = 0; i < maxConnections; i++) {
+                ConnectionRequest connectionRequest = connectionManager.requestConnection(route, null);
+                HttpClientConnection connection = connectionRequest.get(WARM_UP_LEASE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                leased.add(connection);
+                if (!connection.isOpen()) {
+                    connectionManager.connect(connection, route, defaultTimeoutInMillis, context);
+                    connectionManager.routeComplete(connection, route, context);
+                    opened++;
+                }
+            }
+        } catch (ConnectionPoolTimeoutException e) {
+            Agent.LOG.log(Level.FINE, "Stopped warming up connections to {0}: all pooled connections are in use", url.getHost());
+        } catch (Exception e) {
+            Agent.LOG.log(Level.FINE, "Stopped warming up connections to {0}: {1}", url.getHost(), e.toString());
+        } finally {
+            for (HttpClientConnection connection : leased) {
+                connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+        Agent.LOG.log(Level.FINE, "Opened {0} connections to {1} in advance", opened, url.getHost());
+    }
+
     @Override
     public void captureSupportabilityMetrics(StatsService statsService, String requestHost) {
         Set<HttpRoute> routes = connectionManager.getRoutes();
@@ -191,7 +255,7 @@ public class ApacheHttpClientWrapper implements HttpClientWrapper {
         requestBuilder
                 .setUri(request.getURL().toURI())
                 .setHeader(new BasicHeader("CONTENT-ENCODING", request.getEncoding()))
-                .setEntity(new ByteArrayEntity(request.getData()));
+                .setEntity(new ByteArrayEntity(request.getDataBuffer(), 0, request.getDataLength()));
 
         for (Map.Entry<String, String> entry : request.getRequestMetadata().entrySet()) {
             requestBuilder.addHeader(entry.getKey(), entry.getValue());
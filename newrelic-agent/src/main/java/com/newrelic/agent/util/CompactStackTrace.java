@@ -0,0 +1,112 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * A captured stack kept as {@link FrameTable} ids. It has already been scrubbed of agent frames and truncated the way
+ * {@link StackTraces#scrubAndTruncate(java.util.List, int)} does it, so it only holds the frames that a backtrace
+ * sends. Elements are looked up when the list is read.
+ */
+final class CompactStackTrace extends AbstractList<StackTraceElement> {
+
+    private final int[] top;
+    private final int skipped;
+    private final int[] bottom;
+
+    private CompactStackTrace(int[] top, int skipped, int[] bottom) {
+        this.top = top;
+        this.skipped = skipped;
+        this.bottom = bottom;
+    }
+
+    @Override
+    public StackTraceElement get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (index < top.length) {
+            return FrameTable.INSTANCE.getElement(top[index]);
+        }
+        index -= top.length;
+        if (skipped > 0) {
+            if (index == 0) {
+                return new StackTraceElement("Skipping " + skipped + " lines...", "", "", 0);
+            }
+            index--;
+        }
+        return FrameTable.INSTANCE.getElement(bottom[index]);
+    }
+
+    @Override
+    public int size() {
+        return top.length + (skipped > 0 ? 1 : 0) + bottom.length;
+    }
+
+    /**
+     * Collects the frames of a stack walked from the top. Only the frames that survive truncation are kept, the first
+     * two thirds of the line limit and a ring of the last third.
+     */
+    static final class Builder {
+        private final int topLimit;
+        private final int[] ring;
+        private int[] top;
+        private int topSize;
+        private int ringStart;
+        private int ringSize;
+        private int count;
+
+        /**
+         * @param maxStackTraceLines the most lines to keep, or 0 to keep every frame
+         */
+        Builder(int maxStackTraceLines) {
+            int bottomLimit = maxStackTraceLines > 0 ? maxStackTraceLines / 3 : 0;
+            topLimit = maxStackTraceLines > 0 ? maxStackTraceLines - bottomLimit : Integer.MAX_VALUE;
+            top = new int[maxStackTraceLines > 0 ? topLimit : 32];
+            ring = new int[bottomLimit];
+        }
+
+        void add(int frameId) {
+            count++;
+            if (topSize < topLimit) {
+                if (topSize == top.length) {
+                    top = Arrays.copyOf(top, topSize << 1);
+                }
+                top[topSize++] = frameId;
+            } else if (ring.length > 0) {
+                if (ringSize < ring.length) {
+                    ring[(ringStart + ringSize++) % ring.length] = frameId;
+                } else {
+                    ring[ringStart] = frameId;
+                    ringStart = (ringStart + 1) % ring.length;
+                }
+            }
+        }
+
+        /**
+         * Drops the frames added so far. Called for each agent frame, so only the frames below the outermost one are
+         * kept.
+         */
+        void reset() {
+            topSize = 0;
+            ringStart = 0;
+            ringSize = 0;
+            count = 0;
+        }
+
+        CompactStackTrace build() {
+            int[] bottom = new int[ringSize];
+            for (int i = 0; i < ringSize; i++) {
+                bottom[i] = ring[(ringStart + i) % ring.length];
+            }
+            return new CompactStackTrace(Arrays.copyOf(top, topSize), count - topSize - ringSize, bottom);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interns stack frames into dense integer ids, so a captured stack can be kept as an {@code int[]} and the
+ * {@link StackTraceElement} of a frame is built once, the first time the frame is seen. A frame is keyed by its class,
+ * method, method descriptor and bytecode index, which pins down its line number without computing it.
+ *
+ * Once {@link #MAX_FRAMES} frames are interned, {@link #intern} returns {@link #NO_ID} and callers must capture the
+ * stack some other way.
+ *
+ * This class is thread-safe.
+ */
+final class FrameTable {
+
+    static final int NO_ID = -1;
+    static final int MAX_FRAMES = 64 * 1024;
+
+    /**
+     * The table shared by every captured stack in the agent.
+     */
+    static final FrameTable INSTANCE = new FrameTable(MAX_FRAMES);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int limit;
+    private final ConcurrentMap<FrameKey, Integer> ids = new ConcurrentHashMap<>(INITIAL_CAPACITY);
+    private final Object lock = new Object();
+    private volatile StackTraceElement[] elements = new StackTraceElement[INITIAL_CAPACITY];
+    private int size;
+
+    FrameTable(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return the id of the frame, or {@link #NO_ID} if it has not been interned
+     */
+    int getId(String className, String methodName, String descriptor, int bytecodeIndex) {
+        Integer id = ids.get(new FrameKey(className, methodName, descriptor, bytecodeIndex));
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * Returns the id of the frame, assigning the next id if the frame has not been seen before.
+     *
+     * @param element the element of the frame, kept if the frame is new
+     * @return the id, or {@link #NO_ID} if the table is full
+     */
+    int intern(String className, String methodName, String descriptor, int bytecodeIndex, StackTraceElement element) {
+        FrameKey key = new FrameKey(className, methodName, descriptor, bytecodeIndex);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (lock) {
+            id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            if (size >= limit) {
+                return NO_ID;
+            }
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, Math.min(limit, size << 1));
+            }
+            // published to readers by the put below
+            elements[size] = element;
+            ids.put(key, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @param id an id returned by {@link #intern}
+     */
+    StackTraceElement getElement(int id) {
+        return elements[id];
+    }
+
+    private static final class FrameKey {
+        private final String className;
+        private final String methodName;
+        private final String descriptor;
+        private final int bytecodeIndex;
+
+        FrameKey(String className, String methodName, String descriptor, int bytecodeIndex) {
+            this.className = className;
+            this.methodName = methodName;
+            this.descriptor = descriptor;
+            this.bytecodeIndex = bytecodeIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FrameKey)) {
+                return false;
+            }
+            FrameKey other = (FrameKey) o;
+            return bytecodeIndex == other.bytecodeIndex && className.equals(other.className)
+                    && methodName.equals(other.methodName) && descriptor.equals(other.descriptor);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = className.hashCode();
+            result = 31 * result + methodName.hashCode();
+            result = 31 * result + descriptor.hashCode();
+            return 31 * result + bytecodeIndex;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import com.newrelic.agent.Agent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Starts and closes JFR {@code RecordingStream}s. The JFR streaming API requires Java 14 and the agent is built for
+ * Java 7, so it is called reflectively. The methods are looked up on the public API types because the implementation
+ * classes are not accessible.
+ */
+public class JfrStreams {
+
+    private static final String RECORDING_STREAM_CLASS = "jdk.jfr.consumer.RecordingStream";
+
+    /**
+     * Null if the JVM does not have the JFR streaming API.
+     */
+    private static final Api API = Api.create();
+
+    private JfrStreams() {
+    }
+
+    /**
+     * @return true if this JVM has the JFR streaming API
+     */
+    public static boolean isSupported() {
+        return API != null;
+    }
+
+    /**
+     * Starts a stream of the subscribed events. The stream delivers them on a thread of its own.
+     *
+     * @return the {@code RecordingStream}, to pass to {@link #close(Object)}
+     * @throws ReflectiveOperationException if the stream cannot be started, e.g. because JFR is disabled
+     */
+    public static Object startStream(List<Subscription> subscriptions) throws ReflectiveOperationException {
+        return getApi().startStream(subscriptions);
+    }
+
+    public static void close(Object stream) throws ReflectiveOperationException {
+        getApi().close.invoke(stream);
+    }
+
+    private static Api getApi() throws ReflectiveOperationException {
+        if (API == null) {
+            throw new ClassNotFoundException(RECORDING_STREAM_CLASS);
+        }
+        return API;
+    }
+
+    /**
+     * Receives the {@code RecordedEvent}s of a subscription on the thread of the stream.
+     */
+    public interface EventHandler {
+        void onEvent(Object event) throws ReflectiveOperationException;
+    }
+
+    /**
+     * An event to enable on a stream, its settings and the handler of its events.
+     */
+    public static class Subscription {
+        private final String eventName;
+        private final EventHandler handler;
+        private long thresholdInMillis = -1;
+        private long periodInMillis = -1;
+        private boolean stackTrace = true;
+        private final Map<String, String> settings = new LinkedHashMap<>();
+
+        public Subscription(String eventName, EventHandler handler) {
+            this.eventName = eventName;
+            this.handler = handler;
+        }
+
+        public Subscription withThreshold(long thresholdInMillis) {
+            this.thresholdInMillis = thresholdInMillis;
+            return this;
+        }
+
+        public Subscription withPeriod(long periodInMillis) {
+            this.periodInMillis = periodInMillis;
+            return this;
+        }
+
+        public Subscription withoutStackTrace() {
+            this.stackTrace = false;
+            return this;
+        }
+
+        /**
+         * Sets an event setting that has no method of its own, e.g. {@code throttle}.
+         */
+        public Subscription with(String name, String value) {
+            settings.put(name, value);
+            return this;
+        }
+    }
+
+    private static final class Api {
+
+        private final Class<?> recordingStreamClass;
+        private final Class<?> consumerClass;
+        private final Method enable;
+        private final Method withThreshold;
+        private final Method withPeriod;
+        private final Method withoutStackTrace;
+        private final Method with;
+        private final Method ofMillis;
+        private final Method onEvent;
+        private final Method startAsync;
+        private final Method close;
+
+        private Api() throws ReflectiveOperationException {
+            recordingStreamClass = Class.forName(RECORDING_STREAM_CLASS);
+            consumerClass = Class.forName("java.util.function.Consumer");
+            Class<?> durationClass = Class.forName("java.time.Duration");
+            Class<?> eventSettingsClass = Class.forName("jdk.jfr.EventSettings");
+
+            enable = recordingStreamClass.getMethod("enable", String.class);
+            withThreshold = eventSettingsClass.getMethod("withThreshold", durationClass);
+            withPeriod = eventSettingsClass.getMethod("withPeriod", durationClass);
+            withoutStackTrace = eventSettingsClass.getMethod("withoutStackTrace");
+            with = eventSettingsClass.getMethod("with", String.class, String.class);
+            ofMillis = durationClass.getMethod("ofMillis", long.class);
+            onEvent = recordingStreamClass.getMethod("onEvent", String.class, consumerClass);
+            startAsync = recordingStreamClass.getMethod("startAsync");
+            close = recordingStreamClass.getMethod("close");
+        }
+
+        private static Api create() {
+            try {
+                return new Api();
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        Object startStream(List<Subscription> subscriptions) throws ReflectiveOperationException {
+            Object stream = recordingStreamClass.getConstructor().newInstance();
+            try {
+                for (Subscription subscription : subscriptions) {
+                    subscribe(stream, subscription);
+                }
+                startAsync.invoke(stream);
+                return stream;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                close.invoke(stream);
+                throw e;
+            }
+        }
+
+        private void subscribe(Object stream, Subscription subscription) throws ReflectiveOperationException {
+            Object settings = enable.invoke(stream, subscription.eventName);
+            if (subscription.thresholdInMillis >= 0) {
+                withThreshold.invoke(settings, ofMillis.invoke(null, subscription.thresholdInMillis));
+            }
+            if (subscription.periodInMillis >= 0) {
+                withPeriod.invoke(settings, ofMillis.invoke(null, subscription.periodInMillis));
+            }
+            if (!subscription.stackTrace) {
+                withoutStackTrace.invoke(settings);
+            }
+            for (Map.Entry<String, String> setting : subscription.settings.entrySet()) {
+                with.invoke(settings, setting.getKey(), setting.getValue());
+            }
+            onEvent.invoke(stream, subscription.eventName, newConsumer(subscription));
+        }
+
+        private Object newConsumer(final Subscription subscription) {
+            return Proxy.newProxyInstance(JfrStreams.class.getClassLoader(), new Class<?>[] { consumerClass },
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            if ("accept".equals(method.getName())) {
+                                try {
+                                    subscription.handler.onEvent(args[0]);
+                                } catch (Throwable t) {
+                                    Agent.LOG.log(Level.FINEST, t, "Unable to read a {0} event", subscription.eventName);
+                                }
+                                return null;
+                            } else if ("equals".equals(method.getName())) {
+                                return proxy == args[0];
+                            } else if ("hashCode".equals(method.getName())) {
+                                return System.identityHashCode(proxy);
+                            }
+                            return "JFR consumer for " + subscription.eventName;
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The stack of the current thread, captured without creating a {@link StackTraceElement} for every frame.
+ * {@link Thread#getStackTrace()} builds the elements as soon as the stack is captured. A {@link Throwable} keeps the
+ * frames in the compact form the JVM records them in and only builds the elements the first time they are read.
+ *
+ * Most captured stacks are never read, because the transaction they belong to is not sent as a transaction trace, so
+ * they never pay for the elements. The JVM still records every frame, so on Java 10 and later segment backtraces are
+ * captured by {@link StackCapture} instead, and this is the fallback.
+ */
+public final class LazyStackTrace extends AbstractList<StackTraceElement> {
+
+    private final Throwable capture;
+    private volatile List<StackTraceElement> elements;
+
+    private LazyStackTrace() {
+        capture = new Throwable();
+    }
+
+    /**
+     * Captures the stack of the current thread.
+     */
+    public static List<StackTraceElement> capture() {
+        return new LazyStackTrace();
+    }
+
+    @Override
+    public StackTraceElement get(int index) {
+        return getElements().get(index);
+    }
+
+    @Override
+    public int size() {
+        return getElements().size();
+    }
+
+    private List<StackTraceElement> getElements() {
+        List<StackTraceElement> result = elements;
+        if (result == null) {
+            // racing readers build equal lists, so it does not matter which one is kept
+            result = Arrays.asList(capture.getStackTrace());
+            elements = result;
+        }
+        return result;
+    }
+}
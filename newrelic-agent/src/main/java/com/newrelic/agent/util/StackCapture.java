@@ -0,0 +1,31 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import java.util.List;
+
+/**
+ * Captures segment backtraces. This version is used on Java 8 and earlier and returns a {@link LazyStackTrace}. The
+ * agent jar is a multi-release jar, and on Java 9 and later the version of this class in {@code META-INF/versions/9}
+ * walks the stack with {@code StackWalker} instead, keeping only the frames a backtrace sends as interned frame ids.
+ */
+public final class StackCapture {
+
+    private StackCapture() {
+    }
+
+    /**
+     * Captures the stack of the current thread. The result may already be scrubbed and truncated, and
+     * {@link StackTraces#scrubAndTruncate(List)} leaves such a list as it is.
+     *
+     * @param maxStackTraceLines the most lines the backtrace is sent with, or 0 for all of them
+     */
+    public static List<StackTraceElement> captureBacktrace(int maxStackTraceLines) {
+        return LazyStackTrace.capture();
+    }
+}
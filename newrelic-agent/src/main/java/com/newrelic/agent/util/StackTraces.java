@@ -119,6 +119,10 @@ public class StackTraces {
      * @see #truncateStack(List, int)
      */
     public static List<StackTraceElement> scrubAndTruncate(List<StackTraceElement> stackTraces, int maxStackTraceLines) {
+        if (stackTraces instanceof CompactStackTrace) {
+            // scrubbed and truncated when it was captured
+            return new ArrayList<>(stackTraces);
+        }
         List<StackTraceElement> trimmedList = scrub(stackTraces);
         return maxStackTraceLines > 0 ? truncateStack(trimmedList, maxStackTraceLines) : trimmedList;
     }
@@ -126,19 +130,26 @@ public class StackTraces {
     public static List<StackTraceElement> scrub(List<StackTraceElement> stackTraces) {
         for (int i = stackTraces.size() - 1; i >= 0; i--) {
             StackTraceElement element = stackTraces.get(i);
-            // we need the dot - data services has some packages that start with com.newrelic.agentvalidator
-            if (element.getClassName().startsWith("com.newrelic.agent.")
-                    || element.getClassName().startsWith("com.newrelic.bootstrap.")
-                    || element.getClassName().startsWith("com.newrelic.api.agent.")
-                    || element.getClassName().startsWith("com.newrelic.weave.")
-                    || element.getClassName().startsWith("com.nr.agent.instrumentation.")
-                    || ("getAgentHandle".equals(element.getMethodName()) && "java.lang.reflect.Proxy".equals(element.getClassName()))) {
+            if (isAgentFrame(element.getClassName(), element.getMethodName())) {
                 return stackTraces.subList(i + 1, stackTraces.size());
             }
         }
         return stackTraces;
     }
 
+    /**
+     * @return true if the frame belongs to the agent, in which case it and the frames above it are scrubbed
+     */
+    static boolean isAgentFrame(String className, String methodName) {
+        // we need the dot - data services has some packages that start with com.newrelic.agentvalidator
+        return className.startsWith("com.newrelic.agent.")
+                || className.startsWith("com.newrelic.bootstrap.")
+                || className.startsWith("com.newrelic.api.agent.")
+                || className.startsWith("com.newrelic.weave.")
+                || className.startsWith("com.nr.agent.instrumentation.")
+                || ("getAgentHandle".equals(methodName) && "java.lang.reflect.Proxy".equals(className));
+    }
+
     public static List<StackTraceElement> last(StackTraceElement[] elements, int count) {
         List<StackTraceElement> list = Arrays.asList(elements);
         if (list.size() <= count) {
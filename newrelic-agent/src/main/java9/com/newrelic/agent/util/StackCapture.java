@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import java.lang.StackWalker.StackFrame;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Captures segment backtraces with {@link StackWalker}. This is the version of the class for Java 9 and later, it is
+ * packaged in {@code META-INF/versions/9} of the agent jar.
+ *
+ * Agent frames are scrubbed and the backtrace is truncated while the stack is walked, so only the frames that are sent
+ * are kept, as {@link FrameTable} ids. A {@link StackTraceElement} is only built the first time a frame is seen. Frames
+ * are keyed by method descriptor, which {@link StackFrame} only has from Java 10, so Java 9 falls back to a
+ * {@link LazyStackTrace}, as does a capture that finds the frame table full.
+ */
+public final class StackCapture {
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+    private static final MethodHandle GET_DESCRIPTOR = findGetDescriptor();
+
+    private StackCapture() {
+    }
+
+    private static MethodHandle findGetDescriptor() {
+        try {
+            return MethodHandles.publicLookup().findVirtual(StackFrame.class, "getDescriptor", MethodType.methodType(String.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Captures the stack of the current thread. The result may already be scrubbed and truncated, and
+     * {@link StackTraces#scrubAndTruncate(List)} leaves such a list as it is.
+     *
+     * @param maxStackTraceLines the most lines the backtrace is sent with, or 0 for all of them
+     */
+    public static List<StackTraceElement> captureBacktrace(int maxStackTraceLines) {
+        if (GET_DESCRIPTOR == null) {
+            return LazyStackTrace.capture();
+        }
+        CompactStackTrace backtrace = WALKER.walk(frames -> collect(frames, maxStackTraceLines));
+        return backtrace != null ? backtrace : LazyStackTrace.capture();
+    }
+
+    private static CompactStackTrace collect(Stream<StackFrame> frames, int maxStackTraceLines) {
+        CompactStackTrace.Builder builder = new CompactStackTrace.Builder(maxStackTraceLines);
+        Iterator<StackFrame> iterator = frames.iterator();
+        while (iterator.hasNext()) {
+            StackFrame frame = iterator.next();
+            String className = frame.getClassName();
+            String methodName = frame.getMethodName();
+            if (StackTraces.isAgentFrame(className, methodName)) {
+                builder.reset();
+                continue;
+            }
+            String descriptor = getDescriptor(frame);
+            int bytecodeIndex = frame.getByteCodeIndex();
+            int id = FrameTable.INSTANCE.getId(className, methodName, descriptor, bytecodeIndex);
+            if (id == FrameTable.NO_ID) {
+                id = FrameTable.INSTANCE.intern(className, methodName, descriptor, bytecodeIndex, frame.toStackTraceElement());
+                if (id == FrameTable.NO_ID) {
+                    return null;
+                }
+            }
+            builder.add(id);
+        }
+        return builder.build();
+    }
+
+    private static String getDescriptor(StackFrame frame) {
+        try {
+            return (String) GET_DESCRIPTOR.invokeExact(frame);
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        }
+    }
+}
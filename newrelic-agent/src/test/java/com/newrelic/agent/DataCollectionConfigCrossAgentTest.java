@@ -331,7 +331,7 @@ public class DataCollectionConfigCrossAgentTest {
         }
 
         // Verify that the correct number of events were stored in the reservoir
-        DistributedSamplingPriorityQueue<TransactionEvent> eventQueue = transactionEventsService.getOrCreateDistributedSamplingReservoir(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> eventQueue = transactionEventsService.getOrCreateDistributedSamplingReservoir(APP_NAME);
         assertNotNull(eventQueue);
         assertEquals(expectedCount.intValue(), eventQueue.size());
 
@@ -10,6 +10,7 @@ package com.newrelic.agent;
 import com.newrelic.agent.config.AgentConfig;
 import com.newrelic.agent.config.AgentConfigFactory;
 import com.newrelic.agent.config.AgentConfigFactoryTest;
+import com.newrelic.agent.config.AgentConfigImpl;
 import com.newrelic.agent.config.ConfigService;
 import com.newrelic.agent.config.ConfigServiceFactory;
 import com.newrelic.agent.environment.Environment;
@@ -30,6 +31,8 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.internal.stubbing.answers.Returns;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -210,6 +213,64 @@ public class HarvestServiceTest {
         harvestService.stop();
     }
 
+    @Test
+    public void slowHarvestDoesNotDelayOtherApplications() throws Exception {
+        Map<String, Object> harvestSettings = new HashMap<>();
+        harvestSettings.put("threads", 2);
+        harvestSettings.put("timeout_in_seconds", 1);
+        Map<String, Object> settings = AgentConfigFactoryTest.createStagingMap();
+        settings.put("harvest", harvestSettings);
+        ConfigService configService = ConfigServiceFactory.createConfigService(AgentConfigImpl.createAgentConfig(settings),
+                Collections.<String, Object>emptyMap());
+        ((MockServiceManager) ServiceFactory.getServiceManager()).setConfigService(configService);
+
+        Environment environment = ServiceFactory.getEnvironmentService().getEnvironment();
+        environment.setServerPort(null);
+        // a harvest stuck on the collector, the worker is not interrupted and does not come back until released
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger slowHarvests = new AtomicInteger();
+        MyRPMService slowRpmService = new MyRPMService() {
+            @Override
+            public void harvest(StatsEngine statsEngine) {
+                slowHarvests.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        final CountDownLatch latch = new CountDownLatch(3);
+        MyRPMService rpmService = new MyRPMService() {
+            @Override
+            public void harvest(StatsEngine statsEngine) {
+                latch.countDown();
+            }
+        };
+        TestHarvestService harvestService = new TestHarvestService();
+        harvestService.setReportingPeriod(500L);
+        harvestService.start();
+        harvestService.startHarvest(slowRpmService);
+        harvestService.startHarvest(rpmService);
+        // with two workers, a second harvest of the stuck application would take the other worker
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, slowHarvests.get());
+        release.countDown();
+        harvestService.stop();
+    }
+
+    @Test
+    public void requestTimeoutIsCappedByHarvestTimeout() {
+        Map<String, Object> settings = AgentConfigFactoryTest.createStagingMap();
+        Assert.assertEquals(120000, HarvestServiceImpl.getRequestTimeoutInMillis(AgentConfigImpl.createAgentConfig(settings)));
+
+        Map<String, Object> harvestSettings = new HashMap<>();
+        harvestSettings.put("threads", 2);
+        harvestSettings.put("timeout_in_seconds", 30);
+        settings.put("harvest", harvestSettings);
+        Assert.assertEquals(30000, HarvestServiceImpl.getRequestTimeoutInMillis(AgentConfigImpl.createAgentConfig(settings)));
+    }
+
     private static class MyRPMService extends BaseRPMService {
 
         @Override
@@ -0,0 +1,98 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.attributes;
+
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class CompiledAttributeRulesTest {
+
+    @Test
+    public void mostSpecificRuleWins() {
+        CompiledAttributeRules rules = new CompiledAttributeRules().addLayer(
+                Sets.newHashSet("request.*", "request.parameters.foo", "jvm"),
+                Sets.newHashSet("request.parameters.*", "jvm*", "*"));
+
+        Assert.assertFalse(rules.apply("request.method"));
+        Assert.assertTrue(rules.apply("request.parameters.bar"));
+        Assert.assertFalse(rules.apply("request.parameters.foo"));
+        Assert.assertTrue(rules.apply("request.parameters.foobar"));
+        Assert.assertFalse(rules.apply("jvm"));
+        Assert.assertTrue(rules.apply("jvm.thread_id"));
+        Assert.assertTrue(rules.apply("other"));
+        Assert.assertTrue(rules.apply(""));
+    }
+
+    @Test
+    public void excludeWinsForSameRule() {
+        CompiledAttributeRules rules = new CompiledAttributeRules().addLayer(
+                Sets.newHashSet("foo", "bar*"),
+                Sets.newHashSet("foo", "bar*"));
+
+        Assert.assertFalse(rules.apply("foo"));
+        Assert.assertFalse(rules.apply("barbell"));
+        Assert.assertNull(rules.apply("fo"));
+        Assert.assertNull(rules.apply("food"));
+    }
+
+    @Test
+    public void earlierLayerWins() {
+        CompiledAttributeRules rules = new CompiledAttributeRules()
+                .addLayer(Sets.newHashSet("request.*"), Collections.<String>emptySet())
+                .addLayer(Collections.<String>emptySet(), Sets.newHashSet("request.parameters.*"))
+                .addLayer(Sets.newHashSet("message.*"), Sets.newHashSet("*"));
+
+        Assert.assertFalse(rules.apply("request.parameters.foo"));
+        Assert.assertFalse(rules.apply("message.queueName"));
+        Assert.assertTrue(rules.apply("message"));
+        Assert.assertNull(rules.apply(null));
+    }
+
+    @Test
+    public void matchesAttributesNodeTries() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            Set<String> exclude = randomRules(random);
+            Set<String> include = randomRules(random);
+            RootConfigAttributesNode trie = DefaultDestinationPredicate.generateConfigTrie("Test", exclude, include);
+            CompiledAttributeRules rules = new CompiledAttributeRules().addLayer(exclude, include);
+
+            for (int i = 0; i < 50; i++) {
+                String key = randomKey(random);
+                Assert.assertEquals("exclude " + exclude + " include " + include + " key " + key, trie.applyRules(key),
+                        rules.apply(key));
+            }
+        }
+    }
+
+    private static Set<String> randomRules(Random random) {
+        Set<String> rules = new HashSet<>();
+        int count = random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            String rule = randomKey(random);
+            rules.add(random.nextBoolean() ? rule + "*" : rule);
+        }
+        return rules;
+    }
+
+    private static String randomKey(Random random) {
+        // a small alphabet so rules and keys share prefixes
+        StringBuilder key = new StringBuilder();
+        int length = random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            key.append((char) ('a' + random.nextInt(3)));
+        }
+        return key.toString();
+    }
+}
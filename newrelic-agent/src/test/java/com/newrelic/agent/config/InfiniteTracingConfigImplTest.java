@@ -66,6 +66,10 @@ public class InfiniteTracingConfigImplTest {
     public void canConfigureViaSystemPropertiesAndEnvironmentVariables() {
         Properties properties = new Properties();
         properties.put("newrelic.config.infinite_tracing.span_events.queue_size", "123433");
+        properties.put("newrelic.config.infinite_tracing.span_events.batch_size", "500");
+        properties.put("newrelic.config.infinite_tracing.span_events.direct_encoding", "true");
+        properties.put("newrelic.config.infinite_tracing.span_events.streams", "4");
+        properties.put("newrelic.config.infinite_tracing.span_events.spill_directory", "/tmp/spill");
 
         SystemPropertyFactory.setSystemPropertyProvider(new SystemPropertyProvider(
                 new SaveSystemPropertyProviderRule.TestSystemProps(properties),
@@ -74,6 +78,11 @@ public class InfiniteTracingConfigImplTest {
 
         InfiniteTracingConfigImpl config = new InfiniteTracingConfigImpl(Collections.<String, Object>emptyMap());
         assertEquals(123433, config.getSpanEventsQueueSize());
+        assertEquals(500, config.getSpanEventsBatchSize());
+        assertTrue(config.getSpanEventsDirectEncoding());
+        assertEquals(4, config.getSpanEventsStreams());
+        assertEquals("/tmp/spill", config.getSpanEventsSpillDirectory());
+        assertEquals(100, config.getSpanEventsSpillMaxSizeMb());
         assertEquals("flerbjoze", config.getTraceObserverHost());
     }
 
@@ -77,4 +77,15 @@ public class ThreadProfilerConfigImplTest {
         Assert.assertEquals(ThreadProfilerConfigImpl.DEFAULT_ENABLED, config.isEnabled());
     }
 
+    @Test
+    public void sampler() throws Exception {
+        Map<String, Object> localSettings = new HashMap<>();
+        ThreadProfilerConfig config = ThreadProfilerConfigImpl.createThreadProfilerConfig(localSettings);
+        Assert.assertEquals(ThreadProfilerConfigImpl.DEFAULT_SAMPLER, config.getSampler());
+
+        localSettings.put(ThreadProfilerConfigImpl.SAMPLER, ThreadProfilerConfigImpl.JFR_SAMPLER);
+        config = ThreadProfilerConfigImpl.createThreadProfilerConfig(localSettings);
+        Assert.assertEquals(ThreadProfilerConfigImpl.JFR_SAMPLER, config.getSampler());
+    }
+
 }
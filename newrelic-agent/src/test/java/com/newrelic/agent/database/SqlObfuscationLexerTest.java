@@ -0,0 +1,83 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.database;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SqlObfuscationLexerTest {
+
+    private static final String[] DIALECTS = { "mysql", "postgresql", "oracle", "mssql" };
+
+    // fragments chosen to hit every alternative of the regex engine and the places where they overlap
+    private static final String[] FRAGMENTS = { "'", "''", "\"", "\"\"", "$", "$$", "$foo$", "$FOO$", "$1", "q'[",
+            "]'", "q'{", "}'", "q'<", ">'", "q'(", ")'", "Q'[", "#", "--", "-", "/*", "*/", "/", "*", "\n", "\\",
+            "\\'", "\\\"", " ", "x", "e", "E", "+", "_", ".", "0x", "0X", "1", "23", "4.5", "1e5", "-7", "true",
+            "FALSE", "null", "nullx", "{", "}", "deadbeef", "0123456789abcdef", "select ", "from t ", "where ", "=",
+            "?", ",", "(", ")", "id0" };
+
+    @Test
+    public void nullAndEmptySql() {
+        SqlObfuscator lexer = SqlObfuscator.getLexerSqlObfuscator();
+        assertNull(lexer.obfuscateSql(null));
+        assertNull(lexer.obfuscateSql(null, "mysql"));
+        assertEquals("", lexer.obfuscateSql(""));
+    }
+
+    @Test
+    public void literals() {
+        SqlObfuscator lexer = SqlObfuscator.getLexerSqlObfuscator();
+        assertEquals("select ?, ? from employees where id = ?",
+                lexer.obfuscateSql("select \"id\", 'name' from employees where id = 42"));
+        assertEquals("select * from t where a = ? and b = ?",
+                lexer.obfuscateSql("select * from t where a = $tag$it's$tag$ and b = 1.5e3", "postgresql"));
+        assertEquals("select * from t where a = ?", lexer.obfuscateSql("select * from t where a = q'[it's]'", "oracle"));
+    }
+
+    @Test
+    public void unmatchedQuotesObfuscateEverything() {
+        SqlObfuscator lexer = SqlObfuscator.getLexerSqlObfuscator();
+        assertEquals("?", lexer.obfuscateSql("select * from t where a = 'it''s"));
+        assertEquals("?", lexer.obfuscateSql("select * from t /* comment", "mysql"));
+        assertEquals("select * from t where a = $?", lexer.obfuscateSql("select * from t where a = $1", "postgresql"));
+    }
+
+    @Test
+    public void matchesRegexEngine() {
+        SqlObfuscator regex = SqlObfuscator.getDefaultSqlObfuscator();
+        SqlObfuscator lexer = SqlObfuscator.getLexerSqlObfuscator();
+        Random random = new Random(1234);
+        for (int i = 0; i < 20000; i++) {
+            String sql = randomSql(random);
+            assertEquals(sql, regex.obfuscateSql(sql), lexer.obfuscateSql(sql));
+            for (String dialect : DIALECTS) {
+                assertEquals(dialect + ": " + sql, regex.obfuscateSql(sql, dialect), lexer.obfuscateSql(sql, dialect));
+            }
+        }
+    }
+
+    private static String randomSql(Random random) {
+        StringBuilder sql = new StringBuilder();
+        int fragments = random.nextInt(25);
+        for (int i = 0; i < fragments; i++) {
+            sql.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        }
+        if (random.nextInt(10) == 0) {
+            String uuidChars = "0123456789abcdefABCDEF-";
+            for (int i = 0; i < 32; i++) {
+                sql.append(uuidChars.charAt(random.nextInt(uuidChars.length())));
+            }
+        }
+        return sql.toString();
+    }
+
+}
@@ -0,0 +1,62 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.database;
+
+import com.newrelic.agent.bridge.datastore.UnknownDatabaseVendor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs every {@link DatabaseStatementResponseParserTest} case against the tokenizing parser, and compares it with the
+ * regex parser on generated statements.
+ */
+public class TokenizingDatabaseStatementParserTest extends DatabaseStatementResponseParserTest {
+
+    // keywords and separators from every statement factory, including near misses of the keywords
+    private static final String[] FRAGMENTS = { " ", "  ", "\n", "\t", "select", "SELECT", "from", "FROM", "(", ")",
+            "[", "]", ",", ";", "=", "insert", "ignore", "into", "update", "delete", "with", "recursive", "create",
+            "drop", "procedure", "table", "alter", "call", "exec", "execute", "EXEC", "set", "as", "AS", "show", "@x",
+            "?", "foo", "bar.baz", "`q`", "'s'", "\"d\"", "/*", "*/", "nrhint", ":", "*", "x", "1", "_", "$",
+            "fromx", "selectx", "callx", "execx", "asx" };
+
+    @Before
+    @Override
+    public void before() {
+        parser = new TokenizingDatabaseStatementParser();
+    }
+
+    @Test
+    public void matchesRegexParser() {
+        DatabaseStatementParser regexParser = new DefaultDatabaseStatementParser();
+        Random random = new Random(1234);
+        for (int i = 0; i < 50000; i++) {
+            StringBuilder sql = new StringBuilder();
+            int fragments = random.nextInt(14);
+            for (int j = 0; j < fragments; j++) {
+                sql.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                if (random.nextInt(3) > 0) {
+                    sql.append(' ');
+                }
+            }
+            String statement = sql.toString();
+
+            ParsedDatabaseStatement expected = regexParser.getParsedDatabaseStatement(UnknownDatabaseVendor.INSTANCE,
+                    statement, null);
+            ParsedDatabaseStatement actual = parser.getParsedDatabaseStatement(UnknownDatabaseVendor.INSTANCE,
+                    statement, null);
+            assertEquals(statement, expected.getModel(), actual.getModel());
+            assertEquals(statement, expected.getOperation(), actual.getOperation());
+            assertEquals(statement, expected.recordMetric(), actual.recordMetric());
+        }
+    }
+
+}
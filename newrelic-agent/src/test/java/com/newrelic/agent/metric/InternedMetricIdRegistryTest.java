@@ -0,0 +1,112 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.metric;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class InternedMetricIdRegistryTest {
+
+    @Test
+    public void internAssignsDenseIds() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        Assert.assertEquals(0, registry.intern("Datastore/all"));
+        Assert.assertEquals(1, registry.intern("Datastore/statement/MySQL/users/select"));
+        Assert.assertEquals(0, registry.intern("Datastore/all"));
+        Assert.assertEquals(2, registry.getSize());
+    }
+
+    @Test
+    public void getIdDoesNotIntern() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        Assert.assertEquals(InternedMetricIdRegistry.NO_ID, registry.getId("Test"));
+        Assert.assertNull(registry.getMetricId(MetricName.create("Test")));
+        Assert.assertEquals(0, registry.getSize());
+
+        int id = registry.intern("Test");
+        Assert.assertEquals(id, registry.getId("Test"));
+        Assert.assertEquals(id, registry.getMetricId(MetricName.create("Test", "WebTransaction/Servlet/Test")).intValue());
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals(i, registry.intern("Metric/" + i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals(i, registry.getId("Metric/" + i));
+        }
+        Assert.assertEquals(5000, registry.getSize());
+    }
+
+    @Test
+    public void metricLimit() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry(3);
+        registry.intern("one");
+        registry.intern("two");
+        registry.intern("three");
+        Assert.assertEquals(InternedMetricIdRegistry.NO_ID, registry.intern("four"));
+        Assert.assertEquals(1, registry.intern("two"));
+        Assert.assertEquals(3, registry.getSize());
+    }
+
+    @Test
+    public void clearDoesNotReuseIds() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        registry.intern("one");
+        registry.intern("two");
+        registry.clear();
+        Assert.assertEquals(0, registry.getSize());
+        Assert.assertEquals(InternedMetricIdRegistry.NO_ID, registry.getId("one"));
+        Assert.assertEquals(2, registry.intern("two"));
+        Assert.assertEquals(1, registry.getSize());
+    }
+
+    @Test
+    public void cachedHandleIsRefreshedAfterClear() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        long handle = registry.intern("one", InternedMetricIdRegistry.NO_HANDLE);
+        Assert.assertEquals(0, InternedMetricIdRegistry.toId(handle));
+        Assert.assertEquals(handle, registry.intern("one", handle));
+
+        registry.clear();
+        registry.intern("two");
+        long refreshed = registry.intern("one", handle);
+        Assert.assertNotEquals(handle, refreshed);
+        Assert.assertEquals(2, InternedMetricIdRegistry.toId(refreshed));
+        Assert.assertEquals(2, registry.getId("one"));
+    }
+
+    @Test
+    public void setMetricId() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        registry.setMetricId(MetricName.create("one"), 10);
+        Assert.assertEquals(10, registry.getId("one"));
+        Assert.assertEquals(11, registry.intern("two"));
+        Assert.assertEquals(2, registry.getSize());
+
+        int epoch = registry.getEpoch();
+        registry.setMetricId(MetricName.create("one"), 20);
+        Assert.assertEquals(20, registry.getId("one"));
+        Assert.assertNotEquals(epoch, registry.getEpoch());
+        Assert.assertEquals(21, registry.intern("three"));
+    }
+
+    @Test
+    public void setMetricIdClearsWhenFull() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry(2);
+        registry.intern("one");
+        registry.intern("two");
+        registry.setMetricId(MetricName.create("three"), 5);
+        Assert.assertEquals(1, registry.getSize());
+        Assert.assertEquals(InternedMetricIdRegistry.NO_ID, registry.getId("one"));
+        Assert.assertEquals(5, registry.getId("three"));
+    }
+
+}
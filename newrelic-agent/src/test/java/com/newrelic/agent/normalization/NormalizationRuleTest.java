@@ -0,0 +1,50 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.normalization;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NormalizationRuleTest {
+
+    @Test
+    public void literalPrefix() {
+        Assert.assertEquals("WebTransaction/Uri/", NormalizationRule.getLiteralPrefix("^(WebTransaction/Uri/)[0-9]+$"));
+        Assert.assertEquals("CUSTOM/", NormalizationRule.getLiteralPrefix("^CUSTOM/(.*)/betting/.*$"));
+        Assert.assertEquals("ei/app.", NormalizationRule.getLiteralPrefix("^ei/app\\.[a-z]"));
+        Assert.assertEquals("ab", NormalizationRule.getLiteralPrefix("^ab+c"));
+        Assert.assertEquals("a", NormalizationRule.getLiteralPrefix("^ab?c"));
+    }
+
+    @Test
+    public void noLiteralPrefix() {
+        Assert.assertNull(NormalizationRule.getLiteralPrefix("CUSTOM/(.*)"));
+        Assert.assertNull(NormalizationRule.getLiteralPrefix("^(Apdex|WebTransaction)/(.*)"));
+        Assert.assertNull(NormalizationRule.getLiteralPrefix("^(ab)?c"));
+        Assert.assertNull(NormalizationRule.getLiteralPrefix("^[a-z]+"));
+        Assert.assertNull(NormalizationRule.getLiteralPrefix("^\\d+"));
+        Assert.assertNull(NormalizationRule.getLiteralPrefix("^(?!foo)bar"));
+    }
+
+    @Test
+    public void prefixIsCaseInsensitive() {
+        NormalizationRule rule = new NormalizationRule("^(WebTransaction/Uri/)[0-9]+$", "\\1*", false, 1, false,
+                false, false);
+        Assert.assertEquals("WebTransaction/Uri/*", rule.normalize("WebTransaction/Uri/12").getReplacement());
+        Assert.assertEquals("webtransaction/URI/*", rule.normalize("webtransaction/URI/12").getReplacement());
+        Assert.assertFalse(rule.normalize("OtherTransaction/Uri/12").isMatch());
+        Assert.assertFalse(rule.normalize("WebTrans").isMatch());
+    }
+
+    @Test
+    public void eachSegmentUsesPrefixPerSegment() {
+        NormalizationRule rule = new NormalizationRule("^id[0-9]+$", "*", false, 1, false, true, false);
+        Assert.assertEquals("/users/*/orders", rule.normalize("/users/id42/orders").getReplacement());
+        Assert.assertFalse(rule.normalize("/users/name/orders").isMatch());
+    }
+}
@@ -132,4 +132,40 @@ public class NormalizerTest {
         System.out.println(msg);
     }
 
+    @SuppressWarnings({ "unchecked", "serial" })
+    @Test
+    public void memoizedNamesNormalizeTheSame() {
+        final JSONArray rulesData = new JSONArray();
+        rulesData.addAll(Arrays.asList(new JSONObject() {
+            {
+                put("match_expression", "^(WebTransaction/Uri/account)/[0-9]+$");
+                put("replacement", "\\1/*");
+                put("eval_order", 1);
+            }
+        }, new JSONObject() {
+            {
+                put("match_expression", "^WebTransaction/Uri/health");
+                put("ignore", true);
+                put("eval_order", 2);
+            }
+        }));
+        List<NormalizationRule> rules = NormalizationRuleFactory.getTransactionNameRules(APP_NAME, rulesData);
+        Normalizer normalizer = NormalizerFactory.createTransactionNormalizer(APP_NAME, rules,
+                Collections.<TransactionSegmentTerms> emptyList());
+
+        String unmatched = "WebTransaction/Uri/orders";
+        for (int i = 0; i < 2; i++) {
+            Assert.assertEquals("WebTransaction/Uri/account/*", normalizer.normalize("WebTransaction/Uri/account/123"));
+            Assert.assertEquals("webtransaction/uri/ACCOUNT/*", normalizer.normalize("webtransaction/uri/ACCOUNT/123"));
+            Assert.assertNull(normalizer.normalize("WebTransaction/Uri/health/check"));
+            Assert.assertSame(unmatched, normalizer.normalize(unmatched));
+        }
+
+        // the memo is bounded
+        for (int i = 0; i < NormalizerImpl.MAX_MEMO_SIZE * 2; i++) {
+            Assert.assertEquals("WebTransaction/Uri/account/*", normalizer.normalize("WebTransaction/Uri/account/" + i));
+        }
+        Assert.assertNull(normalizer.normalize("WebTransaction/Uri/health/check"));
+    }
+
 }
@@ -0,0 +1,157 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.profile.v2;
+
+import com.newrelic.agent.MockServiceManager;
+import com.newrelic.agent.ThreadService;
+import com.newrelic.agent.config.AgentConfig;
+import com.newrelic.agent.config.AgentConfigImpl;
+import com.newrelic.agent.config.ConfigService;
+import com.newrelic.agent.config.ConfigServiceFactory;
+import com.newrelic.agent.profile.ProfilerParameters;
+import com.newrelic.agent.profile.ThreadType;
+import com.newrelic.agent.service.ServiceFactory;
+import com.newrelic.agent.threads.BasicThreadInfo;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JfrProfileSamplerTest {
+
+    private static final StackTraceElement[] STACK_TRACE = new StackTraceElement[] {
+            new StackTraceElement("com.acme.explosive", "detonate", null, 123),
+            new StackTraceElement("com.wileecoyote.cartoon", "show", null, 45) };
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        MockServiceManager serviceManager = new MockServiceManager();
+        ServiceFactory.setServiceManager(serviceManager);
+        serviceManager.start();
+
+        serviceManager.setThreadService(new ThreadService());
+
+        Map<String, Object> map = new HashMap<>();
+        AgentConfig agentConfig = AgentConfigImpl.createAgentConfig(map);
+        ConfigService configService = ConfigServiceFactory.createConfigService(agentConfig, map);
+        serviceManager.setConfigService(configService);
+    }
+
+    @Test
+    public void queuedSamplesAreAddedOnNextSample() {
+        ProfilerParameters parameters = createParameters(false);
+        JfrProfileSampler sampler = createStreamingSampler(parameters);
+        IProfile profile = createProfile(parameters);
+        List<IProfile> profiles = Collections.singletonList(profile);
+
+        sampler.addSample(1L, "worker", STACK_TRACE, true);
+        sampler.addSample(2L, "io", STACK_TRACE, false);
+        sampler.sampleStackTraces(profiles);
+
+        verify(profile, times(1)).beforeSampling();
+        verify(profile, times(1)).addStackTrace(any(BasicThreadInfo.class), eq(STACK_TRACE), eq(true),
+                eq(ThreadType.BasicThreadType.OTHER));
+        verify(profile, times(1)).addStackTrace(any(BasicThreadInfo.class), eq(STACK_TRACE), eq(false),
+                eq(ThreadType.BasicThreadType.OTHER));
+
+        // the queue was drained, so the next sample adds nothing
+        sampler.sampleStackTraces(profiles);
+        verify(profile, times(2)).beforeSampling();
+        verify(profile, times(2)).addStackTrace(any(BasicThreadInfo.class), any(StackTraceElement[].class),
+                anyBoolean(), any(ThreadType.class));
+    }
+
+    @Test
+    public void runnablesOnlySkipsNativeSamples() {
+        ProfilerParameters parameters = createParameters(true);
+        JfrProfileSampler sampler = createStreamingSampler(parameters);
+        IProfile profile = createProfile(parameters);
+
+        sampler.addSample(1L, "worker", STACK_TRACE, true);
+        sampler.addSample(2L, "io", STACK_TRACE, false);
+        sampler.sampleStackTraces(Collections.singletonList(profile));
+
+        verify(profile, times(1)).addStackTrace(any(BasicThreadInfo.class), any(StackTraceElement[].class),
+                eq(true), any(ThreadType.class));
+        verify(profile, times(0)).addStackTrace(any(BasicThreadInfo.class), any(StackTraceElement[].class),
+                eq(false), any(ThreadType.class));
+    }
+
+    @Test
+    public void pendingSamplesAreBounded() {
+        ProfilerParameters parameters = createParameters(false);
+        JfrProfileSampler sampler = createStreamingSampler(parameters);
+        IProfile profile = createProfile(parameters);
+
+        for (int i = 0; i < JfrProfileSampler.MAX_PENDING_SAMPLES + 10; i++) {
+            sampler.addSample(1L, "worker", STACK_TRACE, true);
+        }
+        sampler.sampleStackTraces(Collections.singletonList(profile));
+
+        verify(profile, times(JfrProfileSampler.MAX_PENDING_SAMPLES)).addStackTrace(any(BasicThreadInfo.class),
+                any(StackTraceElement[].class), anyBoolean(), any(ThreadType.class));
+    }
+
+    @Test
+    public void createSelectsSampler() {
+        ProfilerParameters parameters = createParameters(false);
+        Assert.assertEquals(ProfileSampler.class, ProfileSampler.create(parameters).getClass());
+
+        parameters.setSampler("thread_info");
+        Assert.assertEquals(ProfileSampler.class, ProfileSampler.create(parameters).getClass());
+
+        parameters.setSampler(JfrProfileSampler.SAMPLER_NAME);
+        Class<?> expected = JfrProfileSampler.isSupported() ? JfrProfileSampler.class : ProfileSampler.class;
+        Assert.assertEquals(expected, ProfileSampler.create(parameters).getClass());
+    }
+
+    @Test
+    public void samplesThreadInfoUntilStarted() {
+        ProfilerParameters parameters = createParameters(false);
+        JfrProfileSampler sampler = new JfrProfileSampler(parameters);
+        IProfile profile = createProfile(parameters);
+
+        sampler.addSample(1L, "worker", STACK_TRACE, true);
+        sampler.sampleStackTraces(Collections.singletonList(profile));
+
+        Assert.assertFalse(sampler.isStreaming());
+        verify(profile, times(0)).addStackTrace(any(BasicThreadInfo.class), eq(STACK_TRACE), anyBoolean(),
+                any(ThreadType.class));
+    }
+
+    private static ProfilerParameters createParameters(boolean runnablesOnly) {
+        return new ProfilerParameters(0L, 100L, 1000L, runnablesOnly, false, false, null, null);
+    }
+
+    private static IProfile createProfile(ProfilerParameters parameters) {
+        IProfile profile = mock(IProfile.class);
+        when(profile.getProfilerParameters()).thenReturn(parameters);
+        return profile;
+    }
+
+    private static JfrProfileSampler createStreamingSampler(ProfilerParameters parameters) {
+        return new JfrProfileSampler(parameters) {
+            @Override
+            boolean isStreaming() {
+                return true;
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.profile.v2;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class StackTrieTest {
+
+    @Test
+    public void samplesShareCommonPaths() {
+        StackTrie trie = new StackTrie();
+        add(trie, true, 1, 2, 3);
+        add(trie, true, 1, 2, 3);
+        add(trie, false, 1, 2, 4);
+        add(trie, true, 5);
+
+        Assert.assertEquals(5, trie.getNodeCount());
+        int one = trie.getChild(StackTrie.ROOT, 1);
+        int two = trie.getChild(one, 2);
+        Assert.assertEquals(2, trie.getRunnableCount(two));
+        Assert.assertEquals(1, trie.getNonrunnableCount(two));
+        Assert.assertEquals(2, trie.getRunnableCount(trie.getChild(two, 3)));
+        Assert.assertEquals(1, trie.getNonrunnableCount(trie.getChild(two, 4)));
+        Assert.assertEquals(StackTrie.NONE, trie.getChild(StackTrie.ROOT, 2));
+    }
+
+    @Test
+    public void removeDropsSubtree() {
+        StackTrie trie = new StackTrie();
+        add(trie, true, 1, 2, 3);
+        add(trie, true, 1, 4);
+
+        int one = trie.getChild(StackTrie.ROOT, 1);
+        int two = trie.getChild(one, 2);
+        int three = trie.getChild(two, 3);
+        trie.remove(two);
+        Assert.assertEquals(2, trie.getNodeCount());
+        Assert.assertEquals(StackTrie.NONE, trie.getChild(one, 2));
+        Assert.assertEquals(trie.getChild(one, 4), trie.getFirstChild(one));
+        Assert.assertEquals(StackTrie.NONE, trie.getNextSibling(trie.getFirstChild(one)));
+
+        // the children of a removed node are already gone
+        trie.remove(three);
+        Assert.assertEquals(2, trie.getNodeCount());
+
+        // a removed path starts over with new counts
+        add(trie, true, 1, 2, 3);
+        Assert.assertEquals(4, trie.getNodeCount());
+        Assert.assertEquals(1, trie.getRunnableCount(trie.getChild(one, 2)));
+    }
+
+    @Test
+    public void countsDistinctPaths() {
+        StackTrie trie = new StackTrie();
+        Set<String> paths = new HashSet<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            int[] frames = new int[1 + random.nextInt(10)];
+            StringBuilder path = new StringBuilder();
+            for (int j = 0; j < frames.length; j++) {
+                frames[j] = random.nextInt(20);
+                paths.add(path.append(frames[j]).append('/').toString());
+            }
+            trie.add(frames, frames.length, true);
+        }
+        Assert.assertEquals(paths.size(), trie.getNodeCount());
+    }
+
+    private static void add(StackTrie trie, boolean runnable, int... frames) {
+        trie.add(frames, frames.length, runnable);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.samplers;
+
+import com.newrelic.agent.MetricNames;
+import com.newrelic.agent.stats.ResponseTimeStats;
+import com.newrelic.agent.stats.StatsEngine;
+import com.newrelic.agent.stats.StatsEngineImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.text.MessageFormat;
+import java.util.concurrent.TimeUnit;
+
+public class JfrMetricSamplerTest {
+
+    @Test
+    public void aggregatesDurationsBetweenSamples() {
+        JfrMetricSampler sampler = new JfrMetricSampler();
+        sampler.recordEvent(JfrMetricSampler.GARBAGE_COLLECTION, TimeUnit.MILLISECONDS.toNanos(20), "G1New");
+        sampler.recordEvent(JfrMetricSampler.GARBAGE_COLLECTION, TimeUnit.MILLISECONDS.toNanos(10), "G1New");
+        sampler.recordEvent(JfrMetricSampler.THREAD_PARK, TimeUnit.MILLISECONDS.toNanos(50), null);
+
+        StatsEngine statsEngine = new StatsEngineImpl();
+        sampler.sample(statsEngine);
+
+        ResponseTimeStats gc = statsEngine.getResponseTimeStats(MessageFormat.format(MetricNames.JFR_GC_MASK, "G1New"));
+        Assert.assertEquals(2, gc.getCallCount());
+        Assert.assertEquals(0.03f, gc.getTotal(), 0.0001f);
+        Assert.assertEquals(0.01f, gc.getMinCallTime(), 0.0001f);
+        Assert.assertEquals(0.02f, gc.getMaxCallTime(), 0.0001f);
+        Assert.assertEquals(1, statsEngine.getResponseTimeStats(MetricNames.JFR_THREAD_PARK).getCallCount());
+
+        // the next sample only has the events since this one
+        statsEngine = new StatsEngineImpl();
+        sampler.recordEvent(JfrMetricSampler.SAFEPOINT, TimeUnit.MILLISECONDS.toNanos(1), null);
+        sampler.sample(statsEngine);
+        Assert.assertEquals(1, statsEngine.getResponseTimeStats(MetricNames.JFR_SAFEPOINT).getCallCount());
+        Assert.assertEquals(0, statsEngine.getResponseTimeStats(MetricNames.JFR_THREAD_PARK).getCallCount());
+    }
+
+    @Test
+    public void recordsAllocationRate() throws Exception {
+        JfrMetricSampler sampler = new JfrMetricSampler();
+        sampler.recordEvent(JfrMetricSampler.ALLOCATION_SAMPLE, 0L, 4L * 1024 * 1024);
+        Thread.sleep(10);
+
+        StatsEngine statsEngine = new StatsEngineImpl();
+        sampler.sample(statsEngine);
+
+        Assert.assertEquals(1, statsEngine.getStats(MetricNames.JFR_ALLOCATION_RATE).getCallCount());
+        Assert.assertTrue(statsEngine.getStats(MetricNames.JFR_ALLOCATION_RATE).getTotal() > 0);
+    }
+}
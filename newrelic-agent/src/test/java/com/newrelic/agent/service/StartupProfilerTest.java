@@ -0,0 +1,119 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.service;
+
+import com.newrelic.agent.MetricNames;
+import com.newrelic.agent.stats.StatsEngineImpl;
+import com.newrelic.agent.stats.StatsService;
+import com.newrelic.agent.stats.StatsWork;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class StartupProfilerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void after() {
+        StartupProfiler.setEnabled(false);
+    }
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        StartupProfiler.setEnabled(false);
+        StartupProfiler.Phase phase = StartupProfiler.start("Disabled");
+        phase.end();
+        StartupProfiler.addPhase("Bootstrap", System.currentTimeMillis() - 10, 10);
+        Assert.assertTrue(StartupProfiler.getPhases().isEmpty());
+    }
+
+    @Test
+    public void testNestedPhases() {
+        StartupProfiler.setEnabled(true);
+        StartupProfiler.Phase outer = StartupProfiler.start("Outer");
+        StartupProfiler.Phase inner = StartupProfiler.start("Outer/Inner");
+        byte[][] garbage = new byte[64][];
+        for (int i = 0; i < garbage.length; i++) {
+            garbage[i] = new byte[1024];
+        }
+        inner.end();
+        inner.end(); // only the first end counts
+        StartupProfiler.Phase unfinished = StartupProfiler.start("Unfinished");
+        outer.end();
+
+        List<StartupProfiler.Phase> phases = StartupProfiler.getPhases();
+        Assert.assertEquals(2, phases.size());
+        Assert.assertEquals("Outer", phases.get(0).getName());
+        Assert.assertEquals("Outer/Inner", phases.get(1).getName());
+        Assert.assertTrue(phases.get(0).getWallNanos() >= phases.get(1).getWallNanos());
+        if (phases.get(1).getAllocatedBytes() >= 0) {
+            Assert.assertTrue(phases.get(1).getAllocatedBytes() >= garbage.length * 1024);
+        }
+        Assert.assertNotNull(unfinished);
+    }
+
+    @Test
+    public void testMetricsAndTimeline() throws Exception {
+        StartupProfiler.setEnabled(true);
+        StartupProfiler.addPhase("Bootstrap", System.currentTimeMillis() - 25, 25);
+        StartupProfiler.start("Premain").end();
+
+        final StatsEngineImpl statsEngine = new StatsEngineImpl();
+        StatsService statsService = mock(StatsService.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((StatsWork) invocation.getArguments()[0]).doWork(statsEngine);
+                return null;
+            }
+        }).when(statsService).doStatsWork(any(StatsWork.class));
+
+        File timeline = folder.newFile("startup.json");
+        System.setProperty(StartupProfiler.FILE_PROPERTY, timeline.getAbsolutePath());
+        try {
+            StartupProfiler.finish(statsService, "1.2.3");
+        } finally {
+            System.clearProperty(StartupProfiler.FILE_PROPERTY);
+        }
+        Assert.assertFalse(StartupProfiler.isEnabled());
+
+        Assert.assertEquals(1, statsEngine.getResponseTimeStats(MetricNames.SUPPORTABILITY_STARTUP + "Bootstrap").getCallCount());
+        Assert.assertEquals(0.025, statsEngine.getResponseTimeStats(MetricNames.SUPPORTABILITY_STARTUP + "Bootstrap").getTotal(), 0.0001);
+        Assert.assertEquals(1, statsEngine.getResponseTimeStats(MetricNames.SUPPORTABILITY_STARTUP + "Premain").getCallCount());
+
+        try (Reader reader = new FileReader(timeline)) {
+            JSONObject profile = (JSONObject) new JSONParser().parse(reader);
+            Assert.assertEquals("1.2.3", profile.get("agent_version"));
+            JSONArray phases = (JSONArray) profile.get("phases");
+            Assert.assertEquals(2, phases.size());
+            JSONObject bootstrap = (JSONObject) phases.get(0);
+            Assert.assertEquals("Bootstrap", bootstrap.get("name"));
+            Assert.assertEquals(25.0, ((Number) bootstrap.get("wall_ms")).doubleValue(), 0.001);
+            Assert.assertNull(bootstrap.get("cpu_ms"));
+            Assert.assertEquals("Premain", ((JSONObject) phases.get(1)).get("name"));
+        }
+    }
+}
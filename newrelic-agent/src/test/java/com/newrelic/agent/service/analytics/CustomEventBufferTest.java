@@ -0,0 +1,100 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.service.analytics;
+
+import com.newrelic.agent.model.CustomInsightsEvent;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class CustomEventBufferTest {
+
+    @Test
+    public void keepsRecordedOrderAcrossChunks() {
+        CustomEventBuffer buffer = new CustomEventBuffer(100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(buffer.offer(event(i)));
+        }
+
+        List<CustomInsightsEvent> events = buffer.toList();
+        assertEquals(100, buffer.size());
+        assertEquals(100, events.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, events.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    public void rejectsEventsOnceFull() {
+        CustomEventBuffer buffer = new CustomEventBuffer(CustomEventBuffer.FIRST_CHUNK_SIZE + 1);
+        for (int i = 0; i < CustomEventBuffer.FIRST_CHUNK_SIZE + 1; i++) {
+            assertTrue(buffer.offer(event(i)));
+        }
+
+        assertFalse(buffer.offer(event(100)));
+        assertFalse(buffer.offer(event(101)));
+        assertEquals(CustomEventBuffer.FIRST_CHUNK_SIZE + 1, buffer.size());
+        assertEquals(CustomEventBuffer.FIRST_CHUNK_SIZE, buffer.toList().get(CustomEventBuffer.FIRST_CHUNK_SIZE).getTimestamp());
+    }
+
+    @Test
+    public void zeroCapacityStoresNothing() {
+        CustomEventBuffer buffer = new CustomEventBuffer(0);
+        assertFalse(buffer.offer(event(0)));
+        assertEquals(0, buffer.size());
+        assertTrue(buffer.toList().isEmpty());
+    }
+
+    @Test
+    public void concurrentWritersLoseNoEvents() throws InterruptedException {
+        final int threads = 8;
+        final int eventsPerThread = 5000;
+        final CustomEventBuffer buffer = new CustomEventBuffer(threads * eventsPerThread);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t * eventsPerThread;
+            writers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < eventsPerThread; i++) {
+                        buffer.offer(event(offset + i));
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertFalse(buffer.offer(event(-1)));
+        Set<Long> timestamps = new HashSet<>();
+        for (CustomInsightsEvent event : buffer.toList()) {
+            timestamps.add(event.getTimestamp());
+        }
+        assertEquals(threads * eventsPerThread, timestamps.size());
+    }
+
+    private static CustomInsightsEvent event(long timestamp) {
+        return new CustomInsightsEvent("Test", timestamp, Collections.<String, Object>emptyMap(), 0.5f);
+    }
+}
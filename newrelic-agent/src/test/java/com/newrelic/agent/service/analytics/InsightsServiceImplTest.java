@@ -323,7 +323,7 @@ public class InsightsServiceImplTest {
         assertEquals(0, analyticsData.getEvents().size());
 
         assertEquals(5, txInsights.events.size());
-        CustomInsightsEvent customEvent = txInsights.events.poll();
+        CustomInsightsEvent customEvent = txInsights.events.toList().get(0);
         assertNotNull(customEvent);
         assertEquals(Whatever.ONE_THING.toString(), customEvent.getUserAttributesCopy().get("key1"));
 
@@ -0,0 +1,238 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.service.analytics;
+
+import com.newrelic.agent.service.analytics.DistributedSamplingPriorityQueueTest.SimplePriorityAware;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class StripedSamplingPriorityQueueTest {
+
+    @Test
+    public void keepsHighestPriorities() {
+        StripedSamplingPriorityQueue<SimplePriorityAware> queue = createQueue(5, 4);
+
+        queue.add(new SimplePriorityAware(false, 1.2f));
+        queue.add(new SimplePriorityAware(false, 0.1f));
+        queue.add(new SimplePriorityAware(false, 1.3f));
+        queue.add(new SimplePriorityAware(false, 1.4f));
+        queue.add(new SimplePriorityAware(false, 1.5f));
+        queue.add(new SimplePriorityAware(false, 1.6f));
+        queue.add(new SimplePriorityAware(false, 0.7f));
+        queue.add(new SimplePriorityAware(false, 2.3f));
+
+        assertEquals(5, queue.size());
+        assertTrue(queue.isFull());
+        assertEquals(8, queue.getNumberOfTries());
+
+        List<SimplePriorityAware> elements = queue.asList();
+        assertEquals(5, elements.size());
+        assertEquals(2.3f, elements.get(0).getPriority(), 0.0f);
+        assertEquals(1.6f, elements.get(1).getPriority(), 0.0f);
+        assertEquals(1.5f, elements.get(2).getPriority(), 0.0f);
+        assertEquals(1.4f, elements.get(3).getPriority(), 0.0f);
+        assertEquals(1.3f, elements.get(4).getPriority(), 0.0f);
+        assertEquals(2.3f, queue.peek().getPriority(), 0.0f);
+    }
+
+    @Test
+    public void fullStripeRaisesFloor() {
+        StripedSamplingPriorityQueue<SimplePriorityAware> queue = createQueue(10, 1);
+        for (int i = 0; i < 21; i++) {
+            queue.add(new SimplePriorityAware(false, i));
+        }
+        // the single stripe is full with 11.0 through 20.0, so nothing below 11.0 can make it into the sample
+        assertEquals(11.0f, queue.getMinPriority(), 0.0f);
+        assertFalse(queue.add(new SimplePriorityAware(true, 5.0f)));
+        assertEquals(0, queue.getDecided());
+        assertTrue(queue.add(new SimplePriorityAware(true, 30.0f)));
+        assertEquals(1, queue.getDecided());
+        assertEquals(1, queue.getSampled());
+
+        List<SimplePriorityAware> elements = queue.asList();
+        assertEquals(10, elements.size());
+        assertEquals(30.0f, elements.get(0).getPriority(), 0.0f);
+        assertEquals(12.0f, elements.get(9).getPriority(), 0.0f);
+    }
+
+    @Test
+    public void matchesDistributedSamplingPriorityQueueAcrossThreads() throws Exception {
+        final int reservoirSize = 100;
+        final StripedSamplingPriorityQueue<SimplePriorityAware> striped = createQueue(reservoirSize, 8);
+        final List<SimplePriorityAware> all = Collections.synchronizedList(new ArrayList<SimplePriorityAware>());
+
+        int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final long seed = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(seed);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < 5000; i++) {
+                        SimplePriorityAware element = new SimplePriorityAware(false, random.nextFloat() * 2);
+                        all.add(element);
+                        striped.add(element);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        DistributedSamplingPriorityQueue<SimplePriorityAware> expected = new DistributedSamplingPriorityQueue<>(reservoirSize, 0, 0,
+                SimplePriorityAware.COMPARATOR);
+        for (SimplePriorityAware element : all) {
+            expected.add(element);
+        }
+
+        List<SimplePriorityAware> expectedList = expected.asList();
+        List<SimplePriorityAware> actualList = striped.asList();
+        assertEquals(expectedList.size(), actualList.size());
+        for (int i = 0; i < expectedList.size(); i++) {
+            assertEquals(expectedList.get(i).getPriority(), actualList.get(i).getPriority(), 0.0f);
+        }
+        assertEquals(threadCount * 5000, striped.getNumberOfTries());
+    }
+
+    @Test
+    public void pollReturnsHighestPriority() {
+        StripedSamplingPriorityQueue<SimplePriorityAware> queue = createQueue(5, 4);
+        queue.add(new SimplePriorityAware(false, 0.5f));
+        queue.add(new SimplePriorityAware(false, 1.5f));
+        queue.add(new SimplePriorityAware(false, 1.0f));
+
+        assertEquals(1.5f, queue.poll().getPriority(), 0.0f);
+        assertEquals(1.0f, queue.poll().getPriority(), 0.0f);
+        assertEquals(1, queue.size());
+        assertEquals(0.5f, queue.poll().getPriority(), 0.0f);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void retryAllAndClear() {
+        StripedSamplingPriorityQueue<SimplePriorityAware> source = createQueue(5, 4);
+        for (int i = 0; i < 5; i++) {
+            source.add(new SimplePriorityAware(false, i));
+        }
+        StripedSamplingPriorityQueue<SimplePriorityAware> target = createQueue(3, 4);
+        target.retryAll(source);
+        assertEquals(3, target.size());
+        assertEquals(4.0f, target.peek().getPriority(), 0.0f);
+
+        target.clear();
+        assertEquals(0, target.size());
+        assertTrue(target.asList().isEmpty());
+        assertEquals(0.0f, target.getMinPriority(), 0.0f);
+    }
+
+    @Test
+    public void zeroSizeReservoirAcceptsNothing() {
+        StripedSamplingPriorityQueue<SimplePriorityAware> queue = createQueue(0, 4);
+        assertFalse(queue.add(new SimplePriorityAware(true, 1.0f)));
+        assertEquals(1, queue.getNumberOfTries());
+        assertEquals(0, queue.size());
+        assertTrue(queue.asList().isEmpty());
+    }
+
+    @Test
+    public void closedReservoirRejectsEvents() {
+        StripedSamplingPriorityQueue<SimplePriorityAware> queue = createQueue(5, 4);
+        assertTrue(queue.add(new SimplePriorityAware(false, 1.0f)));
+        assertFalse(queue.isClosed());
+
+        queue.close();
+        assertTrue(queue.isClosed());
+        assertFalse(queue.add(new SimplePriorityAware(false, 2.0f)));
+        assertEquals(1, queue.size());
+        assertEquals(1.0f, queue.asList().get(0).getPriority(), 0.0f);
+    }
+
+    @Test
+    public void swappingClosedReservoirsLosesNoEvents() throws Exception {
+        final int eventsPerThread = 20000;
+        final AtomicReference<StripedSamplingPriorityQueue<SimplePriorityAware>> current = new AtomicReference<>(
+                createQueue(1000000, 8));
+
+        int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < eventsPerThread; i++) {
+                        SimplePriorityAware element = new SimplePriorityAware(true, i);
+                        StripedSamplingPriorityQueue<SimplePriorityAware> reservoir;
+                        do {
+                            reservoir = current.get();
+                        } while (!reservoir.add(element) && reservoir.isClosed());
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+
+        // harvest the same way TransactionEventsService does: swap in a new reservoir, close the old one, then read it
+        // if it is not empty
+        int harvested = 0;
+        int decided = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            StripedSamplingPriorityQueue<SimplePriorityAware> toSend = current.getAndSet(createQueue(1000000, 8));
+            toSend.close();
+            if (toSend.size() > 0) {
+                harvested += toSend.asList().size();
+                decided += toSend.getDecided();
+            } else {
+                assertEquals(0, toSend.asList().size());
+                assertEquals(0, toSend.getDecided());
+            }
+        }
+        harvested += current.get().asList().size();
+        decided += current.get().getDecided();
+
+        assertEquals(threadCount * eventsPerThread, harvested);
+        assertEquals(threadCount * eventsPerThread, decided);
+    }
+
+    private static StripedSamplingPriorityQueue<SimplePriorityAware> createQueue(int size, int concurrency) {
+        return new StripedSamplingPriorityQueue<>("app", "Span Event Service", size, 0, 10, SimplePriorityAware.COMPARATOR,
+                concurrency);
+    }
+
+}
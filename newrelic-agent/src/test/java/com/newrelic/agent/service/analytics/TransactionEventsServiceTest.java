@@ -33,6 +33,7 @@ import com.newrelic.agent.database.DatastoreMetrics;
 import com.newrelic.agent.environment.EnvironmentService;
 import com.newrelic.agent.environment.EnvironmentServiceImpl;
 import com.newrelic.agent.errors.ErrorServiceImpl;
+import com.newrelic.agent.interfaces.SamplingPriorityQueue;
 import com.newrelic.agent.metric.MetricName;
 import com.newrelic.agent.service.ServiceFactory;
 import com.newrelic.agent.service.ServiceManager;
@@ -171,7 +172,7 @@ public class TransactionEventsServiceTest {
         TransactionData transactionData = generateTransactionData(APP_NAME);
         TransactionStats transactionStats = new TransactionStats();
         service.harvestEvents(APP_NAME); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
         service.dispatcherTransactionFinished(transactionData, transactionStats);
         assertEquals(0, currentEventData.size());
@@ -264,7 +265,7 @@ public class TransactionEventsServiceTest {
         transactionStats.getUnscopedStats().getOrCreateResponseTimeStats(MetricNames.DISPATCHER).recordResponseTime(8,
                 TimeUnit.MILLISECONDS);
         service.harvestEvents(APP_NAME); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
         service.dispatcherTransactionFinished(transactionData, transactionStats);
 
@@ -290,7 +291,7 @@ public class TransactionEventsServiceTest {
         transactionStats.getUnscopedStats().getOrCreateResponseTimeStats(MetricNames.DISPATCHER).recordResponseTime(8,
                 TimeUnit.MILLISECONDS);
         service.harvestEvents(APP_NAME); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
         service.dispatcherTransactionFinished(transactionData, transactionStats);
         assertEquals(1, currentEventData.size());
@@ -303,7 +304,7 @@ public class TransactionEventsServiceTest {
         TransactionStats transactionStats = new TransactionStats();
         service.harvestEvents(APP_NAME); // populate the eventData map
 
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
         for (int i = 0; i < TEST_RESERVOIR_SIZE * 10; i++) {
             service.dispatcherTransactionFinished(transactionData, transactionStats);
@@ -362,7 +363,7 @@ public class TransactionEventsServiceTest {
 
         Thread.sleep(500);
 
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = createAndSendTransaction();
+        SamplingPriorityQueue<TransactionEvent> currentEventData = createAndSendTransaction();
         assertEquals(1, currentEventData.size());
         Thread.sleep(6000);
         checkForEvent();
@@ -373,12 +374,12 @@ public class TransactionEventsServiceTest {
         checkForEvent();
     }
 
-    private DistributedSamplingPriorityQueue<TransactionEvent> createAndSendTransaction() {
+    private SamplingPriorityQueue<TransactionEvent> createAndSendTransaction() {
         TransactionData transactionData = generateTransactionData(APP_NAME);
         TransactionStats transactionStats = new TransactionStats();
         transactionStats.getUnscopedStats().getOrCreateResponseTimeStats(MetricNames.DISPATCHER).recordResponseTime(8,
                 TimeUnit.MILLISECONDS);
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         service.dispatcherTransactionFinished(transactionData, transactionStats);
         return currentEventData;
     }
@@ -403,7 +404,7 @@ public class TransactionEventsServiceTest {
         TransactionStats transactionStats = new TransactionStats();
         service.harvestEvents(APP_NAME); // populate the eventData map
 
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
         for (int i = 0; i < TEST_RESERVOIR_SIZE * 2; i++) {
             service.dispatcherTransactionFinished(transactionData, transactionStats);
@@ -441,7 +442,7 @@ public class TransactionEventsServiceTest {
 
         service.dispatcherTransactionFinished(transactionData, transactionStatsEmpty);
         service.dispatcherTransactionFinished(transactionData, transactionStats);
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         TransactionEvent event = currentEventData.poll();
         Writer writer = new StringWriter();
         event.writeJSONString(writer);
@@ -472,7 +473,7 @@ public class TransactionEventsServiceTest {
                 TimeUnit.MILLISECONDS);
 
         service.harvestEvents(APP_NAME); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
         service.dispatcherTransactionFinished(transactionData, transactionStats);
         assertEquals(1, currentEventData.size());
@@ -499,7 +500,7 @@ public class TransactionEventsServiceTest {
         transactionStats.getUnscopedStats().getOrCreateResponseTimeStats(MetricNames.DISPATCHER).recordResponseTime(8,
                 TimeUnit.MILLISECONDS);
         service.harvestEvents(APP_NAME); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
         service.dispatcherTransactionFinished(transactionData, transactionStats);
 
@@ -540,11 +541,11 @@ public class TransactionEventsServiceTest {
         service.harvestEvents(APP_NAME); // populate the eventData map
         service.harvestEvents(appName2); // populate the eventData map
         service.harvestEvents(appName3); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData2 = getEventData(appName2);
+        SamplingPriorityQueue<TransactionEvent> currentEventData2 = getEventData(appName2);
         assertEquals(0, currentEventData2.size());
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData3 = getEventData(appName3);
+        SamplingPriorityQueue<TransactionEvent> currentEventData3 = getEventData(appName3);
         assertEquals(0, currentEventData3.size());
         service.dispatcherTransactionFinished(transactionData, transactionStats);
         service.dispatcherTransactionFinished(transactionData2, transactionStats2);
@@ -602,11 +603,11 @@ public class TransactionEventsServiceTest {
         service.harvestEvents(APP_NAME); // populate the eventData map
         service.harvestEvents(APP_NAME_2); // populate the eventData map
         service.harvestEvents(appName3); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData2 = getEventData(APP_NAME_2);
+        SamplingPriorityQueue<TransactionEvent> currentEventData2 = getEventData(APP_NAME_2);
         assertEquals(0, currentEventData2.size());
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData3 = getEventData(appName3);
+        SamplingPriorityQueue<TransactionEvent> currentEventData3 = getEventData(appName3);
         assertEquals(0, currentEventData3.size());
 
         service.dispatcherTransactionFinished(transactionData, transactionStats);
@@ -655,11 +656,11 @@ public class TransactionEventsServiceTest {
         service.harvestEvents(APP_NAME); // populate the eventData map
         service.harvestEvents(APP_NAME_2); // populate the eventData map
         service.harvestEvents(appName3); // populate the eventData map
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
+        SamplingPriorityQueue<TransactionEvent> currentEventData = getEventData(APP_NAME);
         assertEquals(0, currentEventData.size());
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData2 = getEventData(APP_NAME_2);
+        SamplingPriorityQueue<TransactionEvent> currentEventData2 = getEventData(APP_NAME_2);
         assertEquals(0, currentEventData2.size());
-        DistributedSamplingPriorityQueue<TransactionEvent> currentEventData3 = getEventData(appName3);
+        SamplingPriorityQueue<TransactionEvent> currentEventData3 = getEventData(appName3);
         assertEquals(0, currentEventData3.size());
 
         service.dispatcherTransactionFinished(transactionData, transactionStats);
@@ -711,7 +712,7 @@ public class TransactionEventsServiceTest {
                 .build();
     }
 
-    private DistributedSamplingPriorityQueue<TransactionEvent> getEventData(String appName) {
+    private SamplingPriorityQueue<TransactionEvent> getEventData(String appName) {
         return service.getDistributedSamplingReservoir(appName);
     }
 }
@@ -401,4 +401,57 @@ public class BoundedConcurrentCacheTest {
         value = cache.get(sqlString);
         Assert.assertEquals(tracer1, value.getTracer());
     }
+
+    @Test
+    public void testPutReplaceReordersModifiedValue() {
+        BoundedConcurrentCache<String, TestValue> smallCache = new BoundedConcurrentCache<>(3);
+        TestValue first = new TestValue("first", 1);
+        smallCache.putIfAbsent("first", first);
+        smallCache.putIfAbsent("second", new TestValue("second", 2));
+        smallCache.putIfAbsent("third", new TestValue("third", 3));
+
+        // the smallest value becomes the largest, so the next eviction must pick "second"
+        first.value = 10;
+        smallCache.putReplace("first", first);
+        smallCache.putIfAbsent("fourth", new TestValue("fourth", 4));
+
+        Assert.assertEquals(3, smallCache.size());
+        Assert.assertSame(first, smallCache.get("first"));
+        Assert.assertNull(smallCache.get("second"));
+        Assert.assertNotNull(smallCache.get("third"));
+        Assert.assertNotNull(smallCache.get("fourth"));
+    }
+
+    @Test
+    public void testKeepsLargestValuesAcrossShards() {
+        BoundedConcurrentCache<String, TestValue> largeCache = new BoundedConcurrentCache<>(MAX_SIZE);
+        for (int i = 0; i < MAX_SIZE * 10; i++) {
+            largeCache.putIfAbsent("key" + i, new TestValue("key" + i, i));
+        }
+
+        Assert.assertEquals(MAX_SIZE, largeCache.size());
+        for (TestValue value : largeCache.asList()) {
+            Assert.assertTrue(value.value >= MAX_SIZE * 9);
+        }
+    }
+
+    private static class TestValue implements Comparable<TestValue>, CacheValue<String> {
+        private final String key;
+        private volatile long value;
+
+        TestValue(String key, long value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public int compareTo(TestValue other) {
+            return Long.compare(value, other.value);
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+    }
 }
@@ -64,4 +64,19 @@ public class SqlObfuscationCrossAgentTest {
         );
     }
 
+    @Test
+    public void runLexerTest() {
+        String rawSql = input.getRawSql();
+        Set<String> expectedObfuscatedSql = input.getObfuscatedSql();
+
+        SqlObfuscator sqlObfuscator = SqlObfuscator.getLexerSqlObfuscator();
+        String actualObfuscatedSql = sqlObfuscator.obfuscateSql(rawSql, input.getDialect());
+        Assert.assertTrue(
+                "Expected: " + expectedObfuscatedSql + ", Actual: " + actualObfuscatedSql,
+                expectedObfuscatedSql.contains(actualObfuscatedSql)
+        );
+        Assert.assertEquals(SqlObfuscator.getDefaultSqlObfuscator().obfuscateSql(rawSql, input.getDialect()),
+                actualObfuscatedSql);
+    }
+
 }
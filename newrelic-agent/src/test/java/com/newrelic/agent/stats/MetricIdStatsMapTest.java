@@ -0,0 +1,161 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.stats;
+
+import com.newrelic.agent.metric.InternedMetricIdRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class MetricIdStatsMapTest {
+
+    @Test
+    public void putGetRemove() {
+        MetricIdStatsMap map = new MetricIdStatsMap(new InternedMetricIdRegistry(), 4);
+        StatsImpl one = new StatsImpl();
+        StatsImpl two = new StatsImpl();
+        Assert.assertNull(map.put("one", one));
+        Assert.assertNull(map.put("two", two));
+        Assert.assertSame(one, map.get("one"));
+        Assert.assertSame(two, map.get("two"));
+        Assert.assertNull(map.get("three"));
+        Assert.assertEquals(2, map.size());
+
+        Assert.assertSame(one, map.remove("one"));
+        Assert.assertNull(map.get("one"));
+        Assert.assertSame(two, map.get("two"));
+        Assert.assertEquals(1, map.size());
+    }
+
+    @Test
+    public void matchesHashMapUnderChurn() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        MetricIdStatsMap map = new MetricIdStatsMap(registry, 2);
+        Map<String, StatsBase> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            StatsImpl stats = new StatsImpl();
+            map.put("Metric/" + i, stats);
+            expected.put("Metric/" + i, stats);
+            if (i % 3 == 0) {
+                Assert.assertSame(expected.remove("Metric/" + (i / 2)), map.remove("Metric/" + (i / 2)));
+            }
+        }
+        Assert.assertEquals(expected, map);
+        for (Map.Entry<String, StatsBase> entry : expected.entrySet()) {
+            Assert.assertSame(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void sparseHighIds() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        for (int i = 0; i < 100000; i++) {
+            registry.intern("Warm/" + i);
+        }
+        MetricIdStatsMap map = new MetricIdStatsMap(registry, 2);
+        Map<String, StatsBase> expected = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            String name = "Warm/" + (i * 997 % 100000);
+            StatsImpl stats = new StatsImpl();
+            Assert.assertSame(stats, map.putIfAbsentById(registry.getId(name), name, stats));
+            expected.put(name, stats);
+        }
+        for (int i = 0; i < 100; i += 2) {
+            String name = "Warm/" + (i * 997 % 100000);
+            Assert.assertSame(expected.remove(name), map.remove(name));
+        }
+        Assert.assertEquals(expected, map);
+        for (Map.Entry<String, StatsBase> entry : expected.entrySet()) {
+            Assert.assertSame(entry.getValue(), map.getById(registry.getId(entry.getKey())));
+        }
+    }
+
+    @Test
+    public void overflowWhenRegistryIsFull() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry(1);
+        MetricIdStatsMap map = new MetricIdStatsMap(registry, 4);
+        StatsImpl interned = new StatsImpl();
+        StatsImpl overflow = new StatsImpl();
+        map.put("interned", interned);
+        map.put("overflow", overflow);
+        Assert.assertEquals(InternedMetricIdRegistry.NO_ID, registry.getId("overflow"));
+        Assert.assertSame(overflow, map.get("overflow"));
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(2, map.entrySet().size());
+    }
+
+    @Test
+    public void mergeStatsById() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        SimpleStatsEngine harvest = new SimpleStatsEngine(new MetricIdStatsMap(registry, 4));
+        SimpleStatsEngine transaction = new SimpleStatsEngine(new MetricIdStatsMap(registry, 4));
+
+        transaction.getOrCreateResponseTimeStats("Datastore/statement/MySQL/users/select").recordResponseTimeInNanos(1000000);
+        transaction.getStats("Custom/count").incrementCallCount();
+        harvest.mergeStats(transaction);
+        harvest.mergeStats(transaction);
+
+        Assert.assertEquals(2, harvest.getSize());
+        Assert.assertEquals(2, harvest.getOrCreateResponseTimeStats("Datastore/statement/MySQL/users/select").getCallCount());
+    }
+
+    @Test
+    public void rekeysAfterRegistryIsCleared() {
+        InternedMetricIdRegistry registry = new InternedMetricIdRegistry();
+        MetricIdStatsMap map = new MetricIdStatsMap(registry, 4);
+        StatsImpl one = new StatsImpl();
+        map.put("one", one);
+        int staleId = registry.getId("one");
+
+        registry.clear();
+        registry.intern("other");
+        StatsImpl two = new StatsImpl();
+        Assert.assertNull(map.getById(staleId));
+        Assert.assertSame(one, map.putIfAbsentById(staleId, "one", new StatsImpl()));
+        Assert.assertSame(two, map.putIfAbsentById(registry.intern("two"), "two", two));
+        Assert.assertSame(one, map.getById(registry.getId("one")));
+        Assert.assertEquals(2, map.size());
+    }
+
+    @Test
+    public void clear() {
+        MetricIdStatsMap map = new MetricIdStatsMap(new InternedMetricIdRegistry(), 4);
+        map.put("one", new StatsImpl());
+        map.put("two", new StatsImpl());
+        map.clear();
+        Assert.assertEquals(0, map.size());
+        Assert.assertNull(map.get("one"));
+        Assert.assertTrue(map.entrySet().isEmpty());
+    }
+
+    @Test
+    public void getOrCreateResponseTimeStatsById() {
+        SimpleStatsEngine engine = SimpleStatsEngine.create(4, true);
+        Assert.assertTrue(engine.isKeyedByMetricId());
+        String metricName = "Custom/MetricIdStatsMapTest/byId";
+        int id = InternedMetricIdRegistry.INSTANCE.intern(metricName);
+
+        engine.getOrCreateResponseTimeStats(id, metricName).recordResponseTimeInNanos(1000000);
+        engine.getOrCreateResponseTimeStats(id, metricName).recordResponseTimeInNanos(1000000);
+        engine.getOrCreateResponseTimeStats(InternedMetricIdRegistry.NO_ID, metricName).recordResponseTimeInNanos(1000000);
+        Assert.assertEquals(3, engine.getOrCreateResponseTimeStats(metricName).getCallCount());
+        Assert.assertEquals(1, engine.getSize());
+    }
+
+    @Test
+    public void mergeStatsFromNameKeyedEngine() {
+        SimpleStatsEngine harvest = new SimpleStatsEngine(new MetricIdStatsMap(new InternedMetricIdRegistry(), 4));
+        SimpleStatsEngine transaction = new SimpleStatsEngine();
+        transaction.getStats("Custom/count").incrementCallCount(3);
+        harvest.mergeStats(transaction);
+        Assert.assertEquals(3, harvest.getStats("Custom/count").getCallCount());
+    }
+
+}
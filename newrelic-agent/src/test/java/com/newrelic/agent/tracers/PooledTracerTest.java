@@ -0,0 +1,287 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.tracers;
+
+import com.newrelic.agent.HarvestService;
+import com.newrelic.agent.MockCoreService;
+import com.newrelic.agent.MockHarvestService;
+import com.newrelic.agent.MockRPMService;
+import com.newrelic.agent.MockRPMServiceManager;
+import com.newrelic.agent.MockServiceManager;
+import com.newrelic.agent.ThreadService;
+import com.newrelic.agent.Transaction;
+import com.newrelic.agent.TransactionActivity;
+import com.newrelic.agent.TransactionService;
+import com.newrelic.agent.config.AgentConfig;
+import com.newrelic.agent.config.AgentConfigImpl;
+import com.newrelic.agent.config.ConfigService;
+import com.newrelic.agent.config.ConfigServiceFactory;
+import com.newrelic.agent.config.TransactionTracerConfigImpl;
+import com.newrelic.agent.errors.ErrorServiceImpl;
+import com.newrelic.agent.normalization.NormalizationServiceImpl;
+import com.newrelic.agent.service.ServiceFactory;
+import com.newrelic.agent.stats.ResponseTimeStats;
+import com.newrelic.agent.stats.StatsService;
+import com.newrelic.agent.stats.StatsServiceImpl;
+import com.newrelic.agent.trace.TransactionTraceService;
+import com.newrelic.agent.tracers.metricname.SimpleMetricNameFormat;
+import com.newrelic.agent.tracing.DistributedTraceService;
+import com.newrelic.api.agent.HeaderType;
+import com.newrelic.api.agent.HttpParameters;
+import com.newrelic.api.agent.OutboundHeaders;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class PooledTracerTest {
+
+    private static final String APP_NAME = "Unit Test";
+    private static final int METRICS_ONLY = TracerFlags.GENERATE_SCOPED_METRIC;
+    private static final ClassMethodSignature SIG = new ClassMethodSignature("com.test.Dude", "dude", "()V");
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put(AgentConfigImpl.APP_NAME, APP_NAME);
+        map.put(AgentConfigImpl.TRANSACTION_TRACER,
+                Collections.singletonMap(TransactionTracerConfigImpl.POOLED_TRACER_DEPTH, 2));
+        map.put(AgentConfigImpl.DISTRIBUTED_TRACING, Collections.singletonMap("enabled", true));
+
+        MockServiceManager serviceManager = new MockServiceManager();
+        ServiceFactory.setServiceManager(serviceManager);
+        serviceManager.start();
+        serviceManager.setThreadService(new ThreadService());
+
+        AgentConfig agentConfig = AgentConfigImpl.createAgentConfig(map);
+        ConfigService configService = ConfigServiceFactory.createConfigService(agentConfig, map);
+        serviceManager.setConfigService(configService);
+        serviceManager.setCoreService(new MockCoreService());
+        HarvestService harvestService = new MockHarvestService();
+        serviceManager.setHarvestService(harvestService);
+        serviceManager.setTransactionService(new TransactionService());
+        serviceManager.setTransactionTraceService(new TransactionTraceService());
+
+        MockRPMServiceManager rpmServiceManager = new MockRPMServiceManager();
+        serviceManager.setRPMServiceManager(rpmServiceManager);
+        MockRPMService rpmService = new MockRPMService();
+        rpmService.setApplicationName(APP_NAME);
+        rpmService.setErrorService(new ErrorServiceImpl(APP_NAME));
+        rpmServiceManager.setRPMService(rpmService);
+
+        configService.start();
+        serviceManager.setNormalizationService(new NormalizationServiceImpl());
+        StatsService statsService = new StatsServiceImpl();
+        serviceManager.setStatsService(statsService);
+        statsService.start();
+
+        DistributedTraceService distributedTraceService = serviceManager.getDistributedTraceService();
+        when(distributedTraceService.getAccountId()).thenReturn("12345");
+        when(distributedTraceService.getTrustKey()).thenReturn("67890");
+        when(distributedTraceService.getApplicationId()).thenReturn("789");
+    }
+
+    @Before
+    public void before() {
+        Transaction.clearTransaction();
+    }
+
+    @Test
+    public void reusesTracersAtEachDepth() {
+        TransactionActivity txa = startTransaction();
+
+        Tracer outer = startPooled(txa, "Custom/outer");
+        Tracer inner = startPooled(txa, "Custom/inner");
+        assertNotSame(outer, inner);
+        assertSame(outer, inner.getParentTracer());
+        inner.finish(Opcodes.RETURN, null);
+        outer.finish(Opcodes.RETURN, null);
+
+        assertSame(outer, startPooled(txa, "Custom/outer"));
+        assertSame(inner, startPooled(txa, "Custom/inner"));
+    }
+
+    @Test
+    public void recordsScopedMetricsWithExclusiveTime() throws Exception {
+        TransactionActivity txa = startTransaction();
+
+        Tracer outer = startPooled(txa, "Custom/outer");
+        Tracer inner = startPooled(txa, "Custom/inner");
+        Thread.sleep(5);
+        inner.finish(Opcodes.RETURN, null);
+        outer.finish(Opcodes.RETURN, null);
+
+        ResponseTimeStats outerStats = txa.getTransactionStats().getScopedStats().getOrCreateResponseTimeStats("Custom/outer");
+        ResponseTimeStats innerStats = txa.getTransactionStats().getScopedStats().getOrCreateResponseTimeStats("Custom/inner");
+        assertEquals(1, outerStats.getCallCount());
+        assertEquals(1, innerStats.getCallCount());
+        assertTrue(outerStats.getTotalExclusiveTime() < innerStats.getTotalExclusiveTime());
+        assertSame(txa.getRootTracer(), txa.getLastTracer());
+    }
+
+    @Test
+    public void returnsNullWhenAllTracersAreInUse() {
+        TransactionActivity txa = startTransaction();
+
+        startPooled(txa, "Custom/one");
+        startPooled(txa, "Custom/two");
+        assertNull(txa.startPooledTracer(SIG, new SimpleMetricNameFormat("Custom/three"), METRICS_ONLY));
+    }
+
+    @Test
+    public void retainedTracerIsNotReused() {
+        TransactionActivity txa = startTransaction();
+
+        Tracer outer = startPooled(txa, "Custom/outer");
+        Tracer inner = startPooled(txa, "Custom/inner");
+        // e.g. the API hands out the current tracer, or a token keeps a reference to it
+        assertSame(inner, txa.retainLastTracer());
+        inner.finish(Opcodes.RETURN, null);
+        outer.finish(Opcodes.RETURN, null);
+
+        assertEquals("Custom/inner", inner.getMetricName());
+        assertSame(outer, inner.getParentTracer());
+        assertNotSame(outer, startPooled(txa, "Custom/outer"));
+        assertNotSame(inner, startPooled(txa, "Custom/inner"));
+    }
+
+    @Test
+    public void pooledParentWithDefaultTracerChildIsReused() {
+        TransactionActivity txa = startTransaction();
+
+        for (int i = 0; i < 3; i++) {
+            Tracer parent = startPooled(txa, "Custom/parent");
+            Tracer child = new DefaultTracer(txa, SIG, null, new SimpleMetricNameFormat("Custom/child"), METRICS_ONLY);
+            assertSame(child, txa.tracerStarted(child));
+            assertSame(parent, child.getParentTracer());
+            child.finish(Opcodes.RETURN, null);
+            parent.finish(Opcodes.RETURN, null);
+
+            assertFalse(((PooledTracer) parent).isRetained());
+            assertSame(parent, startPooled(txa, "Custom/parent"));
+            parent.finish(Opcodes.RETURN, null);
+        }
+        assertEquals(6, txa.getTransactionStats().getScopedStats().getOrCreateResponseTimeStats("Custom/parent").getCallCount());
+        assertEquals(3, txa.getTransactionStats().getScopedStats().getOrCreateResponseTimeStats("Custom/child").getCallCount());
+    }
+
+    @Test
+    public void segmentChildRetainsPooledParent() {
+        TransactionActivity txa = startTransaction();
+
+        Tracer parent = startPooled(txa, "Custom/parent");
+        Tracer child = new DefaultTracer(txa, SIG, null, new SimpleMetricNameFormat("Custom/child"),
+                METRICS_ONLY | TracerFlags.TRANSACTION_TRACER_SEGMENT);
+        assertTrue(child.isTransactionSegment());
+        assertSame(child, txa.tracerStarted(child));
+        child.finish(Opcodes.RETURN, null);
+        parent.finish(Opcodes.RETURN, null);
+
+        // the transaction trace still needs the parent of the segment
+        assertTrue(((PooledTracer) parent).isRetained());
+        assertNotSame(parent, startPooled(txa, "Custom/parent"));
+    }
+
+    @Test
+    public void leafTracersAreNotPooled() {
+        TransactionActivity txa = startTransaction();
+
+        assertNull(txa.startPooledTracer(SIG, new SimpleMetricNameFormat("Custom/leaf"), METRICS_ONLY | TracerFlags.LEAF));
+    }
+
+    @Test
+    public void reportAsExternalRecordsExternalMetrics() throws Exception {
+        TransactionActivity txa = startTransaction();
+
+        Tracer tracer = startPooled(txa, "Custom/external");
+        tracer.reportAsExternal(HttpParameters
+                .library("unittest")
+                .uri(new URI("http://localhost:8080"))
+                .procedure("connect")
+                .noInboundHeaders()
+                .build());
+        assertTrue(((PooledTracer) tracer).isPromoted());
+        tracer.finish(Opcodes.RETURN, null);
+
+        assertEquals(1, txa.getTransactionStats().getUnscopedStats().getOrCreateResponseTimeStats("External/all").getCallCount());
+        assertEquals(1, txa.getTransactionStats().getUnscopedStats().getOrCreateResponseTimeStats("External/localhost/all").getCallCount());
+        assertEquals(1, txa.getTransactionStats().getScopedStats()
+                .getOrCreateResponseTimeStats("External/localhost/unittest/connect").getCallCount());
+        assertEquals(0, txa.getTransactionStats().getScopedStats().getOrCreateResponseTimeStats("Custom/external").getCallCount());
+        assertNotSame(tracer, startPooled(txa, "Custom/external"));
+    }
+
+    @Test
+    public void addOutboundRequestHeadersAddsDistributedTraceHeaders() {
+        TransactionActivity txa = startTransaction();
+
+        Tracer tracer = startPooled(txa, "Custom/outbound");
+        Outbound outbound = new Outbound();
+        tracer.addOutboundRequestHeaders(outbound);
+
+        assertNotNull(tracer.getGuid());
+        assertNotNull(outbound.headers.get("newrelic"));
+        assertTrue(outbound.headers.get("traceparent").contains(tracer.getGuid()));
+        tracer.finish(Opcodes.RETURN, null);
+    }
+
+    @Test
+    public void setMetricNameRenamesScopedMetric() {
+        TransactionActivity txa = startTransaction();
+
+        Tracer tracer = startPooled(txa, "Custom/before");
+        assertFalse(((PooledTracer) tracer).isPromoted());
+        tracer.setMetricName("Custom", "after");
+        tracer.finish(Opcodes.RETURN, null);
+
+        assertEquals(1, txa.getTransactionStats().getScopedStats().getOrCreateResponseTimeStats("Custom/after").getCallCount());
+        assertEquals(0, txa.getTransactionStats().getScopedStats().getOrCreateResponseTimeStats("Custom/before").getCallCount());
+    }
+
+    private static TransactionActivity startTransaction() {
+        Transaction tx = Transaction.getTransaction();
+        Tracer rootTracer = new OtherRootTracer(tx, SIG, null, new SimpleMetricNameFormat("root"));
+        tx.getTransactionActivity().tracerStarted(rootTracer);
+        return tx.getTransactionActivity();
+    }
+
+    private static Tracer startPooled(TransactionActivity txa, String metricName) {
+        Tracer tracer = txa.startPooledTracer(SIG, new SimpleMetricNameFormat(metricName), METRICS_ONLY);
+        assertNotNull(tracer);
+        assertSame(tracer, txa.tracerStarted(tracer));
+        return tracer;
+    }
+
+    private static class Outbound implements OutboundHeaders {
+        final Map<String, String> headers = new HashMap<>();
+
+        @Override
+        public HeaderType getHeaderType() {
+            return HeaderType.HTTP;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            headers.put(name, value);
+        }
+    }
+}
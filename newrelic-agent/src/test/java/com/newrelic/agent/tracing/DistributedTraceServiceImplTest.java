@@ -27,6 +27,7 @@ import com.newrelic.agent.config.ConfigServiceFactory;
 import com.newrelic.agent.config.DistributedTracingConfig;
 import com.newrelic.agent.config.SpanEventsConfig;
 import com.newrelic.agent.dispatchers.Dispatcher;
+import com.newrelic.agent.interfaces.SamplingPriorityQueue;
 import com.newrelic.agent.metric.MetricName;
 import com.newrelic.agent.model.AnalyticsEvent;
 import com.newrelic.agent.service.ServiceFactory;
@@ -254,7 +255,7 @@ public class DistributedTraceServiceImplTest {
 
         // Create reservoir
         ServiceFactory.getTransactionEventsService().harvestEvents("Test");
-        DistributedSamplingPriorityQueue<TransactionEvent> reservoir = ServiceFactory.getTransactionEventsService()
+        SamplingPriorityQueue<TransactionEvent> reservoir = ServiceFactory.getTransactionEventsService()
                 .getOrCreateDistributedSamplingReservoir("Test");
 
         // First 10 traces
@@ -307,7 +308,7 @@ public class DistributedTraceServiceImplTest {
         // Create reservoir
         ServiceFactory.getTransactionEventsService().harvestEvents("Test");
 
-        DistributedSamplingPriorityQueue<TransactionEvent> reservoir =
+        SamplingPriorityQueue<TransactionEvent> reservoir =
                 ServiceFactory.getTransactionEventsService().getOrCreateDistributedSamplingReservoir("Test");
 
         float minPriority = 100.0f;
@@ -15,6 +15,7 @@ import org.json.simple.parser.JSONParser;
 import java.io.ByteArrayInputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.GZIPInputStream;
 
@@ -74,6 +75,11 @@ abstract class ConnectCycleSuccessBaseClientWrapper implements HttpClientWrapper
         return method;
     }
 
+    @Override
+    public void warmUp(URL url) {
+
+    }
+
     @Override
     public void captureSupportabilityMetrics(StatsService statsService, String requestHost) {
 
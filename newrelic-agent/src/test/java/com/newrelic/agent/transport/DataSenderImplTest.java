@@ -480,6 +480,10 @@ public class DataSenderImplTest {
                 throw exception;
             }
 
+            @Override
+            public void warmUp(URL url) {
+            }
+
             @Override
             public void captureSupportabilityMetrics(StatsService statsService, String requestHost) {
             }
@@ -497,6 +501,10 @@ public class DataSenderImplTest {
                 return readResult;
             }
 
+            @Override
+            public void warmUp(URL url) {
+            }
+
             @Override
             public void captureSupportabilityMetrics(StatsService statsService, String requestHost) {
             }
@@ -0,0 +1,121 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.transport;
+
+import org.json.simple.JSONArray;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PayloadWriterTest {
+
+    private static final int LIMIT = 1000000;
+
+    @Test
+    public void gzipPayloadRoundTrips() throws Exception {
+        PayloadWriter writer = new PayloadWriter(Deflater.DEFAULT_COMPRESSION, LIMIT);
+        JSONArray params = createParams(5000);
+
+        PayloadWriter.Payload payload = writer.write(DataSenderImpl.GZIP_ENCODING, params, LIMIT);
+        byte[] json = readAll(new GZIPInputStream(new ByteArrayInputStream(payload.bytes(), 0, payload.length())));
+        assertEquals(params.toJSONString(), new String(json, StandardCharsets.UTF_8));
+        payload.release();
+    }
+
+    @Test
+    public void deflatePayloadRoundTrips() throws Exception {
+        PayloadWriter writer = new PayloadWriter(Deflater.DEFAULT_COMPRESSION, LIMIT);
+        JSONArray params = createParams(5000);
+
+        PayloadWriter.Payload payload = writer.write(DataSenderImpl.DEFLATE_ENCODING, params, LIMIT);
+        byte[] json = readAll(new InflaterInputStream(new ByteArrayInputStream(payload.copy())));
+        assertEquals(params.toJSONString(), new String(json, StandardCharsets.UTF_8));
+        payload.release();
+    }
+
+    @Test
+    public void identityPayloadIsPlainJson() throws Exception {
+        PayloadWriter writer = new PayloadWriter(Deflater.DEFAULT_COMPRESSION, LIMIT);
+        JSONArray params = createParams(10);
+
+        PayloadWriter.Payload payload = writer.write("identity", params, LIMIT);
+        assertArrayEquals(params.toJSONString().getBytes(StandardCharsets.UTF_8), payload.copy());
+        payload.release();
+    }
+
+    @Test
+    public void releasedBuffersAreReused() throws Exception {
+        PayloadWriter writer = new PayloadWriter(Deflater.DEFAULT_COMPRESSION, LIMIT);
+        JSONArray params = createParams(100);
+
+        PayloadWriter.Payload first = writer.write(DataSenderImpl.GZIP_ENCODING, params, LIMIT);
+        byte[] firstBuffer = first.bytes();
+        first.release();
+
+        PayloadWriter.Payload second = writer.write(DataSenderImpl.GZIP_ENCODING, params, LIMIT);
+        assertSame(firstBuffer, second.bytes());
+        byte[] json = readAll(new GZIPInputStream(new ByteArrayInputStream(second.copy())));
+        assertEquals(params.toJSONString(), new String(json, StandardCharsets.UTF_8));
+        second.release();
+    }
+
+    @Test
+    public void stopsWritingOnceLimitIsExceeded() throws Exception {
+        PayloadWriter writer = new PayloadWriter(Deflater.DEFAULT_COMPRESSION, LIMIT);
+        JSONArray params = createParams(50000);
+
+        try {
+            writer.write("identity", params, 1000);
+            fail("Expected the payload to be too large");
+        } catch (PayloadWriter.PayloadTooLargeException e) {
+            assertTrue(e.getBytesWritten() > 1000);
+            assertTrue(e.getBytesWritten() < params.toJSONString().length());
+        }
+
+        // the writer is still usable after an aborted payload
+        PayloadWriter.Payload payload = writer.write(DataSenderImpl.DEFLATE_ENCODING, params, LIMIT);
+        byte[] json = readAll(new InflaterInputStream(new ByteArrayInputStream(payload.copy())));
+        assertEquals(params.toJSONString(), new String(json, StandardCharsets.UTF_8));
+        payload.release();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONArray createParams(int size) {
+        Random random = new Random(42);
+        JSONArray params = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            params.add("event-" + random.nextInt() + "-\u00e9");
+        }
+        return params;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.transport.apache;
+
+import com.newrelic.agent.transport.HttpClientWrapper;
+import com.newrelic.agent.transport.ReadResult;
+import com.newrelic.api.agent.Logger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class ApacheHttpClientWrapperTest {
+
+    private final List<ApacheHttpClientWrapper> wrappers = new ArrayList<>();
+    private HttpServer collector;
+    private ServerSocket serverSocket;
+    private ExecutorService collectorExecutor;
+    private ExecutorService executor;
+
+    @After
+    public void after() throws IOException {
+        for (ApacheHttpClientWrapper wrapper : wrappers) {
+            wrapper.shutdown();
+        }
+        if (collector != null) {
+            collector.stop(0);
+            collectorExecutor.shutdownNow();
+        }
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void warmUpOpensConnectionsAhead() throws Exception {
+        final AtomicInteger accepted = startAcceptingServer();
+
+        createWrapper(3).warmUp(new URL("http", "localhost", serverSocket.getLocalPort(), "/"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (accepted.get() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, accepted.get());
+    }
+
+    @Test
+    public void warmUpDoesNothingWithSingleConnection() throws Exception {
+        final AtomicInteger accepted = startAcceptingServer();
+
+        createWrapper(1).warmUp(new URL("http", "localhost", serverSocket.getLocalPort(), "/"));
+
+        assertEquals(0, accepted.get());
+    }
+
+    @Test
+    public void warmUpStopsWhenPoolIsInUse() throws Exception {
+        // the mock collector holds on to both uploads, so every pooled connection stays leased
+        final CountDownLatch arrived = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        collector = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        collectorExecutor = Executors.newFixedThreadPool(2);
+        collector.setExecutor(collectorExecutor);
+        collector.createContext("/agent_listener", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                arrived.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        collector.start();
+
+        final ApacheHttpClientWrapper wrapper = createWrapper(2);
+        final URL url = new URL("http", "localhost", collector.getAddress().getPort(), "/agent_listener/invoke_raw_method?method=metric_data");
+        executor = Executors.newFixedThreadPool(2);
+        List<Future<ReadResult>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            results.add(executor.submit(new Callable<ReadResult>() {
+                @Override
+                public ReadResult call() throws Exception {
+                    return wrapper.execute(createRequest(url), null);
+                }
+            }));
+        }
+        assertTrue(arrived.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        wrapper.warmUp(url);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+        release.countDown();
+        for (Future<ReadResult> result : results) {
+            assertNotNull(result.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void concurrentUploadsUseSeparateConnections() throws Exception {
+        // the mock collector only answers once both uploads have arrived
+        final CountDownLatch arrived = new CountDownLatch(2);
+        final AtomicInteger answered = new AtomicInteger();
+        collector = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        collectorExecutor = Executors.newFixedThreadPool(2);
+        collector.setExecutor(collectorExecutor);
+        collector.createContext("/agent_listener", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                arrived.countDown();
+                int status = 503;
+                try {
+                    if (arrived.await(5, TimeUnit.SECONDS)) {
+                        answered.incrementAndGet();
+                        status = 200;
+                    }
+                } catch (InterruptedException ignored) {
+                }
+                byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        collector.start();
+
+        final ApacheHttpClientWrapper wrapper = createWrapper(2);
+        final URL url = new URL("http", "localhost", collector.getAddress().getPort(), "/agent_listener/invoke_raw_method?method=metric_data");
+        wrapper.warmUp(url);
+
+        executor = Executors.newFixedThreadPool(2);
+        List<Future<ReadResult>> results = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            results.add(executor.submit(new Callable<ReadResult>() {
+                @Override
+                public ReadResult call() throws Exception {
+                    return wrapper.execute(createRequest(url), null);
+                }
+            }));
+        }
+
+        for (Future<ReadResult> result : results) {
+            assertNotNull(result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(2, answered.get());
+    }
+
+    private AtomicInteger startAcceptingServer() throws IOException {
+        final AtomicInteger accepted = new AtomicInteger();
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<Socket> sockets = new ArrayList<>();
+                try {
+                    while (true) {
+                        sockets.add(serverSocket.accept());
+                        accepted.incrementAndGet();
+                    }
+                } catch (IOException ignored) {
+                    // closed at the end of the test
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return accepted;
+    }
+
+    private ApacheHttpClientWrapper createWrapper(int maxConnections) {
+        ApacheProxyManager proxyManager = new ApacheProxyManager(null, null, null, null, null, mock(Logger.class));
+        ApacheHttpClientWrapper wrapper = new ApacheHttpClientWrapper(proxyManager, null, 5000, maxConnections);
+        wrappers.add(wrapper);
+        return wrapper;
+    }
+
+    private static HttpClientWrapper.Request createRequest(URL url) {
+        return new HttpClientWrapper.Request()
+                .setURL(url)
+                .setVerb(HttpClientWrapper.Verb.POST)
+                .setEncoding("identity")
+                .setData("[]".getBytes(StandardCharsets.UTF_8))
+                .setRequestMetadata(Collections.<String, String>emptyMap());
+    }
+}
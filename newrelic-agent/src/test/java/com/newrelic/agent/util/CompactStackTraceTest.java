@@ -0,0 +1,78 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompactStackTraceTest {
+
+    @Test
+    public void matchesScrubAndTruncate() {
+        int[] depths = { 0, 1, 5, 29, 30, 31, 45, 200 };
+        int[] maxLines = { 0, 1, 2, 3, 30 };
+        for (int depth : depths) {
+            for (int max : maxLines) {
+                for (int agentFrame : new int[] { -1, 0, depth / 2, depth - 1 }) {
+                    List<StackTraceElement> stack = stack(depth, agentFrame);
+                    Assert.assertEquals("depth " + depth + ", max " + max + ", agent frame " + agentFrame,
+                            StackTraces.scrubAndTruncate(new ArrayList<>(stack), max), capture(stack, max));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void scrubAndTruncateKeepsCapturedTrace() {
+        List<StackTraceElement> stack = stack(100, 10);
+        List<StackTraceElement> captured = capture(stack, 30);
+
+        Assert.assertEquals(31, captured.size());
+        Assert.assertEquals(captured, StackTraces.scrubAndTruncate(captured, 30));
+    }
+
+    @Test
+    public void internsEachFrameOnce() {
+        FrameTable table = new FrameTable(2);
+        StackTraceElement element = new StackTraceElement("com.example.Frames", "one", "Frames.java", 10);
+
+        int id = table.intern("com.example.Frames", "one", "()V", 3, element);
+        Assert.assertEquals(id, table.getId("com.example.Frames", "one", "()V", 3));
+        Assert.assertEquals(id, table.intern("com.example.Frames", "one", "()V", 3, null));
+        Assert.assertSame(element, table.getElement(id));
+        Assert.assertEquals(FrameTable.NO_ID, table.getId("com.example.Frames", "one", "(I)V", 3));
+
+        table.intern("com.example.Frames", "two", "()V", 3, element);
+        Assert.assertEquals(FrameTable.NO_ID, table.intern("com.example.Frames", "three", "()V", 3, element));
+    }
+
+    private static List<StackTraceElement> stack(int depth, int agentFrame) {
+        List<StackTraceElement> stack = new ArrayList<>(depth);
+        for (int i = 0; i < depth; i++) {
+            String className = i == agentFrame ? "com.newrelic.agent.tracers.DefaultTracer" : "com.example.Frames";
+            stack.add(new StackTraceElement(className, "method" + i, "Frames.java", i + 1));
+        }
+        return stack;
+    }
+
+    private static List<StackTraceElement> capture(List<StackTraceElement> stack, int maxStackTraceLines) {
+        CompactStackTrace.Builder builder = new CompactStackTrace.Builder(maxStackTraceLines);
+        for (StackTraceElement element : stack) {
+            if (StackTraces.isAgentFrame(element.getClassName(), element.getMethodName())) {
+                builder.reset();
+            } else {
+                builder.add(FrameTable.INSTANCE.intern(element.getClassName(), element.getMethodName(), "()V",
+                        element.getLineNumber(), element));
+            }
+        }
+        return builder.build();
+    }
+}
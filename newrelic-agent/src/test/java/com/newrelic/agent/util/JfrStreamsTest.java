@@ -0,0 +1,45 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class JfrStreamsTest {
+
+    @Test
+    public void startStreamDeliversSubscribedEvents() throws Exception {
+        final CountDownLatch received = new CountDownLatch(1);
+        JfrStreams.Subscription subscription = new JfrStreams.Subscription("jdk.CPULoad", new JfrStreams.EventHandler() {
+            @Override
+            public void onEvent(Object event) {
+                received.countDown();
+            }
+        }).withPeriod(10).withoutStackTrace();
+
+        if (!JfrStreams.isSupported()) {
+            try {
+                JfrStreams.startStream(Collections.singletonList(subscription));
+                Assert.fail("Expected the stream not to start without the JFR streaming API");
+            } catch (ReflectiveOperationException expected) {
+            }
+            return;
+        }
+
+        Object stream = JfrStreams.startStream(Collections.singletonList(subscription));
+        try {
+            Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        } finally {
+            JfrStreams.close(stream);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.agent.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class LazyStackTraceTest {
+
+    @Test
+    public void capturesCallerFrames() {
+        List<StackTraceElement> trace = LazyStackTrace.capture();
+
+        // the constructor and capture() are on top of the caller
+        Assert.assertEquals(LazyStackTrace.class.getName(), trace.get(1).getClassName());
+        Assert.assertEquals(LazyStackTraceTest.class.getName(), trace.get(2).getClassName());
+        Assert.assertEquals("capturesCallerFrames", trace.get(2).getMethodName());
+    }
+
+    @Test
+    public void scrubsAgentFrames() {
+        List<StackTraceElement> scrubbed = StackTraces.scrubAndTruncate(LazyStackTrace.capture(), 0);
+
+        Assert.assertFalse(scrubbed.isEmpty());
+        for (StackTraceElement element : scrubbed) {
+            Assert.assertFalse(element.getClassName().startsWith("com.newrelic.agent."));
+        }
+    }
+
+    @Test
+    public void readsTheSameFramesEachTime() {
+        List<StackTraceElement> trace = LazyStackTrace.capture();
+
+        Assert.assertEquals(trace.size(), trace.size());
+        Assert.assertSame(trace.get(1), trace.get(1));
+    }
+}
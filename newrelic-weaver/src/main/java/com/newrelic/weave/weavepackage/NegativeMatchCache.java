@@ -0,0 +1,294 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.weave.weavepackage;
+
+import com.google.common.collect.Sets;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Remembers, across JVM restarts, which classes can never match any registered weave package so that their bytes do
+ * not have to be parsed on the next startup.
+ *
+ * Entries are grouped by a fingerprint of the jar that the class was loaded from (its location, size and modification
+ * time). Classes loaded from directories or from anything other than a jar file are never cached since their bytes
+ * can change without the fingerprint changing. The whole file is tied to a key made of the agent version, the JVM and
+ * the pre-match inputs of the registered weave packages; a mismatch on any of those discards the file contents.
+ *
+ * This class is thread safe.
+ */
+public class NegativeMatchCache {
+
+    private static final String FILE_HEADER = "newrelic-negative-match-cache-v1";
+    private static final String JAR_PREFIX = "J ";
+    private static final String NOT_CACHEABLE = "";
+
+    private final File file;
+    private final String agentKey;
+    private final int maxEntries;
+
+    /**
+     * code source location -> jar fingerprint, or {@link #NOT_CACHEABLE}
+     */
+    private final ConcurrentMap<String, String> jarFingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * jar fingerprint -> internal names of classes that never match
+     */
+    private final ConcurrentMap<String, Set<String>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Jar fingerprints looked up by this JVM. They are written first so stale jars are the ones dropped when the cache
+     * is full.
+     */
+    private final Set<String> usedJars = Sets.newConcurrentHashSet();
+
+    private final AtomicInteger entryCount = new AtomicInteger();
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile String cacheKey;
+    private volatile boolean modified;
+
+    /**
+     * @param file where the cache is read from and written to
+     * @param agentKey identifies the agent build and JVM, typically the agent version and java version
+     * @param maxEntries upper bound on the number of classes kept
+     */
+    public NegativeMatchCache(File file, String agentKey, int maxEntries) {
+        this.file = file;
+        this.agentKey = agentKey;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Called by the {@link WeavePackageManager} whenever the set of registered packages changes. The first call reads
+     * the file if it was written with the same key. Any call with a different key drops all entries.
+     *
+     * @param weavePackagesKey fingerprint of the pre-match inputs of all registered weave packages
+     */
+    synchronized void open(String weavePackagesKey) {
+        String newKey = agentKey + '|' + weavePackagesKey;
+        if (newKey.equals(cacheKey)) {
+            return;
+        }
+        boolean firstOpen = cacheKey == null;
+        cacheKey = newKey;
+        clear();
+        if (firstOpen) {
+            read();
+        } else {
+            modified = true;
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the jar at the specified code source location.
+     *
+     * @param codeSourceLocation external form of the code source URL of the class being loaded, may be null
+     * @return jar fingerprint, or <code>null</code> if classes from this location can't be cached
+     */
+    String getJarFingerprint(String codeSourceLocation) {
+        if (codeSourceLocation == null || cacheKey == null) {
+            return null;
+        }
+        String fingerprint = jarFingerprints.get(codeSourceLocation);
+        if (fingerprint == null) {
+            fingerprint = computeJarFingerprint(codeSourceLocation);
+            jarFingerprints.putIfAbsent(codeSourceLocation, fingerprint);
+        }
+        if (NOT_CACHEABLE.equals(fingerprint)) {
+            return null;
+        }
+        usedJars.add(fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * @return true if a previous pre-match of this class from this jar found nothing to weave
+     */
+    boolean neverMatches(String jarFingerprint, String className) {
+        Set<String> classNames = entries.get(jarFingerprint);
+        if (classNames != null && classNames.contains(className)) {
+            hits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    void recordNeverMatches(String jarFingerprint, String className) {
+        if (entryCount.get() >= maxEntries) {
+            return;
+        }
+        Set<String> classNames = entries.get(jarFingerprint);
+        if (classNames == null) {
+            Set<String> newClassNames = Sets.newConcurrentHashSet();
+            classNames = entries.putIfAbsent(jarFingerprint, newClassNames);
+            if (classNames == null) {
+                classNames = newClassNames;
+            }
+        }
+        if (classNames.add(className)) {
+            entryCount.incrementAndGet();
+            modified = true;
+        }
+    }
+
+    /**
+     * @return the number of classes that skipped the pre-match because of this cache
+     */
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of classes in this cache
+     */
+    public int size() {
+        return entryCount.get();
+    }
+
+    /**
+     * Writes the cache if it changed since it was read. The file is replaced atomically so a concurrent reader in
+     * another JVM sees either the old or the new contents.
+     */
+    public synchronized void save() throws IOException {
+        if (!modified || cacheKey == null) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+        // cleared first so classes recorded while writing are picked up by the next save
+        modified = false;
+        boolean saved = false;
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(
+                    tempFile)), StandardCharsets.UTF_8))) {
+                writer.write(FILE_HEADER);
+                writer.write('\n');
+                writer.write(cacheKey);
+                writer.write('\n');
+                int written = 0;
+                for (String jar : usedJars) {
+                    written = write(writer, jar, written);
+                }
+                for (String jar : entries.keySet()) {
+                    if (!usedJars.contains(jar)) {
+                        written = write(writer, jar, written);
+                    }
+                }
+            }
+            if (!tempFile.renameTo(file) && (!file.delete() || !tempFile.renameTo(file))) {
+                throw new IOException("Unable to replace " + file);
+            }
+            saved = true;
+        } finally {
+            if (!saved) {
+                modified = true;
+            }
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private int write(Writer writer, String jar, int written) throws IOException {
+        Set<String> classNames = entries.get(jar);
+        if (classNames == null || classNames.isEmpty() || written >= maxEntries) {
+            return written;
+        }
+        writer.write(JAR_PREFIX);
+        writer.write(jar);
+        writer.write('\n');
+        for (String className : classNames) {
+            if (written++ >= maxEntries) {
+                break;
+            }
+            writer.write(className);
+            writer.write('\n');
+        }
+        return written;
+    }
+
+    private void read() {
+        if (!file.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(
+                file)), StandardCharsets.UTF_8))) {
+            if (!FILE_HEADER.equals(reader.readLine()) || !cacheKey.equals(reader.readLine())) {
+                // written by a different agent, JVM or set of weave packages
+                modified = true;
+                return;
+            }
+            Set<String> classNames = null;
+            String line;
+            while ((line = reader.readLine()) != null && entryCount.get() < maxEntries) {
+                if (line.startsWith(JAR_PREFIX)) {
+                    classNames = Sets.newConcurrentHashSet();
+                    entries.put(line.substring(JAR_PREFIX.length()), classNames);
+                } else if (classNames != null && !line.isEmpty() && classNames.add(line)) {
+                    entryCount.incrementAndGet();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // a truncated or corrupt file is rebuilt from scratch
+            clear();
+            modified = true;
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        usedJars.clear();
+        entryCount.set(0);
+    }
+
+    /**
+     * Fingerprints "file:" URLs of jar files and "jar:file:" URLs of jars nested in them (e.g. Spring Boot). Anything
+     * else is not cacheable.
+     */
+    static String computeJarFingerprint(String location) {
+        try {
+            String filePart = location;
+            if (filePart.startsWith("jar:")) {
+                int separator = filePart.indexOf("!/");
+                filePart = filePart.substring("jar:".length(), separator == -1 ? filePart.length() : separator);
+            }
+            if (!filePart.startsWith("file:") || !filePart.endsWith(".jar")) {
+                return NOT_CACHEABLE;
+            }
+            File jarFile = new File(new URI(filePart));
+            if (!jarFile.isFile()) {
+                return NOT_CACHEABLE;
+            }
+            return location + '|' + jarFile.length() + '|' + jarFile.lastModified();
+        } catch (Exception e) {
+            return NOT_CACHEABLE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file + " (" + entryCount.get() + " classes in " + entries.size() + " jars)";
+    }
+}
@@ -10,6 +10,9 @@ package com.newrelic.weave.weavepackage;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.newrelic.weave.utils.BootstrapLoader;
 import com.newrelic.weave.utils.ClassCache;
 import com.newrelic.weave.utils.ClassInformation;
@@ -26,12 +29,17 @@ import org.objectweb.asm.tree.ClassNode;
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -71,6 +79,21 @@ public class WeavePackageManager {
     private final boolean preValidateWeavePackages;
     private final boolean preMatchWeaveMethods;
 
+    /**
+     * Remembers classes whose pre-match failed so later JVMs can skip them. <code>null</code> when disabled.
+     */
+    private volatile NegativeMatchCache negativeMatchCache;
+
+    /**
+     * Runs the validations of packages that partially match a classloader so the thread loading the class does not
+     * wait for them. Threads are only started when needed and validations for independent classloaders run in
+     * parallel. When the queue is full the loading thread runs the validation itself.
+     */
+    private final ThreadPoolExecutor validationExecutor;
+
+    private static final int MAX_VALIDATION_THREADS = 4;
+    private static final int MAX_QUEUED_VALIDATIONS = 1000;
+
     /**
      * Stores the a PackageValidationResult for the current thread. This exists to work around an issue where a `defineClass()` call
      * will cause a weave package to be validated again, generating different utility classes and breaking the instrumentation module.
@@ -121,6 +144,52 @@ public class WeavePackageManager {
         this.maxPreValidatedClassLoaders = maxPreValidatedClassLoaders;
         this.preValidateWeavePackages = preValidateWeavePackages;
         this.preMatchWeaveMethods = preMatchWeaveMethods;
+
+        int validationThreads = Math.max(1, Math.min(MAX_VALIDATION_THREADS, Runtime.getRuntime().availableProcessors()));
+        this.validationExecutor = new ThreadPoolExecutor(validationThreads, validationThreads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED_VALIDATIONS),
+                new ThreadFactoryBuilder().setNameFormat("New Relic Weave Package Validator-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.validationExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Use the specified cache to skip the pre-match of classes that did not match in a previous JVM, and to record the
+     * classes that don't match in this one. Only used when pre-matching of weave methods is enabled.
+     *
+     * @param negativeMatchCache cache to use, or <code>null</code> to stop using one
+     */
+    public void setNegativeMatchCache(NegativeMatchCache negativeMatchCache) {
+        if (null != negativeMatchCache) {
+            negativeMatchCache.open(getPreMatchKey());
+        }
+        this.negativeMatchCache = negativeMatchCache;
+    }
+
+    /**
+     * Tell the negative match cache (if any) that the pre-match inputs may have changed.
+     */
+    private void reopenNegativeMatchCache() {
+        NegativeMatchCache cache = negativeMatchCache;
+        if (null != cache) {
+            cache.open(getPreMatchKey());
+        }
+    }
+
+    /**
+     * A fingerprint of everything the pre-match compares class bytes against. Sorted so it doesn't depend on the
+     * order packages were registered in.
+     */
+    private String getPreMatchKey() {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (Set<String> values : Arrays.asList(requiredClasses, methodSignatures, requiredAnnotationClasses,
+                requiredMethodAnnotationClasses)) {
+            for (String value : new TreeSet<>(values)) {
+                hasher.putUnencodedChars(value).putChar('\n');
+            }
+            hasher.putChar('\u0000');
+        }
+        return hasher.hash().toString();
     }
 
     /**
@@ -161,6 +230,7 @@ public class WeavePackageManager {
             // Just in case we've already built up the cache before an extension was registered we
             // need to clear the cache to rebuild with the new extension jar on the next call to match()
             optimizedWeavePackages.invalidateAll();
+            reopenNegativeMatchCache();
         }
     }
 
@@ -180,6 +250,7 @@ public class WeavePackageManager {
             requiredClasses.removeAll(remove.getRequiredClasses());
             // Rebuild method signatures from weavePackages map
             rebuildWeavePackages();
+            reopenNegativeMatchCache();
         }
         if (null != remove && null != packageListener) {
             packageListener.deregistered(remove);
@@ -311,11 +382,41 @@ public class WeavePackageManager {
      */
     public byte[] weave(ClassLoader classloader, ClassCache cache, String className, byte[] targetBytes,
             ClassWeavedListener weaveListener) throws IOException {
+        return weave(classloader, cache, className, targetBytes, weaveListener, null);
+    }
+
+    /**
+     * Weave all of the matched packages with the specified target bytes using the specified cache and listener.
+     *
+     * @param classloader classloader to resolve classes with
+     * @param cache {@link ClassCache} to find class metadata
+     * @param className target class name
+     * @param targetBytes target class bytes
+     * @param weaveListener listener containing callback if/when the composite is created
+     * @param codeSourceLocation external form of the target class's code source URL, or <code>null</code> if unknown.
+     * Used to look up the class in the {@link NegativeMatchCache}.
+     * @return composite class bytes, or <code>null</code> if no weaving occurred
+     */
+    public byte[] weave(ClassLoader classloader, ClassCache cache, String className, byte[] targetBytes,
+            ClassWeavedListener weaveListener, String codeSourceLocation) throws IOException {
         classloader = classLoaderSub(classloader);
 
-        if (preMatchWeaveMethods && !containsPossibleClassOrMethodMatch(className, targetBytes, requiredClasses, methodSignatures, cache)) {
-            // No potential method match was found, we are definitely not weaving this class so we should exit now
-            return null;
+        if (preMatchWeaveMethods) {
+            NegativeMatchCache negativeCache = negativeMatchCache;
+            String jarFingerprint = negativeCache == null ? null : negativeCache.getJarFingerprint(codeSourceLocation);
+            if (jarFingerprint != null && negativeCache.neverMatches(jarFingerprint, className)) {
+                // A previous JVM pre-matched these exact bytes and found nothing
+                return null;
+            }
+
+            PreMatch preMatch = containsPossibleClassOrMethodMatch(className, targetBytes, requiredClasses, methodSignatures, cache);
+            if (preMatch != PreMatch.POSSIBLE_MATCH) {
+                if (preMatch == PreMatch.NEVER_MATCHES && jarFingerprint != null) {
+                    negativeCache.recordNeverMatches(jarFingerprint, className);
+                }
+                // No potential method match was found, we are definitely not weaving this class so we should exit now
+                return null;
+            }
         }
 
         ClassInformation classInformation = cache.getClassInformation(className);
@@ -360,11 +461,12 @@ public class WeavePackageManager {
      * @param requiredClasses the set of known classes/superclasses/interfaces to compare against
      * @param methodSignatures the set of all method signatures to compare against
      * @param cache class cache to lookup interface annotations
-     * @return true if this contains a possible match, false otherwise
+     * @return {@link PreMatch#POSSIBLE_MATCH} if this contains a possible match
      */
-    private boolean containsPossibleClassOrMethodMatch(final String className, final byte[] classBytes, final Set<String> requiredClasses,
+    private PreMatch containsPossibleClassOrMethodMatch(final String className, final byte[] classBytes, final Set<String> requiredClasses,
                                                        final Set<String> methodSignatures, final ClassCache cache) {
         final AtomicBoolean containsPossibleMatch = new AtomicBoolean(false);
+        final AtomicBoolean dependsOnOtherClasses = new AtomicBoolean(false);
         ClassReader originalBytesReader = new ClassReader(classBytes);
         originalBytesReader.accept(new ClassVisitor(WeaveUtils.ASM_API_LEVEL) {
 
@@ -378,6 +480,16 @@ public class WeavePackageManager {
                 this.interfaces = interfaces;
                 isInterface = (access & Opcodes.ACC_INTERFACE) == Opcodes.ACC_INTERFACE;
 
+                // Annotated classes are added to requiredClasses as they are found and interface annotations are read
+                // from other class files, so a miss is only permanent if neither of those can come into play
+                if (!requiredAnnotationClasses.isEmpty()) {
+                    boolean supertypesOutsideJdk = !isJdkClass(superName);
+                    for (int i = 0; !isInterface && !supertypesOutsideJdk && i < interfaces.length; i++) {
+                        supertypesOutsideJdk = !isJdkClass(interfaces[i]);
+                    }
+                    dependsOnOtherClasses.set(supertypesOutsideJdk);
+                }
+
                 // Figure out if this exact class or the super class is a match
                 if (requiredClasses.contains(name) || requiredClasses.contains(superName)) {
                     containsPossibleMatch.set(true);
@@ -464,7 +576,29 @@ public class WeavePackageManager {
             }
         }, ClassReader.SKIP_FRAMES | ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE);
 
-        return containsPossibleMatch.get();
+        if (containsPossibleMatch.get()) {
+            return PreMatch.POSSIBLE_MATCH;
+        }
+        return dependsOnOtherClasses.get() ? PreMatch.NO_MATCH : PreMatch.NEVER_MATCHES;
+    }
+
+    private static boolean isJdkClass(String internalName) {
+        return internalName == null || internalName.startsWith("java/");
+    }
+
+    private enum PreMatch {
+        /**
+         * The class may match a weave package and has to be validated
+         */
+        POSSIBLE_MATCH,
+        /**
+         * The class does not match and never will, given the same bytes and weave packages
+         */
+        NEVER_MATCHES,
+        /**
+         * The class does not match right now, but could once other classes have been seen
+         */
+        NO_MATCH
     }
 
     /**
@@ -605,21 +739,37 @@ public class WeavePackageManager {
 
             ConcurrentMap<String, WeavePackage> optimizedMap = optimizedWeavePackages.asMap().putIfAbsent(classloader,
                     classloaderWeavePackages);
-            if (optimizedMap == null) {
+            if (optimizedMap == null && !unmatchedWeavePackages.isEmpty()) {
                 // Run verifications against unmatched packages since this is
                 // the thread that added the packages to the optimized map
+                validateUnmatchedPackages(classloader, cache, unmatchedWeavePackages);
+            }
+        }
+        return classloaderWeavePackages;
+    }
+
+    /**
+     * Validate packages that only partially matched a classloader on the validation executor. The results are
+     * reported to the listener, which records the skipped package supportability metrics and logs the weave
+     * violations. Such a package is never applied to the classloader, so weaving does not wait for the results.
+     */
+    private void validateUnmatchedPackages(final ClassLoader classloader, final ClassCache cache,
+            final Collection<WeavePackage> unmatchedWeavePackages) {
+        if (null == packageListener) {
+            return;
+        }
+        validationExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
                 for (WeavePackage unmatchedWeavePackage : unmatchedWeavePackages) {
                     try {
                         PackageValidationResult verificationResult = unmatchedWeavePackage.validate(cache);
-                        if (null != packageListener) {
-                            packageListener.validated(verificationResult, classloader);
-                        }
+                        packageListener.validated(verificationResult, classloader);
                     } catch (Exception e) {
                         // Ignore
                     }
                 }
             }
-        }
-        return classloaderWeavePackages;
+        });
     }
 }
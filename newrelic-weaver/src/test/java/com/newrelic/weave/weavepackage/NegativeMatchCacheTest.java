@@ -0,0 +1,162 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.newrelic.weave.weavepackage;
+
+import com.newrelic.weave.WeaveTestUtils;
+import com.newrelic.weave.utils.ClassCache;
+import com.newrelic.weave.utils.ClassLoaderFinder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class NegativeMatchCacheTest {
+
+    private static final String NEVER_WEAVED = "com/newrelic/weave/weavepackage/NegativeMatchCacheTest$NeverWeaved";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void init() throws IOException {
+        WeavePackageManagerTest.init();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File cacheFile = new File(folder.getRoot(), "cache.gz");
+        String location = jarLocation(folder.newFile("app.jar"));
+
+        NegativeMatchCache cache = new NegativeMatchCache(cacheFile, "agent", 100);
+        cache.open("packages");
+        String jar = cache.getJarFingerprint(location);
+        Assert.assertNotNull(jar);
+        Assert.assertFalse(cache.neverMatches(jar, "a/B"));
+        cache.recordNeverMatches(jar, "a/B");
+        Assert.assertTrue(cache.neverMatches(jar, "a/B"));
+        cache.save();
+
+        NegativeMatchCache reloaded = new NegativeMatchCache(cacheFile, "agent", 100);
+        reloaded.open("packages");
+        Assert.assertEquals(1, reloaded.size());
+        Assert.assertTrue(reloaded.neverMatches(reloaded.getJarFingerprint(location), "a/B"));
+        Assert.assertFalse(reloaded.neverMatches(reloaded.getJarFingerprint(location), "a/C"));
+        Assert.assertEquals(1, reloaded.getHitCount());
+    }
+
+    @Test
+    public void testKeyMismatchDiscardsEntries() throws IOException {
+        File cacheFile = new File(folder.getRoot(), "cache.gz");
+        String location = jarLocation(folder.newFile("app.jar"));
+
+        NegativeMatchCache cache = new NegativeMatchCache(cacheFile, "agent-1", 100);
+        cache.open("packages");
+        cache.recordNeverMatches(cache.getJarFingerprint(location), "a/B");
+        cache.save();
+
+        NegativeMatchCache newAgent = new NegativeMatchCache(cacheFile, "agent-2", 100);
+        newAgent.open("packages");
+        Assert.assertEquals(0, newAgent.size());
+
+        NegativeMatchCache newPackages = new NegativeMatchCache(cacheFile, "agent-1", 100);
+        newPackages.open("other-packages");
+        Assert.assertEquals(0, newPackages.size());
+
+        // a package registered at runtime invalidates what was already recorded
+        cache.open("more-packages");
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testModifiedJarMisses() throws IOException {
+        File cacheFile = new File(folder.getRoot(), "cache.gz");
+        File jarFile = folder.newFile("app.jar");
+        String location = jarLocation(jarFile);
+
+        NegativeMatchCache cache = new NegativeMatchCache(cacheFile, "agent", 100);
+        cache.open("packages");
+        cache.recordNeverMatches(cache.getJarFingerprint(location), "a/B");
+        cache.save();
+
+        try (FileOutputStream out = new FileOutputStream(jarFile)) {
+            out.write(new byte[] { 1, 2, 3 });
+        }
+
+        NegativeMatchCache reloaded = new NegativeMatchCache(cacheFile, "agent", 100);
+        reloaded.open("packages");
+        Assert.assertFalse(reloaded.neverMatches(reloaded.getJarFingerprint(location), "a/B"));
+    }
+
+    @Test
+    public void testOnlyJarsAreCacheable() throws IOException {
+        NegativeMatchCache cache = new NegativeMatchCache(new File(folder.getRoot(), "cache.gz"), "agent", 100);
+        cache.open("packages");
+        Assert.assertNull(cache.getJarFingerprint(null));
+        Assert.assertNull(cache.getJarFingerprint(folder.getRoot().toURI().toString()));
+        Assert.assertNull(cache.getJarFingerprint(jarLocation(new File(folder.getRoot(), "missing.jar"))));
+        Assert.assertNull(cache.getJarFingerprint("http://example.com/app.jar"));
+
+        File jarFile = folder.newFile("boot.jar");
+        Assert.assertNotNull(cache.getJarFingerprint("jar:" + jarLocation(jarFile) + "!/BOOT-INF/lib/inner.jar!/"));
+    }
+
+    @Test
+    public void testMaxEntries() throws IOException {
+        File cacheFile = new File(folder.getRoot(), "cache.gz");
+        String location = jarLocation(folder.newFile("app.jar"));
+
+        NegativeMatchCache cache = new NegativeMatchCache(cacheFile, "agent", 2);
+        cache.open("packages");
+        String jar = cache.getJarFingerprint(location);
+        cache.recordNeverMatches(jar, "a/B");
+        cache.recordNeverMatches(jar, "a/C");
+        cache.recordNeverMatches(jar, "a/D");
+        Assert.assertEquals(2, cache.size());
+        Assert.assertFalse(cache.neverMatches(jar, "a/D"));
+    }
+
+    @Test
+    public void testWeavePackageManagerSkipsCachedClasses() throws IOException {
+        File cacheFile = new File(folder.getRoot(), "cache.gz");
+        String location = jarLocation(folder.newFile("app.jar"));
+        byte[] classBytes = WeaveTestUtils.getClassBytes(NEVER_WEAVED.replace('/', '.'));
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+
+        NegativeMatchCache cache = new NegativeMatchCache(cacheFile, "agent", 100);
+        WeavePackageManager wpm = new WeavePackageManager();
+        wpm.register(WeavePackageManagerTest.testPackage1);
+        wpm.setNegativeMatchCache(cache);
+        Assert.assertNull(wpm.weave(classloader, new ClassCache(new ClassLoaderFinder(classloader)), NEVER_WEAVED,
+                classBytes, null, location));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(0, cache.getHitCount());
+        cache.save();
+
+        NegativeMatchCache reloaded = new NegativeMatchCache(cacheFile, "agent", 100);
+        WeavePackageManager nextJvm = new WeavePackageManager();
+        nextJvm.register(WeavePackageManagerTest.testPackage1);
+        nextJvm.setNegativeMatchCache(reloaded);
+        Assert.assertNull(nextJvm.weave(classloader, new ClassCache(new ClassLoaderFinder(classloader)), NEVER_WEAVED,
+                classBytes, null, location));
+        Assert.assertEquals(1, reloaded.getHitCount());
+    }
+
+    private static String jarLocation(File jarFile) {
+        return jarFile.toURI().toString();
+    }
+
+    public static class NeverWeaved {
+        public void negativeMatchCacheTestMethod() {
+        }
+    }
+}